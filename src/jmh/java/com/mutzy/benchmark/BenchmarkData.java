@@ -0,0 +1,117 @@
+package com.mutzy.benchmark;
+
+import com.mutzy.dao.InMemoryAppointmentDao;
+import com.mutzy.dao.InMemoryAppointmentSeriesDao;
+import com.mutzy.dao.InMemoryArchivedAppointmentDao;
+import com.mutzy.dao.InMemoryLocationDao;
+import com.mutzy.dao.InMemoryPersonDao;
+import com.mutzy.dao.InMemorySeriesOverrideDao;
+import com.mutzy.domain.Appointment;
+import com.mutzy.domain.Location;
+import com.mutzy.domain.Person;
+import com.mutzy.dto.AppointmentRequestDto;
+import org.apache.commons.lang3.RandomStringUtils;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Generates the same data on every run so results from different runs can be compared
+ */
+public class BenchmarkData {
+
+    private static final long START_MILLIS = 1577836800000L; // 2020-01-01
+    private static final long RANGE_MILLIS = TimeUnit.DAYS.toMillis(5 * 365);
+    private static final LocalDateTime FIRST_FREE_SLOT = LocalDateTime.of(2025, 1, 1, 0, 0); // after every generated appointment
+
+    private final Random random = new Random(42);
+
+    public final InMemoryPersonDao personDao = new InMemoryPersonDao();
+    public final InMemoryLocationDao locationDao = new InMemoryLocationDao();
+    public final InMemoryArchivedAppointmentDao archivedAppointmentDao = new InMemoryArchivedAppointmentDao(personDao, locationDao);
+    public final InMemoryAppointmentDao appointmentDao = new InMemoryAppointmentDao(personDao, locationDao, archivedAppointmentDao);
+    public final InMemoryAppointmentSeriesDao seriesDao = new InMemoryAppointmentSeriesDao();
+    public final InMemorySeriesOverrideDao seriesOverrideDao = new InMemorySeriesOverrideDao();
+
+    /**
+     * Fills the in-memory daos with the given number of appointments, and one person and location for every 100 appointments
+     */
+    public BenchmarkData(int appointmentCount) {
+        int referenceCount = Math.max(1, appointmentCount / 100);
+        for (int i = 0; i < referenceCount; i++) {
+            personDao.save(createPerson());
+            locationDao.save(createLocation());
+        }
+        for (int i = 0; i < appointmentCount; i++) {
+            Appointment appointment = new Appointment();
+            appointment.setDescription(randomText(40));
+            appointment.setDate(new Date(START_MILLIS + (long) (random.nextDouble() * RANGE_MILLIS)));
+            appointment.setPersonId(1 + random.nextInt(referenceCount));
+            appointment.setLocationId(1 + random.nextInt(referenceCount));
+            appointmentDao.save(appointment);
+        }
+    }
+
+    public List<Appointment> appointments() {
+        List<Appointment> appointments = new ArrayList<>();
+        appointmentDao.findAll().forEach(appointments::add);
+        return appointments;
+    }
+
+    public List<Person> people() {
+        List<Person> people = new ArrayList<>();
+        personDao.findAll().forEach(people::add);
+        return people;
+    }
+
+    public List<Location> locations() {
+        List<Location> locations = new ArrayList<>();
+        locationDao.findAll().forEach(locations::add);
+        return locations;
+    }
+
+    public AppointmentRequestDto createAppointmentRequest() {
+        AppointmentRequestDto dto = new AppointmentRequestDto();
+        dto.setDescription("Quarterly review, bring the Q3 numbers!");
+        dto.setDate("2022-12-20");
+        dto.setTime("12:30");
+        dto.setPersonId(1);
+        dto.setLocationId(1);
+        return dto;
+    }
+
+    /**
+     * Creates a request for the given 30 minute slot after the generated appointments. Requests for different slots
+     * never double book anyone, so they can all be saved
+     */
+    public AppointmentRequestDto createAppointmentRequest(int slot) {
+        LocalDateTime start = FIRST_FREE_SLOT.plusMinutes(30L * slot);
+        AppointmentRequestDto dto = createAppointmentRequest();
+        dto.setDate(start.toLocalDate().toString());
+        dto.setTime(start.toLocalTime().toString());
+        dto.setDurationMinutes(30);
+        return dto;
+    }
+
+    private Person createPerson() {
+        Person person = new Person();
+        person.setName(randomText(12));
+        person.setAffiliation(randomText(12));
+        return person;
+    }
+
+    private Location createLocation() {
+        Location location = new Location();
+        location.setName(randomText(12));
+        location.setDescription(randomText(30));
+        return location;
+    }
+
+    private String randomText(int length) {
+        return RandomStringUtils.random(length, 0, 0, true, true, null, random);
+    }
+}
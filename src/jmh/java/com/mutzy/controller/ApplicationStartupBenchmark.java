@@ -0,0 +1,46 @@
+package com.mutzy.controller;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures how long the application takes from starting to serving its first appointments page, in each RuntimeMode.
+ * The first page includes parsing the template, which the production mode then keeps for later requests
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 10)
+@Fork(1)
+public class ApplicationStartupBenchmark {
+
+    @Param({"DEVELOPMENT", "PRODUCTION"})
+    private RuntimeMode mode;
+
+    private ConfigurableApplicationContext context;
+
+    @TearDown(Level.Invocation)
+    public void stopApplication() {
+        context.close();
+    }
+
+    @Benchmark
+    public int startAndRenderFirstPage() throws Exception {
+        context = mode.start("startup");
+        return PageRenderingBenchmark.get(context, "/appointments").length;
+    }
+}
@@ -0,0 +1,83 @@
+package com.mutzy.controller;
+
+import com.mutzy.dto.AppointmentRequestDto;
+import com.mutzy.service.AppointmentService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures serving a full page of appointments over HTTP, from the request to the last byte of the response,
+ * in each RuntimeMode. The page is served from the AppointmentView, so the difference between the modes is the cost of
+ * parsing the template and resolving the stylesheet's url again on every request
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 10, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class PageRenderingBenchmark {
+
+    @Param({"DEVELOPMENT", "PRODUCTION"})
+    private RuntimeMode mode;
+
+    private ConfigurableApplicationContext context;
+
+    @Setup
+    public void setUp() {
+        context = mode.start("rendering");
+        AppointmentService service = context.getBean(AppointmentService.class);
+        for (int i = 0; i < 100; i++) {
+            AppointmentRequestDto dto = new AppointmentRequestDto();
+            dto.setDescription("Quarterly review " + i + ", bring the Q3 numbers!");
+            dto.setDate("2022-12-20");
+            dto.setTime(String.format("%02d:%02d", 8 + i / 12, i % 12 * 5));
+            service.createAppointment(dto);
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public byte[] renderAppointmentsPage() throws IOException {
+        return get(context, "/appointments");
+    }
+
+    static byte[] get(ConfigurableApplicationContext context, String path) throws IOException {
+        int port = ((WebServerApplicationContext) context).getWebServer().getPort();
+        HttpURLConnection connection = (HttpURLConnection) new URL("http://localhost:" + port + path).openConnection();
+        if (connection.getResponseCode() != 200) {
+            throw new IllegalStateException("GET " + path + " returned " + connection.getResponseCode());
+        }
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        try (InputStream in = connection.getInputStream()) {
+            byte[] buffer = new byte[8192];
+            for (int read = in.read(buffer); read >= 0; read = in.read(buffer)) {
+                body.write(buffer, 0, read);
+            }
+        }
+        return body.toByteArray();
+    }
+}
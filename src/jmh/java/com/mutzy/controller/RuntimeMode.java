@@ -0,0 +1,46 @@
+package com.mutzy.controller;
+
+import com.mutzy.AppointmentApplication;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+/**
+ * The two ways the application runs, for benchmarks that compare them. Both start the full web application on a random port
+ * against an in-memory H2 database
+ */
+public enum RuntimeMode {
+    /**
+     * As under mvn spring-boot:run with the development profile: with the properties devtools sets, which turn off the
+     * template cache and the cache of resolved stylesheet urls. They are passed on the command line here, where they would
+     * override application.properties, so application.properties must leave them unset for this to match devtools.
+     * Devtools' restart class loader isn't included, as devtools only uses it when the application is started from a
+     * main method
+     */
+    DEVELOPMENT("--spring.thymeleaf.cache=false", "--spring.resources.chain.cache=false", "--spring.resources.cache.period=0"),
+    /**
+     * As built with the production profile, where devtools isn't on the classpath to override application.properties
+     */
+    PRODUCTION("--spring.devtools.add-properties=false");
+
+    private final String[] properties;
+
+    RuntimeMode(String... properties) {
+        this.properties = properties;
+    }
+
+    ConfigurableApplicationContext start(String databaseName) {
+        String[] args = {
+                "--spring.datasource.url=jdbc:h2:mem:" + databaseName + ";DB_CLOSE_DELAY=-1",
+                "--spring.datasource.driver-class-name=org.h2.Driver",
+                "--spring.datasource.username=sa",
+                "--spring.datasource.password=",
+                "--spring.jpa.hibernate.ddl-auto=create-drop",
+                "--server.port=0",
+                "--logging.level.root=WARN"};
+        String[] allArgs = new String[args.length + properties.length];
+        System.arraycopy(args, 0, allArgs, 0, args.length);
+        System.arraycopy(properties, 0, allArgs, args.length, properties.length);
+        // passed as command line arguments so they override application.properties
+        return new SpringApplicationBuilder(AppointmentApplication.class).run(allArgs);
+    }
+}
@@ -0,0 +1,119 @@
+package com.mutzy.dao;
+
+import com.mutzy.AppointmentApplication;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures fetching a batch from the end of the (date, id) order, as the last batch of an AppointmentView rebuild does,
+ * against an in-memory H2 database with the date_id_idx index from mysqlDatabaseConfiguration.sql. Compares
+ * AppointmentDao.findDetailsAfter with the same query without its plain date >= bound
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class AppointmentSeekBenchmark {
+
+    private static final int BATCH_SIZE = 1000;
+    private static final long START_MILLIS = 1577836800000L; // 2020-01-01
+    private static final long RANGE_MILLIS = TimeUnit.DAYS.toMillis(5 * 365);
+
+    @Param({"200000"})
+    public int appointmentCount;
+
+    private ConfigurableApplicationContext context;
+    private AppointmentDao appointmentDao;
+    private EntityManagerFactory entityManagerFactory;
+    private Date lastDate;
+    private Integer lastId;
+
+    @Setup
+    public void setUp() {
+        context = new SpringApplicationBuilder(AppointmentApplication.class)
+                .web(WebApplicationType.NONE)
+                // passed as command line arguments so they override application.properties
+                .run("--spring.datasource.url=jdbc:h2:mem:seek;DB_CLOSE_DELAY=-1",
+                        "--spring.datasource.driver-class-name=org.h2.Driver",
+                        "--spring.datasource.username=sa",
+                        "--spring.datasource.password=",
+                        "--spring.jpa.hibernate.ddl-auto=create-drop",
+                        "--logging.level.root=WARN");
+        appointmentDao = context.getBean(AppointmentDao.class);
+        entityManagerFactory = context.getBean(EntityManagerFactory.class);
+
+        JdbcTemplate jdbcTemplate = context.getBean(JdbcTemplate.class);
+        Random random = new Random(42);
+        List<Object[]> rows = new ArrayList<>(appointmentCount);
+        for (int id = 1; id <= appointmentCount; id++) {
+            Timestamp date = new Timestamp(START_MILLIS + (long) (random.nextDouble() * RANGE_MILLIS));
+            rows.add(new Object[]{id, "Appointment " + id, date, 30});
+        }
+        // connections come out of the pool with auto-commit off, so the rows need a transaction of their own
+        new TransactionTemplate(context.getBean(PlatformTransactionManager.class)).executeWithoutResult(status -> {
+            jdbcTemplate.batchUpdate("insert into appointments (id, description, date, duration_minutes) values (?, ?, ?, ?)", rows);
+            jdbcTemplate.execute("create index date_id_idx on appointments (date, id)");
+        });
+
+        // the cursor the last full batch of a rebuild starts after
+        Map<String, Object> cursor = jdbcTemplate.queryForMap(
+                "select date, id from appointments order by date, id limit 1 offset ?", appointmentCount - BATCH_SIZE - 1);
+        lastDate = new Date(((Timestamp) cursor.get("date")).getTime());
+        lastId = (Integer) cursor.get("id");
+    }
+
+    @TearDown
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public List<AppointmentDetails> findDetailsAfter() {
+        return appointmentDao.findDetailsAfter(lastDate, lastId, PageRequest.of(0, BATCH_SIZE));
+    }
+
+    @Benchmark
+    public List<AppointmentDetails> findDetailsAfter_withoutDateBound() {
+        EntityManager entityManager = entityManagerFactory.createEntityManager();
+        try {
+            return entityManager.createQuery(AppointmentDao.SELECT_DETAILS +
+                            " where a.date > :date or (a.date = :date and a.id > :id) order by a.date asc, a.id asc",
+                            AppointmentDetails.class)
+                    .setParameter("date", lastDate)
+                    .setParameter("id", lastId)
+                    .setMaxResults(BATCH_SIZE)
+                    .getResultList();
+        } finally {
+            entityManager.close();
+        }
+    }
+}
@@ -0,0 +1,168 @@
+package com.mutzy.dao;
+
+import com.mutzy.domain.Appointment;
+import com.mutzy.domain.Location;
+import com.mutzy.domain.Person;
+import org.springframework.data.domain.Pageable;
+
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.List;
+import java.util.Objects;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Joins against the given person and location stubs on every call, the way the real queries do
+ */
+public class InMemoryAppointmentDao extends InMemoryCrudRepository<Appointment> implements AppointmentDao {
+
+    private static final Comparator<Appointment> DATE_ID_ORDER = Comparator.comparing(Appointment::getDate).thenComparing(Appointment::getId);
+
+    private final InMemoryPersonDao personDao;
+    private final InMemoryLocationDao locationDao;
+    private final InMemoryArchivedAppointmentDao archivedAppointmentDao;
+
+    public InMemoryAppointmentDao(InMemoryPersonDao personDao, InMemoryLocationDao locationDao,
+                                  InMemoryArchivedAppointmentDao archivedAppointmentDao) {
+        super(Appointment::getId, Appointment::setId);
+        this.personDao = personDao;
+        this.locationDao = locationDao;
+        this.archivedAppointmentDao = archivedAppointmentDao;
+    }
+
+    @Override
+    public List<AppointmentDetails> findAllDetails() {
+        return join(rows.values().stream());
+    }
+
+    @Override
+    public List<AppointmentDetails> findFirstDetails(Pageable pageable) {
+        return join(rows.values().stream().sorted(DATE_ID_ORDER).limit(pageable.getPageSize()));
+    }
+
+    @Override
+    public List<AppointmentDetails> findDetailsAfter(Date date, Integer id, Pageable pageable) {
+        Appointment position = new Appointment();
+        position.setDate(date);
+        position.setId(id);
+        return join(rows.values().stream()
+                .filter(appointment -> DATE_ID_ORDER.compare(appointment, position) > 0)
+                .sorted(DATE_ID_ORDER)
+                .limit(pageable.getPageSize()));
+    }
+
+    @Override
+    public void streamAllDetails(Consumer<AppointmentDetails> consumer) {
+        rows.values().stream().sorted(DATE_ID_ORDER).map(this::join).forEach(consumer);
+    }
+
+    @Override
+    public void streamAllRows(Consumer<AppointmentRow> consumer) {
+        AppointmentRow row = new AppointmentRow();
+        rows.values().stream().sorted(DATE_ID_ORDER).forEach(appointment -> {
+            Person person = appointment.getPersonId() == null ? null : personDao.rows.get(appointment.getPersonId());
+            Location location = appointment.getLocationId() == null ? null : locationDao.rows.get(appointment.getLocationId());
+            row.set(appointment.getId(), appointment.getDescription(), appointment.getDate().getTime(),
+                    appointment.getDurationMinutes() == null ? 0 : appointment.getDurationMinutes(),
+                    appointment.getPersonId() == null ? 0 : appointment.getPersonId(), person == null ? null : person.getName(), person == null ? null : person.getAffiliation(),
+                    appointment.getLocationId() == null ? 0 : appointment.getLocationId(), location == null ? null : location.getName(),
+                    location == null ? null : location.getDescription());
+            consumer.accept(row);
+        });
+    }
+
+    @Override
+    public List<AppointmentDetails> findDetailsWithIdAbove(Integer id, Pageable pageable) {
+        return join(rows.values().stream()
+                .filter(appointment -> appointment.getId() > id)
+                .sorted(Comparator.comparing(Appointment::getId))
+                .limit(pageable.getPageSize()));
+    }
+
+    @Override
+    public List<AppointmentDetails> findDetailsByIdIn(Collection<Integer> ids) {
+        return join(ids.stream().map(rows::get).filter(Objects::nonNull));
+    }
+
+    @Override
+    public List<Integer> findIdsBetween(Integer after, Integer upTo, Pageable pageable) {
+        return rows.keySet().stream()
+                .filter(id -> id > after && id <= upTo)
+                .sorted()
+                .limit(pageable.getPageSize())
+                .collect(Collectors.toList());
+    }
+
+    @Override
+    public long countByIdLessThanEqual(Integer id) {
+        return rows.keySet().stream().filter(rowId -> rowId <= id).count();
+    }
+
+    @Override
+    public long sumIdsUpTo(Integer id) {
+        return rows.keySet().stream().filter(rowId -> rowId <= id).mapToLong(Integer::longValue).sum();
+    }
+
+    @Override
+    public List<Integer> findIdsBefore(Date date, Pageable pageable) {
+        return rows.values().stream()
+                .filter(appointment -> appointment.getDate().before(date))
+                .sorted(DATE_ID_ORDER)
+                .limit(pageable.getPageSize())
+                .map(Appointment::getId)
+                .collect(Collectors.toList());
+    }
+
+    @Override
+    public int copyToArchive(Collection<Integer> ids) {
+        int copied = 0;
+        for (Integer id : ids) {
+            Appointment appointment = rows.get(id);
+            if (appointment != null) {
+                archivedAppointmentDao.archive(appointment);
+                copied++;
+            }
+        }
+        return copied;
+    }
+
+    @Override
+    public int deleteByIdIn(Collection<Integer> ids) {
+        return deleteWhere(appointment -> ids.contains(appointment.getId()));
+    }
+
+    @Override
+    public int deleteByDateRange(Date from, Date to) {
+        return deleteWhere(appointment -> !appointment.getDate().before(from) && appointment.getDate().before(to));
+    }
+
+    @Override
+    public int deleteByPersonId(Integer personId) {
+        return deleteWhere(appointment -> personId.equals(appointment.getPersonId()));
+    }
+
+    @Override
+    public int deleteByLocationId(Integer locationId) {
+        return deleteWhere(appointment -> locationId.equals(appointment.getLocationId()));
+    }
+
+    private int deleteWhere(Predicate<Appointment> condition) {
+        int before = rows.size();
+        rows.values().removeIf(condition);
+        return before - rows.size();
+    }
+
+    private List<AppointmentDetails> join(Stream<Appointment> appointments) {
+        return appointments.map(this::join).collect(Collectors.toList());
+    }
+
+    private AppointmentDetails join(Appointment appointment) {
+        return new AppointmentDetails(appointment,
+                appointment.getPersonId() == null ? null : personDao.rows.get(appointment.getPersonId()),
+                appointment.getLocationId() == null ? null : locationDao.rows.get(appointment.getLocationId()));
+    }
+}
@@ -0,0 +1,9 @@
+package com.mutzy.dao;
+
+import com.mutzy.domain.AppointmentSeries;
+
+public class InMemoryAppointmentSeriesDao extends InMemoryCrudRepository<AppointmentSeries> implements AppointmentSeriesDao {
+    public InMemoryAppointmentSeriesDao() {
+        super(AppointmentSeries::getId, AppointmentSeries::setId);
+    }
+}
@@ -0,0 +1,140 @@
+package com.mutzy.dao;
+
+import com.mutzy.domain.Appointment;
+import com.mutzy.domain.ArchivedAppointment;
+import org.springframework.data.domain.Pageable;
+
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.List;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Joins against the given person and location stubs on every call, the way the real queries do
+ */
+public class InMemoryArchivedAppointmentDao extends InMemoryCrudRepository<ArchivedAppointment> implements ArchivedAppointmentDao {
+
+    private static final Comparator<ArchivedAppointment> DATE_ID_ORDER = Comparator.comparing(ArchivedAppointment::getDate)
+            .thenComparing(ArchivedAppointment::getId);
+
+    private final InMemoryPersonDao personDao;
+    private final InMemoryLocationDao locationDao;
+
+    public InMemoryArchivedAppointmentDao(InMemoryPersonDao personDao, InMemoryLocationDao locationDao) {
+        super(ArchivedAppointment::getId, ArchivedAppointment::setId);
+        this.personDao = personDao;
+        this.locationDao = locationDao;
+    }
+
+    @Override
+    public List<AppointmentDetails> findFirstDetailsBetween(Date from, Date to, Pageable pageable) {
+        return join(rows.values().stream()
+                .filter(archived -> !archived.getDate().before(from) && archived.getDate().before(to))
+                .sorted(DATE_ID_ORDER)
+                .limit(pageable.getPageSize()));
+    }
+
+    @Override
+    public List<AppointmentDetails> findDetailsAfter(Date date, Integer id, Date to, Pageable pageable) {
+        ArchivedAppointment position = new ArchivedAppointment();
+        position.setDate(date);
+        position.setId(id);
+        return join(rows.values().stream()
+                .filter(archived -> DATE_ID_ORDER.compare(archived, position) > 0 && archived.getDate().before(to))
+                .sorted(DATE_ID_ORDER)
+                .limit(pageable.getPageSize()));
+    }
+
+    @Override
+    public List<ArchivedAppointmentKey> findKeysWithIdAbove(Integer id, Pageable pageable) {
+        return keys(rows.values().stream()
+                .filter(archived -> archived.getId() > id)
+                .sorted(Comparator.comparing(ArchivedAppointment::getId))
+                .limit(pageable.getPageSize()));
+    }
+
+    @Override
+    public List<ArchivedAppointmentKey> findKeysByIdIn(Collection<Integer> ids) {
+        return keys(rows.values().stream().filter(archived -> ids.contains(archived.getId())));
+    }
+
+    @Override
+    public List<ArchivedAppointmentKey> findKeysByDateRange(Date from, Date to) {
+        return keys(rows.values().stream().filter(archived -> !archived.getDate().before(from) && archived.getDate().before(to)));
+    }
+
+    @Override
+    public List<ArchivedAppointmentKey> findKeysByPersonId(Integer personId) {
+        return keys(rows.values().stream().filter(archived -> personId.equals(archived.getPersonId())));
+    }
+
+    @Override
+    public List<ArchivedAppointmentKey> findKeysByLocationId(Integer locationId) {
+        return keys(rows.values().stream().filter(archived -> locationId.equals(archived.getLocationId())));
+    }
+
+    @Override
+    public int deleteByIdIn(Collection<Integer> ids) {
+        return deleteWhere(archived -> ids.contains(archived.getId()));
+    }
+
+    @Override
+    public int deleteByDateRange(Date from, Date to) {
+        return deleteWhere(archived -> !archived.getDate().before(from) && archived.getDate().before(to));
+    }
+
+    @Override
+    public int deleteByPersonId(Integer personId) {
+        return deleteWhere(archived -> personId.equals(archived.getPersonId()));
+    }
+
+    @Override
+    public int deleteByLocationId(Integer locationId) {
+        return deleteWhere(archived -> locationId.equals(archived.getLocationId()));
+    }
+
+    /**
+     * Archives a copy of the given appointment, as the INSERT ... SELECT in AppointmentDao.copyToArchive does
+     */
+    void archive(Appointment appointment) {
+        ArchivedAppointment archived = new ArchivedAppointment();
+        archived.setId(appointment.getId());
+        archived.setDescription(appointment.getDescription());
+        archived.setDate(appointment.getDate());
+        archived.setDurationMinutes(appointment.getDurationMinutes());
+        archived.setPersonId(appointment.getPersonId());
+        archived.setLocationId(appointment.getLocationId());
+        rows.put(archived.getId(), archived);
+    }
+
+    private int deleteWhere(Predicate<ArchivedAppointment> condition) {
+        int before = rows.size();
+        rows.values().removeIf(condition);
+        return before - rows.size();
+    }
+
+    private static List<ArchivedAppointmentKey> keys(Stream<ArchivedAppointment> archived) {
+        return archived.map(row -> new ArchivedAppointmentKey(row.getId(), row.getPersonId(), row.getLocationId(), row.getDate()))
+                .collect(Collectors.toList());
+    }
+
+    private List<AppointmentDetails> join(Stream<ArchivedAppointment> archived) {
+        return archived.map(this::join).collect(Collectors.toList());
+    }
+
+    private AppointmentDetails join(ArchivedAppointment archived) {
+        Appointment appointment = new Appointment();
+        appointment.setId(archived.getId());
+        appointment.setDescription(archived.getDescription());
+        appointment.setDate(archived.getDate());
+        appointment.setDurationMinutes(archived.getDurationMinutes());
+        appointment.setPersonId(archived.getPersonId());
+        appointment.setLocationId(archived.getLocationId());
+        return new AppointmentDetails(appointment,
+                appointment.getPersonId() == null ? null : personDao.rows.get(appointment.getPersonId()),
+                appointment.getLocationId() == null ? null : locationDao.rows.get(appointment.getLocationId()));
+    }
+}
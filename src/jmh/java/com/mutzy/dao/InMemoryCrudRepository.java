@@ -0,0 +1,91 @@
+package com.mutzy.dao;
+
+import org.springframework.data.repository.CrudRepository;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+
+/**
+ * A map backed CrudRepository so benchmarks measure our own code rather than a database or mocking library
+ */
+public abstract class InMemoryCrudRepository<T> implements CrudRepository<T, Integer> {
+
+    protected final Map<Integer, T> rows = new ConcurrentHashMap<>();
+    private final AtomicInteger nextId = new AtomicInteger(1);
+    private final Function<T, Integer> idGetter;
+    private final BiConsumer<T, Integer> idSetter;
+
+    protected InMemoryCrudRepository(Function<T, Integer> idGetter, BiConsumer<T, Integer> idSetter) {
+        this.idGetter = idGetter;
+        this.idSetter = idSetter;
+    }
+
+    @Override
+    public <S extends T> S save(S entity) {
+        if (idGetter.apply(entity) == null) {
+            idSetter.accept(entity, nextId.getAndIncrement());
+        }
+        rows.put(idGetter.apply(entity), entity);
+        return entity;
+    }
+
+    @Override
+    public <S extends T> Iterable<S> saveAll(Iterable<S> entities) {
+        List<S> saved = new ArrayList<>();
+        entities.forEach(entity -> saved.add(save(entity)));
+        return saved;
+    }
+
+    @Override
+    public Optional<T> findById(Integer id) {
+        return Optional.ofNullable(rows.get(id));
+    }
+
+    @Override
+    public boolean existsById(Integer id) {
+        return rows.containsKey(id);
+    }
+
+    @Override
+    public Iterable<T> findAll() {
+        return new ArrayList<>(rows.values());
+    }
+
+    @Override
+    public Iterable<T> findAllById(Iterable<Integer> ids) {
+        List<T> found = new ArrayList<>();
+        ids.forEach(id -> findById(id).ifPresent(found::add));
+        return found;
+    }
+
+    @Override
+    public long count() {
+        return rows.size();
+    }
+
+    @Override
+    public void deleteById(Integer id) {
+        rows.remove(id);
+    }
+
+    @Override
+    public void delete(T entity) {
+        rows.remove(idGetter.apply(entity));
+    }
+
+    @Override
+    public void deleteAll(Iterable<? extends T> entities) {
+        entities.forEach(this::delete);
+    }
+
+    @Override
+    public void deleteAll() {
+        rows.clear();
+    }
+}
@@ -0,0 +1,9 @@
+package com.mutzy.dao;
+
+import com.mutzy.domain.Location;
+
+public class InMemoryLocationDao extends InMemoryCrudRepository<Location> implements LocationDao {
+    public InMemoryLocationDao() {
+        super(Location::getId, Location::setId);
+    }
+}
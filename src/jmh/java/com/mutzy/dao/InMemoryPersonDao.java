@@ -0,0 +1,9 @@
+package com.mutzy.dao;
+
+import com.mutzy.domain.Person;
+
+public class InMemoryPersonDao extends InMemoryCrudRepository<Person> implements PersonDao {
+    public InMemoryPersonDao() {
+        super(Person::getId, Person::setId);
+    }
+}
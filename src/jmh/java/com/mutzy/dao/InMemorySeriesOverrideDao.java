@@ -0,0 +1,16 @@
+package com.mutzy.dao;
+
+import com.mutzy.domain.SeriesOverride;
+
+public class InMemorySeriesOverrideDao extends InMemoryCrudRepository<SeriesOverride> implements SeriesOverrideDao {
+    public InMemorySeriesOverrideDao() {
+        super(SeriesOverride::getId, SeriesOverride::setId);
+    }
+
+    @Override
+    public int deleteBySeriesId(Integer seriesId) {
+        int before = rows.size();
+        rows.values().removeIf(override -> seriesId.equals(override.getSeriesId()));
+        return before - rows.size();
+    }
+}
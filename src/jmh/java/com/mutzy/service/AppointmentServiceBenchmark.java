@@ -0,0 +1,90 @@
+package com.mutzy.service;
+
+import com.mutzy.benchmark.BenchmarkData;
+import com.mutzy.dao.ReferenceDataCache;
+import com.mutzy.dto.AppointmentImportReportDto;
+import com.mutzy.dto.AppointmentPageDto;
+import com.mutzy.dto.AppointmentRequestDto;
+import com.mutzy.dto.AppointmentResponseDto;
+import com.mutzy.utils.Constants;
+import com.mutzy.utils.ValidationUtils;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgs = {"-Xms2g", "-Xmx2g"})
+public class AppointmentServiceBenchmark {
+
+    @Param({"1000", "10000", "100000"})
+    private int rows;
+
+    private AppointmentService service;
+    private BenchmarkData data;
+    private List<AppointmentRequestDto> importedAppointments;
+    private int nextSlot;
+
+    @Setup
+    public void setUp() {
+        data = new BenchmarkData(rows);
+        ReferenceDataCache referenceDataCache = new ReferenceDataCache(data.personDao, data.locationDao, 10000, Duration.ofMinutes(10));
+        AppointmentView appointmentView = new AppointmentView(data.appointmentDao, data.personDao, data.locationDao, data.seriesDao, data.seriesOverrideDao,
+                data.archivedAppointmentDao);
+        appointmentView.rebuild();
+        ValidationUtils validationUtils = new ValidationUtils(referenceDataCache);
+        service = new AppointmentService(data.appointmentDao, data.personDao, data.locationDao,
+                validationUtils, appointmentView, referenceDataCache,
+                new AppointmentWriteBehindQueue(data.appointmentDao, appointmentView, referenceDataCache,
+                        new SimpleMeterRegistry(), false, 1, 1, Duration.ZERO, Duration.ZERO, Duration.ZERO),
+                data.seriesDao, data.seriesOverrideDao, data.archivedAppointmentDao);
+    }
+
+    /**
+     * Every import needs its own free slots, as importing the same appointments again would only find double bookings
+     */
+    @Setup(Level.Invocation)
+    public void createImportedAppointments() {
+        importedAppointments = new ArrayList<>(1000);
+        for (int i = 0; i < 1000; i++) {
+            importedAppointments.add(data.createAppointmentRequest(nextSlot++));
+        }
+    }
+
+    @Benchmark
+    public List<AppointmentResponseDto> findAllAppointments() {
+        return service.findAllAppointments();
+    }
+
+    @Benchmark
+    public AppointmentPageDto findFirstAppointmentPage() {
+        return service.findAppointmentPage(null, null, Constants.APPOINTMENTS_PAGE_SIZE);
+    }
+
+    /**
+     * Validates, maps and saves 1000 appointments, which measures the import's own overhead per row
+     * since the daos are in memory. The view grows with each invocation, as it would in production
+     */
+    @Benchmark
+    public AppointmentImportReportDto importThousandAppointments() {
+        return service.importAppointments(importedAppointments);
+    }
+}
@@ -0,0 +1,70 @@
+package com.mutzy.service;
+
+import com.mutzy.benchmark.BenchmarkData;
+import com.mutzy.domain.Appointment;
+import com.mutzy.domain.Location;
+import com.mutzy.domain.Person;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Sorts an unsorted copy of the data with each of the comparators in AppointmentService
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ComparatorBenchmark {
+
+    @Param({"1000"})
+    private int size;
+
+    private List<Appointment> appointments;
+    private List<Person> people;
+    private List<Location> locations;
+
+    @Setup
+    public void setUp() {
+        // 100 appointments per person and location, so this gives `size` of each
+        BenchmarkData data = new BenchmarkData(size * 100);
+        appointments = data.appointments().subList(0, size);
+        people = data.people();
+        locations = data.locations();
+    }
+
+    @Benchmark
+    public List<Appointment> sortAppointments() {
+        List<Appointment> sorted = new ArrayList<>(appointments);
+        sorted.sort(AppointmentService.appointmentComparator);
+        return sorted;
+    }
+
+    @Benchmark
+    public List<Person> sortPeople() {
+        List<Person> sorted = new ArrayList<>(people);
+        sorted.sort(AppointmentService.personComparator);
+        return sorted;
+    }
+
+    @Benchmark
+    public List<Location> sortLocations() {
+        List<Location> sorted = new ArrayList<>(locations);
+        sorted.sort(AppointmentService.locationComparator);
+        return sorted;
+    }
+}
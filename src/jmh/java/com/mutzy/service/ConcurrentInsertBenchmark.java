@@ -0,0 +1,93 @@
+package com.mutzy.service;
+
+import com.mutzy.AppointmentApplication;
+import com.mutzy.dto.AppointmentRequestDto;
+import com.mutzy.dto.AppointmentResponseDto;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures createAppointment throughput through the real JPA stack against an in-memory H2 database,
+ * so that the cost of allocating ids and inserting rows is included. Compare the thread counts to see
+ * how well concurrent creates scale. 16 threads is more than the default pool of 10 connections, which
+ * is where requests used to hold every connection while the next block of ids waited for one. Run it with
+ * -p autoCommit=true to hand out auto-commit connections as before and see those requests time out.
+ * The long warmup is because the Spring and Hibernate stack takes around 30s to compile on a single core
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 15, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ConcurrentInsertBenchmark {
+
+    @Param({"false"})
+    public boolean autoCommit;
+
+    private ConfigurableApplicationContext context;
+    private AppointmentService service;
+
+    @Setup
+    public void setUp() {
+        context = new SpringApplicationBuilder(AppointmentApplication.class)
+                .web(WebApplicationType.NONE)
+                // passed as command line arguments so they override application.properties
+                .run("--spring.datasource.url=jdbc:h2:mem:benchmark;DB_CLOSE_DELAY=-1",
+                        "--spring.datasource.driver-class-name=org.h2.Driver",
+                        "--spring.datasource.username=sa",
+                        "--spring.datasource.password=",
+                        "--spring.jpa.hibernate.ddl-auto=create-drop",
+                        "--spring.datasource.hikari.auto-commit=" + autoCommit,
+                        "--spring.jpa.properties.hibernate.connection.provider_disables_autocommit=" + !autoCommit,
+                        "--logging.level.root=WARN");
+        service = context.getBean(AppointmentService.class);
+    }
+
+    @TearDown
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    @Threads(1)
+    public AppointmentResponseDto createAppointment_1Thread() {
+        return service.createAppointment(createRequest());
+    }
+
+    @Benchmark
+    @Threads(8)
+    public AppointmentResponseDto createAppointment_8Threads() {
+        return service.createAppointment(createRequest());
+    }
+
+    @Benchmark
+    @Threads(16)
+    public AppointmentResponseDto createAppointment_16Threads() {
+        return service.createAppointment(createRequest());
+    }
+
+    private static AppointmentRequestDto createRequest() {
+        AppointmentRequestDto dto = new AppointmentRequestDto();
+        dto.setDescription("Quarterly review, bring the Q3 numbers!");
+        dto.setDate("2022-12-20");
+        dto.setTime("12:30");
+        return dto;
+    }
+}
@@ -0,0 +1,89 @@
+package com.mutzy.service;
+
+import com.mutzy.dto.AppointmentCursor;
+import org.apache.commons.lang3.RandomStringUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Date;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Searches an index of `size` appointments, each described by a few words from a vocabulary where some words are
+ * far more common than others, like real text. Run with -p size=1000000 to check searches stay in the millisecond range
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgs = "-Xmx2g")
+public class SearchIndexBenchmark {
+
+    private static final int VOCABULARY_SIZE = 10000;
+    private static final int WORDS_PER_APPOINTMENT = 8;
+    private static final int PAGE_SIZE = 50;
+
+    @Param({"100000"})
+    private int size;
+
+    private final Random random = new Random(42);
+    private final SearchIndex index = new SearchIndex();
+    private String[] vocabulary;
+
+    @Setup
+    public void setUp() {
+        vocabulary = new String[VOCABULARY_SIZE];
+        for (int i = 0; i < VOCABULARY_SIZE; i++) {
+            vocabulary[i] = RandomStringUtils.random(4 + random.nextInt(6), 0, 0, true, false, null, random).toLowerCase();
+        }
+        long start = 1577836800000L; // 2020-01-01
+        for (int i = 0; i < size; i++) {
+            StringBuilder text = new StringBuilder();
+            for (int w = 0; w < WORDS_PER_APPOINTMENT; w++) {
+                text.append(word()).append(' ');
+            }
+            index.add(new AppointmentCursor(new Date(start + TimeUnit.MINUTES.toMillis(30L * i)), i), text.toString());
+        }
+    }
+
+    @Benchmark
+    public List<AppointmentCursor> searchCommonWord() {
+        return index.search(vocabulary[0], null, PAGE_SIZE + 1);
+    }
+
+    @Benchmark
+    public List<AppointmentCursor> searchRareWord() {
+        return index.search(vocabulary[VOCABULARY_SIZE - 1], null, PAGE_SIZE + 1);
+    }
+
+    @Benchmark
+    public List<AppointmentCursor> searchCommonAndRareWords() {
+        return index.search(vocabulary[0] + " " + vocabulary[VOCABULARY_SIZE / 2], null, PAGE_SIZE + 1);
+    }
+
+    @Benchmark
+    public List<AppointmentCursor> searchShortPrefix() {
+        return index.search(vocabulary[1].substring(0, 2) + " " + vocabulary[2].substring(0, 3), null, PAGE_SIZE + 1);
+    }
+
+    /**
+     * Picks word i with probability proportional to 1 / (i + 1), so a handful of words appear in most appointments
+     */
+    private String word() {
+        double harmonic = Math.log(VOCABULARY_SIZE) + 0.5772;
+        int i = (int) Math.min(VOCABULARY_SIZE - 1, Math.exp(random.nextDouble() * harmonic) - 1);
+        return vocabulary[i];
+    }
+}
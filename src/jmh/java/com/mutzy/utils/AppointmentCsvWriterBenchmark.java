@@ -0,0 +1,89 @@
+package com.mutzy.utils;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.mutzy.benchmark.BenchmarkData;
+import com.mutzy.dto.AppointmentResponseDto;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.time.ZoneId;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares exporting every appointment as CSV with exporting them as NDJSON, which maps each row to an AppointmentResponseDto first.
+ * Both discard what they write, so with -prof gc the allocation per export is what each costs beyond the rows themselves
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class AppointmentCsvWriterBenchmark {
+
+    private static final OutputStream DISCARD = new OutputStream() {
+        @Override
+        public void write(int b) {
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+        }
+    };
+
+    @Param({"10000"})
+    private int rows;
+
+    private BenchmarkData data;
+    private ObjectWriter appointmentWriter;
+
+    @Setup
+    public void setUp() {
+        data = new BenchmarkData(rows);
+        appointmentWriter = new com.fasterxml.jackson.databind.ObjectMapper().writerFor(AppointmentResponseDto.class)
+                .without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+    }
+
+    @Benchmark
+    public void exportCsv() throws IOException {
+        try (AppointmentCsvWriter writer = new AppointmentCsvWriter(DISCARD, ZoneId.systemDefault())) {
+            writer.writeHeader();
+            data.appointmentDao.streamAllRows(row -> {
+                try {
+                    writer.write(row);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        }
+    }
+
+    @Benchmark
+    public void exportNdjson() throws IOException {
+        try (JsonGenerator generator = appointmentWriter.getFactory().createGenerator(DISCARD)) {
+            generator.setRootValueSeparator(null);
+            data.appointmentDao.streamAllDetails(details -> {
+                try {
+                    appointmentWriter.writeValue(generator, ObjectMapper.getInstance().mapDomainToDto(details));
+                    generator.writeRaw('\n');
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        }
+    }
+}
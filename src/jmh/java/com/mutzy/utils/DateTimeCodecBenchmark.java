@@ -0,0 +1,68 @@
+package com.mutzy.utils;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.text.DateFormat;
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares DateTimeCodec with the SimpleDateFormat parsing it replaced.
+ * The 4 thread variants show the cost of sharing one SimpleDateFormat between request threads
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DateTimeCodecBenchmark {
+
+    private final String date = "2022-12-20";
+    private final String time = "12:30";
+
+    @State(Scope.Benchmark)
+    public static class SharedFormats {
+        // the previous code validated the date and time separately and then parsed them again together
+        final DateFormat dateFormat = new SimpleDateFormat("yyyy-MM-dd");
+        final DateFormat timeFormat = new SimpleDateFormat("HH:mm");
+        final DateFormat dateTimeFormat = new SimpleDateFormat("yyyy-MM-dd HH:mm");
+    }
+
+    @Benchmark
+    public Date simpleDateFormat(SharedFormats formats) throws ParseException {
+        synchronized (formats) { // SimpleDateFormat is not thread safe, so sharing it needs a lock
+            formats.dateFormat.parse(date);
+            formats.timeFormat.parse(time);
+            return formats.dateTimeFormat.parse(String.format("%s %s", date, time));
+        }
+    }
+
+    @Benchmark
+    public Date dateTimeCodec() {
+        return DateTimeCodec.toDate(DateTimeCodec.parseDate(date), DateTimeCodec.parseTime(time));
+    }
+
+    @Benchmark
+    @Threads(4)
+    public Date simpleDateFormat_4Threads(SharedFormats formats) throws ParseException {
+        return simpleDateFormat(formats);
+    }
+
+    @Benchmark
+    @Threads(4)
+    public Date dateTimeCodec_4Threads() {
+        return dateTimeCodec();
+    }
+}
@@ -0,0 +1,38 @@
+package com.mutzy.utils;
+
+import com.mutzy.benchmark.BenchmarkData;
+import com.mutzy.domain.Appointment;
+import com.mutzy.dto.AppointmentRequestDto;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ObjectMapperBenchmark {
+
+    private AppointmentRequestDto dto;
+
+    @Setup
+    public void setUp() {
+        dto = new BenchmarkData(0).createAppointmentRequest();
+    }
+
+    @Benchmark
+    public Appointment mapDtoToDomain() {
+        return ObjectMapper.getInstance().mapDtoToDomain(dto);
+    }
+}
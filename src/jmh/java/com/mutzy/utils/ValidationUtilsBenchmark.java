@@ -0,0 +1,79 @@
+package com.mutzy.utils;
+
+import com.mutzy.benchmark.BenchmarkData;
+import com.mutzy.dao.ReferenceDataCache;
+import com.mutzy.dto.AppointmentRequestDto;
+import com.mutzy.service.AppointmentView;
+import com.mutzy.service.BookingIndex;
+import org.apache.commons.lang3.StringUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ValidationUtilsBenchmark {
+
+    private static final TextFieldRule DESCRIPTION_RULE = new TextFieldRule("Appointment description", Constants.MAX_APPOINTMENT_DESCRIPTION_LENGTH);
+
+    private ValidationUtils validationUtils;
+    private AppointmentRequestDto dto;
+    private BookingIndex bookings;
+
+    @Setup
+    public void setUp() {
+        BenchmarkData data = new BenchmarkData(100);
+        validationUtils = new ValidationUtils(new ReferenceDataCache(data.personDao, data.locationDao, 10000, Duration.ofMinutes(10)));
+        dto = data.createAppointmentRequest();
+        AppointmentView view = new AppointmentView(data.appointmentDao, data.personDao, data.locationDao, data.seriesDao, data.seriesOverrideDao,
+                data.archivedAppointmentDao);
+        view.rebuild();
+        bookings = view.getBookings();
+    }
+
+    @Benchmark
+    public Date validateAppointmentDto() {
+        return validationUtils.validateAppointmentDto(dto);
+    }
+
+    /**
+     * Also checks the person and location, who each have about 100 other appointments, aren't double booked
+     */
+    @Benchmark
+    public Date validateAppointmentDtoWithBookings() {
+        Date start = validationUtils.validateAppointmentDto(dto);
+        validationUtils.validateBookings(dto, start, bookings);
+        return start;
+    }
+
+    @Benchmark
+    public boolean textFieldRule() {
+        return DESCRIPTION_RULE.check(dto.getDescription(), new ArrayList<>(2));
+    }
+
+    /**
+     * How the description was checked before TextFieldRule, which compiled the regex again on every call
+     */
+    @Benchmark
+    public boolean regexMatches() {
+        String description = dto.getDescription();
+        return !StringUtils.isEmpty(description) && description.matches(Constants.STRING_INPUT_REGEX)
+                && description.length() <= Constants.MAX_APPOINTMENT_DESCRIPTION_LENGTH;
+    }
+}
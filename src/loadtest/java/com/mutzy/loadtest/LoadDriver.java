@@ -0,0 +1,301 @@
+package com.mutzy.loadtest;
+
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+import org.springframework.boot.convert.DurationStyle;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Sends requests to a running application at a fixed rate and reports the throughput and latency percentiles of each
+ * endpoint. Usually pointed at LoadTestApplication, but works against any instance.
+ * <p>
+ * Requests are sent on a fixed schedule whether or not earlier ones have finished, and each one's latency is measured
+ * from when it was due to be sent rather than when it was sent. So when the application falls behind, the time
+ * requests spend waiting for it shows up in the percentiles instead of quietly lowering the rate.
+ * <p>
+ * Options are given as --name=value:
+ * <ul>
+ *     <li>url: the application to load, default http://localhost:8080</li>
+ *     <li>rate: requests per second, default 50</li>
+ *     <li>duration: how long to measure for, e.g. 30s or 5m, default 60s</li>
+ *     <li>warmup: how long to send requests for before measuring, default 10s</li>
+ *     <li>concurrency: the most requests in flight at once, default 64</li>
+ *     <li>mix: the relative weight of each endpoint, default page=50,search=25,rollup=15,create=10</li>
+ *     <li>seed: seeds the choice of requests, default 42</li>
+ * </ul>
+ */
+public class LoadDriver {
+
+    enum Endpoint {
+        PAGE("GET /appointments"),
+        SEARCH("GET /appointments/search"),
+        ROLLUP("GET /api/appointments/rollups"),
+        CREATE("POST /appointments");
+
+        private final String label;
+
+        Endpoint(String label) {
+            this.label = label;
+        }
+    }
+
+    private static final long MAX_LATENCY_NANOS = TimeUnit.MINUTES.toNanos(10);
+    private static final long DRAIN_TIMEOUT_MINUTES = 1;
+    private static final int TIMEOUT_MILLIS = (int) TimeUnit.SECONDS.toMillis(30);
+    // new appointments go in consecutive 30 minute slots far after the generated ones, and without a person or location,
+    // so they are never rejected for double booking
+    private static final LocalDateTime FIRST_FREE_SLOT = LocalDateTime.of(2099, 1, 1, 0, 0);
+
+    private final String baseUrl;
+    private final int rate;
+    private final Duration duration;
+    private final Duration warmup;
+    private final int concurrency;
+    private final Map<Endpoint, Integer> mix;
+    private final Random random;
+    private final Map<Endpoint, Histogram> latencies = new EnumMap<>(Endpoint.class);
+    private final Map<Endpoint, AtomicLong> errors = new EnumMap<>(Endpoint.class);
+    private final AtomicLong nextSlot = new AtomicLong();
+
+    public LoadDriver(String baseUrl, int rate, Duration duration, Duration warmup, int concurrency, Map<Endpoint, Integer> mix, long seed) {
+        this.baseUrl = baseUrl.endsWith("/") ? baseUrl.substring(0, baseUrl.length() - 1) : baseUrl;
+        this.rate = rate;
+        this.duration = duration;
+        this.warmup = warmup;
+        this.concurrency = concurrency;
+        this.mix = mix;
+        this.random = new Random(seed);
+        for (Endpoint endpoint : Endpoint.values()) {
+            latencies.put(endpoint, new ConcurrentHistogram(MAX_LATENCY_NANOS, 3));
+            errors.put(endpoint, new AtomicLong());
+        }
+    }
+
+    public static void main(String[] args) throws InterruptedException {
+        Map<String, String> options = new LinkedHashMap<>();
+        for (String arg : args) {
+            int equals = arg.indexOf('=');
+            if (!arg.startsWith("--") || equals < 0) {
+                throw new IllegalArgumentException("Options must be given as --name=value, not " + arg);
+            }
+            options.put(arg.substring(2, equals), arg.substring(equals + 1));
+        }
+        LoadDriver driver = new LoadDriver(
+                options.getOrDefault("url", "http://localhost:8080"),
+                Integer.parseInt(options.getOrDefault("rate", "50")),
+                DurationStyle.detectAndParse(options.getOrDefault("duration", "60s")),
+                DurationStyle.detectAndParse(options.getOrDefault("warmup", "10s")),
+                Integer.parseInt(options.getOrDefault("concurrency", "64")),
+                parseMix(options.getOrDefault("mix", "page=50,search=25,rollup=15,create=10")),
+                Long.parseLong(options.getOrDefault("seed", "42")));
+        driver.run();
+        System.out.println(driver.report());
+    }
+
+    /**
+     * Sends requests for the warmup and then the measured duration, and waits for the last of them to finish
+     */
+    public void run() throws InterruptedException {
+        ExecutorService workers = Executors.newFixedThreadPool(concurrency);
+        long interval = TimeUnit.SECONDS.toNanos(1) / rate;
+        long start = System.nanoTime();
+        long measureFrom = start + warmup.toNanos();
+        long end = measureFrom + duration.toNanos();
+        System.out.printf("Sending %d requests/s to %s for %ds of warmup and %ds of measurement%n",
+                rate, baseUrl, warmup.getSeconds(), duration.getSeconds());
+        for (long due = start; due < end; due += interval) {
+            long wait = due - System.nanoTime();
+            if (wait > 0) {
+                LockSupport.parkNanos(wait);
+            }
+            Endpoint endpoint = pickEndpoint();
+            Request request = createRequest(endpoint);
+            boolean measured = due >= measureFrom;
+            long dueAt = due;
+            workers.execute(() -> {
+                boolean succeeded = send(request);
+                if (measured) {
+                    latencies.get(endpoint).recordValue(Math.min(MAX_LATENCY_NANOS, System.nanoTime() - dueAt));
+                    if (!succeeded) {
+                        errors.get(endpoint).incrementAndGet();
+                    }
+                }
+            });
+        }
+        workers.shutdown();
+        if (!workers.awaitTermination(DRAIN_TIMEOUT_MINUTES, TimeUnit.MINUTES)) {
+            int unfinished = workers.shutdownNow().size();
+            System.out.printf("Gave up on %d requests that were still waiting to be sent %d minute(s) after the last was due. "
+                    + "The application can't keep up with this rate%n", unfinished, DRAIN_TIMEOUT_MINUTES);
+        }
+    }
+
+    /**
+     * @return A table with a row for each endpoint and one for all of them, giving the measured throughput, error count
+     * and latency percentiles in milliseconds
+     */
+    public String report() {
+        StringBuilder report = new StringBuilder(String.format("%n%-32s %9s %8s %7s %9s %9s %9s %9s %9s%n",
+                "endpoint", "requests", "req/s", "errors", "p50", "p90", "p99", "p99.9", "max"));
+        Histogram all = new Histogram(MAX_LATENCY_NANOS, 3);
+        long allErrors = 0;
+        for (Endpoint endpoint : Endpoint.values()) {
+            Histogram histogram = latencies.get(endpoint);
+            if (histogram.getTotalCount() > 0) {
+                report.append(row(endpoint.label, histogram, errors.get(endpoint).get()));
+                all.add(histogram);
+                allErrors += errors.get(endpoint).get();
+            }
+        }
+        return report.append(row("all", all, allErrors)).toString();
+    }
+
+    private String row(String label, Histogram histogram, long errorCount) {
+        return String.format("%-32s %9d %8.1f %7d %9.2f %9.2f %9.2f %9.2f %9.2f%n",
+                label, histogram.getTotalCount(), histogram.getTotalCount() / (duration.toMillis() / 1000.0), errorCount,
+                millis(histogram.getValueAtPercentile(50)), millis(histogram.getValueAtPercentile(90)),
+                millis(histogram.getValueAtPercentile(99)), millis(histogram.getValueAtPercentile(99.9)),
+                millis(histogram.getMaxValue()));
+    }
+
+    private static double millis(long nanos) {
+        return nanos / 1e6;
+    }
+
+    private Endpoint pickEndpoint() {
+        int total = 0;
+        for (int weight : mix.values()) {
+            total += weight;
+        }
+        int pick = random.nextInt(total);
+        for (Map.Entry<Endpoint, Integer> entry : mix.entrySet()) {
+            pick -= entry.getValue();
+            if (pick < 0) {
+                return entry.getKey();
+            }
+        }
+        throw new IllegalStateException("No endpoint was picked");
+    }
+
+    private Request createRequest(Endpoint endpoint) {
+        switch (endpoint) {
+            case SEARCH:
+                // usually a whole word, sometimes two or just the start of one, as people type
+                String query = pick(SyntheticDataGenerator.SUBJECTS);
+                if (random.nextInt(4) == 0) {
+                    query += " " + pick(SyntheticDataGenerator.KINDS);
+                } else if (random.nextInt(4) == 0) {
+                    query = query.substring(0, Math.min(query.length(), 3));
+                }
+                return Request.get("/appointments/search?q=" + encode(query));
+            case ROLLUP:
+                LocalDate today = LocalDate.now();
+                String[] groupBys = {"ALL", "PERSON", "LOCATION"};
+                String[] granularities = {"DAY", "MONTH"};
+                return Request.get("/api/appointments/rollups?groupBy=" + pick(groupBys) + "&granularity=" + pick(granularities)
+                        + "&from=" + today.minusDays(90) + "&to=" + today.plusDays(30));
+            case CREATE:
+                LocalDateTime slot = FIRST_FREE_SLOT.plusMinutes(30 * nextSlot.getAndIncrement());
+                return Request.post("/appointments", "description=" + encode("Load test " + pick(SyntheticDataGenerator.KINDS))
+                        + "&date=" + slot.toLocalDate() + "&time=" + encode(slot.toLocalTime().toString()) + "&durationMinutes=30");
+            default:
+                return Request.get("/appointments");
+        }
+    }
+
+    /**
+     * @return True if the application answered with anything other than an error status
+     */
+    private boolean send(Request request) {
+        HttpURLConnection connection = null;
+        try {
+            connection = (HttpURLConnection) new URL(baseUrl + request.path).openConnection();
+            connection.setConnectTimeout(TIMEOUT_MILLIS);
+            connection.setReadTimeout(TIMEOUT_MILLIS);
+            connection.setInstanceFollowRedirects(false); // time the write itself, not the page it redirects to
+            if (request.formBody != null) {
+                connection.setRequestMethod("POST");
+                connection.setDoOutput(true);
+                connection.setRequestProperty("Content-Type", "application/x-www-form-urlencoded");
+                try (OutputStream body = connection.getOutputStream()) {
+                    body.write(request.formBody.getBytes(StandardCharsets.UTF_8));
+                }
+            }
+            int status = connection.getResponseCode();
+            // read the whole response, so its latency includes sending the body and the connection can be reused
+            try (InputStream body = status >= 400 ? connection.getErrorStream() : connection.getInputStream()) {
+                if (body != null) {
+                    byte[] buffer = new byte[8192];
+                    while (body.read(buffer) >= 0) {
+                        // discard
+                    }
+                }
+            }
+            return status < 400;
+        } catch (IOException e) {
+            if (connection != null) {
+                connection.disconnect();
+            }
+            return false;
+        }
+    }
+
+    private static Map<Endpoint, Integer> parseMix(String mix) {
+        Map<Endpoint, Integer> weights = new EnumMap<>(Endpoint.class);
+        for (String weight : mix.split(",")) {
+            String[] parts = weight.split("=");
+            weights.put(Endpoint.valueOf(parts[0].trim().toUpperCase()), Integer.parseInt(parts[1].trim()));
+        }
+        return weights;
+    }
+
+    private String pick(String[] values) {
+        return values[random.nextInt(values.length)];
+    }
+
+    private static String encode(String value) {
+        try {
+            return URLEncoder.encode(value, StandardCharsets.UTF_8.name());
+        } catch (UnsupportedEncodingException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static class Request {
+        private final String path;
+        private final String formBody; // null for a GET
+
+        private Request(String path, String formBody) {
+            this.path = path;
+            this.formBody = formBody;
+        }
+
+        private static Request get(String path) {
+            return new Request(path, null);
+        }
+
+        private static Request post(String path, String formBody) {
+            return new Request(path, formBody);
+        }
+    }
+}
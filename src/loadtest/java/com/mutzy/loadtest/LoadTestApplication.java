@@ -0,0 +1,18 @@
+package com.mutzy.loadtest;
+
+import com.mutzy.AppointmentApplication;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+
+/**
+ * Starts the application with the loadtest profile, against an in-memory database that SyntheticDataGenerator
+ * fills before the application starts taking requests. See application-loadtest.properties for the settings
+ */
+public class LoadTestApplication {
+    public static void main(String[] args) {
+        // devtools decides whether to restart before any properties file is read
+        System.setProperty("spring.devtools.restart.enabled", "false");
+        new SpringApplicationBuilder(AppointmentApplication.class)
+                .profiles("loadtest")
+                .run(args);
+    }
+}
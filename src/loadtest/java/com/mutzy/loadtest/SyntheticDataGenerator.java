@@ -0,0 +1,194 @@
+package com.mutzy.loadtest;
+
+import com.mutzy.dao.AppointmentDao;
+import com.mutzy.dao.LocationDao;
+import com.mutzy.dao.PersonDao;
+import com.mutzy.domain.Appointment;
+import com.mutzy.domain.Location;
+import com.mutzy.domain.Person;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Component;
+
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Fills an empty database with people, locations and appointments shaped like real usage, so the application can be
+ * load tested at production scale without a copy of production data.
+ * <p>
+ * Appointments fall on weekdays during working hours, and cluster around today: they get exponentially sparser further
+ * into the past or the future, and most are in the past. People and locations are picked with a Zipf-like skew, so a
+ * handful of them have most of the appointments, and descriptions are made of common words so searches have realistic
+ * numbers of matches. Some appointments double book a person or location, which the application would reject on
+ * create but which loads fine.
+ * <p>
+ * Runs before the AppointmentView is loaded on startup, so the view starts out with everything generated here.
+ * Saves through the DAOs in batches, one transaction per batch
+ */
+@Component
+@Profile("loadtest")
+@Slf4j
+public class SyntheticDataGenerator implements ApplicationRunner {
+
+    static final String[] SUBJECTS = {"Dentist", "Doctor", "Team", "Quarterly", "Project", "Client", "Budget", "Design",
+            "Parent teacher", "Car", "Yoga", "Physio", "Interview", "Haircut", "Lunch", "Board", "Sales", "Training"};
+    static final String[] KINDS = {"checkup", "standup", "review", "kickoff", "call", "planning", "meeting", "service",
+            "class", "session", "appointment", "sync", "workshop", "catch up"};
+    static final String[] NOTES = {"", "", "", "bring the numbers", "follow up", "online", "in person", "rescheduled",
+            "bring documents", "confirm the day before", "parking at the back"};
+    private static final String[] FIRST_NAMES = {"Alice", "Bob", "Carol", "David", "Erin", "Frank", "Grace", "Heidi",
+            "Ivan", "Judy", "Mallory", "Niaj", "Olivia", "Peggy", "Rupert", "Sybil", "Trent", "Victor", "Walter", "Zoe"};
+    private static final String[] LAST_NAMES = {"Smith", "Jones", "Brown", "Taylor", "Wilson", "Davies", "Evans",
+            "Thomas", "Johnson", "Roberts", "Walker", "Wright", "Robinson", "Thompson", "White", "Hughes"};
+    private static final String[] AFFILIATIONS = {"Acme Corp", "City Hospital", "Family", "Northside Dental",
+            "Riverside School", "Globex", "Initech", "Friends", "Umbrella Ltd", "Hooli"};
+    private static final String[] PLACES = {"Room", "Office", "Clinic", "Cafe", "Studio", "Garage", "Library", "Hall"};
+    private static final String[] STREETS = {"Main street", "High street", "Station road", "Church lane", "Park avenue",
+            "Mill road", "Victoria road", "King street"};
+    private static final int[] DURATIONS = {15, 30, 30, 30, 45, 60, 60, 90, 120};
+    private static final double PAST_SHARE = 0.7;
+    private static final double PERSON_SHARE = 0.75;
+    private static final double LOCATION_SHARE = 0.6;
+    private static final int BATCH_SIZE = 1000;
+
+    private final PersonDao personDao;
+    private final LocationDao locationDao;
+    private final AppointmentDao appointmentDao;
+    private final Random random;
+    private final int peopleCount;
+    private final int locationCount;
+    private final int appointmentCount;
+    private final int pastDays;
+    private final int futureDays;
+
+    @Autowired
+    public SyntheticDataGenerator(PersonDao personDao, LocationDao locationDao, AppointmentDao appointmentDao,
+                                  @Value("${loadtest.seed:42}") long seed,
+                                  @Value("${loadtest.people:1000}") int peopleCount,
+                                  @Value("${loadtest.locations:200}") int locationCount,
+                                  @Value("${loadtest.appointments:100000}") int appointmentCount,
+                                  @Value("${loadtest.past-days:730}") int pastDays,
+                                  @Value("${loadtest.future-days:180}") int futureDays) {
+        this.personDao = personDao;
+        this.locationDao = locationDao;
+        this.appointmentDao = appointmentDao;
+        this.random = new Random(seed);
+        this.peopleCount = peopleCount;
+        this.locationCount = locationCount;
+        this.appointmentCount = appointmentCount;
+        this.pastDays = pastDays;
+        this.futureDays = futureDays;
+    }
+
+    @Override
+    public void run(ApplicationArguments args) {
+        if (appointmentDao.count() > 0) {
+            log.info("The database already has appointments, so no synthetic data was generated");
+            return;
+        }
+        long start = System.nanoTime();
+        List<Integer> personIds = new ArrayList<>(peopleCount);
+        for (Person person : personDao.saveAll(createPeople())) {
+            personIds.add(person.getId());
+        }
+        List<Integer> locationIds = new ArrayList<>(locationCount);
+        for (Location location : locationDao.saveAll(createLocations())) {
+            locationIds.add(location.getId());
+        }
+
+        LocalDate today = LocalDate.now();
+        List<Appointment> batch = new ArrayList<>(BATCH_SIZE);
+        for (int i = 0; i < appointmentCount; i++) {
+            batch.add(createAppointment(today, personIds, locationIds));
+            if (batch.size() == BATCH_SIZE || i == appointmentCount - 1) {
+                appointmentDao.saveAll(batch);
+                batch.clear();
+            }
+            if ((i + 1) % 100000 == 0) {
+                log.info("Generated {} of {} appointments", i + 1, appointmentCount);
+            }
+        }
+        log.info("Generated {} people, {} locations and {} appointments in {}ms", peopleCount, locationCount, appointmentCount,
+                (System.nanoTime() - start) / 1000000);
+    }
+
+    private List<Person> createPeople() {
+        List<Person> people = new ArrayList<>(peopleCount);
+        for (int i = 0; i < peopleCount; i++) {
+            Person person = new Person();
+            person.setName(pick(FIRST_NAMES) + " " + pick(LAST_NAMES));
+            person.setAffiliation(pick(AFFILIATIONS));
+            people.add(person);
+        }
+        return people;
+    }
+
+    private List<Location> createLocations() {
+        List<Location> locations = new ArrayList<>(locationCount);
+        for (int i = 0; i < locationCount; i++) {
+            Location location = new Location();
+            location.setName(pick(PLACES) + " " + (i + 1));
+            location.setDescription((1 + random.nextInt(200)) + " " + pick(STREETS));
+            locations.add(location);
+        }
+        return locations;
+    }
+
+    private Appointment createAppointment(LocalDate today, List<Integer> personIds, List<Integer> locationIds) {
+        Appointment appointment = new Appointment();
+        String note = pick(NOTES);
+        appointment.setDescription(pick(SUBJECTS) + " " + pick(KINDS) + (note.isEmpty() ? "" : ", " + note));
+        LocalDateTime start = randomDay(today).atTime(8 + random.nextInt(10), random.nextInt(4) * 15);
+        appointment.setDate(Date.from(start.atZone(ZoneId.systemDefault()).toInstant()));
+        appointment.setDurationMinutes(DURATIONS[random.nextInt(DURATIONS.length)]);
+        if (!personIds.isEmpty() && random.nextDouble() < PERSON_SHARE) {
+            appointment.setPersonId(personIds.get(skewedIndex(personIds.size())));
+        }
+        if (!locationIds.isEmpty() && random.nextDouble() < LOCATION_SHARE) {
+            appointment.setLocationId(locationIds.get(skewedIndex(locationIds.size())));
+        }
+        return appointment;
+    }
+
+    /**
+     * Picks a weekday, in the past with probability PAST_SHARE, where each range's days get exponentially less likely
+     * further from today. A quarter of each range holds about two thirds of its appointments
+     */
+    private LocalDate randomDay(LocalDate today) {
+        if (pastDays <= 0 && futureDays <= 0) {
+            return today;
+        }
+        while (true) {
+            boolean past = futureDays <= 0 || (pastDays > 0 && random.nextDouble() < PAST_SHARE);
+            int range = past ? pastDays : futureDays;
+            long offset = Math.min(range - 1, (long) (-Math.log(1 - random.nextDouble()) * range / 4));
+            LocalDate day = past ? today.minusDays(offset + 1) : today.plusDays(offset);
+            if (day.getDayOfWeek() != DayOfWeek.SATURDAY && day.getDayOfWeek() != DayOfWeek.SUNDAY) {
+                return day;
+            }
+        }
+    }
+
+    /**
+     * Picks index i with probability proportional to 1 / (i + 1)
+     */
+    private int skewedIndex(int size) {
+        double harmonic = Math.log(size) + 0.5772;
+        return (int) Math.min(size - 1, Math.exp(random.nextDouble() * harmonic) - 1);
+    }
+
+    private String pick(String[] values) {
+        return values[random.nextInt(values.length)];
+    }
+}
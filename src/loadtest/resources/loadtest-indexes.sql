@@ -0,0 +1,5 @@
+-- the indexes from mysqlDatabaseConfiguration.sql, which Hibernate doesn't create from the entities
+CREATE INDEX person_id_idx ON appointments (person_id);
+CREATE INDEX location_id_idx ON appointments (location_id);
+CREATE INDEX date_id_idx ON appointments (date, id);
+CREATE INDEX archive_date_id_idx ON appointments_archive (date, id);
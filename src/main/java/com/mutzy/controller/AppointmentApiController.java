@@ -0,0 +1,333 @@
+package com.mutzy.controller;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.mutzy.datasource.ReadReplicaRouting;
+import com.mutzy.domain.AppointmentSeries;
+import com.mutzy.dto.AppointmentCursor;
+import com.mutzy.dto.AppointmentDeleteReportDto;
+import com.mutzy.dto.AppointmentImportReportDto;
+import com.mutzy.dto.AppointmentPageDto;
+import com.mutzy.dto.AppointmentRequestDto;
+import com.mutzy.dto.AppointmentResponseDto;
+import com.mutzy.dto.AppointmentRollupDto;
+import com.mutzy.dto.AppointmentSeriesRequestDto;
+import com.mutzy.service.AppointmentService;
+import com.mutzy.utils.AppointmentCsv;
+import com.mutzy.utils.AppointmentCsvWriter;
+import com.mutzy.utils.Constants;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.DeleteMapping;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.PutMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import javax.validation.ValidationException;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.time.ZoneId;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * JSON and CSV endpoints for tools and scripts, rather than the browser
+ */
+@RestController
+@RequestMapping("/api/appointments")
+@Slf4j
+public class AppointmentApiController {
+
+    private static final String TEXT_CSV_VALUE = "text/csv";
+    private static final String APPLICATION_NDJSON_VALUE = "application/x-ndjson";
+
+    private final AppointmentService appointmentService;
+    private final ObjectWriter appointmentWriter;
+
+    @Autowired
+    public AppointmentApiController(AppointmentService appointmentService, ObjectMapper jsonMapper) {
+        this.appointmentService = appointmentService;
+        // flushing after every appointment would cost a write to the network per row, so leave it to the buffers
+        this.appointmentWriter = jsonMapper.writerFor(AppointmentResponseDto.class)
+                .without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+    }
+
+    /**
+     * Streams every appointment as newline delimited JSON, one appointment per line.
+     * The appointments are written as they are read from the database, so the response starts straight away
+     * and memory use doesn't grow with the number of appointments
+     */
+    @GetMapping(produces = APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> streamAppointmentsAsNdjson() {
+        log.info("Received request to stream all appointments as NDJSON");
+        boolean pinnedToPrimary = ReadReplicaRouting.isPinnedToPrimary();
+        return ResponseEntity.ok()
+                .contentType(MediaType.parseMediaType(APPLICATION_NDJSON_VALUE))
+                .body(outputStream -> streamAppointments(outputStream, false, pinnedToPrimary));
+    }
+
+    /**
+     * Streams every appointment as a single JSON array, in the same way as streamAppointmentsAsNdjson()
+     */
+    @GetMapping(produces = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> streamAppointmentsAsJson() {
+        log.info("Received request to stream all appointments as JSON");
+        boolean pinnedToPrimary = ReadReplicaRouting.isPinnedToPrimary();
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(outputStream -> streamAppointments(outputStream, true, pinnedToPrimary));
+    }
+
+    /**
+     * Streams every appointment as CSV, one row per appointment with its person's and location's columns alongside,
+     * in the same way as streamAppointmentsAsNdjson(). Rows go straight from the database cursor to the response,
+     * so an export of millions of appointments takes no more memory than one of ten.
+     * Also served at /export.csv, so the export can be downloaded from a browser without setting the Accept header
+     */
+    @GetMapping(value = {"", "/export.csv"}, produces = TEXT_CSV_VALUE)
+    public ResponseEntity<StreamingResponseBody> streamAppointmentsAsCsv() {
+        log.info("Received request to stream all appointments as CSV");
+        boolean pinnedToPrimary = ReadReplicaRouting.isPinnedToPrimary();
+        return ResponseEntity.ok()
+                .contentType(new MediaType("text", "csv", StandardCharsets.UTF_8))
+                .header(HttpHeaders.CONTENT_DISPOSITION, ContentDisposition.builder("attachment").filename("appointments.csv").build().toString())
+                .body(outputStream -> streamAppointmentsAsCsv(outputStream, pinnedToPrimary));
+    }
+
+    /**
+     * Counts the appointments from one day to another inclusive, e.g. bookings per location per month for Q3 with
+     * ?groupBy=LOCATION&granularity=MONTH&from=2022-07-01&to=2022-09-30. Served from running totals, never by reading the appointments
+     */
+    @GetMapping(value = "/rollups", produces = MediaType.APPLICATION_JSON_VALUE)
+    public AppointmentRollupDto rollUpAppointments(@RequestParam(value = "groupBy", defaultValue = "ALL") AppointmentRollupDto.GroupBy groupBy,
+                                                   @RequestParam(value = "granularity", defaultValue = "DAY") AppointmentRollupDto.Granularity granularity,
+                                                   @RequestParam("from") String from, @RequestParam("to") String to) {
+        log.info("Received request to count appointments by {} per {} from {} to {}", groupBy, granularity, from, to);
+        try {
+            return appointmentService.rollUpAppointments(groupBy, granularity, from, to);
+        } catch (ValidationException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage());
+        }
+    }
+
+    @PostMapping(value = "/import", consumes = MediaType.APPLICATION_JSON_VALUE)
+    public AppointmentImportReportDto importAppointmentsFromJson(@RequestBody List<AppointmentRequestDto> appointments) {
+        log.info("Received request to import {} appointments from JSON", appointments.size());
+        return importAppointments(appointments);
+    }
+
+    @PostMapping(value = "/import", consumes = TEXT_CSV_VALUE)
+    public AppointmentImportReportDto importAppointmentsFromCsv(Reader csv) {
+        List<AppointmentRequestDto> appointments;
+        try {
+            appointments = AppointmentCsv.readAppointments(csv);
+        } catch (IOException e) {
+            log.warn("Failed to read imported appointments CSV", e);
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Invalid appointments CSV: " + e.getMessage());
+        }
+        log.info("Received request to import {} appointments from CSV", appointments.size());
+        return importAppointments(appointments);
+    }
+
+    /**
+     * Returns a page of the appointments that have been archived, from one day to another inclusive,
+     * e.g. ?from=2020-01-01&to=2020-12-31. Pass the page's nextCursor as `after` to get the next page
+     */
+    @GetMapping(value = "/history", produces = MediaType.APPLICATION_JSON_VALUE)
+    public AppointmentPageDto findArchivedAppointments(@RequestParam("from") String from, @RequestParam("to") String to,
+                                                       @RequestParam(value = "after", required = false) String after) {
+        log.info("Received request to get archived appointments from {} to {} after={}", from, to, after);
+        try {
+            return appointmentService.findArchivedAppointments(from, to, AppointmentCursor.parse(after), Constants.ARCHIVED_APPOINTMENTS_PAGE_SIZE);
+        } catch (ValidationException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage());
+        }
+    }
+
+    // A series is saved as one row however many times it repeats, and listed with the other appointments by GET /appointments.
+    // Single occurrences are addressed by the date and time they were due, e.g. ?date=2022-12-20&time=09:00
+
+    @PostMapping(value = "/series", consumes = MediaType.APPLICATION_JSON_VALUE)
+    public AppointmentSeries createSeries(@RequestBody AppointmentSeriesRequestDto series) {
+        log.info("Received request to create series {}", series);
+        try {
+            AppointmentSeries createdSeries = appointmentService.createSeries(series);
+            if (createdSeries == null) {
+                throw new ResponseStatusException(HttpStatus.INTERNAL_SERVER_ERROR, "An unknown error occurred creating the series");
+            }
+            return createdSeries;
+        } catch (ValidationException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage());
+        }
+    }
+
+    @DeleteMapping("/series/{seriesId}")
+    public ResponseEntity<Void> deleteSeries(@PathVariable("seriesId") Integer seriesId) {
+        log.info("Received request to delete series {}", seriesId);
+        if (!appointmentService.deleteSeries(seriesId)) {
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND, "No series with id " + seriesId);
+        }
+        return ResponseEntity.noContent().build();
+    }
+
+    @DeleteMapping("/series/{seriesId}/occurrences")
+    public ResponseEntity<Void> cancelOccurrence(@PathVariable("seriesId") Integer seriesId, @RequestParam("date") String date,
+                                                 @RequestParam("time") String time) {
+        log.info("Received request to cancel the occurrence of series {} due on {} at {}", seriesId, date, time);
+        try {
+            if (!appointmentService.cancelOccurrence(seriesId, date, time)) {
+                throw new ResponseStatusException(HttpStatus.NOT_FOUND, "No series with id " + seriesId);
+            }
+            return ResponseEntity.noContent().build();
+        } catch (ValidationException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage());
+        }
+    }
+
+    /**
+     * Changes the description, date, time or duration of one occurrence. The body is an appointment, whose person and location
+     * are ignored as the occurrence keeps the series' ones
+     */
+    @PutMapping(value = "/series/{seriesId}/occurrences", consumes = MediaType.APPLICATION_JSON_VALUE)
+    public AppointmentResponseDto changeOccurrence(@PathVariable("seriesId") Integer seriesId, @RequestParam("date") String date,
+                                                   @RequestParam("time") String time, @RequestBody AppointmentRequestDto changes) {
+        log.info("Received request to change the occurrence of series {} due on {} at {} to {}", seriesId, date, time, changes);
+        try {
+            AppointmentResponseDto changedOccurrence = appointmentService.changeOccurrence(seriesId, date, time, changes);
+            if (changedOccurrence == null) {
+                throw new ResponseStatusException(HttpStatus.NOT_FOUND, "No series with id " + seriesId);
+            }
+            return changedOccurrence;
+        } catch (ValidationException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage());
+        }
+    }
+
+    // The bulk deletes below are each done with single DELETE statements, without loading the appointments first
+
+    @PostMapping(value = "/delete", consumes = MediaType.APPLICATION_JSON_VALUE)
+    public AppointmentDeleteReportDto deleteAppointments(@RequestBody List<Integer> appointmentIds) {
+        log.info("Received request to delete {} appointments by id", appointmentIds.size());
+        if (appointmentIds.size() > Constants.MAX_DELETED_APPOINTMENT_IDS) {
+            throw new ResponseStatusException(HttpStatus.PAYLOAD_TOO_LARGE,
+                    "Cannot delete more than " + Constants.MAX_DELETED_APPOINTMENT_IDS + " appointments by id at once");
+        }
+        return new AppointmentDeleteReportDto(appointmentService.deleteAppointments(appointmentIds));
+    }
+
+    /**
+     * Deletes the appointments from one day to another inclusive, e.g. ?from=2020-01-01&to=2020-12-31
+     */
+    @DeleteMapping(params = {"from", "to"})
+    public AppointmentDeleteReportDto deleteAppointmentsBetween(@RequestParam("from") String from, @RequestParam("to") String to) {
+        log.info("Received request to delete appointments from {} to {}", from, to);
+        try {
+            return new AppointmentDeleteReportDto(appointmentService.deleteAppointmentsBetween(from, to));
+        } catch (ValidationException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage());
+        }
+    }
+
+    @DeleteMapping(params = "personId")
+    public AppointmentDeleteReportDto deleteAppointmentsWithPerson(@RequestParam("personId") Integer personId) {
+        log.info("Received request to delete the appointments with person {}", personId);
+        return new AppointmentDeleteReportDto(appointmentService.deleteAppointmentsWithPerson(personId));
+    }
+
+    @DeleteMapping(params = "locationId")
+    public AppointmentDeleteReportDto deleteAppointmentsAtLocation(@RequestParam("locationId") Integer locationId) {
+        log.info("Received request to delete the appointments at location {}", locationId);
+        return new AppointmentDeleteReportDto(appointmentService.deleteAppointmentsAtLocation(locationId));
+    }
+
+    /**
+     * Runs on a separate thread from the request, so it is pinned to the primary database here if the request was
+     */
+    private void streamAppointments(OutputStream outputStream, boolean asArray, boolean pinnedToPrimary) throws IOException {
+        ReadReplicaRouting.setPinnedToPrimary(pinnedToPrimary);
+        try (JsonGenerator generator = appointmentWriter.getFactory().createGenerator(outputStream)) {
+            if (asArray) {
+                generator.writeStartArray();
+            } else {
+                generator.setRootValueSeparator(null); // each line is ended with a newline below instead of separated by a space
+            }
+            AtomicInteger count = new AtomicInteger();
+            appointmentService.streamAllAppointments(appointment -> {
+                try {
+                    appointmentWriter.writeValue(generator, appointment);
+                    if (!asArray) {
+                        generator.writeRaw('\n');
+                    }
+                    if (count.incrementAndGet() == 1) {
+                        generator.flush(); // get the first appointment to the client without waiting for the buffers to fill
+                    }
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+            if (asArray) {
+                generator.writeEndArray();
+            }
+            log.info("Streamed {} appointments", count.get());
+        } catch (UncheckedIOException e) {
+            // most likely the client went away, which also stops the database read
+            log.warn("Stopped streaming appointments", e);
+            throw e.getCause();
+        } finally {
+            ReadReplicaRouting.setPinnedToPrimary(false);
+        }
+    }
+
+    /**
+     * Runs on a separate thread from the request, so it is pinned to the primary database here if the request was
+     */
+    private void streamAppointmentsAsCsv(OutputStream outputStream, boolean pinnedToPrimary) throws IOException {
+        ReadReplicaRouting.setPinnedToPrimary(pinnedToPrimary);
+        try (AppointmentCsvWriter writer = new AppointmentCsvWriter(outputStream, ZoneId.systemDefault())) {
+            writer.writeHeader();
+            AtomicInteger count = new AtomicInteger();
+            appointmentService.streamAllAppointmentRows(row -> {
+                try {
+                    writer.write(row);
+                    if (count.incrementAndGet() == 1) {
+                        writer.flush(); // get the first appointment to the client without waiting for the buffers to fill
+                    }
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+            log.info("Streamed {} appointments as CSV", count.get());
+        } catch (UncheckedIOException e) {
+            // most likely the client went away, which also stops the database read
+            log.warn("Stopped streaming appointments", e);
+            throw e.getCause();
+        } finally {
+            ReadReplicaRouting.setPinnedToPrimary(false);
+        }
+    }
+
+    private AppointmentImportReportDto importAppointments(List<AppointmentRequestDto> appointments) {
+        if (appointments.size() > Constants.MAX_IMPORTED_APPOINTMENTS) {
+            throw new ResponseStatusException(HttpStatus.PAYLOAD_TOO_LARGE,
+                    "Cannot import more than " + Constants.MAX_IMPORTED_APPOINTMENTS + " appointments at once");
+        }
+        return appointmentService.importAppointments(appointments);
+    }
+}
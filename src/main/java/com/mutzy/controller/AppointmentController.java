@@ -6,14 +6,18 @@ import com.mutzy.dto.AppointmentRequestDto;
 import com.mutzy.dto.AppointmentResponseDto;
 import com.mutzy.dto.LocationDto;
 import com.mutzy.dto.PersonDto;
+import com.mutzy.metrics.CallMetricsAspect;
+import com.mutzy.metrics.Outcome;
 import com.mutzy.service.AppointmentService;
-import com.mutzy.utils.Constants;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Controller;
 import org.springframework.ui.Model;
 import org.springframework.validation.BindingResult;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.servlet.mvc.support.RedirectAttributes;
+import org.springframework.web.servlet.view.RedirectView;
 
 import javax.validation.ValidationException;
 
@@ -31,107 +35,154 @@ public class AppointmentController {
         this.controllerHelper = controllerHelper;
     }
 
-    @GetMapping // ideally this would have some sort of pagination rather than returning ALL the data in our database table
-    public String getAppointments(Model model) {
-        log.info("Received request to get all appointments by date");
-        return controllerHelper.redirectToAppointmentsPage(model);
+    @GetMapping
+    public String getAppointments(@RequestParam(value = "after", required = false) String after,
+                                  @RequestParam(value = "before", required = false) String before,
+                                  WebRequest webRequest, Model model) {
+        log.info("Received request to get a page of appointments by date after={} before={}", after, before);
+        // A redirect after a failed write carries the error in flash attributes, which the client's cached copy of the page won't show
+        if (!controllerHelper.hasFormErrors(model) && webRequest.checkNotModified(controllerHelper.getAppointmentsPageETag())) {
+            // Nothing has changed since the client last fetched the page, so a 304 has already been set on the response
+            // and there is nothing to query or render
+            return null;
+        }
+        return controllerHelper.showAppointmentsPage(model, after, before);
+    }
+
+    /**
+     * Shows the appointments containing every word of the search, each word matching the start of a word in the appointment's
+     * description, person or location. Answered from an in-memory index, so it never scans the appointments table
+     */
+    @GetMapping("/search")
+    public String searchAppointments(@RequestParam(value = "q", required = false) String query,
+                                     @RequestParam(value = "after", required = false) String after,
+                                     WebRequest webRequest, Model model) {
+        log.info("Received request to search appointments for {} after={}", query, after);
+        // the results only change when the data does, so the same ETag as the full list applies
+        if (webRequest.checkNotModified(controllerHelper.getAppointmentsPageETag())) {
+            return null;
+        }
+        return controllerHelper.showSearchPage(model, query, after);
     }
 
     @Deprecated // a POST request to a /create endpoint is redundant. Work to migrate any traffic to createAppointment() method below
     @PostMapping("/create")
-    public String createAppointmentDeprecated(@ModelAttribute AppointmentRequestDto appointment, BindingResult bindingResult, Model model) {
-        return createAppointment(appointment, bindingResult, model);
+    public RedirectView createAppointmentDeprecated(@ModelAttribute AppointmentRequestDto appointment, BindingResult bindingResult,
+                                                    RedirectAttributes redirectAttributes) {
+        return createAppointment(appointment, bindingResult, redirectAttributes);
     }
 
+    // The write endpoints below all answer with a 303 redirect to GET /appointments (Post/Redirect/Get), so they only do the write itself,
+    // refreshing the page doesn't repeat the write, and the page is only rendered by the GET, which can answer with a 304.
+    // Validation errors and the rejected form values are passed to that GET as flash attributes
+
     @PostMapping
-    public String createAppointment(@ModelAttribute AppointmentRequestDto appointment, BindingResult bindingResult, Model model) {
+    public RedirectView createAppointment(@ModelAttribute AppointmentRequestDto appointment, BindingResult bindingResult,
+                                          RedirectAttributes redirectAttributes) {
         try {
             if (bindingResult.hasErrors()) {
+                CallMetricsAspect.reportOutcome(Outcome.VALIDATION_FAILURE);
                 log.error("Issue with create appointment request {}", bindingResult.getAllErrors());
-                return reportAppointmentFormFailureToUser("There was an invalid value on the given appointment", model, appointment);
+                return reportAppointmentFormFailureToUser("There was an invalid value on the given appointment", redirectAttributes, appointment);
             }
             AppointmentResponseDto createdAppointment = appointmentService.createAppointment(appointment);
             if (createdAppointment == null) {
-                return reportAppointmentFormFailureToUser("An unknown error occurred. Please reach out to support if the issue persists", model, appointment);
+                CallMetricsAspect.reportOutcome(Outcome.ERROR);
+                return reportAppointmentFormFailureToUser("An unknown error occurred. Please reach out to support if the issue persists", redirectAttributes, appointment);
             }
-
-            // This will re-query the database even though we probably already have the full list of appointments.
-            // This is good to do if the user has 2 sessions open at once (unlikely, but possible)
-            // but it could cause performance issues at scale (which isn't a big concern for this demo project, but it's good to be aware of)
-            return controllerHelper.redirectToAppointmentsPage(model);
+            return controllerHelper.seeAppointmentsPage();
         } catch (ValidationException e) {
+            CallMetricsAspect.reportOutcome(Outcome.VALIDATION_FAILURE);
             log.warn("The given appointment failed validation", e);
-            return reportAppointmentFormFailureToUser(e.getMessage(), model, appointment);
+            return reportAppointmentFormFailureToUser(e.getMessage(), redirectAttributes, appointment);
         }
     }
 
     @PostMapping("/{appointmentId}") // This should be a DELETE request
-    public String deleteAppointment(@PathVariable(value = "appointmentId") Integer appointmentId, Model model) {
+    public RedirectView deleteAppointment(@PathVariable(value = "appointmentId") Integer appointmentId) {
+        try {
+            if (!appointmentService.deleteAppointment(appointmentId)) {
+                // most likely deleted from another tab already, which leaves the user where they wanted to be
+                log.info("Appointment {} was already deleted", appointmentId);
+            }
+        } catch (Exception e) {
+            CallMetricsAspect.reportOutcome(Outcome.ERROR);
+            log.warn(e.getMessage(), e);
+        }
+        return controllerHelper.seeAppointmentsPage();
+    }
+
+    @PostMapping("/series/{seriesId}/cancel") // This should be a DELETE request
+    public RedirectView cancelOccurrence(@PathVariable(value = "seriesId") Integer seriesId, @RequestParam("date") String date,
+                                         @RequestParam("time") String time) {
         try {
-            appointmentService.deleteAppointment(appointmentId);
+            if (!appointmentService.cancelOccurrence(seriesId, date, time)) {
+                log.info("Series {} was already deleted", seriesId);
+            }
         } catch (Exception e) {
+            CallMetricsAspect.reportOutcome(Outcome.ERROR);
             log.warn(e.getMessage(), e);
         }
-        return controllerHelper.redirectToAppointmentsPage(model);
+        return controllerHelper.seeAppointmentsPage();
     }
 
     @PostMapping("/person")
-    public String createPerson(@ModelAttribute PersonDto personDto, BindingResult bindingResult, Model model) {
+    public RedirectView createPerson(@ModelAttribute PersonDto personDto, BindingResult bindingResult, RedirectAttributes redirectAttributes) {
         try {
             if (bindingResult.hasErrors()) {
+                CallMetricsAspect.reportOutcome(Outcome.VALIDATION_FAILURE);
                 log.error("Issue with create person request {}", bindingResult.getAllErrors());
-                return reportPersonFormFailureToUser("There was an invalid value on the given person", model, personDto);
+                return reportPersonFormFailureToUser("There was an invalid value on the given person", redirectAttributes, personDto);
             }
             Person createdPerson = appointmentService.createPerson(personDto);
             if (createdPerson == null) {
-                return reportPersonFormFailureToUser("An unknown error occurred. Please reach out to support if the issue persists", model, personDto);
+                CallMetricsAspect.reportOutcome(Outcome.ERROR);
+                return reportPersonFormFailureToUser("An unknown error occurred. Please reach out to support if the issue persists", redirectAttributes, personDto);
             }
-            return controllerHelper.redirectToAppointmentsPage(model);
+            return controllerHelper.seeAppointmentsPage();
         } catch (ValidationException e) {
+            CallMetricsAspect.reportOutcome(Outcome.VALIDATION_FAILURE);
             log.warn("The given person failed validation", e);
-            return reportPersonFormFailureToUser(e.getMessage(), model, personDto);
+            return reportPersonFormFailureToUser(e.getMessage(), redirectAttributes, personDto);
         }
     }
 
     @PostMapping("/location")
-    public String createLocation(@ModelAttribute LocationDto locationDto, BindingResult bindingResult, Model model) {
+    public RedirectView createLocation(@ModelAttribute LocationDto locationDto, BindingResult bindingResult, RedirectAttributes redirectAttributes) {
         try {
             if (bindingResult.hasErrors()) {
+                CallMetricsAspect.reportOutcome(Outcome.VALIDATION_FAILURE);
                 log.error("Issue with create location request {}", bindingResult.getAllErrors());
-                return reportLocationFormFailureToUser("There was an invalid value on the given location", model, locationDto);
+                return reportLocationFormFailureToUser("There was an invalid value on the given location", redirectAttributes, locationDto);
             }
             Location createdLocation = appointmentService.createLocation(locationDto);
             if (createdLocation == null) {
-                return reportLocationFormFailureToUser("An unknown error occurred. Please reach out to support if the issue persists", model, locationDto);
+                CallMetricsAspect.reportOutcome(Outcome.ERROR);
+                return reportLocationFormFailureToUser("An unknown error occurred. Please reach out to support if the issue persists", redirectAttributes, locationDto);
             }
-            return controllerHelper.redirectToAppointmentsPage(model);
+            return controllerHelper.seeAppointmentsPage();
         } catch (ValidationException e) {
+            CallMetricsAspect.reportOutcome(Outcome.VALIDATION_FAILURE);
             log.warn("The given location failed validation", e);
-            return reportLocationFormFailureToUser(e.getMessage(), model, locationDto);
+            return reportLocationFormFailureToUser(e.getMessage(), redirectAttributes, locationDto);
         }
     }
 
-    private String reportAppointmentFormFailureToUser(String errorMessage, Model model, AppointmentRequestDto appointmentRequestDto) {
-        controllerHelper.populateAllAppointments(model);
-        controllerHelper.ensureRequiredFieldsArePopulated(model);
-        model.addAttribute("appointment", appointmentRequestDto);
-        model.addAttribute("appointmentValidationError", errorMessage);
-        return Constants.APPOINTMENTS_PAGE;
+    private RedirectView reportAppointmentFormFailureToUser(String errorMessage, RedirectAttributes redirectAttributes, AppointmentRequestDto appointmentRequestDto) {
+        redirectAttributes.addFlashAttribute("appointment", appointmentRequestDto);
+        redirectAttributes.addFlashAttribute("appointmentValidationError", errorMessage);
+        return controllerHelper.seeAppointmentsPage();
     }
 
-    private String reportPersonFormFailureToUser(String errorMessage, Model model, PersonDto personDto) {
-        controllerHelper.populateAllAppointments(model);
-        controllerHelper.ensureRequiredFieldsArePopulated(model);
-        model.addAttribute("person", personDto);
-        model.addAttribute("personValidationError", errorMessage);
-        return Constants.APPOINTMENTS_PAGE;
+    private RedirectView reportPersonFormFailureToUser(String errorMessage, RedirectAttributes redirectAttributes, PersonDto personDto) {
+        redirectAttributes.addFlashAttribute("person", personDto);
+        redirectAttributes.addFlashAttribute("personValidationError", errorMessage);
+        return controllerHelper.seeAppointmentsPage();
     }
 
-    private String reportLocationFormFailureToUser(String errorMessage, Model model, LocationDto locationDto) {
-        controllerHelper.populateAllAppointments(model);
-        controllerHelper.ensureRequiredFieldsArePopulated(model);
-        model.addAttribute("location", locationDto);
-        model.addAttribute("locationValidationError", errorMessage);
-        return Constants.APPOINTMENTS_PAGE;
+    private RedirectView reportLocationFormFailureToUser(String errorMessage, RedirectAttributes redirectAttributes, LocationDto locationDto) {
+        redirectAttributes.addFlashAttribute("location", locationDto);
+        redirectAttributes.addFlashAttribute("locationValidationError", errorMessage);
+        return controllerHelper.seeAppointmentsPage();
     }
 }
@@ -1,23 +1,41 @@
 package com.mutzy.controller;
 
+import com.mutzy.dto.AppointmentCursor;
+import com.mutzy.dto.AppointmentPageDto;
 import com.mutzy.dto.AppointmentRequestDto;
-import com.mutzy.dto.AppointmentResponseDto;
 import com.mutzy.dto.LocationDto;
 import com.mutzy.dto.PersonDto;
+import com.mutzy.metrics.CallMetricsAspect;
+import com.mutzy.metrics.Outcome;
 import com.mutzy.service.AppointmentService;
 import com.mutzy.utils.Constants;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang3.StringUtils;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Service;
 import org.springframework.ui.Model;
+import org.springframework.web.servlet.view.RedirectView;
 
-import java.util.Collections;
+import javax.validation.ValidationException;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Optional;
 
 @Service
+@Slf4j
 public class ControllerHelper {
 
     private static final String MODEL_KEY_APPOINTMENT_LIST = "appointments";
+    private static final String MODEL_KEY_NEXT_CURSOR = "nextCursor";
+    private static final String MODEL_KEY_PREVIOUS_CURSOR = "previousCursor";
+    private static final String MODEL_KEY_SEARCH_QUERY = "query";
+    private static final String MODEL_KEY_SEARCH_ERROR = "searchValidationError";
+    private static final List<String> FORM_ERROR_KEYS = Arrays.asList("appointmentValidationError", "personValidationError", "locationValidationError");
+
+    // The data version starts again from zero on every restart, so the ETag also includes when this instance started.
+    // Otherwise a page cached before a restart could be wrongly reported as unchanged afterwards
+    private static final String ETAG_PREFIX = "W/\"" + Long.toString(System.currentTimeMillis(), 36) + "-";
 
     private final AppointmentService appointmentService;
 
@@ -26,16 +44,77 @@ public class ControllerHelper {
         this.appointmentService = appointmentService;
     }
 
-    protected String redirectToAppointmentsPage(Model model) {
-        populateAllAppointments(model);
+    /**
+     * @return A weak ETag for the appointments page, which changes whenever anything shown on the page does.
+     * Building it never touches the database
+     */
+    protected String getAppointmentsPageETag() {
+        return ETAG_PREFIX + appointmentService.getDataVersion() + "\"";
+    }
+
+    /**
+     * @return A 303 redirect to GET /appointments, for write requests to answer with once they're done
+     */
+    protected RedirectView seeAppointmentsPage() {
+        RedirectView redirect = new RedirectView(Constants.APPOINTMENTS_PATH, true);
+        redirect.setStatusCode(HttpStatus.SEE_OTHER);
+        return redirect;
+    }
+
+    /**
+     * @return Whether the model holds a validation error for one of the forms, passed on by a write that redirected here
+     */
+    protected boolean hasFormErrors(Model model) {
+        return FORM_ERROR_KEYS.stream().anyMatch(key -> !StringUtils.isEmpty((String) model.getAttribute(key)));
+    }
+
+    protected String showAppointmentsPage(Model model, String afterCursor, String beforeCursor) {
+        populateAppointmentPage(model, afterCursor, beforeCursor);
         ensureRequiredFieldsArePopulated(model);
         return Constants.APPOINTMENTS_PAGE;
     }
 
-    protected void populateAllAppointments(Model model) {
-        List<AppointmentResponseDto> appointments = Optional.ofNullable(appointmentService.findAllAppointments())
-                .orElse(Collections.emptyList());
-        model.addAttribute(MODEL_KEY_APPOINTMENT_LIST, appointments);
+    /**
+     * Shows the appointments matching a search in place of the full list. If the search isn't valid,
+     * the first page of the full list is shown along with the reason instead
+     */
+    protected String showSearchPage(Model model, String query, String afterCursor) {
+        model.addAttribute(MODEL_KEY_SEARCH_QUERY, query);
+        try {
+            AppointmentPageDto page = appointmentService.searchAppointments(query, parseCursor(afterCursor), Constants.APPOINTMENTS_PAGE_SIZE);
+            addPage(model, Optional.ofNullable(page).orElseGet(AppointmentPageDto::new));
+        } catch (ValidationException e) {
+            CallMetricsAspect.reportOutcome(Outcome.VALIDATION_FAILURE);
+            log.warn("Invalid search {}", query, e);
+            model.addAttribute(MODEL_KEY_SEARCH_ERROR, e.getMessage());
+            populateAppointmentPage(model, null, null);
+        }
+        ensureRequiredFieldsArePopulated(model);
+        return Constants.APPOINTMENTS_PAGE;
+    }
+
+    protected void populateAppointmentPage(Model model, String afterCursor, String beforeCursor) {
+        AppointmentCursor after = parseCursor(afterCursor);
+        AppointmentCursor before = after == null ? parseCursor(beforeCursor) : null;
+        AppointmentPageDto page = Optional.ofNullable(appointmentService.findAppointmentPage(after, before, Constants.APPOINTMENTS_PAGE_SIZE))
+                .orElseGet(AppointmentPageDto::new);
+        addPage(model, page);
+    }
+
+    private static AppointmentCursor parseCursor(String cursor) {
+        try {
+            return AppointmentCursor.parse(cursor);
+        } catch (ValidationException e) {
+            CallMetricsAspect.reportOutcome(Outcome.VALIDATION_FAILURE);
+            log.warn("Ignoring invalid page cursor {}", cursor);
+            return null;
+        }
+    }
+
+    private static void addPage(Model model, AppointmentPageDto page) {
+        model.addAttribute(MODEL_KEY_APPOINTMENT_LIST, page.getAppointments());
+        model.addAttribute(MODEL_KEY_NEXT_CURSOR, page.getNextCursor() == null ? null : page.getNextCursor().toString());
+        model.addAttribute(MODEL_KEY_PREVIOUS_CURSOR, page.getPreviousCursor() == null ? null : page.getPreviousCursor().toString());
     }
 
     protected void ensureRequiredFieldsArePopulated(Model model) {
@@ -44,13 +123,21 @@ public class ControllerHelper {
         populateAllLocations(model);
     }
 
+    /**
+     * Adds empty forms and no errors, except where a failed write has passed on the rejected form and its error
+     */
     private void resetFormObjects(Model model) {
-        model.addAttribute("appointment", new AppointmentRequestDto());
-        model.addAttribute("person", new PersonDto());
-        model.addAttribute("location", new LocationDto());
-        model.addAttribute("appointmentValidationError", "");
-        model.addAttribute("personValidationError", "");
-        model.addAttribute("locationValidationError", "");
+        addIfAbsent(model, "appointment", new AppointmentRequestDto());
+        addIfAbsent(model, "person", new PersonDto());
+        addIfAbsent(model, "location", new LocationDto());
+        FORM_ERROR_KEYS.forEach(key -> addIfAbsent(model, key, ""));
+        addIfAbsent(model, MODEL_KEY_SEARCH_ERROR, "");
+    }
+
+    private static void addIfAbsent(Model model, String key, Object value) {
+        if (!model.containsAttribute(key)) {
+            model.addAttribute(key, value);
+        }
     }
 
     private void populateAllPeople(Model model) {
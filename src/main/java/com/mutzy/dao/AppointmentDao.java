@@ -1,9 +1,132 @@
 package com.mutzy.dao;
 
 import com.mutzy.domain.Appointment;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.CrudRepository;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.Collection;
+import java.util.Date;
+import java.util.List;
 
 @Repository
-public interface AppointmentDao extends CrudRepository<Appointment, Integer> {
+public interface AppointmentDao extends CrudRepository<Appointment, Integer>, AppointmentDetailsStream {
+
+    String SELECT_DETAILS = "select new com.mutzy.dao.AppointmentDetails(" +
+            "a.id, a.description, a.date, a.durationMinutes, a.personId, a.locationId, " +
+            "p.id, p.name, p.affiliation, " +
+            "l.id, l.name, l.description) " +
+            "from appointments a " +
+            "left join people p on p.id = a.personId " +
+            "left join locations l on l.id = a.locationId";
+
+    /**
+     * Loads every appointment together with its person and location in a single query,
+     * rather than looking up the person and location separately for each appointment
+     */
+    @Query(SELECT_DETAILS)
+    List<AppointmentDetails> findAllDetails();
+
+    // The batch queries below seek on (date, id) using the date_id_idx index rather than using an offset,
+    // so every batch costs the same no matter how far into the list it is. The date >= bound is implied by the rest of
+    // the condition, but spelled out so that every database can seek to it rather than scanning the index from the start.
+    // AppointmentSeekBenchmark measures the difference
+
+    @Query(SELECT_DETAILS + " order by a.date asc, a.id asc")
+    List<AppointmentDetails> findFirstDetails(Pageable pageable);
+
+    @Query(SELECT_DETAILS + " where a.date >= :date and (a.date > :date or a.id > :id) order by a.date asc, a.id asc")
+    List<AppointmentDetails> findDetailsAfter(@Param("date") Date date, @Param("id") Integer id, Pageable pageable);
+
+    // The queries below are used to catch a snapshot of the AppointmentView up with the database. They seek on the primary key
+
+    /**
+     * @return The appointments with ids above the given one, ordered by id
+     */
+    @Query(SELECT_DETAILS + " where a.id > :id order by a.id asc")
+    List<AppointmentDetails> findDetailsWithIdAbove(@Param("id") Integer id, Pageable pageable);
+
+    @Query(SELECT_DETAILS + " where a.id in :ids")
+    List<AppointmentDetails> findDetailsByIdIn(@Param("ids") Collection<Integer> ids);
+
+    /**
+     * @return The ids above `after` and up to `upTo` inclusive, in order
+     */
+    @Query("select a.id from appointments a where a.id > :after and a.id <= :upTo order by a.id asc")
+    List<Integer> findIdsBetween(@Param("after") Integer after, @Param("upTo") Integer upTo, Pageable pageable);
+
+    long countByIdLessThanEqual(Integer id);
+
+    /**
+     * @return The sum of the ids up to the given one inclusive, or 0 if there are none
+     */
+    @Query("select coalesce(sum(a.id), 0) from appointments a where a.id <= :id")
+    long sumIdsUpTo(@Param("id") Integer id);
+
+    /**
+     * @return The ids of the earliest appointments starting before the given date, earliest first
+     */
+    @Query("select a.id from appointments a where a.date < :date order by a.date asc, a.id asc")
+    List<Integer> findIdsBefore(@Param("date") Date date, Pageable pageable);
+
+    /**
+     * Copies the given appointments into appointments_archive, keeping their ids. Only for use by moveToArchive
+     * @return The number of appointments copied
+     */
+    @Modifying
+    @Transactional
+    @Query("insert into appointments_archive (id, description, date, durationMinutes, personId, locationId) " +
+            "select a.id, a.description, a.date, a.durationMinutes, a.personId, a.locationId from appointments a where a.id in :ids")
+    int copyToArchive(@Param("ids") Collection<Integer> ids);
+
+    /**
+     * Moves the given appointments into appointments_archive with one INSERT ... SELECT and one DELETE, in a single transaction,
+     * so each appointment is always in exactly one of the two tables. Ids that don't exist are ignored
+     * @return The number of appointments moved
+     */
+    @Transactional
+    default int moveToArchive(Collection<Integer> ids) {
+        copyToArchive(ids);
+        return deleteByIdIn(ids);
+    }
+
+    // The deletes below are each a single DELETE statement. Unlike deleteById they don't load the appointments first,
+    // and ids that don't exist are simply not counted rather than throwing EmptyResultDataAccessException
+
+    /**
+     * @return The number of appointments deleted
+     */
+    @Modifying
+    @Transactional
+    @Query("delete from appointments a where a.id in :ids")
+    int deleteByIdIn(@Param("ids") Collection<Integer> ids);
+
+    /**
+     * Deletes the appointments starting from `from` inclusive up to `to` exclusive
+     * @return The number of appointments deleted
+     */
+    @Modifying
+    @Transactional
+    @Query("delete from appointments a where a.date >= :from and a.date < :to")
+    int deleteByDateRange(@Param("from") Date from, @Param("to") Date to);
+
+    /**
+     * @return The number of appointments deleted
+     */
+    @Modifying
+    @Transactional
+    @Query("delete from appointments a where a.personId = :personId")
+    int deleteByPersonId(@Param("personId") Integer personId);
+
+    /**
+     * @return The number of appointments deleted
+     */
+    @Modifying
+    @Transactional
+    @Query("delete from appointments a where a.locationId = :locationId")
+    int deleteByLocationId(@Param("locationId") Integer locationId);
 }
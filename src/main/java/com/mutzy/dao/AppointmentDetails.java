@@ -0,0 +1,59 @@
+package com.mutzy.dao;
+
+import com.mutzy.domain.Appointment;
+import com.mutzy.domain.Location;
+import com.mutzy.domain.Person;
+import lombok.Getter;
+
+import java.util.Date;
+
+/**
+ * An appointment row joined with the person and location rows it references.
+ * The person and location are null when the appointment has no reference, or when the referenced row no longer exists.
+ */
+@Getter
+public class AppointmentDetails {
+    private final Appointment appointment;
+    private final Person person;
+    private final Location location;
+
+    public AppointmentDetails(Appointment appointment, Person person, Location location) {
+        this.appointment = appointment;
+        this.person = person;
+        this.location = location;
+    }
+
+    /**
+     * Used by the JPQL constructor expressions in AppointmentDao.
+     * Selecting plain columns (rather than the entities themselves) keeps Hibernate from loading each person and location in a separate query
+     */
+    public AppointmentDetails(Integer id, String description, Date date, Integer durationMinutes, Integer personId, Integer locationId,
+                              Integer joinedPersonId, String personName, String personAffiliation,
+                              Integer joinedLocationId, String locationName, String locationDescription) {
+        this.appointment = new Appointment();
+        this.appointment.setId(id);
+        this.appointment.setDescription(description);
+        this.appointment.setDate(date);
+        this.appointment.setDurationMinutes(durationMinutes);
+        this.appointment.setPersonId(personId);
+        this.appointment.setLocationId(locationId);
+
+        if (joinedPersonId == null) {
+            this.person = null;
+        } else {
+            this.person = new Person();
+            this.person.setId(joinedPersonId);
+            this.person.setName(personName);
+            this.person.setAffiliation(personAffiliation);
+        }
+
+        if (joinedLocationId == null) {
+            this.location = null;
+        } else {
+            this.location = new Location();
+            this.location.setId(joinedLocationId);
+            this.location.setName(locationName);
+            this.location.setDescription(locationDescription);
+        }
+    }
+}
@@ -0,0 +1,23 @@
+package com.mutzy.dao;
+
+import java.util.function.Consumer;
+
+/**
+ * Reads every appointment with its person and location, handing each one to the caller as soon as it is read
+ * rather than collecting them into a list, so memory use stays constant no matter how many appointments there are
+ */
+public interface AppointmentDetailsStream {
+
+    /**
+     * Reads every appointment in the same order as the appointments page
+     * @param consumer Called with each appointment as it is read. The database cursor is held open while this runs
+     */
+    void streamAllDetails(Consumer<AppointmentDetails> consumer);
+
+    /**
+     * Reads every appointment in the same order as streamAllDetails, without creating any objects per row,
+     * for exports that write each row straight out
+     * @param consumer Called with each row as it is read. The same AppointmentRow is passed every time, holding the current row
+     */
+    void streamAllRows(Consumer<AppointmentRow> consumer);
+}
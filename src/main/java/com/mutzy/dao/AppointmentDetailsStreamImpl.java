@@ -0,0 +1,71 @@
+package com.mutzy.dao;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+
+import javax.sql.DataSource;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.Date;
+import java.util.function.Consumer;
+
+/**
+ * Reads the appointments through a single forward-only, read-only JDBC cursor. Spring Data adds this to AppointmentDao.
+ * <p>
+ * The fetch size is configured with appointments.stream.fetch-size. Integer.MIN_VALUE makes the MySQL driver
+ * stream rows one at a time instead of reading the whole result set into memory before returning the first row.
+ * Other databases need a positive value instead
+ */
+public class AppointmentDetailsStreamImpl implements AppointmentDetailsStream {
+
+    // AppointmentRow reads these columns by index, so it must be changed along with them
+    private static final String SELECT_DETAILS = "select a.id, a.description, a.date, a.duration_minutes, a.person_id, a.location_id, " +
+            "p.id as joined_person_id, p.name as person_name, p.affiliation as person_affiliation, " +
+            "l.id as joined_location_id, l.name as location_name, l.description as location_description " +
+            "from appointments a " +
+            "left join people p on p.id = a.person_id " +
+            "left join locations l on l.id = a.location_id " +
+            "order by a.date asc, a.id asc";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    public AppointmentDetailsStreamImpl(DataSource dataSource, @Value("${appointments.stream.fetch-size:1000}") int fetchSize) {
+        this.jdbcTemplate = new JdbcTemplate(dataSource);
+        this.jdbcTemplate.setFetchSize(fetchSize);
+    }
+
+    @Override
+    public void streamAllDetails(Consumer<AppointmentDetails> consumer) {
+        jdbcTemplate.query(SELECT_DETAILS, (RowCallbackHandler) resultSet -> consumer.accept(mapDetails(resultSet)));
+    }
+
+    @Override
+    public void streamAllRows(Consumer<AppointmentRow> consumer) {
+        AppointmentRow row = new AppointmentRow();
+        jdbcTemplate.query(SELECT_DETAILS, (RowCallbackHandler) resultSet -> {
+            row.read(resultSet);
+            consumer.accept(row);
+        });
+    }
+
+    private static AppointmentDetails mapDetails(ResultSet resultSet) throws SQLException {
+        Timestamp date = resultSet.getTimestamp("date");
+        return new AppointmentDetails(
+                resultSet.getInt("id"),
+                resultSet.getString("description"),
+                date == null ? null : new Date(date.getTime()),
+                resultSet.getObject("duration_minutes", Integer.class),
+                resultSet.getObject("person_id", Integer.class),
+                resultSet.getObject("location_id", Integer.class),
+                resultSet.getObject("joined_person_id", Integer.class),
+                resultSet.getString("person_name"),
+                resultSet.getString("person_affiliation"),
+                resultSet.getObject("joined_location_id", Integer.class),
+                resultSet.getString("location_name"),
+                resultSet.getString("location_description"));
+    }
+}
@@ -0,0 +1,63 @@
+package com.mutzy.dao;
+
+import lombok.Getter;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+
+/**
+ * An appointment row joined with its person and location, as plain column values rather than entities.
+ * AppointmentDetailsStream.streamAllRows reads every row into the same instance, so nothing is created per row
+ * beyond what the JDBC driver creates itself. It only ever holds the current row, so it mustn't be kept once the consumer returns.
+ * <p>
+ * Ids are 0 when the appointment has no person or location, as JDBC reads NULL ints. Ids are allocated from 1.
+ */
+@Getter
+public class AppointmentRow {
+
+    // the column indexes of AppointmentDetailsStreamImpl.SELECT_DETAILS, as looking columns up by name costs a search per call
+    private static final int ID = 1;
+    private static final int DESCRIPTION = 2;
+    private static final int DATE = 3;
+    private static final int DURATION_MINUTES = 4;
+    private static final int PERSON_ID = 5;
+    private static final int LOCATION_ID = 6;
+    private static final int PERSON_NAME = 8;
+    private static final int PERSON_AFFILIATION = 9;
+    private static final int LOCATION_NAME = 11;
+    private static final int LOCATION_DESCRIPTION = 12;
+
+    private int id;
+    private String description;
+    private long dateMillis;
+    private int durationMinutes; // 0 if the appointment doesn't have one, meaning the default duration
+    private int personId;
+    private String personName; // null if the appointment has no person, or it no longer exists
+    private String personAffiliation;
+    private int locationId;
+    private String locationName; // null if the appointment has no location, or it no longer exists
+    private String locationDescription;
+
+    void read(ResultSet resultSet) throws SQLException {
+        Timestamp date = resultSet.getTimestamp(DATE);
+        set(resultSet.getInt(ID), resultSet.getString(DESCRIPTION), date == null ? 0 : date.getTime(), resultSet.getInt(DURATION_MINUTES),
+                resultSet.getInt(PERSON_ID), resultSet.getString(PERSON_NAME), resultSet.getString(PERSON_AFFILIATION),
+                resultSet.getInt(LOCATION_ID), resultSet.getString(LOCATION_NAME), resultSet.getString(LOCATION_DESCRIPTION));
+    }
+
+    void set(int id, String description, long dateMillis, int durationMinutes,
+             int personId, String personName, String personAffiliation,
+             int locationId, String locationName, String locationDescription) {
+        this.id = id;
+        this.description = description;
+        this.dateMillis = dateMillis;
+        this.durationMinutes = durationMinutes;
+        this.personId = personId;
+        this.personName = personName;
+        this.personAffiliation = personAffiliation;
+        this.locationId = locationId;
+        this.locationName = locationName;
+        this.locationDescription = locationDescription;
+    }
+}
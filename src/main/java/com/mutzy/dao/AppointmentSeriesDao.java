@@ -0,0 +1,9 @@
+package com.mutzy.dao;
+
+import com.mutzy.domain.AppointmentSeries;
+import org.springframework.data.repository.CrudRepository;
+import org.springframework.stereotype.Repository;
+
+@Repository
+public interface AppointmentSeriesDao extends CrudRepository<AppointmentSeries, Integer> {
+}
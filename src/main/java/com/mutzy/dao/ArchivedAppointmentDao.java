@@ -0,0 +1,89 @@
+package com.mutzy.dao;
+
+import com.mutzy.domain.ArchivedAppointment;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.CrudRepository;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.Collection;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * The appointments moved out of the appointments table by AppointmentArchiver. AppointmentDao only ever reads the
+ * appointments that haven't been archived, so history has to be asked for from here explicitly
+ */
+@Repository
+public interface ArchivedAppointmentDao extends CrudRepository<ArchivedAppointment, Integer> {
+
+    String SELECT_DETAILS = "select new com.mutzy.dao.AppointmentDetails(" +
+            "a.id, a.description, a.date, a.durationMinutes, a.personId, a.locationId, " +
+            "p.id, p.name, p.affiliation, " +
+            "l.id, l.name, l.description) " +
+            "from appointments_archive a " +
+            "left join people p on p.id = a.personId " +
+            "left join locations l on l.id = a.locationId";
+
+    // Like the batch queries in AppointmentDao, these seek on (date, id) using the archive's date_id_idx index
+
+    /**
+     * @return The first archived appointments starting from `from` inclusive up to `to` exclusive, ordered by date and then id
+     */
+    @Query(SELECT_DETAILS + " where a.date >= :from and a.date < :to order by a.date asc, a.id asc")
+    List<AppointmentDetails> findFirstDetailsBetween(@Param("from") Date from, @Param("to") Date to, Pageable pageable);
+
+    /**
+     * @return The archived appointments after the given date and id and before `to`, ordered by date and then id
+     */
+    @Query(SELECT_DETAILS + " where a.date >= :date and (a.date > :date or a.id > :id) and a.date < :to order by a.date asc, a.id asc")
+    List<AppointmentDetails> findDetailsAfter(@Param("date") Date date, @Param("id") Integer id, @Param("to") Date to, Pageable pageable);
+
+    String SELECT_KEYS = "select new com.mutzy.dao.ArchivedAppointmentKey(a.id, a.personId, a.locationId, a.date) " +
+            "from appointments_archive a";
+
+    /**
+     * @return The keys of the archived appointments with ids above the given id, ordered by id, for counting them in the rollups
+     */
+    @Query(SELECT_KEYS + " where a.id > :id order by a.id asc")
+    List<ArchivedAppointmentKey> findKeysWithIdAbove(@Param("id") Integer id, Pageable pageable);
+
+    // The key queries below find what each of the deletes after them is about to delete, so it can be uncounted from the rollups
+
+    @Query(SELECT_KEYS + " where a.id in :ids")
+    List<ArchivedAppointmentKey> findKeysByIdIn(@Param("ids") Collection<Integer> ids);
+
+    @Query(SELECT_KEYS + " where a.date >= :from and a.date < :to")
+    List<ArchivedAppointmentKey> findKeysByDateRange(@Param("from") Date from, @Param("to") Date to);
+
+    @Query(SELECT_KEYS + " where a.personId = :personId")
+    List<ArchivedAppointmentKey> findKeysByPersonId(@Param("personId") Integer personId);
+
+    @Query(SELECT_KEYS + " where a.locationId = :locationId")
+    List<ArchivedAppointmentKey> findKeysByLocationId(@Param("locationId") Integer locationId);
+
+    // The deletes below match the ones in AppointmentDao, so bulk deletes can cover archived appointments too
+
+    @Modifying
+    @Transactional
+    @Query("delete from appointments_archive a where a.id in :ids")
+    int deleteByIdIn(@Param("ids") Collection<Integer> ids);
+
+    @Modifying
+    @Transactional
+    @Query("delete from appointments_archive a where a.date >= :from and a.date < :to")
+    int deleteByDateRange(@Param("from") Date from, @Param("to") Date to);
+
+    @Modifying
+    @Transactional
+    @Query("delete from appointments_archive a where a.personId = :personId")
+    int deleteByPersonId(@Param("personId") Integer personId);
+
+    @Modifying
+    @Transactional
+    @Query("delete from appointments_archive a where a.locationId = :locationId")
+    int deleteByLocationId(@Param("locationId") Integer locationId);
+}
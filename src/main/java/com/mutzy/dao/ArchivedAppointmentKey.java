@@ -0,0 +1,26 @@
+package com.mutzy.dao;
+
+import lombok.Getter;
+
+import java.util.Date;
+
+/**
+ * The columns of an archived appointment that AppointmentRollups counts it by, without its description
+ */
+@Getter
+public class ArchivedAppointmentKey {
+    private final Integer id;
+    private final Integer personId;
+    private final Integer locationId;
+    private final Date date;
+
+    /**
+     * Used by the JPQL constructor expressions in ArchivedAppointmentDao
+     */
+    public ArchivedAppointmentKey(Integer id, Integer personId, Integer locationId, Date date) {
+        this.id = id;
+        this.personId = personId;
+        this.locationId = locationId;
+        this.date = date;
+    }
+}
@@ -0,0 +1,98 @@
+package com.mutzy.dao;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import com.mutzy.domain.Appointment;
+import com.mutzy.domain.Location;
+import com.mutzy.domain.Person;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Optional;
+
+/**
+ * A bounded cache in front of PersonDao.findById and LocationDao.findById.
+ * People and locations are never updated once created, so they are safe to cache.
+ * Lookups for ids that don't exist are cached too, so anything that creates a person or location
+ * must invalidate its id afterwards.
+ */
+@Component
+public class ReferenceDataCache implements MeterBinder {
+
+    private final PersonDao personDao;
+    private final LocationDao locationDao;
+    private final Cache<Integer, Optional<Person>> people;
+    private final Cache<Integer, Optional<Location>> locations;
+
+    @Autowired
+    public ReferenceDataCache(PersonDao personDao, LocationDao locationDao,
+                              @Value("${appointments.cache.reference-data.maximum-size:10000}") long maximumSize,
+                              @Value("${appointments.cache.reference-data.expire-after-write:10m}") Duration expireAfterWrite) {
+        this.personDao = personDao;
+        this.locationDao = locationDao;
+        this.people = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfterWrite(expireAfterWrite)
+                .recordStats()
+                .build();
+        this.locations = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfterWrite(expireAfterWrite)
+                .recordStats()
+                .build();
+    }
+
+    public Optional<Person> findPerson(Integer personId) {
+        return people.get(personId, personDao::findById);
+    }
+
+    public Optional<Location> findLocation(Integer locationId) {
+        return locations.get(locationId, locationDao::findById);
+    }
+
+    /**
+     * Looks up the person and location of the given appointment
+     */
+    public AppointmentDetails findDetails(Appointment appointment) {
+        Person person = appointment.getPersonId() == null ? null : findPerson(appointment.getPersonId()).orElse(null);
+        Location location = appointment.getLocationId() == null ? null : findLocation(appointment.getLocationId()).orElse(null);
+        return new AppointmentDetails(appointment, person, location);
+    }
+
+    public void invalidatePerson(Integer personId) {
+        people.invalidate(personId);
+    }
+
+    public void invalidateLocation(Integer locationId) {
+        locations.invalidate(locationId);
+    }
+
+    /**
+     * Publishes the hit, miss and eviction counts of both caches as metrics
+     */
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        CaffeineCacheMetrics.monitor(registry, people, "people");
+        CaffeineCacheMetrics.monitor(registry, locations, "locations");
+    }
+
+    /**
+     * @return The hit, miss and eviction counts of the person cache since startup
+     */
+    public CacheStats getPersonStats() {
+        return people.stats();
+    }
+
+    /**
+     * @return The hit, miss and eviction counts of the location cache since startup
+     */
+    public CacheStats getLocationStats() {
+        return locations.stats();
+    }
+}
@@ -0,0 +1,22 @@
+package com.mutzy.dao;
+
+import com.mutzy.domain.SeriesOverride;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.CrudRepository;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+@Repository
+public interface SeriesOverrideDao extends CrudRepository<SeriesOverride, Integer> {
+
+    /**
+     * Deletes every override of the given series with a single DELETE statement
+     * @return The number of overrides deleted
+     */
+    @Modifying
+    @Transactional
+    @Query("delete from appointment_series_overrides o where o.seriesId = :seriesId")
+    int deleteBySeriesId(@Param("seriesId") Integer seriesId);
+}
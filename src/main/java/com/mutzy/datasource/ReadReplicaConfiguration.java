@@ -0,0 +1,87 @@
+package com.mutzy.datasource;
+
+import com.zaxxer.hikari.HikariDataSource;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.properties.bind.Bindable;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.boot.jdbc.DataSourceBuilder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.core.env.Environment;
+
+import javax.sql.DataSource;
+import java.time.Clock;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Replaces the single spring.datasource connection pool with one for the primary database and one for each read
+ * replica listed in appointments.datasource.replica-urls. Without any replica urls none of this is set up and
+ * everything goes to spring.datasource as before.
+ * <p>
+ * The replicas use the primary's driver, and its username and password unless appointments.datasource.replica-username
+ * and appointments.datasource.replica-password are set. Every pool gets the spring.datasource.hikari settings
+ */
+@Configuration
+@ConditionalOnProperty("appointments.datasource.replica-urls")
+@Slf4j
+public class ReadReplicaConfiguration {
+
+    private final Environment environment;
+
+    @Autowired
+    public ReadReplicaConfiguration(Environment environment) {
+        this.environment = environment;
+    }
+
+    /**
+     * The DataSource used by JPA and everything else
+     */
+    @Bean
+    @Primary
+    public ReadReplicaDataSource dataSource(
+            DataSourceProperties properties,
+            @Value("${appointments.datasource.replica-urls}") String[] replicaUrls,
+            @Value("${appointments.datasource.replica-username:#{null}}") String replicaUsername,
+            @Value("${appointments.datasource.replica-password:#{null}}") String replicaPassword) {
+        DataSource primary = configurePool(properties.initializeDataSourceBuilder().build(), ReadReplicaDataSource.PRIMARY);
+        List<DataSource> replicas = new ArrayList<>();
+        for (String replicaUrl : replicaUrls) {
+            if (replicaUrl.trim().isEmpty()) {
+                continue;
+            }
+            DataSource replica = DataSourceBuilder.create(properties.getClassLoader())
+                    .type(properties.getType())
+                    .driverClassName(properties.determineDriverClassName())
+                    .url(replicaUrl.trim())
+                    .username(replicaUsername == null ? properties.determineUsername() : replicaUsername)
+                    .password(replicaPassword == null ? properties.determinePassword() : replicaPassword)
+                    .build();
+            replicas.add(configurePool(replica, ReadReplicaDataSource.REPLICA + replicas.size()));
+        }
+        log.info("Routing read-only service methods to {} read replica(s)", replicas.size());
+        return new ReadReplicaDataSource(primary, replicas);
+    }
+
+    @Bean
+    public ReadYourWritesFilter readYourWritesFilter(
+            @Value("${appointments.datasource.read-your-writes-window:5s}") Duration readYourWritesWindow) {
+        return new ReadYourWritesFilter(readYourWritesWindow, Clock.systemUTC());
+    }
+
+    private DataSource configurePool(DataSource dataSource, String name) {
+        if (dataSource instanceof HikariDataSource) {
+            HikariDataSource pool = (HikariDataSource) dataSource;
+            // as Spring Boot does for the single pool it would otherwise create
+            Binder.get(environment).bind("spring.datasource.hikari", Bindable.ofInstance(pool));
+            pool.setPoolName(name); // so the log lines of each pool say which database they are about
+        }
+        return dataSource;
+    }
+}
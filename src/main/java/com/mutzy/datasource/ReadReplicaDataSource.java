@@ -0,0 +1,87 @@
+package com.mutzy.datasource;
+
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+
+import javax.sql.DataSource;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Hands out connections to the primary database, or to one of its read replicas when ReadReplicaRouting says the
+ * current thread's queries may be served by a replica. Replicas are used in turn, so reads are spread evenly across them.
+ * <p>
+ * Connections are lazy: the route is only decided, and a connection only taken from a pool, when the first statement
+ * is run. Otherwise a transaction would take its connection as it begins, before the read-only service method it
+ * belongs to has been marked as one
+ */
+public class ReadReplicaDataSource extends LazyConnectionDataSourceProxy implements AutoCloseable {
+
+    static final String PRIMARY = "primary";
+    static final String REPLICA = "replica-";
+
+    private final DataSource primary;
+    private final List<DataSource> replicas;
+
+    public ReadReplicaDataSource(DataSource primary, List<DataSource> replicas) {
+        this.primary = primary;
+        this.replicas = Collections.unmodifiableList(new ArrayList<>(replicas));
+        setTargetDataSource(new Router(primary, this.replicas));
+        afterPropertiesSet();
+    }
+
+    public DataSource getPrimary() {
+        return primary;
+    }
+
+    public List<DataSource> getReplicas() {
+        return replicas;
+    }
+
+    /**
+     * Closes the connection pools of the primary and every replica
+     */
+    @Override
+    public void close() throws Exception {
+        close(primary);
+        for (DataSource replica : replicas) {
+            close(replica);
+        }
+    }
+
+    private static void close(DataSource dataSource) throws Exception {
+        if (dataSource instanceof AutoCloseable) {
+            ((AutoCloseable) dataSource).close();
+        }
+    }
+
+    private static class Router extends AbstractRoutingDataSource {
+        private final int replicaCount;
+        private final AtomicInteger nextReplica = new AtomicInteger();
+
+        private Router(DataSource primary, List<DataSource> replicas) {
+            this.replicaCount = replicas.size();
+            Map<Object, Object> targets = new HashMap<>();
+            targets.put(PRIMARY, primary);
+            for (int i = 0; i < replicas.size(); i++) {
+                targets.put(REPLICA + i, replicas.get(i));
+            }
+            setTargetDataSources(targets);
+            setDefaultTargetDataSource(primary);
+            afterPropertiesSet();
+        }
+
+        @Override
+        protected Object determineCurrentLookupKey() {
+            if (replicaCount == 0 || !ReadReplicaRouting.shouldUseReplica()) {
+                return PRIMARY;
+            }
+            // masked rather than Math.abs, which stays negative for Integer.MIN_VALUE once the counter wraps around
+            return REPLICA + (nextReplica.getAndIncrement() & Integer.MAX_VALUE) % replicaCount;
+        }
+    }
+}
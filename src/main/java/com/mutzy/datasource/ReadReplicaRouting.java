@@ -0,0 +1,53 @@
+package com.mutzy.datasource;
+
+/**
+ * Which database the current thread's queries should go to when read replicas are configured.
+ * <p>
+ * Queries go to a replica only while a read-only service method is running (see ReplicaReadAspect) and the thread
+ * hasn't been pinned to the primary. Threads are pinned by ReadYourWritesFilter while serving a client that wrote
+ * recently, so that it reads back its own writes rather than a replica that hasn't caught up with them yet.
+ * Everything else, including every write, goes to the primary
+ */
+public final class ReadReplicaRouting {
+
+    private static final ThreadLocal<Boolean> replicaRead = new ThreadLocal<>();
+    private static final ThreadLocal<Boolean> pinnedToPrimary = new ThreadLocal<>();
+
+    private ReadReplicaRouting() {
+    }
+
+    /**
+     * @return True if queries made by this thread right now may be served by a replica
+     */
+    public static boolean shouldUseReplica() {
+        return isReplicaRead() && !isPinnedToPrimary();
+    }
+
+    public static boolean isReplicaRead() {
+        return Boolean.TRUE.equals(replicaRead.get());
+    }
+
+    public static void setReplicaRead(boolean replica) {
+        if (replica) {
+            replicaRead.set(Boolean.TRUE);
+        } else {
+            replicaRead.remove();
+        }
+    }
+
+    public static boolean isPinnedToPrimary() {
+        return Boolean.TRUE.equals(pinnedToPrimary.get());
+    }
+
+    /**
+     * Sends every query made by this thread to the primary until unpinned, even from read-only service methods.
+     * Work handed to another thread (e.g. a streamed response) must pin that thread itself
+     */
+    public static void setPinnedToPrimary(boolean pinned) {
+        if (pinned) {
+            pinnedToPrimary.set(Boolean.TRUE);
+        } else {
+            pinnedToPrimary.remove();
+        }
+    }
+}
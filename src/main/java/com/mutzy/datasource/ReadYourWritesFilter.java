@@ -0,0 +1,85 @@
+package com.mutzy.datasource;
+
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.Cookie;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.time.Clock;
+import java.time.Duration;
+
+/**
+ * Pins a client to the primary database for a while after it writes, so it always reads back its own writes even
+ * though the replicas may not have caught up with them yet.
+ * <p>
+ * Any request that might write (anything but GET, HEAD, OPTIONS and TRACE) sets a cookie holding the time until which
+ * the client is pinned, appointments.datasource.read-your-writes-window from now. Requests carrying a cookie that
+ * hasn't run out yet are served entirely from the primary. The window should be comfortably longer than the replicas
+ * usually lag behind. Cookies are used rather than the HTTP session so that pinning works for API clients too
+ */
+public class ReadYourWritesFilter extends OncePerRequestFilter {
+
+    static final String COOKIE_NAME = "appointments-primary-until";
+
+    private final Duration window;
+    private final Clock clock;
+
+    public ReadYourWritesFilter(Duration window, Clock clock) {
+        this.window = window;
+        this.clock = clock;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        long now = clock.millis();
+        boolean pinned = pinnedUntil(request) > now;
+        if (mightWrite(request)) {
+            pinned = true;
+            Cookie cookie = new Cookie(COOKIE_NAME, Long.toString(now + window.toMillis()));
+            cookie.setPath(request.getContextPath().isEmpty() ? "/" : request.getContextPath());
+            cookie.setMaxAge((int) Math.max(1, window.getSeconds()));
+            cookie.setHttpOnly(true);
+            response.addCookie(cookie);
+        }
+        boolean outerPinned = ReadReplicaRouting.isPinnedToPrimary();
+        ReadReplicaRouting.setPinnedToPrimary(outerPinned || pinned);
+        try {
+            chain.doFilter(request, response);
+        } finally {
+            ReadReplicaRouting.setPinnedToPrimary(outerPinned);
+        }
+    }
+
+    private static boolean mightWrite(HttpServletRequest request) {
+        switch (request.getMethod()) {
+            case "GET":
+            case "HEAD":
+            case "OPTIONS":
+            case "TRACE":
+                return false;
+            default:
+                return true;
+        }
+    }
+
+    private static long pinnedUntil(HttpServletRequest request) {
+        Cookie[] cookies = request.getCookies();
+        if (cookies == null) {
+            return 0;
+        }
+        for (Cookie cookie : cookies) {
+            if (COOKIE_NAME.equals(cookie.getName())) {
+                try {
+                    return Long.parseLong(cookie.getValue());
+                } catch (NumberFormatException e) {
+                    return 0;
+                }
+            }
+        }
+        return 0;
+    }
+}
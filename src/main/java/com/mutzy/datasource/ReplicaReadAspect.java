@@ -0,0 +1,42 @@
+package com.mutzy.datasource;
+
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+import org.aspectj.lang.reflect.MethodSignature;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.AnnotatedElementUtils;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.lang.reflect.Method;
+
+/**
+ * Lets the queries made by service methods annotated with @Transactional(readOnly = true) be served by a read replica.
+ * <p>
+ * Only service methods are marked, as those are the reads that are known to tolerate a replica that is slightly behind.
+ * Spring Data also runs its own finders (e.g. findById during validation) in read-only transactions, and those
+ * must keep reading from the primary.
+ * <p>
+ * Read-write service methods clear the mark for as long as they run, in case they are called from a read-only one.
+ * Runs before the transaction is started, so that the route is known by the time a connection is taken
+ */
+@Aspect
+@Component
+@Order(Ordered.HIGHEST_PRECEDENCE)
+public class ReplicaReadAspect {
+
+    @Around("execution(public * com.mutzy.service..*(..)) && @annotation(org.springframework.transaction.annotation.Transactional)")
+    public Object readFromReplica(ProceedingJoinPoint joinPoint) throws Throwable {
+        Method method = ((MethodSignature) joinPoint.getSignature()).getMethod();
+        Transactional transactional = AnnotatedElementUtils.findMergedAnnotation(method, Transactional.class);
+        boolean outerReplicaRead = ReadReplicaRouting.isReplicaRead();
+        ReadReplicaRouting.setReplicaRead(transactional != null && transactional.readOnly());
+        try {
+            return joinPoint.proceed();
+        } finally {
+            ReadReplicaRouting.setReplicaRead(outerReplicaRead);
+        }
+    }
+}
@@ -0,0 +1,60 @@
+package com.mutzy.domain;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.hibernate.annotations.GenericGenerator;
+import org.hibernate.annotations.Parameter;
+import org.hibernate.id.enhanced.TableGenerator;
+
+import javax.persistence.Entity;
+import javax.persistence.EnumType;
+import javax.persistence.Enumerated;
+import javax.persistence.GeneratedValue;
+import javax.persistence.Id;
+import java.util.Date;
+
+/**
+ * An appointment that repeats, stored as a single row however many times it repeats, along the lines of an iCalendar RRULE.
+ * The occurrences are worked out when they are needed (see RecurringSeries), and single occurrences can be cancelled
+ * or changed with a SeriesOverride.
+ * <p>
+ * The first occurrence is at `date`, and each one after it is `repeatInterval` days, weeks or months after the first,
+ * at the same time of day. A monthly series started on a day that some months don't have (e.g. the 31st) falls on the
+ * last day of those months. The series ends after `occurrenceCount` occurrences or on `untilDate`, whichever comes first.
+ * At least one of them is always set, so every series ends
+ */
+@Entity(name = "appointment_series")
+@Getter @Setter
+public class AppointmentSeries {
+
+    public enum Frequency {
+        DAILY,
+        WEEKLY,
+        MONTHLY
+    }
+
+    @Id
+    @GeneratedValue(generator = "appointment_series_ids")
+    @GenericGenerator(name = "appointment_series_ids", strategy = IdAllocation.STRATEGY, parameters = {
+            @Parameter(name = TableGenerator.TABLE_PARAM, value = IdAllocation.TABLE),
+            @Parameter(name = TableGenerator.SEGMENT_COLUMN_PARAM, value = IdAllocation.SEGMENT_COLUMN),
+            @Parameter(name = TableGenerator.SEGMENT_VALUE_PARAM, value = "appointment_series"),
+            @Parameter(name = TableGenerator.VALUE_COLUMN_PARAM, value = IdAllocation.VALUE_COLUMN),
+            @Parameter(name = TableGenerator.INCREMENT_PARAM, value = IdAllocation.ALLOCATION_SIZE),
+            @Parameter(name = TableGenerator.OPT_PARAM, value = IdAllocation.OPTIMIZER)
+    })
+    private Integer id;
+
+    private String description;
+    private Date date; // when the first occurrence starts
+    private Integer durationMinutes;
+    private Integer personId;
+    private Integer locationId;
+
+    @Enumerated(EnumType.STRING)
+    private Frequency frequency;
+    private Integer repeatInterval;
+    private Date untilDate; // midnight at the start of the last day an occurrence can start on, or null
+    private Integer occurrenceCount; // or null
+
+}
@@ -0,0 +1,27 @@
+package com.mutzy.domain;
+
+import lombok.Getter;
+import lombok.Setter;
+
+import javax.persistence.Entity;
+import javax.persistence.Id;
+import java.util.Date;
+
+/**
+ * An appointment that AppointmentArchiver has moved out of the appointments table because it is further in the past
+ * than the archive horizon. It keeps the id it had as an appointment, and ids are never handed out twice,
+ * so ids are unique across both tables
+ */
+@Entity(name = "appointments_archive")
+@Getter @Setter
+public class ArchivedAppointment {
+    @Id
+    private Integer id;
+
+    private String description;
+    private Date date;
+    private Integer durationMinutes;
+    private Integer personId;
+    private Integer locationId;
+
+}
@@ -0,0 +1,22 @@
+package com.mutzy.domain;
+
+/**
+ * Settings for the generators that hand out entity ids.
+ * Each node reserves a block of ALLOCATION_SIZE ids at a time by bumping the entity's row in the id_allocations table,
+ * and then assigns ids from that block in memory. This means only one in every ALLOCATION_SIZE inserts touches
+ * id_allocations, and inserts can be sent to the database in JDBC batches.
+ * <p>
+ * Each row holds the last id reserved so far, so an existing table can be migrated by seeding its row with max(id).
+ * See mysqlDatabaseConfiguration.sql
+ */
+public final class IdAllocation {
+
+    public static final String STRATEGY = "org.hibernate.id.enhanced.TableGenerator";
+    public static final String TABLE = "id_allocations";
+    public static final String SEGMENT_COLUMN = "entity";
+    public static final String VALUE_COLUMN = "last_reserved_id";
+    public static final String OPTIMIZER = "pooled-lo";
+    public static final String ALLOCATION_SIZE = "100"; // a String as it is passed to Hibernate as a generator parameter
+
+    private IdAllocation() {}
+}
@@ -2,6 +2,9 @@ package com.mutzy.domain;
 
 import lombok.Getter;
 import lombok.Setter;
+import org.hibernate.annotations.GenericGenerator;
+import org.hibernate.annotations.Parameter;
+import org.hibernate.id.enhanced.TableGenerator;
 
 import javax.persistence.Entity;
 import javax.persistence.GeneratedValue;
@@ -11,7 +14,15 @@ import javax.persistence.Id;
 @Getter @Setter
 public class Person {
     @Id
-    @GeneratedValue
+    @GeneratedValue(generator = "person_ids")
+    @GenericGenerator(name = "person_ids", strategy = IdAllocation.STRATEGY, parameters = {
+            @Parameter(name = TableGenerator.TABLE_PARAM, value = IdAllocation.TABLE),
+            @Parameter(name = TableGenerator.SEGMENT_COLUMN_PARAM, value = IdAllocation.SEGMENT_COLUMN),
+            @Parameter(name = TableGenerator.SEGMENT_VALUE_PARAM, value = "people"),
+            @Parameter(name = TableGenerator.VALUE_COLUMN_PARAM, value = IdAllocation.VALUE_COLUMN),
+            @Parameter(name = TableGenerator.INCREMENT_PARAM, value = IdAllocation.ALLOCATION_SIZE),
+            @Parameter(name = TableGenerator.OPT_PARAM, value = IdAllocation.OPTIMIZER)
+    })
     private Integer id;
     private String name;
     private String affiliation;
@@ -0,0 +1,43 @@
+package com.mutzy.domain;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.hibernate.annotations.GenericGenerator;
+import org.hibernate.annotations.Parameter;
+import org.hibernate.id.enhanced.TableGenerator;
+
+import javax.persistence.Entity;
+import javax.persistence.GeneratedValue;
+import javax.persistence.Id;
+import java.util.Date;
+
+/**
+ * Cancels or changes a single occurrence of an AppointmentSeries, leaving the rest of the series as it is.
+ * The occurrence is identified by when it would have started had it not been changed, so moving it again
+ * updates the same row. A changed occurrence keeps the series' person and location
+ */
+@Entity(name = "appointment_series_overrides")
+@Getter @Setter
+public class SeriesOverride {
+    @Id
+    @GeneratedValue(generator = "appointment_series_override_ids")
+    @GenericGenerator(name = "appointment_series_override_ids", strategy = IdAllocation.STRATEGY, parameters = {
+            @Parameter(name = TableGenerator.TABLE_PARAM, value = IdAllocation.TABLE),
+            @Parameter(name = TableGenerator.SEGMENT_COLUMN_PARAM, value = IdAllocation.SEGMENT_COLUMN),
+            @Parameter(name = TableGenerator.SEGMENT_VALUE_PARAM, value = "appointment_series_overrides"),
+            @Parameter(name = TableGenerator.VALUE_COLUMN_PARAM, value = IdAllocation.VALUE_COLUMN),
+            @Parameter(name = TableGenerator.INCREMENT_PARAM, value = IdAllocation.ALLOCATION_SIZE),
+            @Parameter(name = TableGenerator.OPT_PARAM, value = IdAllocation.OPTIMIZER)
+    })
+    private Integer id;
+
+    private Integer seriesId;
+    private Date occurrenceDate; // when the occurrence was due to start
+    private boolean cancelled;
+
+    // the changed occurrence, unused when it is cancelled
+    private String description;
+    private Date date;
+    private Integer durationMinutes;
+
+}
@@ -0,0 +1,81 @@
+package com.mutzy.dto;
+
+import com.fasterxml.jackson.annotation.JsonValue;
+import lombok.Getter;
+
+import javax.validation.ValidationException;
+import java.util.Date;
+import java.util.Objects;
+
+/**
+ * A position in the appointment list, ordered by date and then id (the same order as the appointments page).
+ * Cursors are passed to and from the browser as "{epochMillis}_{id}".
+ * Occurrences of a recurring series have no id of their own, so their cursors use the series id negated instead,
+ * which can't clash with an appointment id
+ */
+@Getter
+public class AppointmentCursor implements Comparable<AppointmentCursor> {
+    private static final char SEPARATOR = '_';
+
+    private final Date date;
+    private final Integer id;
+
+    public AppointmentCursor(Date date, Integer id) {
+        this.date = date;
+        this.id = id;
+    }
+
+    public static AppointmentCursor of(AppointmentResponseDto appointment) {
+        Integer id = appointment.getSeriesId() == null ? appointment.getId() : -appointment.getSeriesId();
+        return new AppointmentCursor(appointment.getDate(), id);
+    }
+
+    /**
+     * Parses a cursor previously created with toString()
+     * @param value The encoded cursor
+     * @return The decoded cursor, or null if no cursor was given
+     * @throws ValidationException if the given value is not a valid cursor
+     */
+    public static AppointmentCursor parse(String value) throws ValidationException {
+        if (value == null || value.isEmpty()) {
+            return null;
+        }
+        int separatorIndex = value.lastIndexOf(SEPARATOR);
+        if (separatorIndex <= 0) {
+            throw new ValidationException("Invalid page cursor");
+        }
+        try {
+            long millis = Long.parseLong(value.substring(0, separatorIndex));
+            int id = Integer.parseInt(value.substring(separatorIndex + 1));
+            return new AppointmentCursor(new Date(millis), id);
+        } catch (NumberFormatException e) {
+            throw new ValidationException("Invalid page cursor");
+        }
+    }
+
+    @Override
+    public int compareTo(AppointmentCursor other) {
+        int comparedDates = date.compareTo(other.date);
+        return comparedDates == 0 ? id.compareTo(other.id) : comparedDates;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (!(obj instanceof AppointmentCursor)) {
+            return false;
+        }
+        AppointmentCursor other = (AppointmentCursor) obj;
+        return Objects.equals(date, other.date) && Objects.equals(id, other.id);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(date, id);
+    }
+
+    @JsonValue // so API clients can send cursors back in the same form as the webpage does
+    @Override
+    public String toString() {
+        return date.getTime() + String.valueOf(SEPARATOR) + id;
+    }
+}
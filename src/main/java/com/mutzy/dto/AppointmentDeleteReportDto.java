@@ -0,0 +1,23 @@
+package com.mutzy.dto;
+
+import lombok.Getter;
+import lombok.Setter;
+
+@Getter @Setter
+public class AppointmentDeleteReportDto {
+    private int deleted;
+
+    public AppointmentDeleteReportDto() {
+    }
+
+    public AppointmentDeleteReportDto(int deleted) {
+        this.deleted = deleted;
+    }
+
+    @Override
+    public String toString() {
+        return "AppointmentDeleteReportDto{" +
+                "deleted=" + deleted +
+                "}";
+    }
+}
@@ -0,0 +1,31 @@
+package com.mutzy.dto;
+
+import lombok.Getter;
+import lombok.Setter;
+
+import java.util.ArrayList;
+import java.util.List;
+
+@Getter @Setter
+public class AppointmentImportReportDto {
+    private int created;
+    private int rejected;
+    private List<AppointmentImportRowDto> rows = new ArrayList<>(); // in the same order as the imported appointments
+
+    public void addRow(AppointmentImportRowDto row) {
+        rows.add(row);
+        if (row.getStatus() == AppointmentImportRowDto.Status.CREATED) {
+            created++;
+        } else {
+            rejected++;
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "AppointmentImportReportDto{" +
+                "created=" + created + "," +
+                "rejected=" + rejected +
+                "}";
+    }
+}
@@ -0,0 +1,33 @@
+package com.mutzy.dto;
+
+import com.mutzy.utils.ValidationViolation;
+import lombok.Getter;
+import lombok.Setter;
+
+import java.util.Collections;
+import java.util.List;
+
+@Getter @Setter
+public class AppointmentImportRowDto {
+
+    public enum Status {
+        CREATED, // saved, and appointmentId is set
+        INVALID, // failed validation, see violations
+        FAILED // valid, but the database rejected the batch it was in
+    }
+
+    private int row; // 1 based position of the appointment in the imported file, not counting any CSV header
+    private Status status;
+    private Integer appointmentId;
+    private List<ValidationViolation> violations = Collections.emptyList();
+
+    @Override
+    public String toString() {
+        return "AppointmentImportRowDto{" +
+                "row=" + row + "," +
+                "status=" + status + "," +
+                "appointmentId=" + appointmentId + "," +
+                "violations=" + violations +
+                "}";
+    }
+}
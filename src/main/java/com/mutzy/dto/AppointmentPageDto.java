@@ -0,0 +1,23 @@
+package com.mutzy.dto;
+
+import lombok.Getter;
+import lombok.Setter;
+
+import java.util.Collections;
+import java.util.List;
+
+@Getter @Setter
+public class AppointmentPageDto {
+    private List<AppointmentResponseDto> appointments = Collections.emptyList();
+    private AppointmentCursor nextCursor; // null when this is the last page
+    private AppointmentCursor previousCursor; // null when this is the first page
+
+    @Override
+    public String toString() {
+        return "AppointmentPageDto{" +
+                "appointments=" + appointments.size() + "," +
+                "nextCursor=" + nextCursor + "," +
+                "previousCursor=" + previousCursor +
+                "}";
+    }
+}
@@ -8,6 +8,7 @@ public class AppointmentRequestDto {
     private String description;
     private String date;
     private String time;
+    private Integer durationMinutes; // optional, defaults to Constants.DEFAULT_APPOINTMENT_DURATION_MINUTES
     private Integer personId;
     private Integer locationId;
 
@@ -17,6 +18,7 @@ public class AppointmentRequestDto {
                 "description=" + description + "," +
                 "date=" + date + "," +
                 "time=" + time + "," +
+                "durationMinutes=" + durationMinutes + "," +
                 "personId=" + personId + "," +
                 "locationId=" + locationId +
                 "}";
@@ -1,5 +1,6 @@
 package com.mutzy.dto;
 
+import com.fasterxml.jackson.annotation.JsonInclude;
 import lombok.Getter;
 import lombok.Setter;
 
@@ -7,19 +8,28 @@ import java.util.Date;
 
 @Getter @Setter
 public class AppointmentResponseDto {
-    private Integer id;
+    private Integer id; // null for an occurrence of a recurring series
     private String description;
     private Date date;
+    private Integer durationMinutes;
     private PersonDto person;
     private LocationDto location;
 
+    // only set for an occurrence of a recurring series, which is identified by its series and when it was due to start
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private Integer seriesId;
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private Date occurrenceDate;
+
     @Override
     public String toString() {
         return "AppointmentResponseDto{" +
                 "description=" + description + "," +
                 "date=" + date + "," +
+                "durationMinutes=" + durationMinutes + "," +
                 "person=" + person + "," +
-                "location=" + location +
+                "location=" + location + "," +
+                "seriesId=" + seriesId +
                 "}";
     }
 }
@@ -0,0 +1,64 @@
+package com.mutzy.dto;
+
+import lombok.Getter;
+import lombok.Setter;
+
+import java.util.ArrayList;
+import java.util.List;
+
+@Getter @Setter
+public class AppointmentRollupDto {
+
+    public enum GroupBy {
+        ALL, // one count per period across every appointment
+        PERSON, // one count per period for each person, skipping appointments without a person
+        LOCATION // one count per period for each location, skipping appointments without a location
+    }
+
+    public enum Granularity {
+        DAY, // periods are "yyyy-MM-dd"
+        MONTH // periods are "yyyy-MM"
+    }
+
+    private GroupBy groupBy;
+    private Granularity granularity;
+    private String from; // first day counted, "yyyy-MM-dd"
+    private String to; // last day counted, "yyyy-MM-dd"
+    private List<Row> rows = new ArrayList<>(); // ordered by id and then period. Periods without appointments are left out
+
+    @Getter @Setter
+    public static class Row {
+        private Integer id; // the person or location id, or null when grouped by ALL
+        private String period;
+        private int count;
+
+        public Row() {
+        }
+
+        public Row(Integer id, String period, int count) {
+            this.id = id;
+            this.period = period;
+            this.count = count;
+        }
+
+        @Override
+        public String toString() {
+            return "Row{" +
+                    "id=" + id + "," +
+                    "period=" + period + "," +
+                    "count=" + count +
+                    "}";
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "AppointmentRollupDto{" +
+                "groupBy=" + groupBy + "," +
+                "granularity=" + granularity + "," +
+                "from=" + from + "," +
+                "to=" + to + "," +
+                "rows=" + rows.size() +
+                "}";
+    }
+}
@@ -0,0 +1,28 @@
+package com.mutzy.dto;
+
+import com.mutzy.domain.AppointmentSeries;
+import lombok.Getter;
+import lombok.Setter;
+
+/**
+ * An appointment that repeats. The date and time are those of the first occurrence, and either `until` or
+ * `occurrenceCount` (or both) must be given so that the series ends
+ */
+@Getter @Setter
+public class AppointmentSeriesRequestDto extends AppointmentRequestDto {
+    private AppointmentSeries.Frequency frequency;
+    private Integer repeatInterval; // optional, defaults to every day, week or month
+    private String until; // the last day an occurrence can start on, "yyyy-MM-dd"
+    private Integer occurrenceCount;
+
+    @Override
+    public String toString() {
+        return "AppointmentSeriesRequestDto{" +
+                "appointment=" + super.toString() + "," +
+                "frequency=" + frequency + "," +
+                "repeatInterval=" + repeatInterval + "," +
+                "until=" + until + "," +
+                "occurrenceCount=" + occurrenceCount +
+                "}";
+    }
+}
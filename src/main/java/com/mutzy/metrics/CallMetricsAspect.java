@@ -0,0 +1,131 @@
+package com.mutzy.metrics;
+
+import com.mutzy.dao.AppointmentDao;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+import org.aspectj.lang.reflect.MethodSignature;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import org.springframework.web.server.ResponseStatusException;
+
+import javax.validation.ValidationException;
+import java.lang.reflect.Method;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Times every controller endpoint, AppointmentService method and DAO call, recording them under the
+ * "appointments.calls" timer tagged with the layer, class, method and outcome of the call.
+ * The timers publish histogram buckets, so percentiles such as p99 can be worked out from the Prometheus export.
+ * <p>
+ * A call that throws a ValidationException is a validation failure, and one that throws anything else is an error.
+ * Code that catches an exception and carries on (e.g. to show the user an error message) should call
+ * reportOutcome so that the call isn't recorded as a success
+ */
+@Aspect
+@Component
+public class CallMetricsAspect {
+
+    public static final String TIMER_NAME = "appointments.calls";
+
+    // the outcome reported by the innermost timed call on this thread, if it has reported one
+    private static final ThreadLocal<Outcome> reportedOutcome = new ThreadLocal<>();
+
+    private final MeterRegistry meterRegistry;
+    // keyed by class as well as method, since every DAO shares the same CrudRepository methods. Indexed by Outcome.ordinal()
+    private final Map<Class<?>, Map<Method, Timer[]>> timers = new ConcurrentHashMap<>();
+
+    @Autowired
+    public CallMetricsAspect(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+    }
+
+    /**
+     * Records the outcome of the timed call currently running on this thread, for calls that handle their own failures
+     */
+    public static void reportOutcome(Outcome outcome) {
+        reportedOutcome.set(outcome);
+    }
+
+    @Around("(@within(org.springframework.stereotype.Controller) || @within(org.springframework.web.bind.annotation.RestController))" +
+            " && execution(public * com.mutzy.controller..*(..))")
+    public Object timeController(ProceedingJoinPoint joinPoint) throws Throwable {
+        return time(joinPoint, "controller");
+    }
+
+    @Around("execution(public * com.mutzy.service.AppointmentService.*(..))")
+    public Object timeService(ProceedingJoinPoint joinPoint) throws Throwable {
+        return time(joinPoint, "service");
+    }
+
+    @Around("execution(public * com.mutzy.dao.*Dao+.*(..))")
+    public Object timeDao(ProceedingJoinPoint joinPoint) throws Throwable {
+        return time(joinPoint, "dao");
+    }
+
+    private Object time(ProceedingJoinPoint joinPoint, String layer) throws Throwable {
+        Outcome outerOutcome = reportedOutcome.get();
+        reportedOutcome.remove();
+        long start = System.nanoTime();
+        Outcome outcome = Outcome.SUCCESS;
+        try {
+            Object result = joinPoint.proceed();
+            if (reportedOutcome.get() != null) {
+                outcome = reportedOutcome.get();
+            }
+            return result;
+        } catch (ValidationException e) {
+            outcome = Outcome.VALIDATION_FAILURE;
+            throw e;
+        } catch (ResponseStatusException e) {
+            outcome = e.getStatus().is4xxClientError() ? Outcome.VALIDATION_FAILURE : Outcome.ERROR;
+            throw e;
+        } catch (Throwable e) {
+            outcome = Outcome.ERROR;
+            throw e;
+        } finally {
+            long duration = System.nanoTime() - start;
+            Method method = ((MethodSignature) joinPoint.getSignature()).getMethod();
+            timerFor(joinPoint.getTarget().getClass(), method, layer, outcome).record(duration, TimeUnit.NANOSECONDS);
+            if (outerOutcome == null) {
+                reportedOutcome.remove();
+            } else {
+                reportedOutcome.set(outerOutcome);
+            }
+        }
+    }
+
+    private Timer timerFor(Class<?> targetClass, Method method, String layer, Outcome outcome) {
+        Map<Method, Timer[]> classTimers = timers.computeIfAbsent(targetClass, c -> new ConcurrentHashMap<>());
+        Timer[] outcomeTimers = classTimers.computeIfAbsent(method, m -> new Timer[Outcome.values().length]);
+        Timer timer = outcomeTimers[outcome.ordinal()];
+        if (timer == null) {
+            // registered on first use so that outcomes a method never has don't each publish a set of empty histogram buckets.
+            // Two threads may race to do this, which is harmless as the registry hands both of them the same timer
+            timer = Timer.builder(TIMER_NAME)
+                    .description("Time taken by controller, service and DAO calls")
+                    .tag("layer", layer)
+                    .tag("class", className(targetClass))
+                    .tag("method", method.getName())
+                    .tag("outcome", outcome.getTagValue())
+                    .publishPercentileHistogram()
+                    .register(meterRegistry);
+            outcomeTimers[outcome.ordinal()] = timer;
+        }
+        return timer;
+    }
+
+    private static String className(Class<?> targetClass) {
+        // DAOs are generated proxies, so name them after their repository interface rather than the proxy class
+        for (Class<?> implemented : targetClass.getInterfaces()) {
+            if (implemented.getPackage() == AppointmentDao.class.getPackage()) {
+                return implemented.getSimpleName();
+            }
+        }
+        return targetClass.getSimpleName();
+    }
+}
@@ -0,0 +1,20 @@
+package com.mutzy.metrics;
+
+/**
+ * How a timed call ended, recorded as the "outcome" tag of its timer
+ */
+public enum Outcome {
+    SUCCESS("success"),
+    VALIDATION_FAILURE("validation_failure"),
+    ERROR("error");
+
+    private final String tagValue;
+
+    Outcome(String tagValue) {
+        this.tagValue = tagValue;
+    }
+
+    public String getTagValue() {
+        return tagValue;
+    }
+}
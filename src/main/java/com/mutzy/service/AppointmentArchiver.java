@@ -0,0 +1,148 @@
+package com.mutzy.service;
+
+import com.mutzy.dao.AppointmentDao;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Moves appointments that started more than appointments.archive.horizon ago out of the appointments table and into
+ * appointments_archive, so the appointments table, and the AppointmentView loaded from it, only hold the appointments
+ * still worth showing. Archived appointments can still be read through ArchivedAppointmentDao, and are still counted
+ * in the view's rollups.
+ * Enabled with appointments.archive.enabled. When disabled no thread is started.
+ * <p>
+ * Runs every appointments.archive.interval on a background thread. Appointments are moved appointments.archive.batch-size
+ * at a time, each batch in its own short transaction, pausing appointments.archive.batch-pause between batches,
+ * so a large backlog never holds locks on the appointments table for long or starves requests of connections.
+ */
+@Component
+@Slf4j
+public class AppointmentArchiver implements SmartLifecycle {
+
+    private final AppointmentDao appointmentDao;
+    private final AppointmentView appointmentView;
+
+    private final boolean enabled;
+    private final long horizonMillis;
+    private final int batchSize;
+    private final long intervalMillis;
+    private final long batchPauseMillis;
+
+    private final Counter archivedCounter;
+
+    private volatile boolean running;
+    private ScheduledExecutorService scheduler;
+
+    @Autowired
+    public AppointmentArchiver(AppointmentDao appointmentDao, AppointmentView appointmentView, MeterRegistry meterRegistry,
+                               @Value("${appointments.archive.enabled:false}") boolean enabled,
+                               @Value("${appointments.archive.horizon:365d}") Duration horizon,
+                               @Value("${appointments.archive.batch-size:1000}") int batchSize,
+                               @Value("${appointments.archive.interval:1h}") Duration interval,
+                               @Value("${appointments.archive.batch-pause:100ms}") Duration batchPause) {
+        this.appointmentDao = appointmentDao;
+        this.appointmentView = appointmentView;
+        this.enabled = enabled;
+        this.horizonMillis = horizon.toMillis();
+        this.batchSize = batchSize;
+        this.intervalMillis = interval.toMillis();
+        this.batchPauseMillis = batchPause.toMillis();
+        this.archivedCounter = Counter.builder("appointments.archived")
+                .description("Appointments moved into the archive")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Moves every appointment starting before the given date into the archive, one batch at a time
+     * @return The number of appointments moved
+     */
+    public int archiveBefore(Date cutoff) {
+        int archived = 0;
+        while (true) {
+            List<Integer> ids = appointmentDao.findIdsBefore(cutoff, PageRequest.of(0, batchSize));
+            if (ids.isEmpty()) {
+                break;
+            }
+            int moved = appointmentDao.moveToArchive(ids);
+            appointmentView.archiveAppointments(ids);
+            archivedCounter.increment(moved);
+            archived += moved;
+            if (ids.size() < batchSize || !pauseBetweenBatches()) {
+                break;
+            }
+        }
+        return archived;
+    }
+
+    @Override
+    public synchronized void start() {
+        if (!enabled || running) {
+            return;
+        }
+        running = true;
+        scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> new Thread(runnable, "appointment-archiver"));
+        scheduler.scheduleWithFixedDelay(this::archivePastAppointments, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+        log.info("Archiving appointments older than {} every {}", Duration.ofMillis(horizonMillis), Duration.ofMillis(intervalMillis));
+    }
+
+    @Override
+    public synchronized void stop() {
+        if (!running) {
+            return;
+        }
+        running = false;
+        scheduler.shutdownNow(); // a run in progress stops after its current batch, which is committed or rolled back as a whole
+        try {
+            scheduler.awaitTermination(1, TimeUnit.MINUTES);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        log.info("Stopped archiving appointments");
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    private void archivePastAppointments() {
+        long start = System.currentTimeMillis();
+        try {
+            int archived = archiveBefore(new Date(start - horizonMillis));
+            if (archived > 0) {
+                log.info("Archived {} appointments in {}ms", archived, System.currentTimeMillis() - start);
+            }
+        } catch (Exception e) {
+            // caught so the scheduler keeps running it, as it would stop after an uncaught exception
+            log.error("An unexpected exception occurred archiving appointments", e);
+        }
+    }
+
+    /**
+     * @return Whether to carry on with the next batch, which is not the case once the archiver is stopping
+     */
+    private boolean pauseBetweenBatches() {
+        if (batchPauseMillis > 0) {
+            try {
+                Thread.sleep(batchPauseMillis);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return false;
+            }
+        }
+        return !Thread.currentThread().isInterrupted();
+    }
+}
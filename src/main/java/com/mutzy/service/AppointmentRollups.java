@@ -0,0 +1,135 @@
+package com.mutzy.service;
+
+import com.mutzy.dto.AppointmentRollupDto.Granularity;
+import com.mutzy.dto.AppointmentRollupDto.GroupBy;
+import com.mutzy.dto.AppointmentRollupDto.Row;
+import com.mutzy.utils.DateTimeCodec;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+/**
+ * Running counts of appointments per day, in total and for each person and location, so dashboards can ask how many
+ * appointments there are over a range of dates without reading the appointments themselves.
+ * <p>
+ * Days are the packed yyyyMMdd ints used by DateTimeCodec, in the server's time zone, which sort in date order.
+ * Each count is kept sorted by day, so counting a range is a seek to its first day followed by a walk over the days
+ * in the range that have appointments. Monthly counts are added up from the daily ones as they are read.
+ * Days whose count drops to zero are removed, so empty days cost nothing.
+ * <p>
+ * Safe to read from many threads at once. Writes must not run concurrently with each other.
+ */
+public class AppointmentRollups {
+
+    private static final Comparator<Row> ROW_ORDER = Comparator.comparing(Row::getId, Comparator.nullsFirst(Comparator.naturalOrder()))
+            .thenComparing(Row::getPeriod);
+
+    private final NavigableMap<Integer, Integer> allDays = new ConcurrentSkipListMap<>();
+    private final Map<Integer, NavigableMap<Integer, Integer>> personDays = new ConcurrentHashMap<>();
+    private final Map<Integer, NavigableMap<Integer, Integer>> locationDays = new ConcurrentHashMap<>();
+
+    /**
+     * Counts an appointment
+     * @param personId The appointment's person, or null if it doesn't have one
+     * @param locationId The appointment's location, or null if it doesn't have one
+     * @param date When the appointment starts
+     */
+    public void add(Integer personId, Integer locationId, Date date) {
+        change(personId, locationId, date, 1);
+    }
+
+    /**
+     * Stops counting an appointment previously added with the same person, location and date
+     */
+    public void remove(Integer personId, Integer locationId, Date date) {
+        change(personId, locationId, date, -1);
+    }
+
+    /**
+     * Counts the appointments between two days
+     * @param from The first day to count, packed as by DateTimeCodec.parseDate
+     * @param to The last day to count, packed as by DateTimeCodec.parseDate
+     * @return One row for each id and period with any appointments, ordered by id and then period
+     */
+    public List<Row> count(GroupBy groupBy, Granularity granularity, int from, int to) {
+        if (groupBy == GroupBy.ALL) {
+            return rowsOf(null, allDays, granularity, from, to);
+        }
+        Map<Integer, NavigableMap<Integer, Integer>> days = groupBy == GroupBy.PERSON ? personDays : locationDays;
+        List<Integer> ids = new ArrayList<>(days.keySet());
+        Collections.sort(ids);
+        List<Row> rows = new ArrayList<>();
+        for (Integer id : ids) {
+            rows.addAll(rowsOf(id, days.get(id), granularity, from, to));
+        }
+        return rows;
+    }
+
+    /**
+     * Adds up two sets of counts for the same range, e.g. from two AppointmentRollups counting different appointments
+     * @param first Rows ordered by id and then period, as returned by count
+     * @param second Rows ordered by id and then period, as returned by count
+     * @return One row for each id and period in either, ordered by id and then period
+     */
+    public static List<Row> merge(List<Row> first, List<Row> second) {
+        List<Row> merged = new ArrayList<>(first.size() + second.size());
+        int i = 0;
+        int j = 0;
+        while (i < first.size() || j < second.size()) {
+            int compared = i == first.size() ? 1 : j == second.size() ? -1 : ROW_ORDER.compare(first.get(i), second.get(j));
+            if (compared < 0) {
+                merged.add(first.get(i++));
+            } else if (compared > 0) {
+                merged.add(second.get(j++));
+            } else {
+                Row row = first.get(i++);
+                merged.add(new Row(row.getId(), row.getPeriod(), row.getCount() + second.get(j++).getCount()));
+            }
+        }
+        return merged;
+    }
+
+    private void change(Integer personId, Integer locationId, Date date, int delta) {
+        int day = DateTimeCodec.toPackedDate(date);
+        change(allDays, day, delta);
+        if (personId != null) {
+            change(personDays.computeIfAbsent(personId, id -> new ConcurrentSkipListMap<>()), day, delta);
+        }
+        if (locationId != null) {
+            change(locationDays.computeIfAbsent(locationId, id -> new ConcurrentSkipListMap<>()), day, delta);
+        }
+    }
+
+    private static void change(NavigableMap<Integer, Integer> days, int day, int delta) {
+        days.compute(day, (d, count) -> {
+            int updated = (count == null ? 0 : count) + delta;
+            return updated > 0 ? updated : null;
+        });
+    }
+
+    private static List<Row> rowsOf(Integer id, NavigableMap<Integer, Integer> days, Granularity granularity, int from, int to) {
+        if (days == null) {
+            return Collections.emptyList();
+        }
+        // keyed by the packed date of each period's first day
+        TreeMap<Integer, Integer> periods = new TreeMap<>();
+        for (Map.Entry<Integer, Integer> day : days.subMap(from, true, to, true).entrySet()) {
+            int period = granularity == Granularity.MONTH ? day.getKey() / 100 * 100 + 1 : day.getKey();
+            periods.merge(period, day.getValue(), Integer::sum);
+        }
+        List<Row> rows = new ArrayList<>(periods.size());
+        for (Map.Entry<Integer, Integer> period : periods.entrySet()) {
+            String formatted = DateTimeCodec.formatDate(period.getKey());
+            rows.add(new Row(id, granularity == Granularity.MONTH ? formatted.substring(0, 7) : formatted, period.getValue()));
+        }
+        return rows;
+    }
+}
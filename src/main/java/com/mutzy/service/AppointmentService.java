@@ -1,27 +1,60 @@
 package com.mutzy.service;
 
 import com.mutzy.dao.AppointmentDao;
+import com.mutzy.dao.AppointmentDetails;
+import com.mutzy.dao.AppointmentRow;
+import com.mutzy.dao.AppointmentSeriesDao;
+import com.mutzy.dao.ArchivedAppointmentDao;
+import com.mutzy.dao.ArchivedAppointmentKey;
 import com.mutzy.dao.LocationDao;
 import com.mutzy.dao.PersonDao;
+import com.mutzy.dao.ReferenceDataCache;
+import com.mutzy.dao.SeriesOverrideDao;
 import com.mutzy.domain.Appointment;
+import com.mutzy.domain.AppointmentSeries;
 import com.mutzy.domain.Location;
 import com.mutzy.domain.Person;
+import com.mutzy.domain.SeriesOverride;
+import com.mutzy.dto.AppointmentCursor;
+import com.mutzy.dto.AppointmentImportReportDto;
+import com.mutzy.dto.AppointmentImportRowDto;
+import com.mutzy.dto.AppointmentPageDto;
 import com.mutzy.dto.AppointmentRequestDto;
 import com.mutzy.dto.AppointmentResponseDto;
+import com.mutzy.dto.AppointmentRollupDto;
+import com.mutzy.dto.AppointmentSeriesRequestDto;
 import com.mutzy.dto.LocationDto;
 import com.mutzy.dto.PersonDto;
+import com.mutzy.metrics.CallMetricsAspect;
+import com.mutzy.metrics.Outcome;
+import com.mutzy.utils.DateTimeCodec;
 import com.mutzy.utils.ObjectMapper;
 import com.mutzy.utils.ValidationUtils;
+import com.mutzy.utils.ValidationViolation;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.commons.lang3.compare.ObjectToStringComparator;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
 import javax.validation.ValidationException;
+import java.time.Duration;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Comparator;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
-import java.util.Optional;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Consumer;
 import java.util.stream.Collectors;
 
 @Service
@@ -32,95 +65,603 @@ public class AppointmentService {
     private final PersonDao personDao;
     private final LocationDao locationDao;
     private final ValidationUtils validationUtils;
+    private final AppointmentView appointmentView;
+    private final ReferenceDataCache referenceDataCache;
+    private final AppointmentWriteBehindQueue writeBehindQueue;
+    private final AppointmentSeriesDao appointmentSeriesDao;
+    private final SeriesOverrideDao seriesOverrideDao;
+    private final ArchivedAppointmentDao archivedAppointmentDao;
 
-    private static final AppointmentComparator appointmentComparator = new AppointmentComparator();
-    private static final PersonComparator personComparator = new PersonComparator();
-    private static final LocationComparator locationComparator = new LocationComparator();
+    private static final int IMPORT_BATCH_SIZE = 1000;
+    private static final int DELETE_BATCH_SIZE = 1000; // ids per DELETE statement, to keep each statement a sensible size
+
+    static final AppointmentComparator appointmentComparator = new AppointmentComparator();
+    static final PersonComparator personComparator = new PersonComparator();
+    static final LocationComparator locationComparator = new LocationComparator();
 
     @Autowired
-    public AppointmentService(AppointmentDao appointmentDao, PersonDao personDao, LocationDao locationDao, ValidationUtils validationUtils) {
+    public AppointmentService(AppointmentDao appointmentDao, PersonDao personDao, LocationDao locationDao,
+                              ValidationUtils validationUtils, AppointmentView appointmentView, ReferenceDataCache referenceDataCache,
+                              AppointmentWriteBehindQueue writeBehindQueue, AppointmentSeriesDao appointmentSeriesDao,
+                              SeriesOverrideDao seriesOverrideDao, ArchivedAppointmentDao archivedAppointmentDao) {
         this.appointmentDao = appointmentDao;
         this.personDao = personDao;
         this.locationDao = locationDao;
         this.validationUtils = validationUtils;
+        this.appointmentView = appointmentView;
+        this.referenceDataCache = referenceDataCache;
+        this.writeBehindQueue = writeBehindQueue;
+        this.appointmentSeriesDao = appointmentSeriesDao;
+        this.seriesOverrideDao = seriesOverrideDao;
+        this.archivedAppointmentDao = archivedAppointmentDao;
     }
 
+    /**
+     * Reads every appointment from the database. When read replicas are configured this is served by one of them
+     */
+    @Transactional(readOnly = true)
     public List<AppointmentResponseDto> findAllAppointments() {
-        List<Appointment> appointments = new ArrayList<>();
-        Iterable<Appointment> results = appointmentDao.findAll();
-        results.forEach(appointments::add);
-        appointments.sort(appointmentComparator);
-        return appointments.stream().map(this::mapAppointmentToResponseDto).collect(Collectors.toList());
+        List<AppointmentDetails> appointments = new ArrayList<>(appointmentDao.findAllDetails());
+        appointments.sort(Comparator.comparing(AppointmentDetails::getAppointment, appointmentComparator));
+        return appointments.stream().map(ObjectMapper.getInstance()::mapDomainToDto).collect(Collectors.toList());
+    }
+
+    /**
+     * Reads every appointment, in the same order as findAllAppointments(), straight from a database cursor.
+     * Unlike findAllAppointments() the appointments are never all held in memory at once.
+     * When read replicas are configured this is served by one of them
+     * @param consumer Called with each appointment as it is read
+     */
+    @Transactional(readOnly = true)
+    public void streamAllAppointments(Consumer<AppointmentResponseDto> consumer) {
+        appointmentDao.streamAllDetails(details -> consumer.accept(ObjectMapper.getInstance().mapDomainToDto(details)));
+    }
+
+    /**
+     * Reads every appointment in the same way as streamAllAppointments(), but as plain rows, without creating any objects per row.
+     * For exports that write each row straight out. When read replicas are configured this is served by one of them
+     * @param consumer Called with each row as it is read. The same AppointmentRow is passed every time, holding the current row
+     */
+    @Transactional(readOnly = true)
+    public void streamAllAppointmentRows(Consumer<AppointmentRow> consumer) {
+        appointmentDao.streamAllRows(consumer);
+    }
+
+    /**
+     * Finds a single page of appointments, in the same order as findAllAppointments().
+     * This is served from the in-memory AppointmentView rather than the database
+     * @param after Return the appointments directly after this position
+     * @param before Return the appointments directly before this position
+     * @param pageSize The maximum number of appointments on the page
+     * @return The page of appointments, with cursors for the pages either side of it
+     */
+    public AppointmentPageDto findAppointmentPage(AppointmentCursor after, AppointmentCursor before, int pageSize) {
+        return appointmentView.findPage(after, before, pageSize);
+    }
+
+    /**
+     * Finds a single page of the appointments matching a search, in the same order as findAllAppointments().
+     * This is served from the word index in the AppointmentView rather than the database
+     * @param query The words to search for. Every word must match the start of a word in the appointment's description,
+     * or its person's name or affiliation, or its location's name or description, ignoring case
+     * @param after Return the matching appointments after this position, or null for the first page
+     * @param pageSize The maximum number of appointments on the page
+     * @return The page of appointments, with a cursor for the next page
+     * @throws ValidationException if the query has characters that can't appear in any text, or no words at all
+     */
+    public AppointmentPageDto searchAppointments(String query, AppointmentCursor after, int pageSize) throws ValidationException {
+        validationUtils.validateSearchQuery(query);
+        return appointmentView.findSearchPage(query, after, pageSize);
+    }
+
+    /**
+     * Counts the appointments between two days, per day or per month, and in total or per person or location.
+     * This is served from running totals in the AppointmentView, so it takes time proportional to the number of days
+     * with appointments in the range rather than the number of appointments
+     * @param from The first day to count, "yyyy-MM-dd"
+     * @param to The last day to count, "yyyy-MM-dd"
+     * @throws ValidationException if either date is invalid, or the range ends before it starts
+     */
+    public AppointmentRollupDto rollUpAppointments(AppointmentRollupDto.GroupBy groupBy, AppointmentRollupDto.Granularity granularity,
+                                                   String from, String to) throws ValidationException {
+        int fromDay = parseDay(from);
+        int toDay = parseDay(to);
+        checkDayRange(fromDay, toDay);
+        AppointmentRollupDto rollup = new AppointmentRollupDto();
+        rollup.setGroupBy(groupBy);
+        rollup.setGranularity(granularity);
+        rollup.setFrom(from);
+        rollup.setTo(to);
+        rollup.setRows(appointmentView.countAppointments(groupBy, granularity, fromDay, toDay));
+        return rollup;
+    }
+
+    /**
+     * Finds a single page of the appointments that have been archived (see AppointmentArchiver), from one day to another inclusive,
+     * ordered by date and then id. Archived appointments are never held in the AppointmentView, so this always reads the database.
+     * When read replicas are configured this is served by one of them
+     * @param from The first day to include, "yyyy-MM-dd"
+     * @param to The last day to include, "yyyy-MM-dd"
+     * @param after Return the archived appointments after this position, or null for the first page
+     * @param pageSize The maximum number of appointments on the page
+     * @return The page of appointments, with a cursor for the next page
+     * @throws ValidationException if either date is invalid, or the range ends before it starts
+     */
+    @Transactional(readOnly = true)
+    public AppointmentPageDto findArchivedAppointments(String from, String to, AppointmentCursor after, int pageSize) throws ValidationException {
+        int fromDay = parseDay(from);
+        int toDay = parseDay(to);
+        checkDayRange(fromDay, toDay);
+        Date start = DateTimeCodec.toDate(fromDay, 0);
+        Date end = DateTimeCodec.startOfDayAfter(toDay);
+        PageRequest firstRows = PageRequest.of(0, pageSize + 1);
+        List<AppointmentDetails> details = after == null || after.getDate().before(start)
+                ? archivedAppointmentDao.findFirstDetailsBetween(start, end, firstRows)
+                : archivedAppointmentDao.findDetailsAfter(after.getDate(), after.getId(), end, firstRows);
+        List<AppointmentResponseDto> appointments = details.stream()
+                .limit(pageSize)
+                .map(ObjectMapper.getInstance()::mapDomainToDto)
+                .collect(Collectors.toList());
+        AppointmentPageDto page = new AppointmentPageDto();
+        page.setAppointments(appointments);
+        page.setNextCursor(details.size() > pageSize ? AppointmentCursor.of(appointments.get(pageSize - 1)) : null);
+        return page;
+    }
+
+    /**
+     * @return A version number for everything shown on the appointments page, which changes whenever any of it does.
+     * Reading it never touches the database
+     */
+    public long getDataVersion() {
+        return appointmentView.getDataVersion();
     }
 
     public List<Person> findAllPeople() {
-        List<Person> people = new ArrayList<>();
-        Iterable<Person> results = personDao.findAll();
-        results.forEach(people::add);
-        people.sort(personComparator);
-        return people;
+        return appointmentView.findAllPeople();
     }
 
     public List<Location> findAllLocations() {
-        List<Location> locations = new ArrayList<>();
-        Iterable<Location> results = locationDao.findAll();
-        results.forEach(locations::add);
-        locations.sort(locationComparator);
-        return locations;
+        return appointmentView.findAllLocations();
+    }
+
+    /**
+     * Reloads the in-memory AppointmentView from the database.
+     * Only needed if the database has been changed by something other than this service
+     */
+    public void rebuildAppointmentView() {
+        appointmentView.rebuild();
     }
 
     /**
      * Attempts to save the given appointment.
-     * Can throw a ValidationException if the given AppointmentDto fails validation
+     * Can throw a ValidationException if the given AppointmentDto fails validation, including when its person or location
+     * is already booked at that time. Double bookings are found using the view's BookingIndex rather than the database,
+     * and the appointment's time is reserved in it as soon as it passes, so two requests for the same time can't both be accepted.
+     * With write-behind the appointment is saved in a batch by AppointmentWriteBehindQueue, and this waits for that batch,
+     * for up to the queue's save timeout
      * @param appointmentRequestDto The Appointment object to save
      * @return The created Appointment object
      */
     public AppointmentResponseDto createAppointment(AppointmentRequestDto appointmentRequestDto) throws ValidationException {
-        validationUtils.validateAppointmentDto(appointmentRequestDto);
+        Date date = validationUtils.validateAppointmentDto(appointmentRequestDto);
+        BookingReservation reservation = appointmentView.reserve(held -> {
+            validationUtils.validateBookings(appointmentRequestDto, date, held.getBookings());
+            held.book(appointmentRequestDto.getPersonId(), appointmentRequestDto.getLocationId(), date, ValidationUtils.durationOf(appointmentRequestDto));
+        });
+        boolean queued = false; // once queued, the write-behind queue adds or releases the reservation
         try {
-            Appointment appointment = ObjectMapper.getInstance().mapDtoToDomain(appointmentRequestDto);
+            Appointment appointment = ObjectMapper.getInstance().mapDtoToDomain(appointmentRequestDto, date);
+            if (writeBehindQueue.isEnabled()) {
+                CompletableFuture<AppointmentResponseDto> saved = writeBehindQueue.submit(appointment, reservation);
+                queued = true;
+                Duration saveTimeout = writeBehindQueue.getSaveTimeout();
+                return saved.get(saveTimeout.toNanos(), TimeUnit.NANOSECONDS);
+            }
             Appointment savedAppointment = appointmentDao.save(appointment);
-            return mapAppointmentToResponseDto(savedAppointment);
+            AppointmentResponseDto savedDto = ObjectMapper.getInstance().mapDomainToDto(referenceDataCache.findDetails(savedAppointment));
+            appointmentView.addAppointments(Collections.singletonList(savedDto), reservation);
+            return savedDto;
+        } catch (ExecutionException e) {
+            CallMetricsAspect.reportOutcome(Outcome.ERROR);
+            log.error("An unexpected exception occurred saving a queued appointment", e.getCause());
+            return null;
+        } catch (TimeoutException e) {
+            // it may yet be saved, in which case it's added to the view then, but its time is no longer held for it meanwhile
+            appointmentView.release(reservation);
+            CallMetricsAspect.reportOutcome(Outcome.ERROR);
+            log.error("Gave up waiting for a queued appointment to be saved after {}", writeBehindQueue.getSaveTimeout());
+            return null;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            if (!queued) {
+                appointmentView.release(reservation);
+            }
+            CallMetricsAspect.reportOutcome(Outcome.ERROR);
+            log.error("Interrupted while waiting for an appointment to be saved", e);
+            return null;
         } catch (Exception e) {
+            if (!queued) {
+                appointmentView.release(reservation);
+            }
+            CallMetricsAspect.reportOutcome(Outcome.ERROR);
             log.error("An unexpected exception occurred creating an appointment", e);
             return null;
         }
     }
 
-    public void deleteAppointment(Integer appointmentId) {
-        appointmentDao.deleteById(appointmentId);
+    /**
+     * Attempts to save a recurring series, as a single row however many times it repeats. Its occurrences are worked out
+     * whenever they're needed rather than saved, see RecurringSeries.
+     * Can throw a ValidationException if the series fails validation, including when any of its occurrences double books
+     * its person or location, which is checked and reserved in the same way as createAppointment does
+     * @return The created series
+     */
+    public AppointmentSeries createSeries(AppointmentSeriesRequestDto seriesRequestDto) throws ValidationException {
+        Date start = validationUtils.validateSeriesDto(seriesRequestDto);
+        AppointmentSeries series = ObjectMapper.getInstance().mapDtoToDomain(seriesRequestDto, start);
+        RecurringSeries unsaved = toRecurringSeries(series);
+        BookingReservation reservation = appointmentView.reserve(held -> {
+            validationUtils.validateSeriesOccurrences(unsaved, held.getBookings());
+            held.bookSeries(unsaved);
+        });
+        try {
+            AppointmentSeries savedSeries = appointmentSeriesDao.save(series);
+            appointmentView.putSeries(toRecurringSeries(savedSeries), reservation);
+            return savedSeries;
+        } catch (Exception e) {
+            appointmentView.release(reservation);
+            CallMetricsAspect.reportOutcome(Outcome.ERROR);
+            log.error("An unexpected exception occurred creating a series", e);
+            return null;
+        }
     }
 
-    private AppointmentResponseDto mapAppointmentToResponseDto(Appointment appointment) {
-        AppointmentResponseDto dto = new AppointmentResponseDto();
-        dto.setId(appointment.getId());
-        dto.setDate(appointment.getDate());
-        dto.setDescription(appointment.getDescription());
-        if (appointment.getPersonId() != null) {
-            Optional<Person> person = personDao.findById(appointment.getPersonId());
-            if (person.isPresent()) {
-                dto.setPerson(ObjectMapper.getInstance().mapDomainToDto(person.get()));
-            } else {
-                log.error("Cannot find person with id {}", appointment.getPersonId());
+    // Occurrences are cancelled and changed through AppointmentView.updateSeries, so two requests for the same series
+    // can't both start from the series as it was before either of them, and the second overwrite the first
+
+    /**
+     * Cancels a single occurrence of a series, leaving the rest of the series as it is
+     * @param date The day the occurrence was due, "yyyy-MM-dd"
+     * @param time The time the occurrence was due, "HH:mm"
+     * @return Whether the series exists
+     * @throws ValidationException if the series has no occurrence due at that date and time
+     */
+    public boolean cancelOccurrence(Integer seriesId, String date, String time) throws ValidationException {
+        RecurringSeries updated = appointmentView.updateSeries(seriesId, series -> {
+            Date occurrenceDate = parseOccurrenceDate(series, date, time);
+            SeriesOverride override = newOverride(series, occurrenceDate);
+            override.setCancelled(true);
+            return series.withOverride(saveOverride(override));
+        });
+        return updated != null;
+    }
+
+    /**
+     * Changes a single occurrence of a series, e.g. to move this week's meeting to another day, leaving the rest of the series
+     * as it is. The occurrence keeps the series' person and location, and is checked for double bookings like a new appointment
+     * @param date The day the occurrence was due, "yyyy-MM-dd"
+     * @param time The time the occurrence was due, "HH:mm"
+     * @param changes The occurrence's new description, date, time and duration
+     * @return The changed occurrence, or null if the series doesn't exist
+     * @throws ValidationException if the series has no occurrence due at that date and time, or the changes aren't valid
+     */
+    public AppointmentResponseDto changeOccurrence(Integer seriesId, String date, String time, AppointmentRequestDto changes) throws ValidationException {
+        RecurringSeries updated = appointmentView.updateSeries(seriesId, series -> {
+            Date occurrenceDate = parseOccurrenceDate(series, date, time);
+            if (changes != null) {
+                changes.setPersonId(series.getPersonId());
+                changes.setLocationId(series.getLocationId());
             }
+            // checked under the view's write lock, so nothing can be booked at the new time until the change is in the view
+            Date start = validationUtils.validateOccurrenceChange(changes, appointmentView.getBookings(), seriesId, occurrenceDate);
+            // it may move onto a cancelled occurrence's time, but not onto one still due or already moved there
+            if (series.hasOtherOccurrenceAt(start, occurrenceDate)) {
+                throw new ValidationException("Another occurrence of the series is due at that time");
+            }
+            Appointment changed = ObjectMapper.getInstance().mapDtoToDomain(changes, start);
+            SeriesOverride override = newOverride(series, occurrenceDate);
+            override.setDescription(changed.getDescription());
+            override.setDate(start);
+            override.setDurationMinutes(changed.getDurationMinutes());
+            return series.withOverride(saveOverride(override));
+        });
+        return updated == null ? null : updated.findOccurrence(DateTimeCodec.parse(date, time));
+    }
+
+    /**
+     * Deletes a series, with every one of its occurrences
+     * @return Whether the series existed
+     */
+    @Transactional
+    public boolean deleteSeries(Integer seriesId) {
+        if (appointmentView.getSeries(seriesId) == null) {
+            return false;
         }
-        if (appointment.getLocationId() != null) {
-            Optional<Location> location = locationDao.findById(appointment.getLocationId());
-            if (location.isPresent()) {
-                dto.setLocation(ObjectMapper.getInstance().mapDomainToDto(location.get()));
+        seriesOverrideDao.deleteBySeriesId(seriesId);
+        appointmentSeriesDao.deleteById(seriesId);
+        appointmentView.removeSeries(seriesId);
+        return true;
+    }
+
+    private RecurringSeries toRecurringSeries(AppointmentSeries series) {
+        PersonDto person = series.getPersonId() == null ? null :
+                referenceDataCache.findPerson(series.getPersonId()).map(ObjectMapper.getInstance()::mapDomainToDto).orElse(null);
+        LocationDto location = series.getLocationId() == null ? null :
+                referenceDataCache.findLocation(series.getLocationId()).map(ObjectMapper.getInstance()::mapDomainToDto).orElse(null);
+        return new RecurringSeries(series, person, location, Collections.emptyList());
+    }
+
+    private static Date parseOccurrenceDate(RecurringSeries series, String date, String time) throws ValidationException {
+        Date occurrenceDate = DateTimeCodec.parse(date, time);
+        if (occurrenceDate == null || !series.isOccurrence(occurrenceDate)) {
+            throw new ValidationException("The series has no occurrence due on " + date + " at " + time);
+        }
+        return occurrenceDate;
+    }
+
+    /**
+     * Saves an override, reporting a clash on the unique key of its series and occurrence date as a ValidationException
+     * rather than an error. Only another instance of the application saving an override of the same occurrence at the same time
+     * can cause that, since this one takes the id of any existing override from the view
+     */
+    private SeriesOverride saveOverride(SeriesOverride override) throws ValidationException {
+        try {
+            return seriesOverrideDao.save(override);
+        } catch (DataIntegrityViolationException e) {
+            log.warn("Override of series {} at {} was saved by another request at the same time", override.getSeriesId(), override.getOccurrenceDate());
+            throw new ValidationException("The occurrence was changed by another request at the same time, please try again");
+        }
+    }
+
+    /**
+     * @return A new override for the given occurrence, which replaces its existing override if it has one when saved
+     */
+    private static SeriesOverride newOverride(RecurringSeries series, Date occurrenceDate) {
+        SeriesOverride existing = series.findOverride(occurrenceDate);
+        SeriesOverride override = new SeriesOverride();
+        override.setId(existing == null ? null : existing.getId());
+        override.setSeriesId(series.getId());
+        override.setOccurrenceDate(occurrenceDate);
+        return override;
+    }
+
+    /**
+     * Validates and saves many appointments at once, e.g. when onboarding a new customer.
+     * Every appointment is validated, and the valid ones are saved, even if others are invalid.
+     * The appointments are processed in batches, each of which takes one query to look up its people, one to look up
+     * its locations, and one transaction to insert its appointments.
+     * An appointment is rejected if it double books a person or location, either with an existing appointment or with
+     * one earlier in the import. Each batch's appointments are checked and reserved together, as createAppointment does
+     * @param appointmentRequestDtos The appointments to save
+     * @return Whether each appointment was saved, in the same order as they were given
+     */
+    public AppointmentImportReportDto importAppointments(List<AppointmentRequestDto> appointmentRequestDtos) {
+        AppointmentImportReportDto report = new AppointmentImportReportDto();
+        for (int start = 0; start < appointmentRequestDtos.size(); start += IMPORT_BATCH_SIZE) {
+            List<AppointmentRequestDto> batch = appointmentRequestDtos.subList(start, Math.min(start + IMPORT_BATCH_SIZE, appointmentRequestDtos.size()));
+            for (AppointmentImportRowDto row : importBatch(batch, start)) {
+                report.addRow(row);
+            }
+        }
+        log.info("Imported {} appointments and rejected {}", report.getCreated(), report.getRejected());
+        return report;
+    }
+
+    private AppointmentImportRowDto[] importBatch(List<AppointmentRequestDto> batch, int firstRowIndex) {
+        AppointmentImportRowDto[] rows = new AppointmentImportRowDto[batch.size()];
+        List<List<ValidationViolation>> violations = new ArrayList<>(batch.size());
+        Date[] dates = new Date[batch.size()]; // parsed while validating, so each row's date and time is only parsed once
+        Set<Integer> personIds = new HashSet<>();
+        Set<Integer> locationIds = new HashSet<>();
+        for (int i = 0; i < batch.size(); i++) {
+            AppointmentRequestDto dto = batch.get(i);
+            List<ValidationViolation> dtoViolations;
+            if (dto == null) {
+                dtoViolations = Collections.singletonList(new ValidationViolation("Appointment", "Cannot save a blank appointment"));
             } else {
-                log.error("Cannot find location with id {}", appointment.getLocationId());
+                dtoViolations = new ArrayList<>(2);
+                dates[i] = validationUtils.checkAppointmentFields(dto, dtoViolations);
+            }
+            if (dtoViolations.isEmpty()) {
+                addIfNotNull(personIds, dto.getPersonId());
+                addIfNotNull(locationIds, dto.getLocationId());
+            }
+            violations.add(dtoViolations);
+        }
+
+        Map<Integer, Person> people = new HashMap<>();
+        if (!personIds.isEmpty()) {
+            personDao.findAllById(personIds).forEach(person -> people.put(person.getId(), person));
+        }
+        Map<Integer, Location> locations = new HashMap<>();
+        if (!locationIds.isEmpty()) {
+            locationDao.findAllById(locationIds).forEach(location -> locations.put(location.getId(), location));
+        }
+
+        for (int i = 0; i < batch.size(); i++) {
+            List<ValidationViolation> dtoViolations = violations.get(i);
+            if (dtoViolations.isEmpty()) {
+                validationUtils.checkReferences(batch.get(i), people.keySet(), locations.keySet(), dtoViolations);
             }
         }
-        return dto;
+
+        // each appointment that passes is booked into the reservation, so the ones after it in the batch are checked against it too
+        List<Appointment> appointments = new ArrayList<>(batch.size());
+        List<Integer> appointmentIndexes = new ArrayList<>(batch.size());
+        BookingReservation reservation = appointmentView.reserve(held -> {
+            for (int i = 0; i < batch.size(); i++) {
+                AppointmentRequestDto dto = batch.get(i);
+                List<ValidationViolation> dtoViolations = violations.get(i);
+                if (dtoViolations.isEmpty()) {
+                    validationUtils.checkBookings(dto, dates[i], held.getBookings(), dtoViolations);
+                }
+                if (dtoViolations.isEmpty()) {
+                    Appointment appointment = ObjectMapper.getInstance().mapDtoToDomain(dto, dates[i]);
+                    held.book(appointment.getPersonId(), appointment.getLocationId(), dates[i], appointment.getDurationMinutes());
+                    appointments.add(appointment);
+                    appointmentIndexes.add(i);
+                }
+            }
+        });
+        for (int i = 0; i < batch.size(); i++) {
+            if (!violations.get(i).isEmpty()) {
+                rows[i] = createImportRow(firstRowIndex + i, AppointmentImportRowDto.Status.INVALID, null, violations.get(i));
+            }
+        }
+
+        try {
+            appointmentDao.saveAll(appointments);
+        } catch (Exception e) {
+            appointmentView.release(reservation);
+            log.error("An unexpected exception occurred importing {} appointments", appointments.size(), e);
+            appointmentIndexes.forEach(i -> rows[i] = createImportRow(firstRowIndex + i, AppointmentImportRowDto.Status.FAILED, null, Collections.emptyList()));
+            return rows;
+        }
+        List<AppointmentResponseDto> saved = new ArrayList<>(appointments.size());
+        for (int j = 0; j < appointments.size(); j++) {
+            Appointment appointment = appointments.get(j);
+            AppointmentDetails details = new AppointmentDetails(appointment, people.get(appointment.getPersonId()), locations.get(appointment.getLocationId()));
+            saved.add(ObjectMapper.getInstance().mapDomainToDto(details));
+            int i = appointmentIndexes.get(j);
+            rows[i] = createImportRow(firstRowIndex + i, AppointmentImportRowDto.Status.CREATED, appointment.getId(), Collections.emptyList());
+        }
+        appointmentView.addAppointments(saved, reservation);
+        return rows;
+    }
+
+    private static AppointmentImportRowDto createImportRow(int rowIndex, AppointmentImportRowDto.Status status, Integer appointmentId,
+                                                           List<ValidationViolation> violations) {
+        AppointmentImportRowDto row = new AppointmentImportRowDto();
+        row.setRow(rowIndex + 1);
+        row.setStatus(status);
+        row.setAppointmentId(appointmentId);
+        row.setViolations(violations);
+        return row;
+    }
+
+    private static void addIfNotNull(Set<Integer> ids, Integer id) {
+        if (id != null) {
+            ids.add(id);
+        }
+    }
+
+    /**
+     * Deletes an appointment without loading it first
+     * @return Whether the appointment existed
+     */
+    public boolean deleteAppointment(Integer appointmentId) {
+        int deleted = appointmentDao.deleteByIdIn(Collections.singletonList(appointmentId));
+        appointmentView.removeAppointment(appointmentId);
+        return deleted > 0;
+    }
+
+    // The bulk deletes below cover archived appointments too. The archive is deleted from second, so an appointment
+    // that the AppointmentArchiver moves while the delete runs is caught in one table or the other. Archived appointments
+    // are still counted in the view's rollups, so the ones about to be deleted are found first to uncount them afterwards
+
+    /**
+     * Deletes the appointments with the given ids, with one DELETE statement per DELETE_BATCH_SIZE ids.
+     * Ids that don't exist are ignored
+     * @return The number of appointments deleted
+     */
+    public int deleteAppointments(List<Integer> appointmentIds) {
+        int deleted = 0;
+        for (int start = 0; start < appointmentIds.size(); start += DELETE_BATCH_SIZE) {
+            List<Integer> batch = appointmentIds.subList(start, Math.min(start + DELETE_BATCH_SIZE, appointmentIds.size()));
+            deleted += appointmentDao.deleteByIdIn(batch);
+            appointmentView.removeAppointments(batch);
+            List<ArchivedAppointmentKey> archived = archivedAppointmentDao.findKeysByIdIn(batch);
+            deleted += archivedAppointmentDao.deleteByIdIn(batch);
+            appointmentView.uncountArchivedAppointments(archived);
+        }
+        log.info("Deleted {} of {} appointments by id", deleted, appointmentIds.size());
+        return deleted;
+    }
+
+    /**
+     * Deletes the appointments from one day to another inclusive, with a single DELETE statement on each of the appointments and archive tables
+     * @param from The first day to delete, "yyyy-MM-dd"
+     * @param to The last day to delete, "yyyy-MM-dd"
+     * @return The number of appointments deleted
+     * @throws ValidationException if either date is invalid, or the range ends before it starts
+     */
+    public int deleteAppointmentsBetween(String from, String to) throws ValidationException {
+        int fromDay = parseDay(from);
+        int toDay = parseDay(to);
+        checkDayRange(fromDay, toDay);
+        Date start = DateTimeCodec.toDate(fromDay, 0);
+        Date end = DateTimeCodec.startOfDayAfter(toDay);
+        int deleted = appointmentDao.deleteByDateRange(start, end);
+        reconcileView("between " + from + " and " + to, deleted, appointmentView.removeAppointmentsBetween(start, end));
+        List<ArchivedAppointmentKey> archived = archivedAppointmentDao.findKeysByDateRange(start, end);
+        deleted += archivedAppointmentDao.deleteByDateRange(start, end);
+        appointmentView.uncountArchivedAppointments(archived);
+        return deleted;
+    }
+
+    /**
+     * Deletes every appointment with the given person, with a single DELETE statement on each of the appointments and archive tables
+     * @return The number of appointments deleted
+     */
+    public int deleteAppointmentsWithPerson(Integer personId) {
+        int deleted = appointmentDao.deleteByPersonId(personId);
+        reconcileView("with person " + personId, deleted, appointmentView.removeAppointmentsWithPerson(personId));
+        List<ArchivedAppointmentKey> archived = archivedAppointmentDao.findKeysByPersonId(personId);
+        deleted += archivedAppointmentDao.deleteByPersonId(personId);
+        appointmentView.uncountArchivedAppointments(archived);
+        return deleted;
+    }
+
+    /**
+     * Deletes every appointment at the given location, with a single DELETE statement on each of the appointments and archive tables
+     * @return The number of appointments deleted
+     */
+    public int deleteAppointmentsAtLocation(Integer locationId) {
+        int deleted = appointmentDao.deleteByLocationId(locationId);
+        reconcileView("at location " + locationId, deleted, appointmentView.removeAppointmentsAtLocation(locationId));
+        List<ArchivedAppointmentKey> archived = archivedAppointmentDao.findKeysByLocationId(locationId);
+        deleted += archivedAppointmentDao.deleteByLocationId(locationId);
+        appointmentView.uncountArchivedAppointments(archived);
+        return deleted;
+    }
+
+    /**
+     * An appointment created while a bulk delete is running can be deleted from the database but still be added to the view
+     * afterwards, or the other way round. That shows up as the view removing a different number of appointments
+     * than the database deleted, in which case the view is reloaded from the database
+     */
+    private void reconcileView(String description, int deleted, int removedFromView) {
+        log.info("Deleted {} appointments {}", deleted, description);
+        if (deleted != removedFromView) {
+            log.warn("Deleted {} appointments {} but removed {} from the appointment view. Reloading the view", deleted, description, removedFromView);
+            appointmentView.rebuild();
+        }
+    }
+
+    private static int parseDay(String day) throws ValidationException {
+        int parsed = DateTimeCodec.parseDate(day);
+        if (parsed == DateTimeCodec.INVALID) {
+            throw new ValidationException("Dates must be given in the form yyyy-MM-dd");
+        }
+        return parsed;
+    }
+
+    private static void checkDayRange(int fromDay, int toDay) throws ValidationException {
+        if (fromDay > toDay) {
+            throw new ValidationException("The date range cannot end before it starts");
+        }
     }
 
     public Person createPerson(PersonDto personDto) throws ValidationException {
         validationUtils.validatePersonDto(personDto);
         try {
             Person person = ObjectMapper.getInstance().mapDtoToDomain(personDto);
-            return personDao.save(person);
+            Person savedPerson = personDao.save(person);
+            referenceDataCache.invalidatePerson(savedPerson.getId());
+            appointmentView.addPerson(savedPerson);
+            return savedPerson;
         } catch (Exception e) {
+            CallMetricsAspect.reportOutcome(Outcome.ERROR);
             log.error("An unexpected exception occurred creating a person", e);
             return null;
         }
@@ -130,8 +671,12 @@ public class AppointmentService {
         validationUtils.validateLocationDto(locationDto);
         try {
             Location location = ObjectMapper.getInstance().mapDtoToDomain(locationDto);
-            return locationDao.save(location);
+            Location savedLocation = locationDao.save(location);
+            referenceDataCache.invalidateLocation(savedLocation.getId());
+            appointmentView.addLocation(savedLocation);
+            return savedLocation;
         } catch (Exception e) {
+            CallMetricsAspect.reportOutcome(Outcome.ERROR);
             log.error("An unexpected exception occurred creating a location", e);
             return null;
         }
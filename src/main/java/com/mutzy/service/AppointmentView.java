@@ -0,0 +1,866 @@
+package com.mutzy.service;
+
+import com.mutzy.dao.AppointmentDao;
+import com.mutzy.dao.AppointmentDetails;
+import com.mutzy.dao.AppointmentSeriesDao;
+import com.mutzy.dao.ArchivedAppointmentDao;
+import com.mutzy.dao.ArchivedAppointmentKey;
+import com.mutzy.dao.LocationDao;
+import com.mutzy.dao.PersonDao;
+import com.mutzy.dao.SeriesOverrideDao;
+import com.mutzy.domain.Appointment;
+import com.mutzy.domain.AppointmentSeries;
+import com.mutzy.domain.Location;
+import com.mutzy.domain.Person;
+import com.mutzy.domain.SeriesOverride;
+import com.mutzy.dto.AppointmentCursor;
+import com.mutzy.dto.AppointmentPageDto;
+import com.mutzy.dto.AppointmentResponseDto;
+import com.mutzy.dto.AppointmentRollupDto;
+import com.mutzy.dto.LocationDto;
+import com.mutzy.dto.PersonDto;
+import com.mutzy.utils.DateTimeCodec;
+import com.mutzy.utils.ObjectMapper;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * An in-memory copy of the appointments, people and locations tables, kept in the order they are displayed in.
+ * It is loaded from the database once, and then kept up to date by AppointmentService after each successful write,
+ * so the appointments page can be served without querying or sorting anything.
+ * <p>
+ * Reads never block. Writes (and rebuilds) are serialized so that a write that lands while the view is being rebuilt
+ * is applied to the rebuilt view rather than lost. Every write is idempotent, so applying one that the rebuild already
+ * picked up from the database is harmless.
+ * <p>
+ * The appointments are also indexed by the words in their text, so they can be searched without scanning them all,
+ * and counted per day, so they can be rolled up over a range of dates without reading them. Archived appointments
+ * (see AppointmentArchiver) are no longer held in the view but are still counted, so rollups cover the whole history.
+ * <p>
+ * Recurring series are held as one RecurringSeries each rather than as their occurrences. Pages, rollups and double booking
+ * checks ask each series for just the occurrences in the window they cover, so every page merges in at most a page of
+ * occurrences from each series. Searches only cover single appointments.
+ * <p>
+ * Every write and rebuild also bumps the data version, so callers can tell whether anything has changed
+ * since they last read from the view without reading it again.
+ * <p>
+ * The view can be written to a snapshot file and restored from it on the next startup instead of being rebuilt,
+ * see AppointmentViewSnapshotter.
+ */
+@Component
+@Slf4j
+public class AppointmentView {
+
+    private static final int REBUILD_BATCH_SIZE = 1000;
+
+    private final AppointmentDao appointmentDao;
+    private final PersonDao personDao;
+    private final LocationDao locationDao;
+    private final AppointmentSeriesDao appointmentSeriesDao;
+    private final SeriesOverrideDao seriesOverrideDao;
+    private final ArchivedAppointmentDao archivedAppointmentDao;
+
+    private final Object writeLock = new Object();
+    private volatile State state; // null until the view has been loaded successfully
+    private final AtomicLong dataVersion = new AtomicLong();
+
+    @Autowired
+    public AppointmentView(AppointmentDao appointmentDao, PersonDao personDao, LocationDao locationDao,
+                           AppointmentSeriesDao appointmentSeriesDao, SeriesOverrideDao seriesOverrideDao,
+                           ArchivedAppointmentDao archivedAppointmentDao) {
+        this.appointmentDao = appointmentDao;
+        this.personDao = personDao;
+        this.locationDao = locationDao;
+        this.appointmentSeriesDao = appointmentSeriesDao;
+        this.seriesOverrideDao = seriesOverrideDao;
+        this.archivedAppointmentDao = archivedAppointmentDao;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void loadOnStartup() {
+        if (state != null) { // already restored from a snapshot
+            return;
+        }
+        try {
+            rebuild();
+        } catch (Exception e) {
+            log.error("Failed to load the appointment view on startup. It will be loaded on first use instead", e);
+        }
+    }
+
+    /**
+     * Throws away the current view and reloads it from the database.
+     * Writes made while the rebuild is running wait for it to finish and are then applied to the new view
+     */
+    public void rebuild() {
+        synchronized (writeLock) {
+            long start = System.currentTimeMillis();
+            State newState = new State();
+
+            // load the appointments in batches so we never hold more than one batch of query results at once
+            List<AppointmentDetails> batch = appointmentDao.findFirstDetails(PageRequest.of(0, REBUILD_BATCH_SIZE));
+            while (!batch.isEmpty()) {
+                batch.forEach(details -> newState.putAppointment(ObjectMapper.getInstance().mapDomainToDto(details)));
+                if (batch.size() < REBUILD_BATCH_SIZE) {
+                    break;
+                }
+                Appointment last = batch.get(batch.size() - 1).getAppointment();
+                batch = appointmentDao.findDetailsAfter(last.getDate(), last.getId(), PageRequest.of(0, REBUILD_BATCH_SIZE));
+            }
+            int archived = countArchived(newState);
+            personDao.findAll().forEach(newState.people::add);
+            locationDao.findAll().forEach(newState.locations::add);
+            loadSeries(newState);
+
+            state = newState;
+            dataVersion.incrementAndGet();
+            log.info("Loaded appointment view with {} appointments, {} series, {} people and {} locations, and counted {} archived appointments, in {}ms",
+                    newState.appointments.size(), newState.series.size(), newState.people.size(), newState.locations.size(),
+                    archived, System.currentTimeMillis() - start);
+        }
+    }
+
+    /**
+     * Writes the appointments, people and locations in the view to a snapshot file, see ViewSnapshotFile.
+     * Writes made while the snapshot is being written may or may not be in it, which restoreSnapshot copes with
+     * @return Whether a snapshot was written, which it isn't if the view hasn't been loaded yet
+     */
+    public boolean writeSnapshot(Path file) throws IOException {
+        State current = state;
+        if (current == null) {
+            return false;
+        }
+        ViewSnapshotFile.write(file, current.people, current.locations, current.appointments.values());
+        return true;
+    }
+
+    /**
+     * Loads the view from a snapshot file written by writeSnapshot, and then catches it up with the database, which is much
+     * quicker than a rebuild when most appointments haven't changed since the snapshot was written.
+     * <p>
+     * Appointments are only ever added and removed, with ids that only go up, so the appointments added since the snapshot
+     * are those with an id above the highest id in it. Whether any appointments up to that id have been removed (or were
+     * added while the snapshot was being written) is checked by comparing how many there are, and the sum of their ids, with
+     * the snapshot. Only when they differ are the ids compared one by one, to find which to drop and which to load.
+     * People and locations are never removed, so they are reloaded only if there are more of them than in the snapshot.
+     * Appointments whose person or location was created while the snapshot was being written are linked to it once they
+     * have been reloaded, or else loaded from the database like the missing appointments.
+     * Recurring series are always reloaded, as there are few of them and their occurrences can be changed, and archived
+     * appointments are always counted again, as they aren't in the snapshot.
+     * @return Whether the view was restored, which it isn't if it had already been loaded
+     * @throws IOException if the snapshot couldn't be read, in which case the view is left unloaded
+     */
+    public boolean restoreSnapshot(Path file) throws IOException {
+        if (state != null) {
+            return false;
+        }
+        long start = System.currentTimeMillis();
+        ViewSnapshotFile.Contents snapshot = ViewSnapshotFile.read(file);
+        long read = System.currentTimeMillis();
+        synchronized (writeLock) {
+            if (state != null) {
+                return false;
+            }
+            State newState = new State();
+            if (personDao.count() == snapshot.getPeople().size()) {
+                newState.people.addAll(snapshot.getPeople());
+            } else {
+                personDao.findAll().forEach(newState.people::add);
+            }
+            if (locationDao.count() == snapshot.getLocations().size()) {
+                newState.locations.addAll(snapshot.getLocations());
+            } else {
+                locationDao.findAll().forEach(newState.locations::add);
+            }
+
+            int mark = snapshot.getHighestAppointmentId();
+            Set<Integer> removed = Collections.emptySet();
+            List<Integer> added = Collections.emptyList();
+            if (appointmentDao.countByIdLessThanEqual(mark) != snapshot.getAppointments().size()
+                    || appointmentDao.sumIdsUpTo(mark) != snapshot.getAppointmentIdSum()) {
+                removed = new HashSet<>();
+                added = new ArrayList<>();
+                compareIds(snapshot.getAppointments(), mark, removed, added);
+            }
+            List<AppointmentResponseDto> appointments = snapshot.getAppointments();
+            Map<Integer, PersonDto> people = null;
+            Map<Integer, LocationDto> locations = null;
+            int relinked = 0;
+            for (int i = 0; i < appointments.size(); i++) {
+                AppointmentResponseDto appointment = appointments.get(i);
+                if (removed.contains(appointment.getId())) {
+                    continue;
+                }
+                if (snapshot.isUnresolved(i)) {
+                    // its person or location was created while the snapshot was being written
+                    if (people == null) {
+                        people = mapPeople(newState);
+                        locations = mapLocations(newState);
+                    }
+                    int personId = snapshot.getPersonIds()[i];
+                    int locationId = snapshot.getLocationIds()[i];
+                    PersonDto person = personId == 0 ? null : people.get(personId);
+                    LocationDto location = locationId == 0 ? null : locations.get(locationId);
+                    if ((personId != 0 && person == null) || (locationId != 0 && location == null)) {
+                        // not reloaded either, so the appointment is loaded as it is now instead
+                        if (added.isEmpty()) {
+                            added = new ArrayList<>();
+                        }
+                        added.add(appointment.getId());
+                        continue;
+                    }
+                    appointment.setPerson(person);
+                    appointment.setLocation(location);
+                    relinked++;
+                }
+                newState.putAppointment(appointment);
+            }
+            for (int from = 0; from < added.size(); from += REBUILD_BATCH_SIZE) {
+                appointmentDao.findDetailsByIdIn(added.subList(from, Math.min(added.size(), from + REBUILD_BATCH_SIZE)))
+                        .forEach(details -> newState.putAppointment(ObjectMapper.getInstance().mapDomainToDto(details)));
+            }
+            int newer = 0;
+            List<AppointmentDetails> batch = appointmentDao.findDetailsWithIdAbove(mark, PageRequest.of(0, REBUILD_BATCH_SIZE));
+            while (!batch.isEmpty()) {
+                batch.forEach(details -> newState.putAppointment(ObjectMapper.getInstance().mapDomainToDto(details)));
+                newer += batch.size();
+                if (batch.size() < REBUILD_BATCH_SIZE) {
+                    break;
+                }
+                Integer last = batch.get(batch.size() - 1).getAppointment().getId();
+                batch = appointmentDao.findDetailsWithIdAbove(last, PageRequest.of(0, REBUILD_BATCH_SIZE));
+            }
+            countArchived(newState);
+            loadSeries(newState);
+
+            state = newState;
+            dataVersion.incrementAndGet();
+            log.info("Restored appointment view with {} appointments, {} series, {} people and {} locations from a snapshot written at {} in {}ms "
+                            + "({}ms reading it). Caught up by loading {} newer appointments and {} missing ones, dropping {} removed ones and relinking {}",
+                    newState.appointments.size(), newState.series.size(), newState.people.size(), newState.locations.size(),
+                    new Date(snapshot.getWrittenAt()), System.currentTimeMillis() - start, read - start, newer, added.size(), removed.size(),
+                    relinked);
+            return true;
+        }
+    }
+
+    /**
+     * Walks the ids in the snapshot up to `mark` and the ids in the database up to `mark` side by side, both in order,
+     * collecting the ids only in the snapshot into `removed` and the ids only in the database into `added`
+     */
+    private void compareIds(List<AppointmentResponseDto> snapshot, int mark, Set<Integer> removed, List<Integer> added) {
+        int[] snapshotIds = new int[snapshot.size()];
+        for (int i = 0; i < snapshotIds.length; i++) {
+            snapshotIds[i] = snapshot.get(i).getId();
+        }
+        Arrays.sort(snapshotIds);
+        int next = 0;
+        int after = 0;
+        List<Integer> batch = appointmentDao.findIdsBetween(after, mark, PageRequest.of(0, REBUILD_BATCH_SIZE));
+        while (!batch.isEmpty()) {
+            for (Integer id : batch) {
+                while (next < snapshotIds.length && snapshotIds[next] < id) {
+                    removed.add(snapshotIds[next++]);
+                }
+                if (next < snapshotIds.length && snapshotIds[next] == id) {
+                    next++;
+                } else {
+                    added.add(id);
+                }
+            }
+            if (batch.size() < REBUILD_BATCH_SIZE) {
+                break;
+            }
+            after = batch.get(batch.size() - 1);
+            batch = appointmentDao.findIdsBetween(after, mark, PageRequest.of(0, REBUILD_BATCH_SIZE));
+        }
+        while (next < snapshotIds.length) {
+            removed.add(snapshotIds[next++]);
+        }
+    }
+
+    /**
+     * Counts the archived appointments in the new state's rollups, in batches. An appointment moved into the archive after
+     * it was loaded into the new state is skipped here, and stays counted when it is archived from the view afterwards
+     * @return The number of archived appointments counted
+     */
+    private int countArchived(State newState) {
+        int counted = 0;
+        List<ArchivedAppointmentKey> batch = archivedAppointmentDao.findKeysWithIdAbove(0, PageRequest.of(0, REBUILD_BATCH_SIZE));
+        while (!batch.isEmpty()) {
+            for (ArchivedAppointmentKey archived : batch) {
+                if (!newState.appointmentPositions.containsKey(archived.getId())) {
+                    newState.rollups.add(archived.getPersonId(), archived.getLocationId(), archived.getDate());
+                    counted++;
+                }
+            }
+            if (batch.size() < REBUILD_BATCH_SIZE) {
+                break;
+            }
+            Integer last = batch.get(batch.size() - 1).getId();
+            batch = archivedAppointmentDao.findKeysWithIdAbove(last, PageRequest.of(0, REBUILD_BATCH_SIZE));
+        }
+        return counted;
+    }
+
+    private void loadSeries(State newState) {
+        Map<Integer, List<SeriesOverride>> overrides = new HashMap<>();
+        seriesOverrideDao.findAll().forEach(override -> overrides.computeIfAbsent(override.getSeriesId(), id -> new ArrayList<>()).add(override));
+        Map<Integer, PersonDto> people = mapPeople(newState);
+        Map<Integer, LocationDto> locations = mapLocations(newState);
+        for (AppointmentSeries series : appointmentSeriesDao.findAll()) {
+            newState.putSeries(new RecurringSeries(series, people.get(series.getPersonId()), locations.get(series.getLocationId()),
+                    overrides.getOrDefault(series.getId(), Collections.emptyList())));
+        }
+    }
+
+    private static Map<Integer, PersonDto> mapPeople(State state) {
+        Map<Integer, PersonDto> people = new HashMap<>();
+        state.people.forEach(person -> people.put(person.getId(), ObjectMapper.getInstance().mapDomainToDto(person)));
+        return people;
+    }
+
+    private static Map<Integer, LocationDto> mapLocations(State state) {
+        Map<Integer, LocationDto> locations = new HashMap<>();
+        state.locations.forEach(location -> locations.put(location.getId(), ObjectMapper.getInstance().mapDomainToDto(location)));
+        return locations;
+    }
+
+    /**
+     * Finds a single page of appointments and occurrences of recurring series, ordered by date and then id.
+     * At most one of the cursors should be given. When neither is given the first page is returned
+     * @param after Return the appointments directly after this position
+     * @param before Return the appointments directly before this position
+     * @param pageSize The maximum number of appointments on the page
+     * @return The page of appointments, with cursors for the pages either side of it
+     */
+    public AppointmentPageDto findPage(AppointmentCursor after, AppointmentCursor before, int pageSize) {
+        State current = loadedState();
+        if (before != null) {
+            List<AppointmentResponseDto> results = takeBefore(current, before, pageSize + 1);
+            if (results.size() < pageSize) {
+                // Appointments were deleted since the cursor was handed out, so fill up the page from the start instead
+                return findPage(null, null, pageSize);
+            }
+            boolean hasPrevious = results.size() > pageSize;
+            results = results.subList(0, pageSize);
+            Collections.reverse(results);
+            return createPage(results, true, hasPrevious, null);
+        } else {
+            List<AppointmentResponseDto> results = takeAfter(current, after, pageSize + 1);
+            return createPage(limit(results, pageSize), results.size() > pageSize, after != null, after);
+        }
+    }
+
+    /**
+     * Finds a single page of the appointments matching a search, ordered by date and then id
+     * @param query The words to search for. Each word must match the start of a word in the appointment's description,
+     * or its person's name or affiliation, or its location's name or description
+     * @param after Return the matching appointments after this position, or null for the first page
+     * @param pageSize The maximum number of appointments on the page
+     * @return The page of appointments, with a cursor for the next page. Search results can only be paged forwards,
+     * so the previous cursor is never set
+     */
+    public AppointmentPageDto findSearchPage(String query, AppointmentCursor after, int pageSize) {
+        State current = loadedState();
+        List<AppointmentResponseDto> results = new ArrayList<>(pageSize + 1);
+        for (AppointmentCursor position : current.search.search(query, after, pageSize + 1)) {
+            AppointmentResponseDto appointment = current.appointments.get(position);
+            if (appointment != null) { // unless it was removed since the search
+                results.add(appointment);
+            }
+        }
+        AppointmentPageDto page = new AppointmentPageDto();
+        page.setAppointments(limit(results, pageSize));
+        page.setNextCursor(results.size() > pageSize ? AppointmentCursor.of(results.get(pageSize - 1)) : null);
+        return page;
+    }
+
+    /**
+     * @return A number that goes up every time an appointment, person or location is added or removed, or the view is rebuilt.
+     * It starts again from zero when the application restarts
+     */
+    public long getDataVersion() {
+        return dataVersion.get();
+    }
+
+    /**
+     * @return When each person and location is booked, kept up to date with the appointments in the view.
+     * Checking these bookings and then saving an appointment can double book it with one saved at the same time,
+     * so new appointments should be checked and booked with reserve instead
+     */
+    public BookingIndex getBookings() {
+        return loadedState().bookings;
+    }
+
+    /**
+     * Checks the bookings for new appointments or a series, and books whatever passes into a reservation, in one step under
+     * the write lock, so two requests for the same time can't both pass the check before either of them has been saved.
+     * Once saved, add them along with the reservation, which replaces it. If saving fails, release the reservation instead.
+     * A rebuild while a reservation is held drops it, leaving the time unguarded until the appointment has been saved
+     * @param check Checks the reservation's bookings, booking into the reservation whatever may be booked
+     * @throws E if the check throws it, e.g. a ValidationException, in which case nothing it had booked is kept
+     */
+    public <E extends Exception> BookingReservation reserve(ReservationCheck<E> check) throws E {
+        synchronized (writeLock) {
+            BookingReservation reservation = new BookingReservation(loadedState().bookings);
+            try {
+                check.check(reservation);
+            } catch (Exception e) {
+                reservation.release();
+                throw e;
+            }
+            return reservation;
+        }
+    }
+
+    /**
+     * Gives up the times booked by a reservation, e.g. once saving what it was for has failed
+     */
+    public void release(BookingReservation reservation) {
+        synchronized (writeLock) {
+            reservation.release();
+        }
+    }
+
+    @FunctionalInterface
+    public interface ReservationCheck<E extends Exception> {
+        void check(BookingReservation reservation) throws E;
+    }
+
+    /**
+     * Counts the appointments between two days, archived ones included, from running totals rather than by reading the appointments
+     * @param from The first day to count, packed as by DateTimeCodec.parseDate
+     * @param to The last day to count, packed as by DateTimeCodec.parseDate
+     */
+    public List<AppointmentRollupDto.Row> countAppointments(AppointmentRollupDto.GroupBy groupBy, AppointmentRollupDto.Granularity granularity,
+                                                            int from, int to) {
+        State current = loadedState();
+        List<AppointmentRollupDto.Row> rows = current.rollups.count(groupBy, granularity, from, to);
+        if (current.series.isEmpty()) {
+            return rows;
+        }
+        // the occurrences aren't kept in the running totals, so count the ones in the range now
+        AppointmentRollups occurrences = new AppointmentRollups();
+        Date start = DateTimeCodec.toDate(from, 0);
+        Date end = DateTimeCodec.startOfDayAfter(to);
+        for (RecurringSeries series : current.series.values()) {
+            for (AppointmentResponseDto occurrence : series.findOccurrencesBetween(start, end)) {
+                occurrences.add(series.getPersonId(), series.getLocationId(), occurrence.getDate());
+            }
+        }
+        return AppointmentRollups.merge(rows, occurrences.count(groupBy, granularity, from, to));
+    }
+
+    /**
+     * @return The series with the given id, or null if there isn't one
+     */
+    public RecurringSeries getSeries(Integer seriesId) {
+        return loadedState().series.get(seriesId);
+    }
+
+    public List<Person> findAllPeople() {
+        return new ArrayList<>(loadedState().people);
+    }
+
+    public List<Location> findAllLocations() {
+        return new ArrayList<>(loadedState().locations);
+    }
+
+    /**
+     * Adds newly saved appointments in place of the reservation they were booked with, as a single change to the view
+     */
+    public void addAppointments(Collection<AppointmentResponseDto> appointments, BookingReservation reservation) {
+        synchronized (writeLock) {
+            reservation.release();
+            State current = state;
+            if (current != null) {
+                appointments.forEach(current::putAppointment);
+            }
+            dataVersion.incrementAndGet();
+        }
+    }
+
+    public void removeAppointment(Integer appointmentId) {
+        synchronized (writeLock) {
+            State current = state;
+            if (current != null) {
+                current.removeAppointment(appointmentId);
+            }
+            dataVersion.incrementAndGet();
+        }
+    }
+
+    /**
+     * Removes every appointment in the view with one of the given ids
+     * @return The number of appointments removed
+     */
+    public int removeAppointments(Collection<Integer> appointmentIds) {
+        return removeAppointmentsWhere(current -> {
+            List<Integer> found = new ArrayList<>(appointmentIds.size());
+            for (Integer appointmentId : appointmentIds) {
+                if (current.appointmentPositions.containsKey(appointmentId)) {
+                    found.add(appointmentId);
+                }
+            }
+            return found;
+        });
+    }
+
+    /**
+     * Removes the given appointments from the view once they have been moved into the archive.
+     * Unlike removeAppointments, they are still counted in the rollups
+     */
+    public void archiveAppointments(Collection<Integer> appointmentIds) {
+        synchronized (writeLock) {
+            State current = state;
+            if (current != null) { // otherwise they will be counted from the archive when the view is first loaded
+                appointmentIds.forEach(current::archiveAppointment);
+            }
+            dataVersion.incrementAndGet();
+        }
+    }
+
+    /**
+     * Stops counting archived appointments in the rollups, once they have been deleted from the archive
+     */
+    public void uncountArchivedAppointments(Collection<ArchivedAppointmentKey> archived) {
+        if (archived.isEmpty()) {
+            return;
+        }
+        synchronized (writeLock) {
+            State current = state;
+            if (current != null) {
+                archived.forEach(key -> current.rollups.remove(key.getPersonId(), key.getLocationId(), key.getDate()));
+            }
+            dataVersion.incrementAndGet();
+        }
+    }
+
+    /**
+     * Removes every appointment in the view starting from `from` inclusive up to `to` exclusive
+     * @return The number of appointments removed
+     */
+    public int removeAppointmentsBetween(Date from, Date to) {
+        return removeAppointmentsWhere(current -> current.appointments
+                .subMap(new AppointmentCursor(from, Integer.MIN_VALUE), new AppointmentCursor(to, Integer.MIN_VALUE))
+                .values().stream()
+                .map(AppointmentResponseDto::getId)
+                .collect(Collectors.toList()));
+    }
+
+    /**
+     * Removes every appointment in the view with the given person
+     * @return The number of appointments removed
+     */
+    public int removeAppointmentsWithPerson(Integer personId) {
+        return removeAppointmentsWhere(current -> current.appointments.values().stream()
+                .filter(appointment -> personId.equals(State.personIdOf(appointment)))
+                .map(AppointmentResponseDto::getId)
+                .collect(Collectors.toList()));
+    }
+
+    /**
+     * Removes every appointment in the view at the given location
+     * @return The number of appointments removed
+     */
+    public int removeAppointmentsAtLocation(Integer locationId) {
+        return removeAppointmentsWhere(current -> current.appointments.values().stream()
+                .filter(appointment -> locationId.equals(State.locationIdOf(appointment)))
+                .map(AppointmentResponseDto::getId)
+                .collect(Collectors.toList()));
+    }
+
+    /**
+     * Adds a newly saved series in place of the reservation it was booked with
+     */
+    public void putSeries(RecurringSeries series, BookingReservation reservation) {
+        synchronized (writeLock) {
+            reservation.release();
+            State current = state;
+            if (current != null) {
+                current.putSeries(series);
+            }
+            dataVersion.incrementAndGet();
+        }
+    }
+
+    /**
+     * Replaces a series with an updated copy of itself, reading and replacing it in one step under the write lock, so updates
+     * made to the same series at the same time each build on the one before rather than overwriting it.
+     * The update may check the bookings and save to the database, but holds up every other change to the view while it runs
+     * @param update Works out the updated series from the current one, or throws to leave it as it is
+     * @return The updated series, or null if there is no series with the given id
+     * @throws E if the update throws it
+     */
+    public <E extends Exception> RecurringSeries updateSeries(Integer seriesId, SeriesUpdate<E> update) throws E {
+        synchronized (writeLock) {
+            State current = loadedState();
+            RecurringSeries series = current.series.get(seriesId);
+            if (series == null) {
+                return null;
+            }
+            RecurringSeries updated = update.update(series);
+            current.putSeries(updated);
+            dataVersion.incrementAndGet();
+            return updated;
+        }
+    }
+
+    @FunctionalInterface
+    public interface SeriesUpdate<E extends Exception> {
+        RecurringSeries update(RecurringSeries series) throws E;
+    }
+
+    public void removeSeries(Integer seriesId) {
+        synchronized (writeLock) {
+            State current = state;
+            if (current != null) {
+                RecurringSeries removed = current.series.remove(seriesId);
+                if (removed != null) {
+                    current.bookings.removeSeries(removed);
+                }
+            }
+            dataVersion.incrementAndGet();
+        }
+    }
+
+    public void addPerson(Person person) {
+        synchronized (writeLock) {
+            State current = state;
+            if (current != null) {
+                current.people.add(person);
+            }
+            dataVersion.incrementAndGet();
+        }
+    }
+
+    public void addLocation(Location location) {
+        synchronized (writeLock) {
+            State current = state;
+            if (current != null) {
+                current.locations.add(location);
+            }
+            dataVersion.incrementAndGet();
+        }
+    }
+
+    /**
+     * Removes the appointments with the ids found by the given function, as a single change to the view
+     */
+    private int removeAppointmentsWhere(Function<State, List<Integer>> findIds) {
+        synchronized (writeLock) {
+            State current = state;
+            if (current == null) {
+                return 0;
+            }
+            List<Integer> appointmentIds = findIds.apply(current);
+            appointmentIds.forEach(current::removeAppointment);
+            dataVersion.incrementAndGet();
+            return appointmentIds.size();
+        }
+    }
+
+    private State loadedState() {
+        State current = state;
+        if (current == null) {
+            synchronized (writeLock) {
+                if (state == null) {
+                    rebuild();
+                }
+                current = state;
+            }
+        }
+        return current;
+    }
+
+    /**
+     * @param after Take the appointments and occurrences after this position, or null to start from the first
+     * @return Up to `count` appointments and occurrences, in displayed order
+     */
+    private static List<AppointmentResponseDto> takeAfter(State current, AppointmentCursor after, int count) {
+        Map<AppointmentCursor, AppointmentResponseDto> appointments = after == null ? current.appointments : current.appointments.tailMap(after, false);
+        if (current.series.isEmpty()) {
+            return take(appointments, count);
+        }
+        List<Iterator<AppointmentResponseDto>> sources = new ArrayList<>(current.series.size() + 1);
+        sources.add(appointments.values().iterator());
+        for (RecurringSeries series : current.series.values()) {
+            sources.add(series.occurrencesAfter(after));
+        }
+        return merge(sources, Comparator.naturalOrder(), count);
+    }
+
+    /**
+     * @return Up to `count` appointments and occurrences before the given position, starting with the closest to it
+     */
+    private static List<AppointmentResponseDto> takeBefore(State current, AppointmentCursor before, int count) {
+        Map<AppointmentCursor, AppointmentResponseDto> appointments = current.appointments.headMap(before, false).descendingMap();
+        if (current.series.isEmpty()) {
+            return take(appointments, count);
+        }
+        List<Iterator<AppointmentResponseDto>> sources = new ArrayList<>(current.series.size() + 1);
+        sources.add(appointments.values().iterator());
+        for (RecurringSeries series : current.series.values()) {
+            sources.add(series.occurrencesBefore(before));
+        }
+        return merge(sources, Comparator.reverseOrder(), count);
+    }
+
+    /**
+     * Merges appointments and occurrences from sources that are each already in the given order, by keeping the next one
+     * from each source in a priority queue and taking the first of them until there are `count`.
+     * So each series only works out the occurrences that make it onto the page, plus one more, however long it is
+     */
+    private static List<AppointmentResponseDto> merge(List<Iterator<AppointmentResponseDto>> sources, Comparator<AppointmentCursor> order, int count) {
+        PriorityQueue<MergeHead> heads = new PriorityQueue<>(sources.size(), Comparator.comparing(head -> head.cursor, order));
+        for (Iterator<AppointmentResponseDto> source : sources) {
+            if (source.hasNext()) {
+                heads.add(new MergeHead(source.next(), source));
+            }
+        }
+        List<AppointmentResponseDto> results = new ArrayList<>(count);
+        while (results.size() < count && !heads.isEmpty()) {
+            MergeHead head = heads.poll();
+            results.add(head.appointment);
+            if (head.rest.hasNext()) {
+                heads.add(new MergeHead(head.rest.next(), head.rest));
+            }
+        }
+        return results;
+    }
+
+    private static final class MergeHead {
+        private final AppointmentResponseDto appointment;
+        private final AppointmentCursor cursor;
+        private final Iterator<AppointmentResponseDto> rest;
+
+        private MergeHead(AppointmentResponseDto appointment, Iterator<AppointmentResponseDto> rest) {
+            this.appointment = appointment;
+            this.cursor = AppointmentCursor.of(appointment);
+            this.rest = rest;
+        }
+    }
+
+    private static List<AppointmentResponseDto> take(Map<AppointmentCursor, AppointmentResponseDto> appointments, int count) {
+        List<AppointmentResponseDto> results = new ArrayList<>(count);
+        for (AppointmentResponseDto appointment : appointments.values()) {
+            if (results.size() == count) {
+                break;
+            }
+            results.add(appointment);
+        }
+        return results;
+    }
+
+    private static List<AppointmentResponseDto> limit(List<AppointmentResponseDto> results, int count) {
+        return results.size() > count ? results.subList(0, count) : results;
+    }
+
+    private static AppointmentPageDto createPage(List<AppointmentResponseDto> appointments, boolean hasNext, boolean hasPrevious, AppointmentCursor after) {
+        AppointmentPageDto page = new AppointmentPageDto();
+        page.setAppointments(appointments);
+        if (appointments.isEmpty()) {
+            // Paged past the end of the list, so link back to whatever comes before the requested position
+            page.setPreviousCursor(after);
+        } else {
+            page.setNextCursor(hasNext ? AppointmentCursor.of(appointments.get(appointments.size() - 1)) : null);
+            page.setPreviousCursor(hasPrevious ? AppointmentCursor.of(appointments.get(0)) : null);
+        }
+        return page;
+    }
+
+    private static class State {
+        private final ConcurrentSkipListMap<AppointmentCursor, AppointmentResponseDto> appointments = new ConcurrentSkipListMap<>();
+        private final Map<Integer, AppointmentCursor> appointmentPositions = new ConcurrentHashMap<>();
+        private final ConcurrentSkipListSet<Person> people = new ConcurrentSkipListSet<>(AppointmentService.personComparator);
+        private final ConcurrentSkipListSet<Location> locations = new ConcurrentSkipListSet<>(AppointmentService.locationComparator);
+        private final BookingIndex bookings = new BookingIndex();
+        private final SearchIndex search = new SearchIndex();
+        private final AppointmentRollups rollups = new AppointmentRollups();
+        private final Map<Integer, RecurringSeries> series = new ConcurrentHashMap<>();
+
+        private void putSeries(RecurringSeries recurringSeries) {
+            series.put(recurringSeries.getId(), recurringSeries);
+            bookings.addSeries(recurringSeries);
+        }
+
+        private void putAppointment(AppointmentResponseDto appointment) {
+            AppointmentCursor position = AppointmentCursor.of(appointment);
+            AppointmentCursor previousPosition = appointmentPositions.put(appointment.getId(), position);
+            if (previousPosition != null) {
+                // leave the appointment in place when its position hasn't changed, so readers never see it missing
+                removeFromIndexes(previousPosition.equals(position) ? appointments.get(position) : appointments.remove(previousPosition));
+            }
+            appointments.put(position, appointment);
+            search.add(position, appointment.getDescription(),
+                    appointment.getPerson() == null ? null : appointment.getPerson().getName(),
+                    appointment.getPerson() == null ? null : appointment.getPerson().getAffiliation(),
+                    appointment.getLocation() == null ? null : appointment.getLocation().getName(),
+                    appointment.getLocation() == null ? null : appointment.getLocation().getDescription());
+            bookings.add(appointment.getId(), personIdOf(appointment), locationIdOf(appointment), appointment.getDate(), appointment.getDurationMinutes());
+            rollups.add(personIdOf(appointment), locationIdOf(appointment), appointment.getDate());
+        }
+
+        private void removeAppointment(Integer appointmentId) {
+            AppointmentCursor position = appointmentPositions.remove(appointmentId);
+            if (position != null) {
+                removeFromIndexes(appointments.remove(position));
+            }
+        }
+
+        /**
+         * Like removeAppointment, but leaves the appointment counted in the rollups
+         */
+        private void archiveAppointment(Integer appointmentId) {
+            AppointmentCursor position = appointmentPositions.remove(appointmentId);
+            AppointmentResponseDto appointment = position == null ? null : appointments.remove(position);
+            if (appointment != null) {
+                bookings.remove(appointment.getId(), personIdOf(appointment), locationIdOf(appointment), appointment.getDate());
+                search.remove(position);
+            }
+        }
+
+        private void removeFromIndexes(AppointmentResponseDto appointment) {
+            if (appointment != null) {
+                bookings.remove(appointment.getId(), personIdOf(appointment), locationIdOf(appointment), appointment.getDate());
+                rollups.remove(personIdOf(appointment), locationIdOf(appointment), appointment.getDate());
+                search.remove(AppointmentCursor.of(appointment));
+            }
+        }
+
+        private static Integer personIdOf(AppointmentResponseDto appointment) {
+            return appointment.getPerson() == null ? null : appointment.getPerson().getId();
+        }
+
+        private static Integer locationIdOf(AppointmentResponseDto appointment) {
+            return appointment.getLocation() == null ? null : appointment.getLocation().getId();
+        }
+    }
+}
@@ -0,0 +1,141 @@
+package com.mutzy.service;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.stereotype.Component;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Writes the AppointmentView to appointments.snapshot.file every appointments.snapshot.interval, and once more on shutdown,
+ * and restores the view from that file on startup, so a restart doesn't have to wait for the view to be rebuilt from
+ * every row in the database. Snapshots are only written when the view has changed since the last one.
+ * Enabled with appointments.snapshot.enabled. When disabled no thread is started and the view is rebuilt on startup as usual.
+ * <p>
+ * A snapshot that is missing, damaged or from an older format is ignored and the view rebuilt instead.
+ * Snapshots are only useful to an application using the same database they were written from.
+ */
+@Component
+@Slf4j
+public class AppointmentViewSnapshotter implements SmartLifecycle {
+
+    private final AppointmentView appointmentView;
+
+    private final boolean enabled;
+    private final Path file;
+    private final long intervalMillis;
+
+    private final Timer writeTimer;
+
+    private volatile boolean running;
+    private ScheduledExecutorService scheduler;
+    private long writtenDataVersion = -1; // only touched by the scheduler's thread, and by stop() once it has finished
+
+    @Autowired
+    public AppointmentViewSnapshotter(AppointmentView appointmentView, MeterRegistry meterRegistry,
+                                      @Value("${appointments.snapshot.enabled:false}") boolean enabled,
+                                      @Value("${appointments.snapshot.file:appointment-view.snapshot}") String file,
+                                      @Value("${appointments.snapshot.interval:10m}") Duration interval) {
+        this.appointmentView = appointmentView;
+        this.enabled = enabled;
+        this.file = Paths.get(file);
+        this.intervalMillis = interval.toMillis();
+        this.writeTimer = Timer.builder("appointments.snapshot.write")
+                .description("Time taken to write each snapshot of the appointment view")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Restores the view from the snapshot file if there is one, logging rather than throwing if it can't be
+     * @return Whether the view was restored
+     */
+    public boolean restore() {
+        if (!Files.exists(file)) {
+            log.info("No appointment view snapshot at {}, so the view will be rebuilt", file.toAbsolutePath());
+            return false;
+        }
+        try {
+            return appointmentView.restoreSnapshot(file);
+        } catch (Exception e) {
+            log.warn("Failed to restore the appointment view from {}, so it will be rebuilt", file.toAbsolutePath(), e);
+            return false;
+        }
+    }
+
+    /**
+     * Writes a snapshot of the view, unless it hasn't changed since the last one or hasn't been loaded yet
+     * @return Whether a snapshot was written
+     */
+    public boolean writeIfChanged() {
+        long dataVersion = appointmentView.getDataVersion();
+        if (dataVersion == writtenDataVersion) {
+            return false;
+        }
+        long start = System.nanoTime();
+        try {
+            if (!appointmentView.writeSnapshot(file)) {
+                return false;
+            }
+        } catch (Exception e) {
+            // caught so the scheduler keeps running it, as it would stop after an uncaught exception
+            log.error("Failed to write an appointment view snapshot to {}", file.toAbsolutePath(), e);
+            return false;
+        }
+        writeTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        writtenDataVersion = dataVersion;
+        return true;
+    }
+
+    @Override
+    public synchronized void start() {
+        if (!enabled || running) {
+            return;
+        }
+        running = true;
+        restore();
+        scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> new Thread(runnable, "appointment-view-snapshotter"));
+        scheduler.scheduleWithFixedDelay(this::writeIfChanged, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+        log.info("Writing appointment view snapshots to {} every {}", file.toAbsolutePath(), Duration.ofMillis(intervalMillis));
+    }
+
+    @Override
+    public synchronized void stop() {
+        if (!running) {
+            return;
+        }
+        running = false;
+        scheduler.shutdown(); // a snapshot being written is finished rather than left as a temporary file
+        try {
+            scheduler.awaitTermination(1, TimeUnit.MINUTES);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (writeIfChanged()) {
+            log.info("Wrote a final appointment view snapshot to {}", file.toAbsolutePath());
+        }
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    /**
+     * Starts before the web server, so the view is restored before any requests are served, and stops after the write-behind
+     * queue, so the final snapshot includes the last queued appointments
+     */
+    @Override
+    public int getPhase() {
+        return Integer.MAX_VALUE - 3;
+    }
+}
@@ -0,0 +1,299 @@
+package com.mutzy.service;
+
+import com.mutzy.dao.AppointmentDao;
+import com.mutzy.dao.AppointmentDetails;
+import com.mutzy.dao.ReferenceDataCache;
+import com.mutzy.domain.Appointment;
+import com.mutzy.dto.AppointmentResponseDto;
+import com.mutzy.utils.ObjectMapper;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * Saves new appointments in batches from a background thread, rather than each in its own transaction on the request thread.
+ * Enabled with appointments.write-behind.enabled. When disabled no thread is started and AppointmentService saves directly.
+ * <p>
+ * Appointments are flushed once appointments.write-behind.batch-size of them are waiting, or once the first of them has waited
+ * appointments.write-behind.flush-interval, whichever comes first. Each flush is one transaction.
+ * When the queue is full, submitting waits up to appointments.write-behind.offer-timeout for space before giving up,
+ * which slows callers down to the rate the database can keep up with. Callers wait up to appointments.write-behind.save-timeout
+ * for their appointment to be saved, so a request is never left waiting for good even if the flusher thread dies.
+ * <p>
+ * Each appointment arrives with its time already reserved in the AppointmentView (see AppointmentView.reserve), so appointments
+ * validated at the same time can't clash, and each batch is saved without checking it for double bookings again.
+ * The reservations are swapped for the saved appointments once a batch is saved, or released if it fails. An appointment
+ * that was saved but couldn't be added to the view keeps its reservation, and the view is rebuilt to pick it up.
+ * On shutdown it stops taking new appointments and saves everything already queued.
+ */
+@Component
+@Slf4j
+public class AppointmentWriteBehindQueue implements SmartLifecycle {
+
+    // queued on shutdown to wake the flusher up, rather than leaving it waiting out the flush interval
+    private static final PendingAppointment STOP = new PendingAppointment(null, null);
+
+    private final AppointmentDao appointmentDao;
+    private final AppointmentView appointmentView;
+    private final ReferenceDataCache referenceDataCache;
+
+    private final boolean enabled;
+    private final int batchSize;
+    private final long flushIntervalNanos;
+    private final long offerTimeoutNanos;
+    private final Duration saveTimeout;
+    private final BlockingQueue<PendingAppointment> queue;
+
+    private final Timer flushTimer;
+    private final Counter rejectedCounter;
+
+    private volatile boolean running;
+    private Thread flusher;
+
+    @Autowired
+    public AppointmentWriteBehindQueue(AppointmentDao appointmentDao, AppointmentView appointmentView,
+                                       ReferenceDataCache referenceDataCache, MeterRegistry meterRegistry,
+                                       @Value("${appointments.write-behind.enabled:false}") boolean enabled,
+                                       @Value("${appointments.write-behind.capacity:10000}") int capacity,
+                                       @Value("${appointments.write-behind.batch-size:100}") int batchSize,
+                                       @Value("${appointments.write-behind.flush-interval:50ms}") Duration flushInterval,
+                                       @Value("${appointments.write-behind.offer-timeout:1s}") Duration offerTimeout,
+                                       @Value("${appointments.write-behind.save-timeout:30s}") Duration saveTimeout) {
+        this.appointmentDao = appointmentDao;
+        this.appointmentView = appointmentView;
+        this.referenceDataCache = referenceDataCache;
+        this.enabled = enabled;
+        this.batchSize = batchSize;
+        this.flushIntervalNanos = flushInterval.toNanos();
+        this.offerTimeoutNanos = offerTimeout.toNanos();
+        this.saveTimeout = saveTimeout;
+        this.queue = new ArrayBlockingQueue<>(capacity);
+
+        Gauge.builder("appointments.writebehind.queue.size", queue, BlockingQueue::size)
+                .description("Appointments waiting to be saved")
+                .register(meterRegistry);
+        this.flushTimer = Timer.builder("appointments.writebehind.flush")
+                .description("Time taken to save each batch of queued appointments")
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+        this.rejectedCounter = Counter.builder("appointments.writebehind.rejected")
+                .description("Appointments turned away because the queue stayed full")
+                .register(meterRegistry);
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * @return How long a caller should wait for a submitted appointment to be saved before giving up on it
+     */
+    public Duration getSaveTimeout() {
+        return saveTimeout;
+    }
+
+    /**
+     * Queues a validated appointment to be saved
+     * @param appointment The appointment to save
+     * @param reservation The reservation its time is booked under, which is the queue's to add or release once it is queued
+     * @return Completes with the saved appointment once its batch has been saved and added to the AppointmentView,
+     * or with the exception thrown by the database
+     * @throws RejectedExecutionException if the queue stayed full for the whole offer timeout, or the application is shutting down.
+     * The reservation is left to the caller to release
+     */
+    public CompletableFuture<AppointmentResponseDto> submit(Appointment appointment, BookingReservation reservation) throws InterruptedException {
+        if (!running) {
+            throw new RejectedExecutionException("Appointments are not being accepted as the application is shutting down");
+        }
+        PendingAppointment pending = new PendingAppointment(appointment, reservation);
+        if (!queue.offer(pending, offerTimeoutNanos, TimeUnit.NANOSECONDS)) {
+            rejectedCounter.increment();
+            throw new RejectedExecutionException("Too many appointments are waiting to be saved");
+        }
+        // stop() may have drained the queue for the last time while this was being offered, in which case nothing would save it.
+        // If it's still queued take it back, otherwise the flusher or stop() has it and will complete it
+        if (!running && queue.remove(pending)) {
+            throw new RejectedExecutionException("Appointments are not being accepted as the application is shutting down");
+        }
+        return pending.result;
+    }
+
+    @Override
+    public synchronized void start() {
+        if (!enabled || running) {
+            return;
+        }
+        running = true;
+        flusher = new Thread(this::flushUntilStopped, "appointment-write-behind");
+        flusher.start();
+        log.info("Saving appointments in batches of up to {} every {}ms", batchSize, TimeUnit.NANOSECONDS.toMillis(flushIntervalNanos));
+    }
+
+    @Override
+    public synchronized void stop() {
+        if (!running) {
+            return;
+        }
+        // the web server has already stopped taking requests by now, so nothing new should be submitted after this
+        running = false;
+        queue.offer(STOP); // if the queue is full the flusher is busy anyway, and will notice it should stop soon
+        try {
+            flusher.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        // anything that was submitted just as the flusher finished still needs saving
+        List<PendingAppointment> remaining = new ArrayList<>();
+        queue.drainTo(remaining);
+        remaining.remove(STOP);
+        if (!remaining.isEmpty()) {
+            flush(remaining);
+        }
+        log.info("Stopped saving appointments in batches");
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    /**
+     * Stops after the web server, so requests that are still finishing during a graceful shutdown can have their appointments saved
+     */
+    @Override
+    public int getPhase() {
+        return Integer.MAX_VALUE - 2;
+    }
+
+    private void flushUntilStopped() {
+        List<PendingAppointment> batch = new ArrayList<>(batchSize);
+        try {
+            flushBatchesUntilStopped(batch);
+        } catch (Throwable e) {
+            // e.g. an Error, which flush() has already failed its own batch for. Stop taking appointments, as nothing would
+            // save them, and fail whatever is still queued rather than leave its callers waiting out their save timeout
+            running = false;
+            log.error("Stopped saving queued appointments after an unexpected error", e);
+            List<PendingAppointment> remaining = new ArrayList<>(batch);
+            queue.drainTo(remaining);
+            remaining.remove(STOP);
+            remaining.stream().filter(pending -> !pending.result.isDone()).forEach(pending -> fail(pending, e));
+            throw e;
+        }
+    }
+
+    private void flushBatchesUntilStopped(List<PendingAppointment> batch) {
+        while (running || !queue.isEmpty()) {
+            try {
+                PendingAppointment first = queue.poll(flushIntervalNanos, TimeUnit.NANOSECONDS);
+                if (first == null || first == STOP) {
+                    continue;
+                }
+                batch.add(first);
+                long deadline = System.nanoTime() + flushIntervalNanos;
+                while (batch.size() < batchSize) {
+                    PendingAppointment next = queue.poll(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+                    if (next == null || next == STOP) {
+                        break;
+                    }
+                    batch.add(next);
+                }
+            } catch (InterruptedException e) {
+                log.warn("Interrupted while waiting for appointments to save");
+            }
+            if (!batch.isEmpty()) {
+                flush(batch);
+                batch.clear();
+            }
+        }
+    }
+
+    private void flush(List<PendingAppointment> batch) {
+        long start = System.nanoTime();
+        try {
+            try {
+                appointmentDao.saveAll(batch.stream().map(pending -> pending.appointment).collect(Collectors.toList()));
+            } catch (Throwable e) {
+                log.error("An unexpected exception occurred saving {} queued appointments", batch.size(), e);
+                batch.forEach(pending -> fail(pending, e));
+                if (e instanceof Error) {
+                    throw (Error) e;
+                }
+                return;
+            }
+            // the whole batch is saved by now, so none of it is reported as failed from here on
+            boolean rebuildView = false;
+            for (PendingAppointment pending : batch) {
+                rebuildView |= !addToView(pending);
+            }
+            if (rebuildView) {
+                rebuildView();
+            }
+        } finally {
+            flushTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    /**
+     * Adds a saved appointment to the view in place of its reservation, and completes it
+     * @return Whether it was added. If not it is completed without its person and location, and its reservation is kept to
+     * guard its time until the view is rebuilt
+     */
+    private boolean addToView(PendingAppointment pending) {
+        try {
+            AppointmentResponseDto saved = ObjectMapper.getInstance().mapDomainToDto(referenceDataCache.findDetails(pending.appointment));
+            appointmentView.addAppointments(Collections.singletonList(saved), pending.reservation);
+            pending.result.complete(saved);
+            return true;
+        } catch (Throwable e) {
+            log.error("Appointment {} was saved but couldn't be added to the view, which will be rebuilt", pending.appointment.getId(), e);
+            pending.result.complete(ObjectMapper.getInstance().mapDomainToDto(new AppointmentDetails(pending.appointment, null, null)));
+            return false;
+        }
+    }
+
+    private void rebuildView() {
+        try {
+            appointmentView.rebuild();
+        } catch (Exception e) {
+            // the reservations kept for the appointments missing from the view still guard their times until the next rebuild
+            log.error("An unexpected exception occurred rebuilding the view after saving queued appointments", e);
+        }
+    }
+
+    private void fail(PendingAppointment pending, Throwable e) {
+        try {
+            appointmentView.release(pending.reservation);
+        } finally {
+            pending.result.completeExceptionally(e);
+        }
+    }
+
+    static class PendingAppointment {
+        private final Appointment appointment;
+        private final BookingReservation reservation;
+        private final CompletableFuture<AppointmentResponseDto> result = new CompletableFuture<>();
+
+        PendingAppointment(Appointment appointment, BookingReservation reservation) {
+            this.appointment = appointment;
+            this.reservation = reservation;
+        }
+    }
+}
@@ -0,0 +1,175 @@
+package com.mutzy.service;
+
+import com.mutzy.dto.AppointmentCursor;
+import com.mutzy.dto.AppointmentResponseDto;
+import com.mutzy.utils.Constants;
+
+import java.util.Date;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The times each person and each location is booked for, so a new appointment can be checked for double bookings
+ * without scanning every appointment.
+ * <p>
+ * Each person's and each location's bookings are kept sorted by start time. As no appointment is longer than
+ * Constants.MAX_APPOINTMENT_DURATION_MINUTES, only the bookings that start within that long before the new appointment
+ * ends can overlap it, so a check is one O(log n) seek followed by a walk over the few bookings in that window.
+ * <p>
+ * Recurring series are kept whole rather than as one booking per occurrence, and each of the person's or location's series
+ * works out only its occurrences in that same window.
+ * <p>
+ * Safe to read and update from many threads at once.
+ */
+public class BookingIndex {
+
+    private static final long MAX_DURATION_MILLIS = TimeUnit.MINUTES.toMillis(Constants.MAX_APPOINTMENT_DURATION_MINUTES);
+
+    private final Map<Integer, NavigableMap<AppointmentCursor, Long>> personBookings = new ConcurrentHashMap<>();
+    private final Map<Integer, NavigableMap<AppointmentCursor, Long>> locationBookings = new ConcurrentHashMap<>();
+    private final Map<Integer, Map<Integer, RecurringSeries>> personSeries = new ConcurrentHashMap<>();
+    private final Map<Integer, Map<Integer, RecurringSeries>> locationSeries = new ConcurrentHashMap<>();
+
+    /**
+     * @param appointmentId The id of the booked appointment
+     * @param personId The person booked, or null if there isn't one
+     * @param locationId The location booked, or null if there isn't one
+     * @param start When the appointment starts
+     * @param durationMinutes How long the appointment lasts
+     */
+    public void add(Integer appointmentId, Integer personId, Integer locationId, Date start, int durationMinutes) {
+        AppointmentCursor position = new AppointmentCursor(start, appointmentId);
+        Long end = endOf(start, durationMinutes);
+        if (personId != null) {
+            personBookings.computeIfAbsent(personId, id -> new ConcurrentSkipListMap<>()).put(position, end);
+        }
+        if (locationId != null) {
+            locationBookings.computeIfAbsent(locationId, id -> new ConcurrentSkipListMap<>()).put(position, end);
+        }
+    }
+
+    /**
+     * Removes a booking previously added with the same appointment id, person, location and start
+     */
+    public void remove(Integer appointmentId, Integer personId, Integer locationId, Date start) {
+        AppointmentCursor position = new AppointmentCursor(start, appointmentId);
+        remove(personBookings, personId, position);
+        remove(locationBookings, locationId, position);
+    }
+
+    /**
+     * Adds every occurrence of a series, replacing any earlier version of the same series
+     */
+    public void addSeries(RecurringSeries series) {
+        if (series.getPersonId() != null) {
+            personSeries.computeIfAbsent(series.getPersonId(), id -> new ConcurrentHashMap<>()).put(series.getId(), series);
+        }
+        if (series.getLocationId() != null) {
+            locationSeries.computeIfAbsent(series.getLocationId(), id -> new ConcurrentHashMap<>()).put(series.getId(), series);
+        }
+    }
+
+    /**
+     * Removes a series previously added with the same id, person and location
+     */
+    public void removeSeries(RecurringSeries series) {
+        removeSeries(personSeries, series.getPersonId(), series.getId());
+        removeSeries(locationSeries, series.getLocationId(), series.getId());
+    }
+
+    /**
+     * @return Whether the given person is booked at any time between start and start + durationMinutes
+     */
+    public boolean isPersonBooked(Integer personId, Date start, int durationMinutes) {
+        return isPersonBooked(personId, start, durationMinutes, null, null);
+    }
+
+    /**
+     * The same as isPersonBooked(personId, start, durationMinutes), but ignoring one occurrence of a series, e.g. the one being moved
+     * @param ignoredSeriesId The series of the occurrence to ignore
+     * @param ignoredOccurrenceDate When the occurrence to ignore was due to start
+     */
+    public boolean isPersonBooked(Integer personId, Date start, int durationMinutes, Integer ignoredSeriesId, Date ignoredOccurrenceDate) {
+        return personId != null && (overlaps(personBookings.get(personId), start, durationMinutes)
+                || overlaps(personSeries.get(personId), start, durationMinutes, ignoredSeriesId, ignoredOccurrenceDate));
+    }
+
+    /**
+     * @return Whether the given location is booked at any time between start and start + durationMinutes
+     */
+    public boolean isLocationBooked(Integer locationId, Date start, int durationMinutes) {
+        return isLocationBooked(locationId, start, durationMinutes, null, null);
+    }
+
+    /**
+     * The same as isLocationBooked(locationId, start, durationMinutes), but ignoring one occurrence of a series, e.g. the one being moved
+     * @param ignoredSeriesId The series of the occurrence to ignore
+     * @param ignoredOccurrenceDate When the occurrence to ignore was due to start
+     */
+    public boolean isLocationBooked(Integer locationId, Date start, int durationMinutes, Integer ignoredSeriesId, Date ignoredOccurrenceDate) {
+        return locationId != null && (overlaps(locationBookings.get(locationId), start, durationMinutes)
+                || overlaps(locationSeries.get(locationId), start, durationMinutes, ignoredSeriesId, ignoredOccurrenceDate));
+    }
+
+    private static boolean overlaps(NavigableMap<AppointmentCursor, Long> bookings, Date start, int durationMinutes) {
+        if (bookings == null) {
+            return false;
+        }
+        long startMillis = start.getTime();
+        AppointmentCursor earliestOverlappingStart = new AppointmentCursor(new Date(startMillis - MAX_DURATION_MILLIS), Integer.MIN_VALUE);
+        AppointmentCursor end = new AppointmentCursor(new Date(endOf(start, durationMinutes)), Integer.MIN_VALUE);
+        for (Long bookingEnd : bookings.subMap(earliestOverlappingStart, true, end, false).values()) {
+            if (bookingEnd > startMillis) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean overlaps(Map<Integer, RecurringSeries> series, Date start, int durationMinutes,
+                                    Integer ignoredSeriesId, Date ignoredOccurrenceDate) {
+        if (series == null) {
+            return false;
+        }
+        long startMillis = start.getTime();
+        Date earliestOverlappingStart = new Date(startMillis - MAX_DURATION_MILLIS);
+        Date end = new Date(endOf(start, durationMinutes));
+        for (RecurringSeries oneSeries : series.values()) {
+            for (AppointmentResponseDto occurrence : oneSeries.findOccurrencesBetween(earliestOverlappingStart, end)) {
+                boolean ignored = oneSeries.getId().equals(ignoredSeriesId) && occurrence.getOccurrenceDate().equals(ignoredOccurrenceDate);
+                if (!ignored && endOf(occurrence.getDate(), occurrence.getDurationMinutes()) > startMillis) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    private static void remove(Map<Integer, NavigableMap<AppointmentCursor, Long>> bookings, Integer key, AppointmentCursor position) {
+        if (key == null) {
+            return;
+        }
+        NavigableMap<AppointmentCursor, Long> keyBookings = bookings.get(key);
+        if (keyBookings != null) {
+            keyBookings.remove(position);
+            // empty maps are left in place, as a concurrent add could be about to use this one
+        }
+    }
+
+    private static void removeSeries(Map<Integer, Map<Integer, RecurringSeries>> series, Integer key, Integer seriesId) {
+        if (key == null) {
+            return;
+        }
+        Map<Integer, RecurringSeries> keySeries = series.get(key);
+        if (keySeries != null) {
+            keySeries.remove(seriesId);
+        }
+    }
+
+    private static long endOf(Date start, int durationMinutes) {
+        return start.getTime() + TimeUnit.MINUTES.toMillis(durationMinutes);
+    }
+}
@@ -0,0 +1,83 @@
+package com.mutzy.service;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Bookings held in a BookingIndex for appointments or a series that have passed the double booking check but haven't been
+ * saved yet, so nothing checked after them can book the same time while they are being saved.
+ * Made by AppointmentView.reserve, and ended either by adding what was saved to the view along with the reservation,
+ * which swaps one for the other in a single step, or by AppointmentView.release if saving failed.
+ * <p>
+ * Reserved bookings have negative ids, so they never clash with the ids of saved appointments and series.
+ * Not safe to book into from more than one thread, but AppointmentView only hands a reservation out once it is filled.
+ */
+public class BookingReservation {
+
+    private static final AtomicInteger lastId = new AtomicInteger();
+
+    private final BookingIndex bookings;
+    private final List<Booking> appointments = new ArrayList<>();
+    private final List<RecurringSeries> series = new ArrayList<>();
+
+    BookingReservation(BookingIndex bookings) {
+        this.bookings = bookings;
+    }
+
+    /**
+     * @return The bookings to check against, which include everything booked into this reservation so far
+     */
+    public BookingIndex getBookings() {
+        return bookings;
+    }
+
+    /**
+     * Books a new appointment's person and location
+     * @param personId The person booked, or null if there isn't one
+     * @param locationId The location booked, or null if there isn't one
+     */
+    public void book(Integer personId, Integer locationId, Date start, int durationMinutes) {
+        Booking booking = new Booking(nextId(), personId, locationId, start);
+        bookings.add(booking.id, personId, locationId, start, durationMinutes);
+        appointments.add(booking);
+    }
+
+    /**
+     * Books every occurrence of a new series, under a reserved id rather than its own, which it doesn't have until it is saved
+     */
+    public void bookSeries(RecurringSeries newSeries) {
+        RecurringSeries reserved = newSeries.withId(nextId());
+        bookings.addSeries(reserved);
+        series.add(reserved);
+    }
+
+    /**
+     * Removes everything booked, which is harmless to do more than once
+     */
+    void release() {
+        for (Booking booking : appointments) {
+            bookings.remove(booking.id, booking.personId, booking.locationId, booking.start);
+        }
+        series.forEach(bookings::removeSeries);
+    }
+
+    private static int nextId() {
+        return lastId.updateAndGet(id -> id == Integer.MIN_VALUE ? -1 : id - 1);
+    }
+
+    private static class Booking {
+        private final int id;
+        private final Integer personId;
+        private final Integer locationId;
+        private final Date start;
+
+        private Booking(int id, Integer personId, Integer locationId, Date start) {
+            this.id = id;
+            this.personId = personId;
+            this.locationId = locationId;
+            this.start = start;
+        }
+    }
+}
@@ -0,0 +1,381 @@
+package com.mutzy.service;
+
+import com.mutzy.domain.AppointmentSeries;
+import com.mutzy.domain.SeriesOverride;
+import com.mutzy.dto.AppointmentCursor;
+import com.mutzy.dto.AppointmentResponseDto;
+import com.mutzy.dto.LocationDto;
+import com.mutzy.dto.PersonDto;
+import com.mutzy.utils.Constants;
+import com.mutzy.utils.DateTimeCodec;
+
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.function.Predicate;
+
+/**
+ * An AppointmentSeries together with its overrides, which works out the series' occurrences only for the window
+ * it is asked about, so a series costs the same however many times it repeats.
+ * <p>
+ * Occurrence n (counting from 0) is due at the first occurrence's date and time plus n times the repeat interval,
+ * so the occurrences around any date are found by estimating n from the time since the first occurrence
+ * and correcting for months of different lengths, rather than by walking the series from its start.
+ * Occurrences that have been cancelled are left out, and those that have been changed are returned as changed,
+ * at their new time.
+ * <p>
+ * Occurrences are returned as AppointmentResponseDtos with no id, but with their series id and when they were due to start.
+ * Instances never change once created, so they are safe to read from many threads at once.
+ */
+public class RecurringSeries {
+
+    private static final Comparator<AppointmentResponseDto> BY_DATE = Comparator.comparing(AppointmentResponseDto::getDate);
+
+    private final AppointmentSeries series;
+    private final PersonDto person;
+    private final LocationDto location;
+    private final LocalDateTime start;
+    private final ChronoUnit unit;
+    private final int interval;
+    private final int lastIndex; // -1 if the series has no occurrences
+    private final Map<Long, SeriesOverride> overrides = new HashMap<>(); // keyed by when each occurrence was due, in epoch millis
+    private final List<AppointmentResponseDto> changedOccurrences = new ArrayList<>(); // sorted by date
+
+    /**
+     * @param series The series, which mustn't be changed afterwards
+     * @param person The series' person, or null if it doesn't have one
+     * @param location The series' location, or null if it doesn't have one
+     * @param overrides The series' cancelled and changed occurrences
+     */
+    public RecurringSeries(AppointmentSeries series, PersonDto person, LocationDto location, Collection<SeriesOverride> overrides) {
+        this.series = series;
+        this.person = person;
+        this.location = location;
+        this.start = DateTimeCodec.toLocalDateTime(series.getDate());
+        this.unit = unitOf(series.getFrequency());
+        this.interval = series.getRepeatInterval() == null ? 1 : series.getRepeatInterval();
+        int last = series.getOccurrenceCount() == null ? Integer.MAX_VALUE - 1 : series.getOccurrenceCount() - 1;
+        if (series.getUntilDate() != null) {
+            Date afterLastDay = DateTimeCodec.startOfDayAfter(DateTimeCodec.toPackedDate(series.getUntilDate()));
+            last = Math.min(last, firstIndexFrom(afterLastDay, last) - 1);
+        }
+        this.lastIndex = last;
+        for (SeriesOverride override : overrides) {
+            this.overrides.put(override.getOccurrenceDate().getTime(), override);
+            if (!override.isCancelled()) {
+                changedOccurrences.add(changedOccurrence(override));
+            }
+        }
+        changedOccurrences.sort(BY_DATE);
+    }
+
+    /**
+     * @return A copy of this series with the given override added, replacing any earlier override of the same occurrence
+     */
+    public RecurringSeries withOverride(SeriesOverride override) {
+        Map<Long, SeriesOverride> updated = new HashMap<>(overrides);
+        updated.put(override.getOccurrenceDate().getTime(), override);
+        return new RecurringSeries(series, person, location, updated.values());
+    }
+
+    /**
+     * @return A copy of this series under another id, e.g. to book its occurrences before it has been saved and given one
+     */
+    public RecurringSeries withId(Integer id) {
+        AppointmentSeries copy = new AppointmentSeries();
+        copy.setId(id);
+        copy.setDescription(series.getDescription());
+        copy.setDate(series.getDate());
+        copy.setDurationMinutes(series.getDurationMinutes());
+        copy.setPersonId(series.getPersonId());
+        copy.setLocationId(series.getLocationId());
+        copy.setFrequency(series.getFrequency());
+        copy.setRepeatInterval(series.getRepeatInterval());
+        copy.setUntilDate(series.getUntilDate());
+        copy.setOccurrenceCount(series.getOccurrenceCount());
+        return new RecurringSeries(copy, person, location, overrides.values());
+    }
+
+    public Integer getId() {
+        return series.getId();
+    }
+
+    public Integer getPersonId() {
+        return series.getPersonId();
+    }
+
+    public Integer getLocationId() {
+        return series.getLocationId();
+    }
+
+    /**
+     * @return How many occurrences the series has, before any are cancelled
+     */
+    public int getOccurrenceCount() {
+        return lastIndex + 1;
+    }
+
+    /**
+     * @return Whether an occurrence of the series is due to start at exactly the given time, whether or not it has since
+     * been cancelled or changed
+     */
+    public boolean isOccurrence(Date occurrenceDate) {
+        int index = firstIndexFrom(occurrenceDate, lastIndex);
+        return index <= lastIndex && dateOf(index).equals(occurrenceDate);
+    }
+
+    /**
+     * @param date When to look for an occurrence
+     * @param except When the occurrence to leave out was due, e.g. the one being moved
+     * @return Whether any other occurrence starts at exactly the given time as the series now stands, i.e. one due then
+     * that hasn't been cancelled or changed, or one that has been changed to start then
+     */
+    public boolean hasOtherOccurrenceAt(Date date, Date except) {
+        if (!date.equals(except) && !overrides.containsKey(date.getTime()) && isOccurrence(date)) {
+            return true;
+        }
+        for (AppointmentResponseDto changed : changedOccurrences) {
+            if (changed.getDate().equals(date) && !changed.getOccurrenceDate().equals(except)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return The override of the occurrence due at the given time, or null if it hasn't been cancelled or changed
+     */
+    public SeriesOverride findOverride(Date occurrenceDate) {
+        return overrides.get(occurrenceDate.getTime());
+    }
+
+    /**
+     * @return The occurrence that was due to start at the given time, as changed by its override if it has one.
+     * Null if it has been cancelled, or no occurrence was due then
+     */
+    public AppointmentResponseDto findOccurrence(Date occurrenceDate) {
+        SeriesOverride override = overrides.get(occurrenceDate.getTime());
+        if (override != null) {
+            return override.isCancelled() ? null : changedOccurrence(override);
+        }
+        return isOccurrence(occurrenceDate) ? occurrence(occurrenceDate) : null;
+    }
+
+    /**
+     * @return Every occurrence of the series in date order. Only for checking a whole series, e.g. before it is saved
+     */
+    public List<AppointmentResponseDto> findAllOccurrences() {
+        return findOccurrences(0, null, null);
+    }
+
+    /**
+     * @return The occurrences starting from `from` inclusive up to `to` exclusive, in date order
+     */
+    public List<AppointmentResponseDto> findOccurrencesBetween(Date from, Date to) {
+        return findOccurrences(firstIndexFrom(from, lastIndex), from, to);
+    }
+
+    /**
+     * @param after Return the occurrences after this position in the appointment list, or null to start from the first
+     * @param limit The maximum number of occurrences to return
+     * @return The occurrences in the order they are displayed in
+     */
+    public List<AppointmentResponseDto> findOccurrencesAfter(AppointmentCursor after, int limit) {
+        return take(occurrencesAfter(after), limit);
+    }
+
+    /**
+     * @param before Return the occurrences before this position in the appointment list
+     * @param limit The maximum number of occurrences to return
+     * @return The occurrences in reverse of the order they are displayed in, starting with the one closest to `before`
+     */
+    public List<AppointmentResponseDto> findOccurrencesBefore(AppointmentCursor before, int limit) {
+        return take(occurrencesBefore(before), limit);
+    }
+
+    /**
+     * Like findOccurrencesAfter, but works out each occurrence only when it is asked for,
+     * so occurrences from many series can be merged a page at a time
+     * @param after Start after this position in the appointment list, or null to start from the first
+     * @return The occurrences in the order they are displayed in
+     */
+    public Iterator<AppointmentResponseDto> occurrencesAfter(AppointmentCursor after) {
+        int index = after == null ? 0 : firstIndexFrom(after.getDate(), lastIndex);
+        int changedIndex = 0;
+        while (changedIndex < changedOccurrences.size() && after != null && !isAfter(changedOccurrences.get(changedIndex).getDate(), after)) {
+            changedIndex++;
+        }
+        return new OccurrenceIterator(index, changedIndex, 1, date -> after == null || isAfter(date, after));
+    }
+
+    /**
+     * Like findOccurrencesBefore, but works out each occurrence only when it is asked for
+     * @param before Start before this position in the appointment list
+     * @return The occurrences in reverse of the order they are displayed in, starting with the one closest to `before`
+     */
+    public Iterator<AppointmentResponseDto> occurrencesBefore(AppointmentCursor before) {
+        // the occurrence at the cursor's date itself may or may not come before the cursor, depending on the ids
+        int index = Math.min(firstIndexFrom(before.getDate(), lastIndex), lastIndex);
+        int changedIndex = changedOccurrences.size() - 1;
+        while (changedIndex >= 0 && !isBefore(changedOccurrences.get(changedIndex).getDate(), before)) {
+            changedIndex--;
+        }
+        return new OccurrenceIterator(index, changedIndex, -1, date -> isBefore(date, before));
+    }
+
+    private static List<AppointmentResponseDto> take(Iterator<AppointmentResponseDto> occurrences, int limit) {
+        List<AppointmentResponseDto> results = new ArrayList<>();
+        while (results.size() < limit && occurrences.hasNext()) {
+            results.add(occurrences.next());
+        }
+        return results;
+    }
+
+    /**
+     * Collects the occurrences from the given index on, stopping at the first that starts at or after `to`
+     * @param from Leave out changed occurrences that start before this, or null to include them all
+     * @param to Stop at this date, or null to carry on to the end of the series
+     */
+    private List<AppointmentResponseDto> findOccurrences(int firstIndex, Date from, Date to) {
+        List<AppointmentResponseDto> results = new ArrayList<>();
+        for (int index = firstIndex; index <= lastIndex; index++) {
+            Date date = dateOf(index);
+            if (to != null && !date.before(to)) {
+                break;
+            }
+            if (!overrides.containsKey(date.getTime())) {
+                results.add(occurrence(date));
+            }
+        }
+        for (AppointmentResponseDto changed : changedOccurrences) {
+            if ((from == null || !changed.getDate().before(from)) && (to == null || changed.getDate().before(to))) {
+                results.add(changed);
+            }
+        }
+        results.sort(BY_DATE);
+        return results;
+    }
+
+    /**
+     * @return The index of the first occurrence due at or after the given date, or lastIndex + 1 if there isn't one
+     */
+    private int firstIndexFrom(Date date, int lastIndex) {
+        long estimate = start.until(DateTimeCodec.toLocalDateTime(date), unit) / interval;
+        int index = (int) Math.max(0, Math.min(estimate, lastIndex + 1L));
+        // the estimate can be out by one where months have different lengths or the clocks change
+        while (index > 0 && !dateOf(index - 1).before(date)) {
+            index--;
+        }
+        while (index <= lastIndex && dateOf(index).before(date)) {
+            index++;
+        }
+        return index;
+    }
+
+    private Date dateOf(int index) {
+        // always counted from the first occurrence, so a monthly series started on the 31st returns to the 31st after a short month
+        return DateTimeCodec.toDate(start.plus((long) index * interval, unit));
+    }
+
+    /**
+     * Walks the occurrences due as planned and the changed occurrences side by side, in either direction,
+     * returning whichever of the two comes next
+     */
+    private class OccurrenceIterator implements Iterator<AppointmentResponseDto> {
+        private final int step; // 1 forwards, -1 backwards
+        private final Predicate<Date> inRange; // whether an occurrence due at a date is on the cursor's side of it
+        private int index;
+        private int changedIndex;
+        private Date nextDate; // of the next occurrence due as planned, or null if there are no more
+
+        private OccurrenceIterator(int index, int changedIndex, int step, Predicate<Date> inRange) {
+            this.index = index;
+            this.changedIndex = changedIndex;
+            this.step = step;
+            this.inRange = inRange;
+            findNextDate();
+        }
+
+        @Override
+        public boolean hasNext() {
+            return nextDate != null || (changedIndex >= 0 && changedIndex < changedOccurrences.size());
+        }
+
+        @Override
+        public AppointmentResponseDto next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            AppointmentResponseDto changed = changedIndex >= 0 && changedIndex < changedOccurrences.size()
+                    ? changedOccurrences.get(changedIndex) : null;
+            if (changed != null && (nextDate == null || changed.getDate().compareTo(nextDate) * step < 0)) {
+                changedIndex += step;
+                return changed;
+            }
+            AppointmentResponseDto occurrence = occurrence(nextDate);
+            index += step;
+            findNextDate();
+            return occurrence;
+        }
+
+        private void findNextDate() {
+            for (; index >= 0 && index <= lastIndex; index += step) {
+                Date date = dateOf(index);
+                if (!overrides.containsKey(date.getTime()) && inRange.test(date)) {
+                    nextDate = date;
+                    return;
+                }
+            }
+            nextDate = null;
+        }
+    }
+
+    private boolean isAfter(Date date, AppointmentCursor position) {
+        return new AppointmentCursor(date, -series.getId()).compareTo(position) > 0;
+    }
+
+    private boolean isBefore(Date date, AppointmentCursor position) {
+        return new AppointmentCursor(date, -series.getId()).compareTo(position) < 0;
+    }
+
+    private AppointmentResponseDto occurrence(Date date) {
+        AppointmentResponseDto occurrence = new AppointmentResponseDto();
+        occurrence.setSeriesId(series.getId());
+        occurrence.setOccurrenceDate(date);
+        occurrence.setDate(date);
+        occurrence.setDescription(series.getDescription());
+        occurrence.setDurationMinutes(series.getDurationMinutes() == null ? Constants.DEFAULT_APPOINTMENT_DURATION_MINUTES : series.getDurationMinutes());
+        occurrence.setPerson(person);
+        occurrence.setLocation(location);
+        return occurrence;
+    }
+
+    private AppointmentResponseDto changedOccurrence(SeriesOverride override) {
+        AppointmentResponseDto occurrence = occurrence(override.getDate());
+        occurrence.setOccurrenceDate(override.getOccurrenceDate());
+        occurrence.setDescription(override.getDescription());
+        occurrence.setDurationMinutes(override.getDurationMinutes() == null ? Constants.DEFAULT_APPOINTMENT_DURATION_MINUTES : override.getDurationMinutes());
+        return occurrence;
+    }
+
+    private static ChronoUnit unitOf(AppointmentSeries.Frequency frequency) {
+        switch (frequency) {
+            case DAILY:
+                return ChronoUnit.DAYS;
+            case WEEKLY:
+                return ChronoUnit.WEEKS;
+            case MONTHLY:
+                return ChronoUnit.MONTHS;
+            default:
+                throw new IllegalArgumentException("Unknown frequency " + frequency);
+        }
+    }
+}
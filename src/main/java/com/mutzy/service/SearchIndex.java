@@ -0,0 +1,275 @@
+package com.mutzy.service;
+
+import com.mutzy.dto.AppointmentCursor;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.NavigableSet;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * An inverted index from the words in each appointment's text to the appointments containing them, so appointments
+ * can be searched without scanning every one of them.
+ * <p>
+ * Text is split into words the same way for indexing and searching. Only letters and digits are allowed in words, so
+ * the spaces and punctuation allowed by Constants.STRING_INPUT_REGEX separate words, and words are compared ignoring case.
+ * <p>
+ * A search returns the appointments that contain every word of the query, where each query word matches any word that
+ * starts with it. The words are kept sorted, so the words starting with a query word are a single range of the index.
+ * Each word's appointments are kept sorted by (date, id), so the results come out in the order they are displayed in
+ * and a search stops as soon as it has found enough of them.
+ * <p>
+ * Safe to read from many threads at once. Writes must not run concurrently with each other for the same appointment.
+ */
+public class SearchIndex {
+
+    private final NavigableMap<String, Postings> postings = new ConcurrentSkipListMap<>();
+    private final Map<AppointmentCursor, String[]> appointmentWords = new ConcurrentHashMap<>();
+
+    /**
+     * Splits text into lower case words
+     * @return The distinct words in the text, in the order they first appear. Empty if the text is null or has no words
+     */
+    public static Set<String> tokenize(String text) {
+        if (text == null) {
+            return Collections.emptySet();
+        }
+        Set<String> words = new LinkedHashSet<>();
+        int start = -1;
+        for (int i = 0; i <= text.length(); i++) {
+            boolean wordCharacter = i < text.length() && isWordCharacter(text.charAt(i));
+            if (wordCharacter && start < 0) {
+                start = i;
+            } else if (!wordCharacter && start >= 0) {
+                words.add(text.substring(start, i).toLowerCase(Locale.ROOT));
+                start = -1;
+            }
+        }
+        return words;
+    }
+
+    /**
+     * Indexes an appointment, replacing anything previously indexed for the same position
+     * @param position The appointment's position in the displayed order
+     * @param texts The text to index it by, any of which may be null
+     */
+    public void add(AppointmentCursor position, String... texts) {
+        remove(position);
+        Set<String> words = new LinkedHashSet<>();
+        for (String text : texts) {
+            words.addAll(tokenize(text));
+        }
+        for (String word : words) {
+            postings.computeIfAbsent(word, w -> new Postings()).add(position);
+        }
+        appointmentWords.put(position, words.toArray(new String[0]));
+    }
+
+    /**
+     * Removes an appointment added with the same position. Does nothing if it isn't indexed
+     */
+    public void remove(AppointmentCursor position) {
+        String[] words = appointmentWords.remove(position);
+        if (words == null) {
+            return;
+        }
+        for (String word : words) {
+            Postings wordPostings = postings.get(word);
+            if (wordPostings != null) {
+                wordPostings.remove(position);
+                // empty postings are left in place, as a concurrent add could be about to use them
+            }
+        }
+    }
+
+    /**
+     * Finds the appointments matching every word in the query
+     * @param query The words to search for
+     * @param after Only return appointments after this position, or null to start from the first
+     * @param limit The maximum number of appointments to return
+     * @return The positions of the matching appointments in displayed order. Empty if the query has no words
+     */
+    public List<AppointmentCursor> search(String query, AppointmentCursor after, int limit) {
+        List<String> words = new ArrayList<>(tokenize(query));
+        if (words.isEmpty() || limit <= 0) {
+            return Collections.emptyList();
+        }
+
+        // walk the appointments of the rarest query word, and check the others against each appointment's own words
+        String rarest = null;
+        int rarestCount = Integer.MAX_VALUE;
+        for (String word : words) {
+            int count = countUpTo(word, rarestCount);
+            if (count < rarestCount) {
+                rarest = word;
+                rarestCount = count;
+            }
+        }
+        if (rarestCount == 0) {
+            return Collections.emptyList();
+        }
+        words.remove(rarest);
+
+        List<AppointmentCursor> results = new ArrayList<>(Math.min(limit, rarestCount));
+        Iterator<AppointmentCursor> candidates = positionsStartingWith(rarest, after);
+        while (candidates.hasNext() && results.size() < limit) {
+            AppointmentCursor candidate = candidates.next();
+            String[] candidateWords = appointmentWords.get(candidate);
+            if (candidateWords != null && containsAll(candidateWords, words)) {
+                results.add(candidate);
+            }
+        }
+        return results;
+    }
+
+    /**
+     * @return The number of distinct words indexed, including words no longer used by any appointment
+     */
+    public int getWordCount() {
+        return postings.size();
+    }
+
+    private static boolean isWordCharacter(char c) {
+        return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9');
+    }
+
+    private NavigableMap<String, Postings> wordsStartingWith(String prefix) {
+        return postings.subMap(prefix, true, prefix + Character.MAX_VALUE, false);
+    }
+
+    /**
+     * Counts how often the words starting with the prefix are used, stopping once the count reaches the limit
+     */
+    private int countUpTo(String prefix, int limit) {
+        int count = 0;
+        for (Postings wordPostings : wordsStartingWith(prefix).values()) {
+            count += wordPostings.size.get();
+            if (count >= limit) {
+                return limit;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Merges the sorted appointments of every word starting with the prefix into one sorted sequence, without duplicates
+     */
+    private Iterator<AppointmentCursor> positionsStartingWith(String prefix, AppointmentCursor after) {
+        List<NavigableSet<AppointmentCursor>> sources = new ArrayList<>();
+        for (Postings wordPostings : wordsStartingWith(prefix).values()) {
+            sources.add(after == null ? wordPostings.positions : wordPostings.positions.tailSet(after, false));
+        }
+        if (sources.size() == 1) {
+            return sources.get(0).iterator();
+        }
+        return new MergingIterator(sources);
+    }
+
+    private static boolean containsAll(String[] candidateWords, List<String> prefixes) {
+        for (String prefix : prefixes) {
+            boolean found = false;
+            for (String word : candidateWords) {
+                if (word.startsWith(prefix)) {
+                    found = true;
+                    break;
+                }
+            }
+            if (!found) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static class Postings {
+        private final ConcurrentSkipListSet<AppointmentCursor> positions = new ConcurrentSkipListSet<>();
+        private final AtomicInteger size = new AtomicInteger(); // ConcurrentSkipListSet.size() walks the whole set
+
+        private void add(AppointmentCursor position) {
+            if (positions.add(position)) {
+                size.incrementAndGet();
+            }
+        }
+
+        private void remove(AppointmentCursor position) {
+            if (positions.remove(position)) {
+                size.decrementAndGet();
+            }
+        }
+    }
+
+    private static class MergingIterator implements Iterator<AppointmentCursor> {
+        private final PriorityQueue<Source> sources = new PriorityQueue<>();
+        private AppointmentCursor last;
+
+        private MergingIterator(List<NavigableSet<AppointmentCursor>> sets) {
+            for (NavigableSet<AppointmentCursor> set : sets) {
+                Iterator<AppointmentCursor> iterator = set.iterator();
+                if (iterator.hasNext()) {
+                    sources.add(new Source(iterator));
+                }
+            }
+            skipDuplicates();
+        }
+
+        @Override
+        public boolean hasNext() {
+            return !sources.isEmpty();
+        }
+
+        @Override
+        public AppointmentCursor next() {
+            Source source = sources.poll();
+            last = source.current;
+            if (source.advance()) {
+                sources.add(source);
+            }
+            skipDuplicates();
+            return last;
+        }
+
+        // an appointment containing more than one of the merged words appears in each of their sets
+        private void skipDuplicates() {
+            while (last != null && !sources.isEmpty() && sources.peek().current.equals(last)) {
+                Source source = sources.poll();
+                if (source.advance()) {
+                    sources.add(source);
+                }
+            }
+        }
+    }
+
+    private static class Source implements Comparable<Source> {
+        private final Iterator<AppointmentCursor> iterator;
+        private AppointmentCursor current;
+
+        private Source(Iterator<AppointmentCursor> iterator) {
+            this.iterator = iterator;
+            this.current = iterator.next();
+        }
+
+        private boolean advance() {
+            if (!iterator.hasNext()) {
+                return false;
+            }
+            current = iterator.next();
+            return true;
+        }
+
+        @Override
+        public int compareTo(Source other) {
+            return current.compareTo(other.current);
+        }
+    }
+}
@@ -0,0 +1,266 @@
+package com.mutzy.service;
+
+import com.mutzy.domain.Location;
+import com.mutzy.domain.Person;
+import com.mutzy.dto.AppointmentResponseDto;
+import com.mutzy.dto.LocationDto;
+import com.mutzy.dto.PersonDto;
+import com.mutzy.utils.ObjectMapper;
+import lombok.Getter;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedOutputStream;
+
+/**
+ * Reads and writes the binary snapshot files that the AppointmentView is restored from on startup.
+ * <p>
+ * A file is a header (magic number, format version and when it was written), then the people, locations and appointments,
+ * each as a run of fixed-order fields ended by an id of 0, then a trailer (how many appointments there are, their highest id
+ * and the sum of their ids), and last of all a CRC32 of everything before it. Ints and longs are big-endian, dates are epoch
+ * millis and text is a byte length followed by UTF-8, with a length of -1 for null. Appointments store only the ids of their
+ * person and location, which are shared with the people and locations sections when read back. A person or location created
+ * while a snapshot is being written can be missing from those sections though, so the ids are also kept as they were read.
+ * <p>
+ * Files are written to a temporary file that is then moved over the old one, so a crash mid-write leaves the last good
+ * snapshot in place, and read by memory-mapping them. A file with a different format version, or whose checksum doesn't
+ * match, is rejected rather than partly loaded. Bump FORMAT_VERSION whenever the layout changes.
+ */
+public final class ViewSnapshotFile {
+
+    static final int MAGIC = 0x41505653; // "APVS"
+    static final int FORMAT_VERSION = 1;
+
+    private static final int END_OF_SECTION = 0; // ids are allocated from 1
+    private static final int NULL_TEXT = -1;
+
+    private ViewSnapshotFile() {}
+
+    /**
+     * Writes a snapshot, replacing any earlier one at the same path.
+     * The collections may be changed while they are written, as long as their iterators allow that
+     * @throws IOException if the file couldn't be written, in which case any earlier snapshot is left as it was
+     */
+    public static void write(Path file, Iterable<Person> people, Iterable<Location> locations,
+                             Iterable<AppointmentResponseDto> appointments) throws IOException {
+        Path temporaryFile = file.resolveSibling(file.getFileName() + ".tmp");
+        CRC32 checksum = new CRC32();
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+                new CheckedOutputStream(Files.newOutputStream(temporaryFile), checksum), 1 << 16))) {
+            out.writeInt(MAGIC);
+            out.writeInt(FORMAT_VERSION);
+            out.writeLong(System.currentTimeMillis());
+            for (Person person : people) {
+                out.writeInt(person.getId());
+                writeText(out, person.getName());
+                writeText(out, person.getAffiliation());
+            }
+            out.writeInt(END_OF_SECTION);
+            for (Location location : locations) {
+                out.writeInt(location.getId());
+                writeText(out, location.getName());
+                writeText(out, location.getDescription());
+            }
+            out.writeInt(END_OF_SECTION);
+            int appointmentCount = 0;
+            int highestAppointmentId = 0;
+            long appointmentIdSum = 0;
+            for (AppointmentResponseDto appointment : appointments) {
+                out.writeInt(appointment.getId());
+                out.writeLong(appointment.getDate().getTime());
+                out.writeInt(appointment.getDurationMinutes());
+                out.writeInt(appointment.getPerson() == null ? 0 : appointment.getPerson().getId());
+                out.writeInt(appointment.getLocation() == null ? 0 : appointment.getLocation().getId());
+                writeText(out, appointment.getDescription());
+                appointmentCount++;
+                highestAppointmentId = Math.max(highestAppointmentId, appointment.getId());
+                appointmentIdSum += appointment.getId();
+            }
+            out.writeInt(END_OF_SECTION);
+            out.writeInt(appointmentCount);
+            out.writeInt(highestAppointmentId);
+            out.writeLong(appointmentIdSum);
+            out.flush();
+            out.writeLong(checksum.getValue());
+        } catch (IOException e) {
+            Files.deleteIfExists(temporaryFile);
+            throw e;
+        }
+        Files.move(temporaryFile, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * @throws IOException if the file can't be read, is damaged, or was written in a different format version
+     */
+    public static Contents read(Path file) throws IOException {
+        MappedByteBuffer buffer;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            if (channel.size() > Integer.MAX_VALUE) {
+                throw new IOException("Snapshot " + file + " is too large to map");
+            }
+            // the mapping stays valid after the channel is closed
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        if (buffer.limit() < 24 || buffer.getInt(0) != MAGIC) {
+            throw new IOException(file + " is not an appointment view snapshot");
+        }
+        if (buffer.getInt(4) != FORMAT_VERSION) {
+            throw new IOException("Snapshot " + file + " has format version " + buffer.getInt(4) + " rather than " + FORMAT_VERSION);
+        }
+        CRC32 checksum = new CRC32();
+        ByteBuffer checked = buffer.duplicate();
+        checked.limit(buffer.limit() - Long.BYTES);
+        checksum.update(checked);
+        if (checksum.getValue() != buffer.getLong(buffer.limit() - Long.BYTES)) {
+            throw new IOException("Snapshot " + file + " is damaged: its checksum doesn't match");
+        }
+        try {
+            return decode(buffer);
+        } catch (RuntimeException e) { // e.g. a BufferUnderflowException from a file that was cut short
+            throw new IOException("Snapshot " + file + " could not be decoded", e);
+        }
+    }
+
+    private static Contents decode(ByteBuffer buffer) {
+        buffer.position(8);
+        long writtenAt = buffer.getLong();
+        byte[] scratch = new byte[256];
+
+        List<Person> people = new ArrayList<>();
+        Map<Integer, PersonDto> personDtos = new HashMap<>();
+        for (int id = buffer.getInt(); id != END_OF_SECTION; id = buffer.getInt()) {
+            Person person = new Person();
+            person.setId(id);
+            person.setName(readText(buffer, scratch));
+            person.setAffiliation(readText(buffer, scratch));
+            people.add(person);
+            personDtos.put(id, ObjectMapper.getInstance().mapDomainToDto(person));
+        }
+
+        List<Location> locations = new ArrayList<>();
+        Map<Integer, LocationDto> locationDtos = new HashMap<>();
+        for (int id = buffer.getInt(); id != END_OF_SECTION; id = buffer.getInt()) {
+            Location location = new Location();
+            location.setId(id);
+            location.setName(readText(buffer, scratch));
+            location.setDescription(readText(buffer, scratch));
+            locations.add(location);
+            locationDtos.put(id, ObjectMapper.getInstance().mapDomainToDto(location));
+        }
+
+        List<AppointmentResponseDto> appointments = new ArrayList<>();
+        IntList personIds = new IntList();
+        IntList locationIds = new IntList();
+        for (int id = buffer.getInt(); id != END_OF_SECTION; id = buffer.getInt()) {
+            AppointmentResponseDto appointment = new AppointmentResponseDto();
+            appointment.setId(id);
+            appointment.setDate(new Date(buffer.getLong()));
+            appointment.setDurationMinutes(buffer.getInt());
+            int personId = buffer.getInt();
+            int locationId = buffer.getInt();
+            appointment.setPerson(personDtos.get(personId));
+            appointment.setLocation(locationDtos.get(locationId));
+            appointment.setDescription(readText(buffer, scratch));
+            appointments.add(appointment);
+            personIds.add(personId);
+            locationIds.add(locationId);
+        }
+
+        int appointmentCount = buffer.getInt();
+        if (appointmentCount != appointments.size()) {
+            throw new IllegalStateException("Expected " + appointmentCount + " appointments but found " + appointments.size());
+        }
+        return new Contents(writtenAt, people, locations, appointments, personIds.toArray(), locationIds.toArray(),
+                buffer.getInt(), buffer.getLong());
+    }
+
+    private static void writeText(DataOutputStream out, String value) throws IOException {
+        if (value == null) {
+            out.writeInt(NULL_TEXT);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readText(ByteBuffer buffer, byte[] scratch) {
+        int length = buffer.getInt();
+        if (length == NULL_TEXT) {
+            return null;
+        }
+        byte[] bytes = length <= scratch.length ? scratch : new byte[length];
+        buffer.get(bytes, 0, length);
+        return new String(bytes, 0, length, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Everything read back from a snapshot
+     */
+    @Getter
+    public static class Contents {
+        private final long writtenAt;
+        private final List<Person> people;
+        private final List<Location> locations;
+        // with a person or location that wasn't in the snapshot's own people or locations left null
+        private final List<AppointmentResponseDto> appointments;
+        // the person and location id of each appointment, in the same order, or 0 for none
+        private final int[] personIds;
+        private final int[] locationIds;
+        private final int highestAppointmentId; // 0 if there are no appointments
+        private final long appointmentIdSum;
+
+        Contents(long writtenAt, List<Person> people, List<Location> locations, List<AppointmentResponseDto> appointments,
+                 int[] personIds, int[] locationIds, int highestAppointmentId, long appointmentIdSum) {
+            this.writtenAt = writtenAt;
+            this.people = people;
+            this.locations = locations;
+            this.appointments = appointments;
+            this.personIds = personIds;
+            this.locationIds = locationIds;
+            this.highestAppointmentId = highestAppointmentId;
+            this.appointmentIdSum = appointmentIdSum;
+        }
+
+        /**
+         * @return Whether the appointment at the given index has a person or location that wasn't in the snapshot
+         */
+        public boolean isUnresolved(int index) {
+            AppointmentResponseDto appointment = appointments.get(index);
+            return (personIds[index] != 0 && appointment.getPerson() == null)
+                    || (locationIds[index] != 0 && appointment.getLocation() == null);
+        }
+    }
+
+    private static class IntList {
+        private int[] values = new int[1024];
+        private int size;
+
+        private void add(int value) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size++] = value;
+        }
+
+        private int[] toArray() {
+            return Arrays.copyOf(values, size);
+        }
+    }
+}
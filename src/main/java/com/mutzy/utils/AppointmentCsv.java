@@ -0,0 +1,40 @@
+package com.mutzy.utils;
+
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.dataformat.csv.CsvMapper;
+import com.fasterxml.jackson.dataformat.csv.CsvParser;
+import com.fasterxml.jackson.dataformat.csv.CsvSchema;
+import com.mutzy.dto.AppointmentRequestDto;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.List;
+
+/**
+ * Reads appointments from CSV with a header row naming the AppointmentRequestDto fields, e.g.
+ * <pre>
+ * description,date,time,personId,locationId
+ * Quarterly review,2022-12-20,12:30,1,
+ * </pre>
+ * Columns may be in any order, and an empty personId or locationId means no person or location
+ */
+public final class AppointmentCsv {
+
+    // ObjectReaders are immutable and thread safe, so one is shared by every request
+    private static final ObjectReader APPOINTMENT_READER = new CsvMapper()
+            .enable(CsvParser.Feature.TRIM_SPACES)
+            .readerFor(AppointmentRequestDto.class)
+            .with(CsvSchema.emptySchema().withHeader());
+
+    private AppointmentCsv() {}
+
+    /**
+     * @throws IOException if the CSV is malformed, has an unknown column, or has a value that isn't the right type for its column
+     */
+    public static List<AppointmentRequestDto> readAppointments(Reader csv) throws IOException {
+        try (MappingIterator<AppointmentRequestDto> appointments = APPOINTMENT_READER.readValues(csv)) {
+            return appointments.readAll();
+        }
+    }
+}
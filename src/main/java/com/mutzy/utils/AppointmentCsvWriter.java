@@ -0,0 +1,234 @@
+package com.mutzy.utils;
+
+import com.mutzy.dao.AppointmentRow;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.time.zone.ZoneOffsetTransition;
+import java.time.zone.ZoneRules;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Writes appointments as CSV, one AppointmentRow at a time, e.g.
+ * <pre>
+ * id,description,date,time,durationMinutes,personId,personName,personAffiliation,locationId,locationName,locationDescription
+ * 12,"Review, Q4",2022-12-20,12:30,45,1,Bob Smith,Acme Corp,,,
+ * </pre>
+ * Dates and times are in the given time zone, in the same "yyyy-MM-dd" and "HH:mm" forms the appointment form takes.
+ * Values containing a comma, quote or line break are quoted as in RFC 4180, and every other value is written as it is.
+ * <p>
+ * Nothing is created per row: numbers are written digit by digit, text is copied straight into a buffer of chars, and the date
+ * and time are worked out by arithmetic from a day that is only looked up again when a row falls outside it.
+ * As rows arrive in date order that happens about once per day of appointments.
+ * Not thread safe; use one writer per export.
+ */
+public class AppointmentCsvWriter implements Closeable {
+
+    public static final String HEADER = "id,description,date,time,durationMinutes,personId,personName,personAffiliation," +
+            "locationId,locationName,locationDescription";
+
+    private static final long MILLIS_PER_DAY = TimeUnit.DAYS.toMillis(1);
+    private static final long MILLIS_PER_MINUTE = TimeUnit.MINUTES.toMillis(1);
+    private static final String LINE_END = "\r\n";
+
+    private final Writer out;
+    private final ZoneRules zoneRules;
+    // filled here and handed to the Writer when full, as every call on a Writer takes a lock
+    private final char[] buffer = new char[8192];
+    private int length;
+
+    // the instants, as epoch millis, over which the day below and the zone's offset stay the same
+    private long dayFrom = Long.MAX_VALUE;
+    private long dayTo = Long.MIN_VALUE;
+    private long localDayStart; // dayFrom's day at midnight, in local epoch millis
+    private long offsetMillis;
+    private final char[] day = new char[10];
+
+    public AppointmentCsvWriter(OutputStream outputStream, ZoneId zone) {
+        this.out = new OutputStreamWriter(outputStream, StandardCharsets.UTF_8);
+        this.zoneRules = zone.getRules();
+    }
+
+    public void writeHeader() throws IOException {
+        write(HEADER);
+        write(LINE_END);
+    }
+
+    public void write(AppointmentRow row) throws IOException {
+        writeInt(row.getId());
+        write(',');
+        writeText(row.getDescription());
+        write(',');
+        writeDateAndTime(row.getDateMillis());
+        write(',');
+        writeInt(row.getDurationMinutes() == 0 ? Constants.DEFAULT_APPOINTMENT_DURATION_MINUTES : row.getDurationMinutes());
+        write(',');
+        writeId(row.getPersonId());
+        write(',');
+        writeText(row.getPersonName());
+        write(',');
+        writeText(row.getPersonAffiliation());
+        write(',');
+        writeId(row.getLocationId());
+        write(',');
+        writeText(row.getLocationName());
+        write(',');
+        writeText(row.getLocationDescription());
+        write(LINE_END);
+    }
+
+    public void flush() throws IOException {
+        drain();
+        out.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        drain();
+        out.close();
+    }
+
+    private void writeDateAndTime(long millis) throws IOException {
+        if (millis < dayFrom || millis >= dayTo) {
+            moveToDayOf(millis);
+        }
+        write(day);
+        write(',');
+        int minuteOfDay = (int) ((millis + offsetMillis - localDayStart) / MILLIS_PER_MINUTE);
+        writeTwoDigits(minuteOfDay / 60);
+        write(':');
+        writeTwoDigits(minuteOfDay % 60);
+    }
+
+    /**
+     * Looks up the day the given instant falls on, and how long both it and the zone's current offset last
+     */
+    private void moveToDayOf(long millis) {
+        Instant instant = Instant.ofEpochMilli(millis);
+        offsetMillis = TimeUnit.SECONDS.toMillis(zoneRules.getOffset(instant).getTotalSeconds());
+        LocalDate date = LocalDate.ofEpochDay(Math.floorDiv(millis + offsetMillis, MILLIS_PER_DAY));
+        localDayStart = date.toEpochDay() * MILLIS_PER_DAY;
+        dayFrom = localDayStart - offsetMillis;
+        dayTo = dayFrom + MILLIS_PER_DAY;
+        // on days the clocks change, the day is split at the change, as the offset is only the same either side of it
+        ZoneOffsetTransition previous = zoneRules.previousTransition(instant.plusMillis(1));
+        if (previous != null) {
+            dayFrom = Math.max(dayFrom, previous.toEpochSecond() * 1000);
+        }
+        ZoneOffsetTransition next = zoneRules.nextTransition(instant);
+        if (next != null) {
+            dayTo = Math.min(dayTo, next.toEpochSecond() * 1000);
+        }
+        int year = date.getYear();
+        day[0] = (char) ('0' + year / 1000 % 10);
+        day[1] = (char) ('0' + year / 100 % 10);
+        day[2] = (char) ('0' + year / 10 % 10);
+        day[3] = (char) ('0' + year % 10);
+        day[4] = '-';
+        day[5] = (char) ('0' + date.getMonthValue() / 10);
+        day[6] = (char) ('0' + date.getMonthValue() % 10);
+        day[7] = '-';
+        day[8] = (char) ('0' + date.getDayOfMonth() / 10);
+        day[9] = (char) ('0' + date.getDayOfMonth() % 10);
+    }
+
+    private void writeTwoDigits(int value) throws IOException {
+        write((char) ('0' + value / 10));
+        write((char) ('0' + value % 10));
+    }
+
+    /**
+     * Writes nothing for 0, which AppointmentRow uses for no id
+     */
+    private void writeId(int id) throws IOException {
+        if (id != 0) {
+            writeInt(id);
+        }
+    }
+
+    private void writeInt(int value) throws IOException {
+        if (value < 0) {
+            write(String.valueOf(value)); // ids and durations are never negative
+            return;
+        }
+        if (buffer.length - length < 10) {
+            drain();
+        }
+        int digits = 1;
+        for (int remaining = value / 10; remaining > 0; remaining /= 10) {
+            digits++;
+        }
+        length += digits;
+        for (int i = length - 1, remaining = value; i >= length - digits; i--, remaining /= 10) {
+            buffer[i] = (char) ('0' + remaining % 10);
+        }
+    }
+
+    private void writeText(String value) throws IOException {
+        if (value == null) {
+            return;
+        }
+        if (!needsQuotes(value)) {
+            write(value);
+            return;
+        }
+        write('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '"') {
+                write('"');
+            }
+            write(c);
+        }
+        write('"');
+    }
+
+    private void write(char c) throws IOException {
+        if (length == buffer.length) {
+            drain();
+        }
+        buffer[length++] = c;
+    }
+
+    private void write(String value) throws IOException {
+        for (int start = 0; start < value.length(); ) {
+            if (length == buffer.length) {
+                drain();
+            }
+            int end = Math.min(value.length(), start + buffer.length - length);
+            value.getChars(start, end, buffer, length);
+            length += end - start;
+            start = end;
+        }
+    }
+
+    private void write(char[] chars) throws IOException {
+        if (buffer.length - length < chars.length) {
+            drain();
+        }
+        System.arraycopy(chars, 0, buffer, length, chars.length);
+        length += chars.length;
+    }
+
+    private void drain() throws IOException {
+        out.write(buffer, 0, length);
+        length = 0;
+    }
+
+    private static boolean needsQuotes(String value) {
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == ',' || c == '"' || c == '\n' || c == '\r') {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -1,13 +1,31 @@
 package com.mutzy.utils;
 
-import java.text.DateFormat;
-import java.text.SimpleDateFormat;
-
 public class Constants {
 
     // web page mappings
     public static final String APPOINTMENTS_PAGE = "appointments";
     public static final String ERROR_PAGE = "error";
+    public static final String APPOINTMENTS_PATH = "/appointments";
+
+    // number of appointments shown on each page of the appointments page
+    public static final int APPOINTMENTS_PAGE_SIZE = 50;
+
+    // number of archived appointments returned on each page by /api/appointments/history
+    public static final int ARCHIVED_APPOINTMENTS_PAGE_SIZE = 1000;
+
+    // most appointments accepted by a single bulk import request
+    public static final int MAX_IMPORTED_APPOINTMENTS = 100000;
+
+    // most appointment ids accepted by a single bulk delete request
+    public static final int MAX_DELETED_APPOINTMENT_IDS = 100000;
+
+    // appointment lengths. Appointments saved before durations were recorded are treated as the default length
+    public static final int DEFAULT_APPOINTMENT_DURATION_MINUTES = 30;
+    public static final int MAX_APPOINTMENT_DURATION_MINUTES = 24 * 60;
+
+    // recurring series limits. Every occurrence of a new series is checked for double bookings, so the number is capped
+    public static final int MAX_SERIES_OCCURRENCES = 5000;
+    public static final int MAX_SERIES_REPEAT_INTERVAL = 99;
 
     // database text field sizes
     public static final int MAX_APPOINTMENT_DESCRIPTION_LENGTH = 1024;
@@ -16,12 +34,10 @@ public class Constants {
     public static final int MAX_LOCATION_NAME_LENGTH = 255;
     public static final int MAX_LOCATION_DESCRIPTION_LENGTH = 1024;
 
+    // longest search accepted, as nothing longer could match
+    public static final int MAX_SEARCH_QUERY_LENGTH = 1024;
+
     // regex
     public static final String STRING_INPUT_REGEX = "^[a-zA-Z0-9.,?!\\-\\_ ]+$";
 
-    // date time formats
-    public static final DateFormat DATE_FORMAT = new SimpleDateFormat("yyyy-MM-dd");
-    public static final DateFormat TIME_FORMAT = new SimpleDateFormat("HH:mm");
-    public static final DateFormat DATE_TIME_FORMAT = new SimpleDateFormat("yyyy-MM-dd HH:mm");
-
 }
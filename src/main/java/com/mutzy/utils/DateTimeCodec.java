@@ -0,0 +1,167 @@
+package com.mutzy.utils;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.Date;
+
+/**
+ * Parses the "yyyy-MM-dd" dates and "HH:mm" times sent by the appointment form.
+ * Unlike SimpleDateFormat this keeps no state, so it is safe to use from any number of request threads at once.
+ * Each value is checked and parsed in a single pass over its characters without creating any intermediate strings.
+ * <p>
+ * Parsing is strict: the date must exist on the calendar (no rolling "2022-02-30" over into March)
+ * and the time must be a valid time of day. Seconds ("HH:mm:ss") are accepted as some browsers send them.
+ */
+public final class DateTimeCodec {
+
+    /**
+     * Returned by parseDate and parseTime when the given value is not valid
+     */
+    public static final int INVALID = -1;
+
+    private static final int[] DAYS_IN_MONTH = {31, 29, 31, 30, 31, 30, 31, 31, 30, 31, 30, 31};
+
+    private DateTimeCodec() {}
+
+    /**
+     * @param value A date in the form "yyyy-MM-dd"
+     * @return The date packed into an int as yyyyMMdd, or INVALID if the value is not a valid date
+     */
+    public static int parseDate(CharSequence value) {
+        if (value == null || value.length() != 10 || value.charAt(4) != '-' || value.charAt(7) != '-') {
+            return INVALID;
+        }
+        int year = parseDigits(value, 0, 4);
+        int month = parseDigits(value, 5, 7);
+        int day = parseDigits(value, 8, 10);
+        if (year == INVALID || month < 1 || month > 12 || day < 1 || day > daysInMonth(year, month)) {
+            return INVALID;
+        }
+        return year * 10000 + month * 100 + day;
+    }
+
+    /**
+     * @param value A time in the form "HH:mm" or "HH:mm:ss". The hour may be a single digit
+     * @return The number of seconds since midnight, or INVALID if the value is not a valid time
+     */
+    public static int parseTime(CharSequence value) {
+        if (value == null) {
+            return INVALID;
+        }
+        int length = value.length();
+        int hourEnd = length > 1 && value.charAt(1) == ':' ? 1 : 2;
+        int minuteEnd = hourEnd + 3;
+        if (length < minuteEnd || value.charAt(hourEnd) != ':') {
+            return INVALID;
+        }
+        int hour = parseDigits(value, 0, hourEnd);
+        int minute = parseDigits(value, hourEnd + 1, minuteEnd);
+        int second = 0;
+        if (length != minuteEnd) {
+            if (length != minuteEnd + 3 || value.charAt(minuteEnd) != ':') {
+                return INVALID;
+            }
+            second = parseDigits(value, minuteEnd + 1, length);
+        }
+        if (hour < 0 || hour > 23 || minute < 0 || minute > 59 || second < 0 || second > 59) {
+            return INVALID;
+        }
+        return hour * 3600 + minute * 60 + second;
+    }
+
+    /**
+     * Combines the results of parseDate and parseTime into a Date in the server's time zone
+     * @param date A valid date returned by parseDate
+     * @param secondOfDay A valid time returned by parseTime
+     */
+    public static Date toDate(int date, int secondOfDay) {
+        return toDate(LocalDateTime.of(date / 10000, date / 100 % 100, date % 100,
+                secondOfDay / 3600, secondOfDay / 60 % 60, secondOfDay % 60));
+    }
+
+    /**
+     * @param date A valid date returned by parseDate
+     * @return Midnight at the start of the following day, in the server's time zone
+     */
+    public static Date startOfDayAfter(int date) {
+        LocalDate nextDay = LocalDate.of(date / 10000, date / 100 % 100, date % 100).plusDays(1);
+        return Date.from(nextDay.atStartOfDay(ZoneId.systemDefault()).toInstant());
+    }
+
+    /**
+     * @return The given Date as a date and time of day in the server's time zone
+     */
+    public static LocalDateTime toLocalDateTime(Date date) {
+        return LocalDateTime.ofInstant(date.toInstant(), ZoneId.systemDefault());
+    }
+
+    /**
+     * @return The given date and time of day in the server's time zone as a Date
+     */
+    public static Date toDate(LocalDateTime dateTime) {
+        return Date.from(dateTime.atZone(ZoneId.systemDefault()).toInstant());
+    }
+
+    /**
+     * Parses a date and time in one go
+     * @return The parsed date, or null if either value is not valid
+     */
+    public static Date parse(CharSequence date, CharSequence time) {
+        int parsedDate = parseDate(date);
+        int parsedTime = parseTime(time);
+        return parsedDate == INVALID || parsedTime == INVALID ? null : toDate(parsedDate, parsedTime);
+    }
+
+    /**
+     * @return The day the given Date falls on in the server's time zone, packed into an int in the same way as parseDate
+     */
+    public static int toPackedDate(Date date) {
+        LocalDate day = date.toInstant().atZone(ZoneId.systemDefault()).toLocalDate();
+        return day.getYear() * 10000 + day.getMonthValue() * 100 + day.getDayOfMonth();
+    }
+
+    /**
+     * @param date A date packed by parseDate or toPackedDate
+     * @return The date in the form "yyyy-MM-dd"
+     */
+    public static String formatDate(int date) {
+        char[] formatted = new char[10];
+        writeDigits(formatted, 0, 4, date / 10000);
+        formatted[4] = '-';
+        writeDigits(formatted, 5, 7, date / 100 % 100);
+        formatted[7] = '-';
+        writeDigits(formatted, 8, 10, date % 100);
+        return new String(formatted);
+    }
+
+    private static void writeDigits(char[] destination, int start, int end, int value) {
+        for (int i = end - 1; i >= start; i--) {
+            destination[i] = (char) ('0' + value % 10);
+            value /= 10;
+        }
+    }
+
+    private static int parseDigits(CharSequence value, int start, int end) {
+        int result = 0;
+        for (int i = start; i < end; i++) {
+            int digit = value.charAt(i) - '0';
+            if (digit < 0 || digit > 9) {
+                return INVALID;
+            }
+            result = result * 10 + digit;
+        }
+        return result;
+    }
+
+    private static int daysInMonth(int year, int month) {
+        if (month == 2 && !isLeapYear(year)) {
+            return 28;
+        }
+        return DAYS_IN_MONTH[month - 1];
+    }
+
+    private static boolean isLeapYear(int year) {
+        return (year % 4 == 0 && year % 100 != 0) || year % 400 == 0;
+    }
+}
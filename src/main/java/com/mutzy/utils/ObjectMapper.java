@@ -1,14 +1,18 @@
 package com.mutzy.utils;
 
+import com.mutzy.dao.AppointmentDetails;
 import com.mutzy.domain.Appointment;
+import com.mutzy.domain.AppointmentSeries;
 import com.mutzy.domain.Location;
 import com.mutzy.domain.Person;
 import com.mutzy.dto.AppointmentRequestDto;
+import com.mutzy.dto.AppointmentResponseDto;
+import com.mutzy.dto.AppointmentSeriesRequestDto;
 import com.mutzy.dto.LocationDto;
 import com.mutzy.dto.PersonDto;
 import lombok.extern.slf4j.Slf4j;
 
-import java.text.ParseException;
+import java.util.Date;
 
 @Slf4j
 public class ObjectMapper {
@@ -24,19 +28,46 @@ public class ObjectMapper {
     }
 
     public Appointment mapDtoToDomain(AppointmentRequestDto dto) {
-        Appointment appointment = new Appointment();
-        try {
-            appointment.setPersonId(dto.getPersonId());
-            appointment.setLocationId(dto.getLocationId());
-            appointment.setDescription(dto.getDescription().length() > Constants.MAX_APPOINTMENT_DESCRIPTION_LENGTH ?
-                    dto.getDescription().substring(0, Constants.MAX_APPOINTMENT_DESCRIPTION_LENGTH) :
-                    dto.getDescription());
-            appointment.setDate(Constants.DATE_TIME_FORMAT.parse(String.format("%s %s", dto.getDate(), dto.getTime())));
-            return appointment;
-        } catch (ParseException e) {
-            log.warn("Failed to parse given date", e);
-            return appointment;
+        Date date = DateTimeCodec.parse(dto.getDate(), dto.getTime());
+        if (date == null) {
+            log.warn("Failed to parse given date {} {}", dto.getDate(), dto.getTime());
         }
+        return mapDtoToDomain(dto, date);
+    }
+
+    /**
+     * Maps the given appointment using a date that has already been parsed from it,
+     * e.g. the one returned by ValidationUtils.validateAppointmentDto
+     */
+    public Appointment mapDtoToDomain(AppointmentRequestDto dto, Date date) {
+        Appointment appointment = new Appointment();
+        appointment.setPersonId(dto.getPersonId());
+        appointment.setLocationId(dto.getLocationId());
+        appointment.setDescription(dto.getDescription().length() > Constants.MAX_APPOINTMENT_DESCRIPTION_LENGTH ?
+                dto.getDescription().substring(0, Constants.MAX_APPOINTMENT_DESCRIPTION_LENGTH) :
+                dto.getDescription());
+        appointment.setDate(date);
+        appointment.setDurationMinutes(ValidationUtils.durationOf(dto));
+        return appointment;
+    }
+
+    /**
+     * Maps the given series using the date of its first occurrence, which has already been parsed from it
+     */
+    public AppointmentSeries mapDtoToDomain(AppointmentSeriesRequestDto dto, Date date) {
+        Appointment appointment = mapDtoToDomain((AppointmentRequestDto) dto, date);
+        AppointmentSeries series = new AppointmentSeries();
+        series.setPersonId(appointment.getPersonId());
+        series.setLocationId(appointment.getLocationId());
+        series.setDescription(appointment.getDescription());
+        series.setDate(date);
+        series.setDurationMinutes(appointment.getDurationMinutes());
+        series.setFrequency(dto.getFrequency());
+        series.setRepeatInterval(dto.getRepeatInterval() == null ? 1 : dto.getRepeatInterval());
+        int until = DateTimeCodec.parseDate(dto.getUntil());
+        series.setUntilDate(until == DateTimeCodec.INVALID ? null : DateTimeCodec.toDate(until, 0));
+        series.setOccurrenceCount(dto.getOccurrenceCount());
+        return series;
     }
 
     public Person mapDtoToDomain(PersonDto dto) {
@@ -61,6 +92,30 @@ public class ObjectMapper {
         return location;
     }
 
+    public AppointmentResponseDto mapDomainToDto(AppointmentDetails details) {
+        Appointment appointment = details.getAppointment();
+        AppointmentResponseDto dto = new AppointmentResponseDto();
+        dto.setId(appointment.getId());
+        dto.setDate(appointment.getDate());
+        dto.setDurationMinutes(appointment.getDurationMinutes() == null ? Constants.DEFAULT_APPOINTMENT_DURATION_MINUTES : appointment.getDurationMinutes());
+        dto.setDescription(appointment.getDescription());
+        if (appointment.getPersonId() != null) {
+            if (details.getPerson() != null) {
+                dto.setPerson(mapDomainToDto(details.getPerson()));
+            } else {
+                log.error("Cannot find person with id {}", appointment.getPersonId());
+            }
+        }
+        if (appointment.getLocationId() != null) {
+            if (details.getLocation() != null) {
+                dto.setLocation(mapDomainToDto(details.getLocation()));
+            } else {
+                log.error("Cannot find location with id {}", appointment.getLocationId());
+            }
+        }
+        return dto;
+    }
+
     public PersonDto mapDomainToDto(Person domain) {
         PersonDto dto = new PersonDto();
         dto.setId(domain.getId());
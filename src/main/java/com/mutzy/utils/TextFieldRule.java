@@ -0,0 +1,60 @@
+package com.mutzy.utils;
+
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.List;
+
+/**
+ * The rule for a free text field: it must not be empty and may only contain the characters allowed by
+ * Constants.STRING_INPUT_REGEX. The regex is only evaluated once per ASCII character, when this class is loaded,
+ * to build a lookup table, so checking a value is a single scan over its characters with no regex matching.
+ * <p>
+ * Values longer than maxLength are still accepted, since ObjectMapper truncates them to fit the database column,
+ * but are logged so that the column size can be reviewed.
+ */
+@Getter
+@Slf4j
+public class TextFieldRule {
+
+    private static final boolean[] ALLOWED_CHARACTERS = new boolean[128];
+
+    static {
+        for (char c = 0; c < ALLOWED_CHARACTERS.length; c++) {
+            ALLOWED_CHARACTERS[c] = String.valueOf(c).matches(Constants.STRING_INPUT_REGEX);
+        }
+    }
+
+    private final String fieldName;
+    private final int maxLength;
+
+    public TextFieldRule(String fieldName, int maxLength) {
+        this.fieldName = fieldName;
+        this.maxLength = maxLength;
+    }
+
+    /**
+     * Checks the given value against this rule
+     * @param value The value to check
+     * @param violations Any problems with the value are added to this list
+     * @return True if the value is valid
+     */
+    public boolean check(String value, List<ValidationViolation> violations) {
+        int length = value == null ? 0 : value.length();
+        if (length == 0) {
+            violations.add(new ValidationViolation(fieldName, fieldName + " cannot be empty"));
+            return false;
+        }
+        for (int i = 0; i < length; i++) {
+            char c = value.charAt(i);
+            if (c >= ALLOWED_CHARACTERS.length || !ALLOWED_CHARACTERS[c]) {
+                violations.add(new ValidationViolation(fieldName, fieldName + " can only contain letters, numbers, spaces and .,?!-_"));
+                return false;
+            }
+        }
+        if (length > maxLength) {
+            log.warn("Users are entering long {} with character count {}. Consider updating the database field size", fieldName, length);
+        }
+        return true;
+    }
+}
@@ -1,116 +1,329 @@
 package com.mutzy.utils;
 
-import com.mutzy.dao.LocationDao;
-import com.mutzy.dao.PersonDao;
+import com.mutzy.dao.ReferenceDataCache;
 import com.mutzy.dto.AppointmentRequestDto;
+import com.mutzy.dto.AppointmentResponseDto;
+import com.mutzy.dto.AppointmentSeriesRequestDto;
 import com.mutzy.dto.LocationDto;
 import com.mutzy.dto.PersonDto;
-import lombok.extern.slf4j.Slf4j;
+import com.mutzy.service.BookingIndex;
+import com.mutzy.service.RecurringSeries;
+import com.mutzy.service.SearchIndex;
 import org.apache.commons.lang3.StringUtils;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
 import javax.validation.ValidationException;
-import java.text.ParseException;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
 
 @Service
-@Slf4j
 public class ValidationUtils {
 
-    private final PersonDao personDao;
-    private final LocationDao locationDao;
+    private final ReferenceDataCache referenceDataCache;
 
-    private static final String APPOINTMENT_DESCRIPTION_FIELD = "Appointment description";
-    private static final String PERSON_NAME_FIELD = "Person name";
-    private static final String PERSON_AFFILIATION_FIELD = "Person affiliation";
-    private static final String LOCATION_NAME_FIELD = "Location name";
-    private static final String LOCATION_DESCRIPTION_FIELD = "Location description";
+    private static final TextFieldRule APPOINTMENT_DESCRIPTION = new TextFieldRule("Appointment description", Constants.MAX_APPOINTMENT_DESCRIPTION_LENGTH);
+    private static final TextFieldRule PERSON_NAME = new TextFieldRule("Person name", Constants.MAX_PERSON_NAME_LENGTH);
+    private static final TextFieldRule PERSON_AFFILIATION = new TextFieldRule("Person affiliation", Constants.MAX_PERSON_AFFILIATION_LENGTH);
+    private static final TextFieldRule LOCATION_NAME = new TextFieldRule("Location name", Constants.MAX_LOCATION_NAME_LENGTH);
+    private static final TextFieldRule LOCATION_DESCRIPTION = new TextFieldRule("Location description", Constants.MAX_LOCATION_DESCRIPTION_LENGTH);
+    private static final TextFieldRule SEARCH_QUERY = new TextFieldRule("Search", Constants.MAX_SEARCH_QUERY_LENGTH);
+
+    private static final String APPOINTMENT_DATE_FIELD = "Appointment date";
+    private static final String APPOINTMENT_TIME_FIELD = "Appointment time";
+    private static final String APPOINTMENT_DURATION_FIELD = "Appointment duration";
+    private static final String PERSON_ID_FIELD = "Person";
+    private static final String LOCATION_ID_FIELD = "Location";
+    private static final String SERIES_FREQUENCY_FIELD = "Series frequency";
+    private static final String SERIES_INTERVAL_FIELD = "Series interval";
+    private static final String SERIES_END_FIELD = "Series end";
 
     @Autowired
-    public ValidationUtils(PersonDao personDao, LocationDao locationDao) {
-        this.personDao = personDao;
-        this.locationDao = locationDao;
+    public ValidationUtils(ReferenceDataCache referenceDataCache) {
+        this.referenceDataCache = referenceDataCache;
     }
 
     public void validatePersonDto(PersonDto dto) throws ValidationException {
         if (dto == null) {
             throw new ValidationException("Cannot save a blank person");
         }
-        validateAlphaNumericPunctuation(dto.getName(), PERSON_NAME_FIELD);
-        checkDtoFieldSize(dto.getName(), Constants.MAX_PERSON_NAME_LENGTH, PERSON_NAME_FIELD);
-        validateAlphaNumericPunctuation(dto.getAffiliation(), PERSON_AFFILIATION_FIELD);
-        checkDtoFieldSize(dto.getAffiliation(), Constants.MAX_PERSON_AFFILIATION_LENGTH, PERSON_AFFILIATION_FIELD);
+        throwIfAny(findPersonViolations(dto));
     }
 
     public void validateLocationDto(LocationDto dto) throws ValidationException {
         if (dto == null) {
             throw new ValidationException("Cannot save a blank location");
         }
-        validateAlphaNumericPunctuation(dto.getName(), LOCATION_NAME_FIELD);
-        checkDtoFieldSize(dto.getName(), Constants.MAX_LOCATION_NAME_LENGTH, LOCATION_NAME_FIELD);
-        validateAlphaNumericPunctuation(dto.getDescription(), LOCATION_DESCRIPTION_FIELD);
-        checkDtoFieldSize(dto.getDescription(), Constants.MAX_LOCATION_DESCRIPTION_LENGTH, LOCATION_DESCRIPTION_FIELD);
+        throwIfAny(findLocationViolations(dto));
+    }
+
+    /**
+     * Checks a search is made of the same characters as the text it searches, and has at least one word to search for
+     */
+    public void validateSearchQuery(String query) throws ValidationException {
+        List<ValidationViolation> violations = new ArrayList<>(1);
+        if (SEARCH_QUERY.check(query, violations) && SearchIndex.tokenize(query).isEmpty()) {
+            violations.add(new ValidationViolation(SEARCH_QUERY.getFieldName(), "Search must contain at least one letter or number"));
+        }
+        throwIfAny(violations);
+    }
+
+    /**
+     * Validates the given appointment, without checking whether its person or location is already booked (see validateBookings)
+     * @param dto The appointment to validate
+     * @return The appointment's date and time, parsed while validating them so the caller doesn't need to parse them again
+     * @throws ValidationException if the appointment is not valid. Its message describes every problem found, not just the first
+     */
+    public Date validateAppointmentDto(AppointmentRequestDto dto) throws ValidationException {
+        if (dto == null) {
+            throw new ValidationException("Cannot save a blank appointment");
+        }
+        List<ValidationViolation> violations = new ArrayList<>(2);
+        Date start = checkAppointment(dto, violations);
+        throwIfAny(violations);
+        return start;
     }
 
-    public void validateAppointmentDto(AppointmentRequestDto dto) throws ValidationException {
+    /**
+     * Checks that neither the person nor the location of an already validated appointment is booked at the same time
+     * @param start The appointment's date and time
+     * @throws ValidationException if either is booked, naming each that is
+     */
+    public void validateBookings(AppointmentRequestDto dto, Date start, BookingIndex bookings) throws ValidationException {
+        List<ValidationViolation> violations = new ArrayList<>(2);
+        checkBookings(dto, start, bookings, violations);
+        throwIfAny(violations);
+    }
+
+    /**
+     * Validates a change to one occurrence of a series, including that it doesn't double book the series' person or location
+     * with anything other than the occurrence being changed
+     * @param dto The changed occurrence, with the series' person and location
+     * @param seriesId The series the occurrence belongs to
+     * @param occurrenceDate When the occurrence was due to start
+     * @return The changed occurrence's date and time
+     * @throws ValidationException if the change is not valid. Its message describes every problem found, not just the first
+     */
+    public Date validateOccurrenceChange(AppointmentRequestDto dto, BookingIndex bookings, Integer seriesId, Date occurrenceDate)
+            throws ValidationException {
         if (dto == null) {
             throw new ValidationException("Cannot save a blank appointment");
         }
-        validateAlphaNumericPunctuation(dto.getDescription(), APPOINTMENT_DESCRIPTION_FIELD);
-        checkDtoFieldSize(dto.getDescription(), Constants.MAX_APPOINTMENT_DESCRIPTION_LENGTH, APPOINTMENT_DESCRIPTION_FIELD);
-        validateDate(dto.getDate());
-        validateTime(dto.getTime());
-        validatePersonId(dto.getPersonId());
-        validateLocationId(dto.getLocationId());
+        List<ValidationViolation> violations = new ArrayList<>(2);
+        Date start = checkAppointment(dto, violations);
+        throwIfAny(violations);
+        checkBookings(dto, start, bookings, seriesId, occurrenceDate, violations);
+        throwIfAny(violations);
+        return start;
+    }
+
+    /**
+     * Validates the given series, without checking whether its occurrences are double booked (see validateSeriesOccurrences)
+     * @param dto The series to validate
+     * @return The date and time of the series' first occurrence
+     * @throws ValidationException if the series is not valid. Its message describes every problem found, not just the first
+     */
+    public Date validateSeriesDto(AppointmentSeriesRequestDto dto) throws ValidationException {
+        if (dto == null) {
+            throw new ValidationException("Cannot save a blank series");
+        }
+        List<ValidationViolation> violations = new ArrayList<>(2);
+        Date start = checkAppointment(dto, violations);
+        checkRecurrence(dto, start, violations);
+        throwIfAny(violations);
+        return start;
+    }
+
+    /**
+     * Checks a new series doesn't have too many occurrences, and that none of them double books its person or location
+     * @throws ValidationException naming the first occurrence found to double book the person, and the location
+     */
+    public void validateSeriesOccurrences(RecurringSeries series, BookingIndex bookings) throws ValidationException {
+        if (series.getOccurrenceCount() > Constants.MAX_SERIES_OCCURRENCES) {
+            throw new ValidationException("Series must have between 1 and " + Constants.MAX_SERIES_OCCURRENCES + " occurrences");
+        }
+        List<ValidationViolation> violations = new ArrayList<>(2);
+        boolean personBooked = false;
+        boolean locationBooked = false;
+        for (AppointmentResponseDto occurrence : series.findAllOccurrences()) {
+            String day = DateTimeCodec.formatDate(DateTimeCodec.toPackedDate(occurrence.getDate()));
+            if (!personBooked && bookings.isPersonBooked(series.getPersonId(), occurrence.getDate(), occurrence.getDurationMinutes())) {
+                personBooked = true;
+                violations.add(new ValidationViolation(PERSON_ID_FIELD, "The selected person already has an appointment at the time of the occurrence on " + day));
+            }
+            if (!locationBooked && bookings.isLocationBooked(series.getLocationId(), occurrence.getDate(), occurrence.getDurationMinutes())) {
+                locationBooked = true;
+                violations.add(new ValidationViolation(LOCATION_ID_FIELD, "The selected location is already booked at the time of the occurrence on " + day));
+            }
+            if (personBooked && locationBooked) {
+                break;
+            }
+        }
+        throwIfAny(violations);
+    }
+
+    public List<ValidationViolation> findPersonViolations(PersonDto dto) {
+        List<ValidationViolation> violations = new ArrayList<>(2);
+        PERSON_NAME.check(dto.getName(), violations);
+        PERSON_AFFILIATION.check(dto.getAffiliation(), violations);
+        return violations;
+    }
+
+    public List<ValidationViolation> findLocationViolations(LocationDto dto) {
+        List<ValidationViolation> violations = new ArrayList<>(2);
+        LOCATION_NAME.check(dto.getName(), violations);
+        LOCATION_DESCRIPTION.check(dto.getDescription(), violations);
+        return violations;
+    }
+
+    /**
+     * Adds a violation for every problem with the fields of the given appointment, without checking that its person and
+     * location exist. This is for callers that check the people and locations of many appointments at once
+     * @return The appointment's date and time, parsed while checking them so the caller doesn't need to parse them again,
+     * or null if either isn't valid
+     */
+    public Date checkAppointmentFields(AppointmentRequestDto dto, List<ValidationViolation> violations) {
+        APPOINTMENT_DESCRIPTION.check(dto.getDescription(), violations);
+        int date = checkDate(dto.getDate(), violations);
+        int time = checkTime(dto.getTime(), violations);
+        checkDuration(dto.getDurationMinutes(), violations);
+        return date == DateTimeCodec.INVALID || time == DateTimeCodec.INVALID ? null : DateTimeCodec.toDate(date, time);
+    }
+
+    /**
+     * Adds a violation if the person or location of the given appointment isn't one of the given existing ids.
+     * Used alongside checkAppointmentFields once the people and locations of many appointments have been looked up together
+     */
+    public void checkReferences(AppointmentRequestDto dto, Set<Integer> existingPersonIds, Set<Integer> existingLocationIds,
+                                List<ValidationViolation> violations) {
+        if (dto.getPersonId() != null && !existingPersonIds.contains(dto.getPersonId())) {
+            violations.add(new ValidationViolation(PERSON_ID_FIELD, "Invalid selected person"));
+        }
+        if (dto.getLocationId() != null && !existingLocationIds.contains(dto.getLocationId())) {
+            violations.add(new ValidationViolation(LOCATION_ID_FIELD, "Invalid selected location"));
+        }
+    }
+
+    /**
+     * Adds a violation if the person or location of the given appointment is already booked at any time it covers.
+     * Only valid appointments should be checked
+     * @param start The appointment's date and time
+     */
+    public void checkBookings(AppointmentRequestDto dto, Date start, BookingIndex bookings, List<ValidationViolation> violations) {
+        checkBookings(dto, start, bookings, null, null, violations);
+    }
+
+    /**
+     * The same as checkBookings(dto, start, bookings, violations), but ignoring one occurrence of a series, e.g. the one being moved
+     * @param ignoredSeriesId The series of the occurrence to ignore
+     * @param ignoredOccurrenceDate When the occurrence to ignore was due to start
+     */
+    public void checkBookings(AppointmentRequestDto dto, Date start, BookingIndex bookings, Integer ignoredSeriesId, Date ignoredOccurrenceDate,
+                              List<ValidationViolation> violations) {
+        int durationMinutes = durationOf(dto);
+        if (bookings.isPersonBooked(dto.getPersonId(), start, durationMinutes, ignoredSeriesId, ignoredOccurrenceDate)) {
+            violations.add(new ValidationViolation(PERSON_ID_FIELD, "The selected person already has an appointment at that time"));
+        }
+        if (bookings.isLocationBooked(dto.getLocationId(), start, durationMinutes, ignoredSeriesId, ignoredOccurrenceDate)) {
+            violations.add(new ValidationViolation(LOCATION_ID_FIELD, "The selected location is already booked at that time"));
+        }
+    }
+
+    /**
+     * @return How long the given appointment lasts, using the default length if it doesn't say
+     */
+    public static int durationOf(AppointmentRequestDto dto) {
+        return dto.getDurationMinutes() == null ? Constants.DEFAULT_APPOINTMENT_DURATION_MINUTES : dto.getDurationMinutes();
+    }
+
+    /**
+     * Checks every field of the given appointment, including that its person and location exist
+     * @return The appointment's date and time, or null if either isn't valid
+     */
+    private Date checkAppointment(AppointmentRequestDto dto, List<ValidationViolation> violations) {
+        Date start = checkAppointmentFields(dto, violations);
+        checkPersonId(dto.getPersonId(), violations);
+        checkLocationId(dto.getLocationId(), violations);
+        return start;
+    }
+
+    private void checkRecurrence(AppointmentSeriesRequestDto dto, Date start, List<ValidationViolation> violations) {
+        if (dto.getFrequency() == null) {
+            violations.add(new ValidationViolation(SERIES_FREQUENCY_FIELD, "Series frequency cannot be empty"));
+        }
+        Integer interval = dto.getRepeatInterval();
+        if (interval != null && (interval < 1 || interval > Constants.MAX_SERIES_REPEAT_INTERVAL)) {
+            violations.add(new ValidationViolation(SERIES_INTERVAL_FIELD,
+                    "Series must repeat every 1 to " + Constants.MAX_SERIES_REPEAT_INTERVAL + " days, weeks or months"));
+        }
+        if (StringUtils.isEmpty(dto.getUntil()) && dto.getOccurrenceCount() == null) {
+            violations.add(new ValidationViolation(SERIES_END_FIELD, "Series must have an end date or a number of occurrences"));
+        }
+        if (!StringUtils.isEmpty(dto.getUntil())) {
+            int until = DateTimeCodec.parseDate(dto.getUntil());
+            if (until == DateTimeCodec.INVALID) {
+                violations.add(new ValidationViolation(SERIES_END_FIELD, "Invalid series end date format"));
+            } else if (start != null && until < DateTimeCodec.toPackedDate(start)) {
+                violations.add(new ValidationViolation(SERIES_END_FIELD, "Series cannot end before it starts"));
+            }
+        }
+        Integer count = dto.getOccurrenceCount();
+        if (count != null && (count < 1 || count > Constants.MAX_SERIES_OCCURRENCES)) {
+            violations.add(new ValidationViolation(SERIES_END_FIELD, "Series must have between 1 and " + Constants.MAX_SERIES_OCCURRENCES + " occurrences"));
+        }
     }
 
-    private void validateDate(String date) throws ValidationException {
+    private int checkDate(String date, List<ValidationViolation> violations) {
         if (StringUtils.isEmpty(date)) {
-            throw new ValidationException("Appointment date cannot be empty");
+            violations.add(new ValidationViolation(APPOINTMENT_DATE_FIELD, "Appointment date cannot be empty"));
+            return DateTimeCodec.INVALID;
         }
-        try {
-            // just check if we are able to successfully parse the date
-            Constants.DATE_FORMAT.parse(date);
-        } catch (ParseException e) {
-            throw new ValidationException("Invalid date format");
+        int parsedDate = DateTimeCodec.parseDate(date);
+        if (parsedDate == DateTimeCodec.INVALID) {
+            violations.add(new ValidationViolation(APPOINTMENT_DATE_FIELD, "Invalid date format"));
         }
+        return parsedDate;
     }
 
-    private void validateTime(String time) throws ValidationException {
+    private int checkTime(String time, List<ValidationViolation> violations) {
         if (StringUtils.isEmpty(time)) {
-            throw new ValidationException("Appointment time cannot be empty");
+            violations.add(new ValidationViolation(APPOINTMENT_TIME_FIELD, "Appointment time cannot be empty"));
+            return DateTimeCodec.INVALID;
         }
-        try {
-            // just check if we are able to successfully parse the time
-            Constants.TIME_FORMAT.parse(time);
-        } catch (ParseException e) {
-            throw new ValidationException("Invalid time format");
+        int parsedTime = DateTimeCodec.parseTime(time);
+        if (parsedTime == DateTimeCodec.INVALID) {
+            violations.add(new ValidationViolation(APPOINTMENT_TIME_FIELD, "Invalid time format"));
         }
+        return parsedTime;
     }
 
-    private void validatePersonId(Integer personId) throws ValidationException {
-        if (personId != null && !personDao.findById(personId).isPresent()) {
-            throw new ValidationException("Invalid selected person");
+    private void checkDuration(Integer durationMinutes, List<ValidationViolation> violations) {
+        if (durationMinutes != null && (durationMinutes < 1 || durationMinutes > Constants.MAX_APPOINTMENT_DURATION_MINUTES)) {
+            violations.add(new ValidationViolation(APPOINTMENT_DURATION_FIELD,
+                    "Appointment duration must be between 1 and " + Constants.MAX_APPOINTMENT_DURATION_MINUTES + " minutes"));
         }
     }
 
-    private void validateLocationId(Integer locationId) throws ValidationException {
-        if(locationId != null && !locationDao.findById(locationId).isPresent()) {
-            throw new ValidationException("Invalid selected location");
+    private void checkPersonId(Integer personId, List<ValidationViolation> violations) {
+        if (personId != null && !referenceDataCache.findPerson(personId).isPresent()) {
+            violations.add(new ValidationViolation(PERSON_ID_FIELD, "Invalid selected person"));
         }
     }
 
-    private void validateAlphaNumericPunctuation(String value, String fieldName) throws ValidationException {
-        if (StringUtils.isEmpty(value)) {
-            throw new ValidationException(fieldName + " cannot be empty");
-        } else if (!value.matches(Constants.STRING_INPUT_REGEX)) {
-            throw new ValidationException("Appointment " + fieldName + " can only contain letters and/or numbers");
+    private void checkLocationId(Integer locationId, List<ValidationViolation> violations) {
+        if (locationId != null && !referenceDataCache.findLocation(locationId).isPresent()) {
+            violations.add(new ValidationViolation(LOCATION_ID_FIELD, "Invalid selected location"));
         }
     }
 
-    private void checkDtoFieldSize(String field, int maxSize, String fieldName) {
-        if (field.length() > maxSize) {
-            log.warn("Users are entering long {} with character count {}. Consider updating the database field size", fieldName, field.length());
+    private static void throwIfAny(List<ValidationViolation> violations) throws ValidationException {
+        if (!violations.isEmpty()) {
+            throw new ValidationException(violations.stream()
+                    .map(ValidationViolation::getMessage)
+                    .collect(Collectors.joining(". ")));
         }
     }
 }
@@ -0,0 +1,25 @@
+package com.mutzy.utils;
+
+import lombok.Getter;
+
+/**
+ * A single problem found while validating user input
+ */
+@Getter
+public class ValidationViolation {
+    private final String field;
+    private final String message;
+
+    public ValidationViolation(String field, String message) {
+        this.field = field;
+        this.message = message;
+    }
+
+    @Override
+    public String toString() {
+        return "ValidationViolation{" +
+                "field=" + field + "," +
+                "message=" + message +
+                "}";
+    }
+}
@@ -1,14 +1,18 @@
+-- To add durations to an existing database:
+--   ALTER TABLE `appointments` ADD COLUMN `duration_minutes` int NOT NULL DEFAULT 30 AFTER `date`;
 DROP TABLE IF EXISTS `appointments`;
 CREATE TABLE `appointments` (
   `id` int NOT NULL,
   `description` varchar(1024) NOT NULL,
   `date` datetime NOT NULL,
+  `duration_minutes` int NOT NULL DEFAULT 30,
   `person_id` int DEFAULT NULL,
   `location_id` int DEFAULT NULL,
   PRIMARY KEY (`id`),
   UNIQUE KEY `id_UNIQUE` (`id`),
   KEY `person_id_idx` (`person_id`),
   KEY `location_id_idx` (`location_id`),
+  KEY `date_id_idx` (`date`, `id`),
   CONSTRAINT `location_id` FOREIGN KEY (`location_id`) REFERENCES `locations` (`id`),
   CONSTRAINT `person_id` FOREIGN KEY (`person_id`) REFERENCES `people` (`id`)
 ) ENGINE=InnoDB DEFAULT CHARSET=utf8mb3;
@@ -29,4 +33,72 @@ CREATE TABLE `people` (
   `affiliation` varchar(255) DEFAULT NULL,
   PRIMARY KEY (`id`),
   UNIQUE KEY `id_UNIQUE` (`id`)
-) ENGINE=InnoDB DEFAULT CHARSET=utf8mb3;
\ No newline at end of file
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb3;
+
+-- Appointments moved out of the appointments table by AppointmentArchiver, keeping their ids.
+-- A separate table rather than RANGE partitions on `date`, as MySQL requires the partitioning column in every unique key
+-- and doesn't allow foreign keys on partitioned tables
+DROP TABLE IF EXISTS `appointments_archive`;
+CREATE TABLE `appointments_archive` (
+  `id` int NOT NULL,
+  `description` varchar(1024) NOT NULL,
+  `date` datetime NOT NULL,
+  `duration_minutes` int NOT NULL DEFAULT 30,
+  `person_id` int DEFAULT NULL,
+  `location_id` int DEFAULT NULL,
+  PRIMARY KEY (`id`),
+  KEY `archive_person_id_idx` (`person_id`),
+  KEY `archive_location_id_idx` (`location_id`),
+  KEY `archive_date_id_idx` (`date`, `id`),
+  CONSTRAINT `archive_location_id` FOREIGN KEY (`location_id`) REFERENCES `locations` (`id`),
+  CONSTRAINT `archive_person_id` FOREIGN KEY (`person_id`) REFERENCES `people` (`id`)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb3;
+
+-- A recurring appointment is one row here however many times it repeats. See RecurringSeries for how occurrences are worked out
+DROP TABLE IF EXISTS `appointment_series_overrides`;
+DROP TABLE IF EXISTS `appointment_series`;
+CREATE TABLE `appointment_series` (
+  `id` int NOT NULL,
+  `description` varchar(1024) NOT NULL,
+  `date` datetime NOT NULL,
+  `duration_minutes` int NOT NULL DEFAULT 30,
+  `person_id` int DEFAULT NULL,
+  `location_id` int DEFAULT NULL,
+  `frequency` varchar(16) NOT NULL,
+  `repeat_interval` int NOT NULL DEFAULT 1,
+  `until_date` datetime DEFAULT NULL,
+  `occurrence_count` int DEFAULT NULL,
+  PRIMARY KEY (`id`),
+  KEY `series_person_id_idx` (`person_id`),
+  KEY `series_location_id_idx` (`location_id`),
+  CONSTRAINT `series_location_id` FOREIGN KEY (`location_id`) REFERENCES `locations` (`id`),
+  CONSTRAINT `series_person_id` FOREIGN KEY (`person_id`) REFERENCES `people` (`id`)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb3;
+
+-- Single occurrences of a series that have been cancelled or changed
+CREATE TABLE `appointment_series_overrides` (
+  `id` int NOT NULL,
+  `series_id` int NOT NULL,
+  `occurrence_date` datetime NOT NULL,
+  `cancelled` bit(1) NOT NULL,
+  `description` varchar(1024) DEFAULT NULL,
+  `date` datetime DEFAULT NULL,
+  `duration_minutes` int DEFAULT NULL,
+  PRIMARY KEY (`id`),
+  UNIQUE KEY `series_id_occurrence_date_idx` (`series_id`, `occurrence_date`),
+  CONSTRAINT `series_id` FOREIGN KEY (`series_id`) REFERENCES `appointment_series` (`id`)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb3;
+
+-- Each row holds the last id reserved for its table. See IdAllocation for how ids are handed out.
+-- When adding this table to an existing database, seed each row from its table instead, e.g.
+--   INSERT INTO `id_allocations` SELECT 'appointments', COALESCE(MAX(`id`), 0) FROM `appointments`;
+-- The hibernate_sequence table used by earlier versions is no longer needed
+DROP TABLE IF EXISTS `id_allocations`;
+CREATE TABLE `id_allocations` (
+  `entity` varchar(255) NOT NULL,
+  `last_reserved_id` int NOT NULL,
+  PRIMARY KEY (`entity`)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb3;
+
+INSERT INTO `id_allocations` (`entity`, `last_reserved_id`) VALUES ('appointments', 0), ('people', 0), ('locations', 0),
+  ('appointment_series', 0), ('appointment_series_overrides', 0);
@@ -1,12 +1,15 @@
 package com.mutzy;
 
 import com.mutzy.domain.Appointment;
+import com.mutzy.domain.AppointmentSeries;
 import com.mutzy.domain.Location;
 import com.mutzy.domain.Person;
 import com.mutzy.dto.AppointmentRequestDto;
 import com.mutzy.dto.AppointmentResponseDto;
+import com.mutzy.dto.AppointmentSeriesRequestDto;
 import com.mutzy.dto.LocationDto;
 import com.mutzy.dto.PersonDto;
+import com.mutzy.utils.Constants;
 import org.apache.commons.lang3.RandomStringUtils;
 
 import java.time.Instant;
@@ -29,6 +32,7 @@ public class TestHelper {
         appointment.setLocationId(random.nextInt(Integer.MAX_VALUE));
         appointment.setPersonId(random.nextInt(Integer.MAX_VALUE));
         appointment.setDate(Date.from(Instant.ofEpochSecond(random.longs(START_INSTANT, END_INSTANT).findFirst().getAsLong())));
+        appointment.setDurationMinutes(Constants.DEFAULT_APPOINTMENT_DURATION_MINUTES);
         return appointment;
     }
 
@@ -37,6 +41,7 @@ public class TestHelper {
         dto.setId(random.nextInt(Integer.MAX_VALUE));
         dto.setDescription(RandomStringUtils.randomAlphanumeric(10));
         dto.setDate(Date.from(Instant.ofEpochSecond(random.longs(START_INSTANT, END_INSTANT).findFirst().getAsLong())));
+        dto.setDurationMinutes(Constants.DEFAULT_APPOINTMENT_DURATION_MINUTES);
         dto.setLocation(createLocationDto());
         dto.setPerson(createPersonDto());
         return dto;
@@ -58,6 +63,22 @@ public class TestHelper {
         return dto;
     }
 
+    /**
+     * @return A weekly series at 12:30 from 2022-12-20, with person 1 and location 1
+     */
+    public static AppointmentSeriesRequestDto createSeriesDto(int occurrenceCount) {
+        AppointmentRequestDto appointment = createAppointmentDto();
+        AppointmentSeriesRequestDto dto = new AppointmentSeriesRequestDto();
+        dto.setDescription(appointment.getDescription());
+        dto.setDate(appointment.getDate());
+        dto.setTime(appointment.getTime());
+        dto.setPersonId(appointment.getPersonId());
+        dto.setLocationId(appointment.getLocationId());
+        dto.setFrequency(AppointmentSeries.Frequency.WEEKLY);
+        dto.setOccurrenceCount(occurrenceCount);
+        return dto;
+    }
+
     public static PersonDto createPersonDto() {
         PersonDto personDto = new PersonDto();
         personDto.setId(random.nextInt(Integer.MAX_VALUE));
@@ -0,0 +1,222 @@
+package com.mutzy.controller;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.mutzy.TestHelper;
+import com.mutzy.dao.AppointmentRow;
+import com.mutzy.dto.AppointmentCursor;
+import com.mutzy.dto.AppointmentImportReportDto;
+import com.mutzy.dto.AppointmentPageDto;
+import com.mutzy.dto.AppointmentRequestDto;
+import com.mutzy.dto.AppointmentResponseDto;
+import com.mutzy.dto.AppointmentRollupDto;
+import com.mutzy.service.AppointmentService;
+import com.mutzy.utils.AppointmentCsvWriter;
+import com.mutzy.utils.Constants;
+import com.mutzy.utils.DateTimeCodec;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mockito;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import javax.validation.ValidationException;
+import java.io.ByteArrayOutputStream;
+import java.io.StringReader;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.Consumer;
+
+import static org.mockito.ArgumentMatchers.any;
+
+class AppointmentApiControllerTest {
+
+    private final AppointmentService mockAppointmentService = Mockito.mock(AppointmentService.class);
+    private final ObjectMapper jsonMapper = new ObjectMapper();
+    private final AppointmentApiController controller = new AppointmentApiController(mockAppointmentService, jsonMapper);
+
+    @Test
+    void testStreamAppointmentsAsNdjson_ShouldWriteOneAppointmentPerLine() throws Exception {
+        List<AppointmentResponseDto> appointments = Arrays.asList(TestHelper.createAppointmentResponse(), TestHelper.createAppointmentResponse());
+        stubStreamedAppointments(appointments);
+
+        String body = writeBody(controller.streamAppointmentsAsNdjson());
+        String[] lines = body.split("\n");
+
+        Assertions.assertTrue(body.endsWith("}\n"));
+        Assertions.assertEquals(2, lines.length);
+        Assertions.assertTrue(lines[1].startsWith("{"));
+        Assertions.assertEquals(appointments.get(0).getId(), jsonMapper.readValue(lines[0], AppointmentResponseDto.class).getId());
+        Assertions.assertEquals(appointments.get(1).getDescription(), jsonMapper.readValue(lines[1], AppointmentResponseDto.class).getDescription());
+    }
+
+    @Test
+    void testStreamAppointmentsAsJson_ShouldWriteJsonArray() throws Exception {
+        List<AppointmentResponseDto> appointments = Arrays.asList(TestHelper.createAppointmentResponse(), TestHelper.createAppointmentResponse());
+        stubStreamedAppointments(appointments);
+
+        AppointmentResponseDto[] written = jsonMapper.readValue(writeBody(controller.streamAppointmentsAsJson()), AppointmentResponseDto[].class);
+
+        Assertions.assertEquals(2, written.length);
+        Assertions.assertEquals(appointments.get(1).getId(), written[1].getId());
+    }
+
+    @Test
+    void testStreamAppointmentsAsCsv_ShouldWriteHeaderAndOneLinePerRow() throws Exception {
+        AppointmentRow row = Mockito.mock(AppointmentRow.class);
+        Mockito.when(row.getId()).thenReturn(5);
+        Mockito.when(row.getDescription()).thenReturn("Dentist");
+        Mockito.when(row.getDateMillis()).thenReturn(DateTimeCodec.parse("2022-12-20", "12:30").getTime());
+        Mockito.doAnswer(invocation -> {
+            invocation.<Consumer<AppointmentRow>>getArgument(0).accept(row);
+            return null;
+        }).when(mockAppointmentService).streamAllAppointmentRows(any());
+
+        ResponseEntity<StreamingResponseBody> response = controller.streamAppointmentsAsCsv();
+
+        Assertions.assertEquals("attachment; filename=\"appointments.csv\"", response.getHeaders().getFirst(HttpHeaders.CONTENT_DISPOSITION));
+        Assertions.assertEquals(AppointmentCsvWriter.HEADER + "\r\n5,Dentist,2022-12-20,12:30,30,,,,,,\r\n", writeBody(response));
+    }
+
+    @Test
+    void testRollUpAppointments_ShouldReturnTheServiceRollup() {
+        AppointmentRollupDto rollup = new AppointmentRollupDto();
+        Mockito.when(mockAppointmentService.rollUpAppointments(AppointmentRollupDto.GroupBy.LOCATION, AppointmentRollupDto.Granularity.MONTH,
+                "2022-07-01", "2022-09-30")).thenReturn(rollup);
+
+        Assertions.assertSame(rollup, controller.rollUpAppointments(AppointmentRollupDto.GroupBy.LOCATION, AppointmentRollupDto.Granularity.MONTH,
+                "2022-07-01", "2022-09-30"));
+    }
+
+    @Test
+    void testRollUpAppointments_WithInvalidRange_ShouldRespondWithBadRequest() {
+        Mockito.when(mockAppointmentService.rollUpAppointments(any(), any(), any(), any()))
+                .thenThrow(new ValidationException("The date range cannot end before it starts"));
+
+        ResponseStatusException e = Assertions.assertThrows(ResponseStatusException.class,
+                () -> controller.rollUpAppointments(AppointmentRollupDto.GroupBy.ALL, AppointmentRollupDto.Granularity.DAY, "2022-09-30", "2022-07-01"));
+        Assertions.assertEquals(HttpStatus.BAD_REQUEST, e.getStatus());
+    }
+
+    @Test
+    void testFindArchivedAppointments_ShouldWriteTheNextCursorAsTheWebpageDoes() throws Exception {
+        AppointmentCursor cursor = AppointmentCursor.parse("1577872800000_12");
+        AppointmentPageDto page = new AppointmentPageDto();
+        page.setAppointments(Collections.singletonList(TestHelper.createAppointmentResponse()));
+        page.setNextCursor(cursor);
+        Mockito.when(mockAppointmentService.findArchivedAppointments("2020-01-01", "2020-12-31", cursor,
+                Constants.ARCHIVED_APPOINTMENTS_PAGE_SIZE)).thenReturn(page);
+
+        String json = jsonMapper.writeValueAsString(controller.findArchivedAppointments("2020-01-01", "2020-12-31", "1577872800000_12"));
+
+        Assertions.assertTrue(json.contains("\"nextCursor\":\"1577872800000_12\""), json);
+    }
+
+    @Test
+    void testFindArchivedAppointments_WithInvalidRange_ShouldRespondWithBadRequest() {
+        Mockito.when(mockAppointmentService.findArchivedAppointments("2020-12-31", "2020-01-01", null, Constants.ARCHIVED_APPOINTMENTS_PAGE_SIZE))
+                .thenThrow(new ValidationException("The range ends before it starts"));
+
+        ResponseStatusException e = Assertions.assertThrows(ResponseStatusException.class,
+                () -> controller.findArchivedAppointments("2020-12-31", "2020-01-01", null));
+        Assertions.assertEquals(HttpStatus.BAD_REQUEST, e.getStatus());
+    }
+
+    @Test
+    void testDeleteAppointments_ShouldReportHowManyWereDeleted() {
+        List<Integer> ids = Arrays.asList(1, 2, 3);
+        Mockito.when(mockAppointmentService.deleteAppointments(ids)).thenReturn(2);
+        Mockito.when(mockAppointmentService.deleteAppointmentsBetween("2020-01-01", "2020-12-31")).thenReturn(5000);
+        Mockito.when(mockAppointmentService.deleteAppointmentsWithPerson(7)).thenReturn(3);
+        Mockito.when(mockAppointmentService.deleteAppointmentsAtLocation(8)).thenReturn(4);
+
+        Assertions.assertEquals(2, controller.deleteAppointments(ids).getDeleted());
+        Assertions.assertEquals(5000, controller.deleteAppointmentsBetween("2020-01-01", "2020-12-31").getDeleted());
+        Assertions.assertEquals(3, controller.deleteAppointmentsWithPerson(7).getDeleted());
+        Assertions.assertEquals(4, controller.deleteAppointmentsAtLocation(8).getDeleted());
+    }
+
+    @Test
+    void testDeleteAppointments_WithTooManyIds_ShouldRejectWholeRequest() {
+        List<Integer> ids = Collections.nCopies(Constants.MAX_DELETED_APPOINTMENT_IDS + 1, 1);
+
+        ResponseStatusException e = Assertions.assertThrows(ResponseStatusException.class, () -> controller.deleteAppointments(ids));
+        Assertions.assertEquals(HttpStatus.PAYLOAD_TOO_LARGE, e.getStatus());
+        Mockito.verifyZeroInteractions(mockAppointmentService);
+    }
+
+    @Test
+    void testDeleteAppointmentsBetween_WithInvalidRange_ShouldRespondWithBadRequest() {
+        Mockito.when(mockAppointmentService.deleteAppointmentsBetween(any(), any())).thenThrow(new ValidationException("Dates must be given in the form yyyy-MM-dd"));
+
+        ResponseStatusException e = Assertions.assertThrows(ResponseStatusException.class, () -> controller.deleteAppointmentsBetween("x", "y"));
+        Assertions.assertEquals(HttpStatus.BAD_REQUEST, e.getStatus());
+    }
+
+    @Test
+    void testStreamAppointmentsAsJson_WithNoAppointments_ShouldWriteEmptyArray() throws Exception {
+        stubStreamedAppointments(Collections.emptyList());
+        Assertions.assertEquals("[]", writeBody(controller.streamAppointmentsAsJson()));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void testImportAppointmentsFromCsv() {
+        AppointmentImportReportDto expectedReport = new AppointmentImportReportDto();
+        Mockito.when(mockAppointmentService.importAppointments(any())).thenReturn(expectedReport);
+        String csv = "date,time,description,personId,locationId\n" +
+                "2022-12-20,12:30,\"Review, with quotes\",1,\n" +
+                "2022-12-21, 09:00 ,Standup,,2\n";
+
+        Assertions.assertEquals(expectedReport, controller.importAppointmentsFromCsv(new StringReader(csv)));
+
+        ArgumentCaptor<List<AppointmentRequestDto>> captor = ArgumentCaptor.forClass(List.class);
+        Mockito.verify(mockAppointmentService).importAppointments(captor.capture());
+        List<AppointmentRequestDto> appointments = captor.getValue();
+        Assertions.assertEquals(2, appointments.size());
+        Assertions.assertEquals("Review, with quotes", appointments.get(0).getDescription());
+        Assertions.assertEquals(1, appointments.get(0).getPersonId());
+        Assertions.assertNull(appointments.get(0).getLocationId());
+        Assertions.assertEquals("09:00", appointments.get(1).getTime());
+        Assertions.assertNull(appointments.get(1).getPersonId());
+        Assertions.assertEquals(2, appointments.get(1).getLocationId());
+    }
+
+    @Test
+    void testImportAppointmentsFromCsv_WithMalformedCsv_ShouldBeBadRequest() {
+        String csv = "date,time,description,personId,locationId\n2022-12-20,12:30,Review,not a number,\n";
+
+        ResponseStatusException exception = Assertions.assertThrows(ResponseStatusException.class,
+                () -> controller.importAppointmentsFromCsv(new StringReader(csv)));
+        Assertions.assertEquals(HttpStatus.BAD_REQUEST, exception.getStatus());
+        Mockito.verifyZeroInteractions(mockAppointmentService);
+    }
+
+    @Test
+    void testImportAppointmentsFromJson_WithTooManyAppointments_ShouldBeRejected() {
+        List<AppointmentRequestDto> appointments = Collections.nCopies(Constants.MAX_IMPORTED_APPOINTMENTS + 1, new AppointmentRequestDto());
+
+        ResponseStatusException exception = Assertions.assertThrows(ResponseStatusException.class,
+                () -> controller.importAppointmentsFromJson(appointments));
+        Assertions.assertEquals(HttpStatus.PAYLOAD_TOO_LARGE, exception.getStatus());
+        Mockito.verifyZeroInteractions(mockAppointmentService);
+    }
+
+    @SuppressWarnings("unchecked")
+    private void stubStreamedAppointments(List<AppointmentResponseDto> appointments) {
+        Mockito.doAnswer(invocation -> {
+            appointments.forEach(invocation.<Consumer<AppointmentResponseDto>>getArgument(0));
+            return null;
+        }).when(mockAppointmentService).streamAllAppointments(any());
+    }
+
+    private static String writeBody(ResponseEntity<StreamingResponseBody> response) throws Exception {
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        response.getBody().writeTo(outputStream);
+        return outputStream.toString("UTF-8");
+    }
+}
@@ -4,6 +4,8 @@ import com.mutzy.TestHelper;
 import com.mutzy.domain.Appointment;
 import com.mutzy.domain.Location;
 import com.mutzy.domain.Person;
+import com.mutzy.dto.AppointmentCursor;
+import com.mutzy.dto.AppointmentPageDto;
 import com.mutzy.dto.AppointmentRequestDto;
 import com.mutzy.dto.AppointmentResponseDto;
 import com.mutzy.dto.LocationDto;
@@ -15,16 +17,26 @@ import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.mockito.Mockito;
+import org.springframework.http.HttpStatus;
 import org.springframework.ui.ExtendedModelMap;
 import org.springframework.ui.Model;
 import org.springframework.validation.BindingResult;
 import org.springframework.validation.ObjectError;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.servlet.mvc.support.RedirectAttributesModelMap;
+import org.springframework.web.servlet.view.RedirectView;
 
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
 import javax.validation.ValidationException;
 import java.util.Collections;
+import java.util.Date;
 import java.util.List;
+import java.util.Map;
 
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.eq;
 
 class AppointmentControllerTest {
 
@@ -33,13 +45,15 @@ class AppointmentControllerTest {
     private final AppointmentController controller = new AppointmentController(mockAppointmentService, controllerHelper);
 
     private Model model = new ExtendedModelMap();
+    private RedirectAttributesModelMap redirectAttributes = new RedirectAttributesModelMap();
     private final BindingResult validBindingResult = Mockito.mock(BindingResult.class);
     private final BindingResult invalidBindingResult = Mockito.mock(BindingResult.class);
+    private final WebRequest webRequest = Mockito.mock(WebRequest.class);
 
     @BeforeEach
     void setUpCommonMocks() {
         List<AppointmentResponseDto> appointments = Collections.singletonList(TestHelper.createAppointmentResponse());
-        Mockito.when(mockAppointmentService.findAllAppointments()).thenReturn(appointments);
+        Mockito.when(mockAppointmentService.findAppointmentPage(any(), any(), anyInt())).thenReturn(pageOf(appointments));
 
         List<Person> people = Collections.singletonList(TestHelper.createPerson());
         Mockito.when(mockAppointmentService.findAllPeople()).thenReturn(people);
@@ -56,12 +70,13 @@ class AppointmentControllerTest {
     void reset() {
         // clear out any residual data in the model
         model = new ExtendedModelMap();
+        redirectAttributes = new RedirectAttributesModelMap();
     }
 
     @Test
     void testGetAppointments_WhenServiceReturnsNull() {
-        Mockito.when(mockAppointmentService.findAllAppointments()).thenReturn(null);
-        String view = controller.getAppointments(model);
+        Mockito.when(mockAppointmentService.findAppointmentPage(any(), any(), anyInt())).thenReturn(null);
+        String view = controller.getAppointments(null, null, webRequest, model);
 
         Object modelAppointments = model.getAttribute("appointments");
         Assertions.assertTrue(modelAppointments instanceof List);
@@ -75,7 +90,7 @@ class AppointmentControllerTest {
 
     @Test
     void testGetAppointments_ShouldShowAllReturnedAppointments() {
-        String view = controller.getAppointments(model);
+        String view = controller.getAppointments(null, null, webRequest, model);
 
         Assertions.assertEquals(Constants.APPOINTMENTS_PAGE, view);
         checkRequiredFieldsOnModel();
@@ -85,248 +100,297 @@ class AppointmentControllerTest {
     }
 
     @Test
-    void testCreateAppointment_WhenRequestIsValid_ShouldCreateAppointmentAndUpdateModel() {
-        int initialSize = 3;
-        List<Appointment> initialAppointments = TestHelper.createAppointmentList(initialSize);
-        AppointmentResponseDto expectedAppointment = TestHelper.createAppointmentResponse();
-        List<AppointmentResponseDto> allAppointments = TestHelper.createAppointmentResponseList(initialSize);
-        allAppointments.add(expectedAppointment);
-
-        model.addAttribute("appointments", initialAppointments);
-        Mockito.when(mockAppointmentService.createAppointment(any())).thenReturn(expectedAppointment);
-        Mockito.when(mockAppointmentService.findAllAppointments()).thenReturn(allAppointments);
-        String view = controller.createAppointment(TestHelper.createAppointmentDto(), validBindingResult, model);
+    void testGetAppointments_WithCursor_ShouldRequestPageAfterCursorAndExposeCursors() {
+        AppointmentCursor after = new AppointmentCursor(new Date(1000L), 12);
+        AppointmentPageDto page = pageOf(TestHelper.createAppointmentResponseList(2));
+        page.setNextCursor(new AppointmentCursor(new Date(2000L), 34));
+        page.setPreviousCursor(new AppointmentCursor(new Date(1500L), 56));
+        Mockito.when(mockAppointmentService.findAppointmentPage(eq(after), any(), eq(Constants.APPOINTMENTS_PAGE_SIZE))).thenReturn(page);
+
+        String view = controller.getAppointments(after.toString(), null, webRequest, model);
 
         Assertions.assertEquals(Constants.APPOINTMENTS_PAGE, view);
-        Object modelAppointments = model.getAttribute("appointments");
-        Assertions.assertTrue(modelAppointments instanceof List);
-        Assertions.assertEquals(initialSize + 1, ((List<?>) modelAppointments).size());
-        Assertions.assertTrue(((List<?>) modelAppointments).contains(expectedAppointment));
+        Assertions.assertEquals(page.getAppointments(), model.getAttribute("appointments"));
+        Assertions.assertEquals("2000_34", model.getAttribute("nextCursor"));
+        Assertions.assertEquals("1500_56", model.getAttribute("previousCursor"));
+    }
+
+    @Test
+    void testGetAppointments_WithInvalidCursor_ShouldShowFirstPage() {
+        String view = controller.getAppointments("not a cursor", null, webRequest, model);
 
+        Assertions.assertEquals(Constants.APPOINTMENTS_PAGE, view);
+        Mockito.verify(mockAppointmentService).findAppointmentPage(null, null, Constants.APPOINTMENTS_PAGE_SIZE);
+        checkAppointmentsArePopulated();
+    }
+
+    @Test
+    void testSearchAppointments_ShouldShowMatchingAppointmentsAndLinkToNextPage() {
+        AppointmentCursor after = new AppointmentCursor(new Date(1000L), 12);
+        AppointmentPageDto page = pageOf(TestHelper.createAppointmentResponseList(2));
+        page.setNextCursor(new AppointmentCursor(new Date(2000L), 34));
+        Mockito.when(mockAppointmentService.searchAppointments("dentist bob", after, Constants.APPOINTMENTS_PAGE_SIZE)).thenReturn(page);
+
+        String view = controller.searchAppointments("dentist bob", after.toString(), webRequest, model);
+
+        Assertions.assertEquals(Constants.APPOINTMENTS_PAGE, view);
+        Assertions.assertEquals(page.getAppointments(), model.getAttribute("appointments"));
+        Assertions.assertEquals("dentist bob", model.getAttribute("query"));
+        Assertions.assertEquals("2000_34", model.getAttribute("nextCursor"));
+        Assertions.assertNull(model.getAttribute("previousCursor"));
+        Assertions.assertEquals("", model.getAttribute("searchValidationError"));
         checkRequiredFieldsOnModel();
         checkPeopleArePopulated();
-        checkLocationsArePopulated();
+        Mockito.verify(mockAppointmentService, Mockito.never()).findAppointmentPage(any(), any(), anyInt());
+    }
+
+    @Test
+    void testSearchAppointments_WhenQueryIsInvalid_ShouldShowFirstPageWithError() {
+        Mockito.when(mockAppointmentService.searchAppointments(any(), any(), anyInt())).thenThrow(new ValidationException("Search cannot be empty"));
+
+        String view = controller.searchAppointments("", null, webRequest, model);
+
+        Assertions.assertEquals(Constants.APPOINTMENTS_PAGE, view);
+        Assertions.assertEquals("Search cannot be empty", model.getAttribute("searchValidationError"));
+        Mockito.verify(mockAppointmentService).findAppointmentPage(null, null, Constants.APPOINTMENTS_PAGE_SIZE);
+        checkAppointmentsArePopulated();
+    }
+
+    @Test
+    void testSearchAppointments_WhenDataIsUnchanged_ShouldNotSearchOrRender() {
+        Mockito.when(webRequest.checkNotModified(controllerHelper.getAppointmentsPageETag())).thenReturn(true);
+
+        Assertions.assertNull(controller.searchAppointments("dentist", null, webRequest, model));
+        Mockito.verify(mockAppointmentService, Mockito.never()).searchAppointments(any(), any(), anyInt());
+    }
+
+    @Test
+    void testGetAppointments_WhenPageIsUnchanged_ShouldNotQueryOrRender() {
+        Mockito.when(mockAppointmentService.getDataVersion()).thenReturn(7L);
+        String etag = controllerHelper.getAppointmentsPageETag();
+        Mockito.when(webRequest.checkNotModified(etag)).thenReturn(true);
+
+        String view = controller.getAppointments(null, null, webRequest, model);
+
+        Assertions.assertNull(view);
+        Assertions.assertTrue(etag.startsWith("W/\"") && etag.endsWith("-7\""));
+        Assertions.assertTrue(model.asMap().isEmpty());
+        Mockito.verify(mockAppointmentService, Mockito.never()).findAppointmentPage(any(), any(), anyInt());
+        Mockito.verify(mockAppointmentService, Mockito.never()).findAllPeople();
+        Mockito.verify(mockAppointmentService, Mockito.never()).findAllLocations();
+    }
+
+    @Test
+    void testGetAppointmentsPageETag_ShouldChangeWithDataVersion() {
+        Mockito.when(mockAppointmentService.getDataVersion()).thenReturn(1L, 2L);
+        Assertions.assertNotEquals(controllerHelper.getAppointmentsPageETag(), controllerHelper.getAppointmentsPageETag());
+    }
+
+    @Test
+    void testGetAppointments_AfterFailedWrite_ShouldShowFlashedFormAndErrorInsteadOf304() {
+        AppointmentRequestDto rejected = TestHelper.createAppointmentDto();
+        model.addAttribute("appointment", rejected);
+        model.addAttribute("appointmentValidationError", "some field failed validation");
+        Mockito.when(webRequest.checkNotModified(any(String.class))).thenReturn(true);
+
+        String view = controller.getAppointments(null, null, webRequest, model);
+
+        Assertions.assertEquals(Constants.APPOINTMENTS_PAGE, view);
+        Assertions.assertEquals(rejected, model.getAttribute("appointment"));
+        Assertions.assertEquals("some field failed validation", model.getAttribute("appointmentValidationError"));
+        Assertions.assertEquals("", model.getAttribute("personValidationError"));
+        Assertions.assertNotNull(model.getAttribute("person"));
+        checkAppointmentsArePopulated();
+        Mockito.verify(webRequest, Mockito.never()).checkNotModified(any(String.class));
+    }
+
+    @Test
+    void testCreateAppointment_WhenRequestIsValid_ShouldCreateAppointmentAndRedirect() {
+        Mockito.when(mockAppointmentService.createAppointment(any())).thenReturn(TestHelper.createAppointmentResponse());
+
+        RedirectView view = controller.createAppointment(TestHelper.createAppointmentDto(), validBindingResult, redirectAttributes);
+
+        checkRedirectedToAppointmentsPage(view);
+        Assertions.assertTrue(redirectAttributes.getFlashAttributes().isEmpty());
+        checkPageWasNotRead();
     }
 
     @Test
     void testCreateAppointment_WhenExtraValidationFails_ShouldDisplayErrorToUser() {
-        List<AppointmentResponseDto> initialAppointments = TestHelper.createAppointmentResponseList(2);
         AppointmentRequestDto dto = TestHelper.createAppointmentDto();
-        ValidationException exception = new ValidationException("some field failed validation");
+        Mockito.when(mockAppointmentService.createAppointment(any())).thenThrow(new ValidationException("some field failed validation"));
 
-        model.addAttribute("appointments", initialAppointments);
-        Mockito.when(mockAppointmentService.createAppointment(any())).thenThrow(exception);
-        Mockito.when(mockAppointmentService.findAllAppointments()).thenReturn(initialAppointments);
+        RedirectView view = controller.createAppointment(dto, validBindingResult, redirectAttributes);
 
-        String view = controller.createAppointment(dto, validBindingResult, model);
-        checkAppointmentValidationFields(view, initialAppointments, dto);
+        checkFormFailureWasFlashed(view, "appointment", dto);
+        Assertions.assertEquals("some field failed validation", redirectAttributes.getFlashAttributes().get("appointmentValidationError"));
     }
 
     @Test
     void testCreateAppointment_WhenUnknownErrorOccurs_ShouldDisplayErrorToUser() {
-        List<AppointmentResponseDto> initialAppointments = TestHelper.createAppointmentResponseList(2);
         AppointmentRequestDto dto = TestHelper.createAppointmentDto();
-
-        model.addAttribute("appointments", initialAppointments);
         Mockito.when(mockAppointmentService.createAppointment(any())).thenReturn(null);
-        Mockito.when(mockAppointmentService.findAllAppointments()).thenReturn(initialAppointments);
 
-        String view = controller.createAppointment(dto, validBindingResult, model);
-        checkAppointmentValidationFields(view, initialAppointments, dto);
+        RedirectView view = controller.createAppointment(dto, validBindingResult, redirectAttributes);
+        checkFormFailureWasFlashed(view, "appointment", dto);
     }
 
     @Test
     void testCreateAppointment_WithBindingError_ShouldDisplayErrorToUser() {
-        List<AppointmentResponseDto> initialAppointments = TestHelper.createAppointmentResponseList(2);
         AppointmentRequestDto dto = TestHelper.createAppointmentDto();
 
-        model.addAttribute("appointments", initialAppointments);
-        Mockito.when(mockAppointmentService.findAllAppointments()).thenReturn(initialAppointments);
-
-        String view = controller.createAppointment(dto, invalidBindingResult, model);
-        checkAppointmentValidationFields(view, initialAppointments, dto);
+        RedirectView view = controller.createAppointment(dto, invalidBindingResult, redirectAttributes);
+        checkFormFailureWasFlashed(view, "appointment", dto);
         Mockito.verify(mockAppointmentService, Mockito.never()).createAppointment(any());
     }
 
     @Test
     void testDeleteAppointment_WithValidId() {
         Integer appointmentId = 1234;
-        String view = controller.deleteAppointment(appointmentId, model);
+        Mockito.when(mockAppointmentService.deleteAppointment(appointmentId)).thenReturn(true);
+        RedirectView view = controller.deleteAppointment(appointmentId);
 
         Mockito.verify(mockAppointmentService).deleteAppointment(appointmentId);
-        Assertions.assertEquals(Constants.APPOINTMENTS_PAGE, view);
-        checkRequiredFieldsOnModel();
-        checkAppointmentsArePopulated();
-        checkPeopleArePopulated();
-        checkLocationsArePopulated();
+        checkRedirectedToAppointmentsPage(view);
+        checkPageWasNotRead();
     }
 
     @Test
     void testDeleteAppointment_WithInvalidId() {
         Integer appointmentId = 1;
-        Mockito.doThrow(new ValidationException("some error")).when(mockAppointmentService).deleteAppointment(appointmentId);
-        String view = controller.deleteAppointment(appointmentId, model);
+        Mockito.when(mockAppointmentService.deleteAppointment(appointmentId)).thenReturn(false);
+        RedirectView view = controller.deleteAppointment(appointmentId);
 
-        Assertions.assertEquals(Constants.APPOINTMENTS_PAGE, view);
-        checkRequiredFieldsOnModel();
-        checkAppointmentsArePopulated();
-        checkPeopleArePopulated();
-        checkLocationsArePopulated();
+        checkRedirectedToAppointmentsPage(view);
+        checkPageWasNotRead();
     }
 
     @Test
-    void testCreatePerson_WhenRequestIsValid_ShouldCreatePersonAndUpdateModel() {
-        int initialSize = 3;
-        List<Person> initialPeople = TestHelper.createPersonList(initialSize);
-        Person expectedPerson = TestHelper.createPerson();
-        List<Person> allPeople = TestHelper.createPersonList(initialSize);
-        allPeople.add(expectedPerson);
-
-        model.addAttribute("people", initialPeople);
-        Mockito.when(mockAppointmentService.createPerson(any())).thenReturn(expectedPerson);
-        Mockito.when(mockAppointmentService.findAllPeople()).thenReturn(allPeople);
-        String view = controller.createPerson(TestHelper.createPersonDto(), validBindingResult, model);
+    void testDeleteAppointment_WhenDeleteFails() {
+        Integer appointmentId = 1;
+        Mockito.doThrow(new RuntimeException("database is down")).when(mockAppointmentService).deleteAppointment(appointmentId);
+        RedirectView view = controller.deleteAppointment(appointmentId);
 
-        Assertions.assertEquals(Constants.APPOINTMENTS_PAGE, view);
-        Object modelPeople = model.getAttribute("people");
-        Assertions.assertTrue(modelPeople instanceof List);
-        Assertions.assertEquals(initialSize + 1, ((List<?>) modelPeople).size());
-        Assertions.assertTrue(((List<?>) modelPeople).contains(expectedPerson));
+        checkRedirectedToAppointmentsPage(view);
+        checkPageWasNotRead();
+    }
 
-        checkRequiredFieldsOnModel();
-        checkAppointmentsArePopulated();
-        checkLocationsArePopulated();
+    @Test
+    void testCreatePerson_WhenRequestIsValid_ShouldCreatePersonAndRedirect() {
+        Mockito.when(mockAppointmentService.createPerson(any())).thenReturn(TestHelper.createPerson());
+
+        RedirectView view = controller.createPerson(TestHelper.createPersonDto(), validBindingResult, redirectAttributes);
+
+        checkRedirectedToAppointmentsPage(view);
+        Assertions.assertTrue(redirectAttributes.getFlashAttributes().isEmpty());
+        checkPageWasNotRead();
     }
 
     @Test
     void testCreatePerson_WhenExtraValidationFails_ShouldDisplayErrorToUser() {
-        List<Person> initialPeople = TestHelper.createPersonList(2);
         PersonDto dto = TestHelper.createPersonDto();
-        ValidationException exception = new ValidationException("some field failed validation");
-
-        model.addAttribute("people", initialPeople);
-        Mockito.when(mockAppointmentService.createPerson(any())).thenThrow(exception);
-        Mockito.when(mockAppointmentService.findAllPeople()).thenReturn(initialPeople);
+        Mockito.when(mockAppointmentService.createPerson(any())).thenThrow(new ValidationException("some field failed validation"));
 
-        String view = controller.createPerson(dto, validBindingResult, model);
-        checkPeopleValidationFields(view, initialPeople, dto);
+        RedirectView view = controller.createPerson(dto, validBindingResult, redirectAttributes);
+        checkFormFailureWasFlashed(view, "person", dto);
     }
 
     @Test
     void testCreatePerson_WhenUnknownErrorOccurs_ShouldDisplayErrorToUser() {
-        List<Person> initialPeople = TestHelper.createPersonList(2);
         PersonDto dto = TestHelper.createPersonDto();
-
-        model.addAttribute("people", initialPeople);
         Mockito.when(mockAppointmentService.createPerson(any())).thenReturn(null);
-        Mockito.when(mockAppointmentService.findAllPeople()).thenReturn(initialPeople);
 
-        String view = controller.createPerson(dto, validBindingResult, model);
-        checkPeopleValidationFields(view, initialPeople, dto);
+        RedirectView view = controller.createPerson(dto, validBindingResult, redirectAttributes);
+        checkFormFailureWasFlashed(view, "person", dto);
     }
 
     @Test
     void testCreatePerson_WithBindingError_ShouldDisplayErrorToUser() {
-        List<Person> initialPeople = TestHelper.createPersonList(2);
         PersonDto dto = TestHelper.createPersonDto();
 
-        model.addAttribute("people", initialPeople);
-        Mockito.when(mockAppointmentService.findAllPeople()).thenReturn(initialPeople);
-
-        String view = controller.createPerson(dto, invalidBindingResult, model);
-        checkPeopleValidationFields(view, initialPeople, dto);
+        RedirectView view = controller.createPerson(dto, invalidBindingResult, redirectAttributes);
+        checkFormFailureWasFlashed(view, "person", dto);
         Mockito.verify(mockAppointmentService, Mockito.never()).createPerson(any());
     }
 
     @Test
-    void testCreateLocation_WhenRequestIsValid_ShouldCreatePersonAndUpdateModel() {
-        int initialSize = 3;
-        List<Location> initialLocations = TestHelper.createLocationList(initialSize);
-        Location expectedLocation = TestHelper.createLocation();
-        List<Location> allLocations = TestHelper.createLocationList(initialSize);
-        allLocations.add(expectedLocation);
-
-        model.addAttribute("locations", initialLocations);
-        Mockito.when(mockAppointmentService.createLocation(any())).thenReturn(expectedLocation);
-        Mockito.when(mockAppointmentService.findAllLocations()).thenReturn(allLocations);
-        String view = controller.createLocation(TestHelper.createLocationDto(), validBindingResult, model);
+    void testCreateLocation_WhenRequestIsValid_ShouldCreateLocationAndRedirect() {
+        Mockito.when(mockAppointmentService.createLocation(any())).thenReturn(TestHelper.createLocation());
 
-        Assertions.assertEquals(Constants.APPOINTMENTS_PAGE, view);
-        Object modelLocations = model.getAttribute("locations");
-        Assertions.assertTrue(modelLocations instanceof List);
-        Assertions.assertEquals(initialSize + 1, ((List<?>) modelLocations).size());
-        Assertions.assertTrue(((List<?>) modelLocations).contains(expectedLocation));
+        RedirectView view = controller.createLocation(TestHelper.createLocationDto(), validBindingResult, redirectAttributes);
 
-        checkRequiredFieldsOnModel();
-        checkAppointmentsArePopulated();
-        checkPeopleArePopulated();
+        checkRedirectedToAppointmentsPage(view);
+        Assertions.assertTrue(redirectAttributes.getFlashAttributes().isEmpty());
+        checkPageWasNotRead();
     }
 
     @Test
     void testCreateLocation_WhenExtraValidationFails_ShouldDisplayErrorToUser() {
-        List<Location> initialLocations = TestHelper.createLocationList(2);
         LocationDto dto = TestHelper.createLocationDto();
-        ValidationException exception = new ValidationException("some field failed validation");
+        Mockito.when(mockAppointmentService.createLocation(any())).thenThrow(new ValidationException("some field failed validation"));
 
-        model.addAttribute("locations", initialLocations);
-        Mockito.when(mockAppointmentService.createLocation(any())).thenThrow(exception);
-        Mockito.when(mockAppointmentService.findAllLocations()).thenReturn(initialLocations);
-
-        String view = controller.createLocation(dto, validBindingResult, model);
-        checkLocationValidationFields(view, initialLocations, dto);
+        RedirectView view = controller.createLocation(dto, validBindingResult, redirectAttributes);
+        checkFormFailureWasFlashed(view, "location", dto);
     }
 
     @Test
     void testCreateLocation_WhenUnknownErrorOccurs_ShouldDisplayErrorToUser() {
-        List<Location> initialLocations = TestHelper.createLocationList(2);
         LocationDto dto = TestHelper.createLocationDto();
-
-        model.addAttribute("locations", initialLocations);
         Mockito.when(mockAppointmentService.createLocation(any())).thenReturn(null);
-        Mockito.when(mockAppointmentService.findAllLocations()).thenReturn(initialLocations);
 
-        String view = controller.createLocation(dto, validBindingResult, model);
-        checkLocationValidationFields(view, initialLocations, dto);
+        RedirectView view = controller.createLocation(dto, validBindingResult, redirectAttributes);
+        checkFormFailureWasFlashed(view, "location", dto);
     }
 
     @Test
     void testCreateLocation_WithBindingError_ShouldDisplayErrorToUser() {
-        List<Location> initialLocations = TestHelper.createLocationList(2);
         LocationDto dto = TestHelper.createLocationDto();
 
-        model.addAttribute("locations", initialLocations);
-        Mockito.when(mockAppointmentService.findAllLocations()).thenReturn(initialLocations);
-
-        String view = controller.createLocation(dto, invalidBindingResult, model);
-        checkLocationValidationFields(view, initialLocations, dto);
+        RedirectView view = controller.createLocation(dto, invalidBindingResult, redirectAttributes);
+        checkFormFailureWasFlashed(view, "location", dto);
         Mockito.verify(mockAppointmentService, Mockito.never()).createLocation(any());
     }
 
-    private void checkAppointmentValidationFields(String view, List<AppointmentResponseDto> initialAppointments, AppointmentRequestDto dto) {
-        Assertions.assertEquals(Constants.APPOINTMENTS_PAGE, view);
-        Object modelAppointments = model.getAttribute("appointments");
-        Assertions.assertTrue(modelAppointments instanceof List);
-        Assertions.assertEquals(initialAppointments, modelAppointments); // The list of all appointments should not have changed
-        Assertions.assertNotNull(model.getAttribute("appointmentValidationError"));
-        Assertions.assertEquals(dto, model.getAttribute("appointment"));
+    private static AppointmentPageDto pageOf(List<AppointmentResponseDto> appointments) {
+        AppointmentPageDto page = new AppointmentPageDto();
+        page.setAppointments(appointments);
+        return page;
     }
 
-    private void checkPeopleValidationFields(String view, List<Person> initialPeople, PersonDto dto) {
-        Assertions.assertEquals(Constants.APPOINTMENTS_PAGE, view);
-        Object modelPeople = model.getAttribute("people");
-        Assertions.assertTrue(modelPeople instanceof List);
-        Assertions.assertEquals(initialPeople, modelPeople); // The list of all people should not have changed
-        Assertions.assertNotNull(model.getAttribute("personValidationError"));
-        Assertions.assertEquals(dto, model.getAttribute("person"));
+    /**
+     * Renders the view to check it sends a 303 See Other to the appointments page, as RedirectView doesn't expose its status
+     */
+    private static void checkRedirectedToAppointmentsPage(RedirectView view) {
+        Assertions.assertEquals(Constants.APPOINTMENTS_PATH, view.getUrl());
+        HttpServletRequest request = Mockito.mock(HttpServletRequest.class);
+        HttpServletResponse response = Mockito.mock(HttpServletResponse.class);
+        Mockito.when(request.getContextPath()).thenReturn("/app");
+        Mockito.when(response.encodeRedirectURL(any())).then(invocation -> invocation.getArgument(0));
+        try {
+            view.render(Collections.emptyMap(), request, response);
+        } catch (Exception e) {
+            Assertions.fail(e);
+        }
+        Mockito.verify(response).setStatus(HttpStatus.SEE_OTHER.value());
+        Mockito.verify(response).setHeader("Location", "/app" + Constants.APPOINTMENTS_PATH);
     }
 
-    private void checkLocationValidationFields(String view, List<Location> initialLocation, LocationDto dto) {
-        Assertions.assertEquals(Constants.APPOINTMENTS_PAGE, view);
-        Object modelLocations = model.getAttribute("locations");
-        Assertions.assertTrue(modelLocations instanceof List);
-        Assertions.assertEquals(initialLocation, modelLocations); // The list of all locations should not have changed
-        Assertions.assertNotNull(model.getAttribute("locationValidationError"));
-        Assertions.assertEquals(dto, model.getAttribute("location"));
+    /**
+     * Checks the write redirected with the rejected form and an error message for it, without reading anything for the page
+     */
+    private void checkFormFailureWasFlashed(RedirectView view, String form, Object dto) {
+        checkRedirectedToAppointmentsPage(view);
+        Map<String, ?> flashAttributes = redirectAttributes.getFlashAttributes();
+        Assertions.assertEquals(dto, flashAttributes.get(form));
+        Assertions.assertNotNull(flashAttributes.get(form + "ValidationError"));
+        Assertions.assertNotEquals("", flashAttributes.get(form + "ValidationError"));
+        checkPageWasNotRead();
+    }
+
+    private void checkPageWasNotRead() {
+        Mockito.verify(mockAppointmentService, Mockito.never()).findAppointmentPage(any(), any(), anyInt());
+        Mockito.verify(mockAppointmentService, Mockito.never()).findAllPeople();
+        Mockito.verify(mockAppointmentService, Mockito.never()).findAllLocations();
     }
 
     private void checkRequiredFieldsOnModel() {
@@ -338,6 +402,7 @@ class AppointmentControllerTest {
         Assertions.assertEquals("", model.getAttribute("appointmentValidationError"));
         Assertions.assertEquals("", model.getAttribute("personValidationError"));
         Assertions.assertEquals("", model.getAttribute("locationValidationError"));
+        Assertions.assertEquals("", model.getAttribute("searchValidationError"));
     }
 
     private void checkAppointmentsArePopulated() {
@@ -0,0 +1,68 @@
+package com.mutzy.dao;
+
+import com.mutzy.TestHelper;
+import com.mutzy.domain.Location;
+import com.mutzy.domain.Person;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+
+import java.time.Duration;
+import java.util.Optional;
+
+class ReferenceDataCacheTest {
+
+    private final PersonDao mockPersonDao = Mockito.mock(PersonDao.class);
+    private final LocationDao mockLocationDao = Mockito.mock(LocationDao.class);
+    private final ReferenceDataCache cache = new ReferenceDataCache(mockPersonDao, mockLocationDao, 100, Duration.ofMinutes(1));
+
+    @Test
+    void testFindPerson_ShouldOnlyHitDatabaseOnce() {
+        Person person = TestHelper.createPerson();
+        Mockito.when(mockPersonDao.findById(person.getId())).thenReturn(Optional.of(person));
+
+        Assertions.assertEquals(Optional.of(person), cache.findPerson(person.getId()));
+        Assertions.assertEquals(Optional.of(person), cache.findPerson(person.getId()));
+
+        Mockito.verify(mockPersonDao, Mockito.times(1)).findById(person.getId());
+        Assertions.assertEquals(1, cache.getPersonStats().hitCount());
+        Assertions.assertEquals(1, cache.getPersonStats().missCount());
+    }
+
+    @Test
+    void testFindPerson_AfterInvalidate_ShouldReloadFromDatabase() {
+        Person person = TestHelper.createPerson();
+        Mockito.when(mockPersonDao.findById(person.getId())).thenReturn(Optional.empty());
+        Assertions.assertFalse(cache.findPerson(person.getId()).isPresent());
+
+        Mockito.when(mockPersonDao.findById(person.getId())).thenReturn(Optional.of(person));
+        Assertions.assertFalse(cache.findPerson(person.getId()).isPresent()); // the missing person is cached too
+
+        cache.invalidatePerson(person.getId());
+        Assertions.assertEquals(Optional.of(person), cache.findPerson(person.getId()));
+    }
+
+    @Test
+    void testFindLocation_ShouldOnlyHitDatabaseOnce() {
+        Location location = TestHelper.createLocation();
+        Mockito.when(mockLocationDao.findById(location.getId())).thenReturn(Optional.of(location));
+
+        Assertions.assertEquals(Optional.of(location), cache.findLocation(location.getId()));
+        Assertions.assertEquals(Optional.of(location), cache.findLocation(location.getId()));
+
+        Mockito.verify(mockLocationDao, Mockito.times(1)).findById(location.getId());
+        Assertions.assertEquals(1, cache.getLocationStats().hitCount());
+        Assertions.assertEquals(1, cache.getLocationStats().missCount());
+    }
+
+    @Test
+    void testFindLocation_AfterInvalidate_ShouldReloadFromDatabase() {
+        Location location = TestHelper.createLocation();
+        Mockito.when(mockLocationDao.findById(location.getId())).thenReturn(Optional.empty());
+        Assertions.assertFalse(cache.findLocation(location.getId()).isPresent());
+
+        Mockito.when(mockLocationDao.findById(location.getId())).thenReturn(Optional.of(location));
+        cache.invalidateLocation(location.getId());
+        Assertions.assertEquals(Optional.of(location), cache.findLocation(location.getId()));
+    }
+}
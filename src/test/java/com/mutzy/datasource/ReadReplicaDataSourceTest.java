@@ -0,0 +1,97 @@
+package com.mutzy.datasource;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.core.env.StandardEnvironment;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Arrays;
+import java.util.UUID;
+
+/**
+ * Runs against three in-memory H2 databases standing in for the primary and two read replicas.
+ * Each holds a single row with its own name, so a query shows which of them served it
+ */
+class ReadReplicaDataSourceTest {
+
+    private final ReadReplicaConfiguration configuration = new ReadReplicaConfiguration(new StandardEnvironment());
+    private ReadReplicaDataSource dataSource;
+
+    @BeforeEach
+    void setUp() throws SQLException {
+        String prefix = "jdbc:h2:mem:" + UUID.randomUUID() + "-";
+        DataSourceProperties properties = new DataSourceProperties();
+        properties.setUrl(prefix + "primary");
+        properties.setUsername("sa");
+        dataSource = configuration.dataSource(properties, new String[]{prefix + "replica-0", prefix + "replica-1"}, null, null);
+
+        createNameTable(dataSource.getPrimary(), "primary");
+        createNameTable(dataSource.getReplicas().get(0), "replica-0");
+        createNameTable(dataSource.getReplicas().get(1), "replica-1");
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        ReadReplicaRouting.setReplicaRead(false);
+        ReadReplicaRouting.setPinnedToPrimary(false);
+        dataSource.close();
+    }
+
+    @Test
+    void testQueries_ShouldGoToThePrimaryByDefault() throws SQLException {
+        Assertions.assertEquals("primary", queryName());
+        Assertions.assertEquals("primary", queryName());
+    }
+
+    @Test
+    void testReplicaReads_ShouldTakeTurnsAcrossTheReplicas() throws SQLException {
+        ReadReplicaRouting.setReplicaRead(true);
+
+        Assertions.assertEquals(Arrays.asList("replica-0", "replica-1", "replica-0"), Arrays.asList(queryName(), queryName(), queryName()));
+    }
+
+    @Test
+    void testReplicaReads_WhenPinned_ShouldGoToThePrimary() throws SQLException {
+        ReadReplicaRouting.setReplicaRead(true);
+        ReadReplicaRouting.setPinnedToPrimary(true);
+
+        Assertions.assertEquals("primary", queryName());
+    }
+
+    @Test
+    void testRoute_ShouldBeDecidedWhenTheFirstStatementRuns() throws SQLException {
+        try (Connection connection = dataSource.getConnection()) {
+            connection.setReadOnly(true);
+            ReadReplicaRouting.setReplicaRead(true);
+            Assertions.assertEquals("replica-0", queryName(connection));
+        }
+    }
+
+    private String queryName() throws SQLException {
+        try (Connection connection = dataSource.getConnection()) {
+            return queryName(connection);
+        }
+    }
+
+    private static String queryName(Connection connection) throws SQLException {
+        try (Statement statement = connection.createStatement();
+             ResultSet resultSet = statement.executeQuery("select name from database_name")) {
+            resultSet.next();
+            return resultSet.getString(1);
+        }
+    }
+
+    private static void createNameTable(DataSource target, String name) throws SQLException {
+        try (Connection connection = target.getConnection(); Statement statement = connection.createStatement()) {
+            statement.execute("create table database_name (name varchar(20))");
+            statement.execute("insert into database_name values ('" + name + "')");
+        }
+    }
+}
@@ -0,0 +1,93 @@
+package com.mutzy.datasource;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mockito;
+
+import javax.servlet.FilterChain;
+import javax.servlet.http.Cookie;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.mockito.ArgumentMatchers.any;
+
+class ReadYourWritesFilterTest {
+
+    private static final long NOW = 1671526800000L;
+
+    private final ReadYourWritesFilter filter = new ReadYourWritesFilter(Duration.ofSeconds(5), Clock.fixed(Instant.ofEpochMilli(NOW), ZoneOffset.UTC));
+    private final HttpServletRequest mockRequest = Mockito.mock(HttpServletRequest.class);
+    private final HttpServletResponse mockResponse = Mockito.mock(HttpServletResponse.class);
+    private final FilterChain mockChain = Mockito.mock(FilterChain.class);
+    private final List<Boolean> pinned = new ArrayList<>();
+
+    @AfterEach
+    void tearDown() {
+        ReadReplicaRouting.setPinnedToPrimary(false);
+    }
+
+    @Test
+    void testWrite_ShouldPinThisRequestAndSetCookie() throws Exception {
+        givenRequest("POST");
+
+        filter.doFilter(mockRequest, mockResponse, mockChain);
+
+        Assertions.assertEquals(1, pinned.size());
+        Assertions.assertTrue(pinned.get(0));
+        Assertions.assertFalse(ReadReplicaRouting.isPinnedToPrimary());
+        ArgumentCaptor<Cookie> cookie = ArgumentCaptor.forClass(Cookie.class);
+        Mockito.verify(mockResponse).addCookie(cookie.capture());
+        Assertions.assertEquals(ReadYourWritesFilter.COOKIE_NAME, cookie.getValue().getName());
+        Assertions.assertEquals(Long.toString(NOW + 5000), cookie.getValue().getValue());
+        Assertions.assertEquals(5, cookie.getValue().getMaxAge());
+        Assertions.assertEquals("/app", cookie.getValue().getPath());
+    }
+
+    @Test
+    void testReadAfterRecentWrite_ShouldBePinned() throws Exception {
+        givenRequest("GET", new Cookie(ReadYourWritesFilter.COOKIE_NAME, Long.toString(NOW + 1)));
+
+        filter.doFilter(mockRequest, mockResponse, mockChain);
+
+        Assertions.assertTrue(pinned.get(0));
+        Mockito.verify(mockResponse, Mockito.never()).addCookie(any());
+    }
+
+    @Test
+    void testReadAfterWindowHasPassed_ShouldNotBePinned() throws Exception {
+        givenRequest("GET", new Cookie(ReadYourWritesFilter.COOKIE_NAME, Long.toString(NOW)));
+
+        filter.doFilter(mockRequest, mockResponse, mockChain);
+
+        Assertions.assertFalse(pinned.get(0));
+    }
+
+    @Test
+    void testReadWithoutOrWithInvalidCookie_ShouldNotBePinned() throws Exception {
+        givenRequest("GET");
+        filter.doFilter(mockRequest, mockResponse, mockChain);
+
+        givenRequest("GET", new Cookie(ReadYourWritesFilter.COOKIE_NAME, "soon"));
+        filter.doFilter(mockRequest, mockResponse, mockChain);
+
+        Assertions.assertEquals(2, pinned.size());
+        Assertions.assertFalse(pinned.get(0));
+        Assertions.assertFalse(pinned.get(1));
+    }
+
+    private void givenRequest(String method, Cookie... cookies) throws Exception {
+        Mockito.reset(mockRequest, mockChain);
+        Mockito.when(mockRequest.getMethod()).thenReturn(method);
+        Mockito.when(mockRequest.getContextPath()).thenReturn("/app");
+        Mockito.when(mockRequest.getCookies()).thenReturn(cookies.length == 0 ? null : cookies);
+        Mockito.doAnswer(invocation -> pinned.add(ReadReplicaRouting.isPinnedToPrimary())).when(mockChain).doFilter(any(), any());
+    }
+}
@@ -0,0 +1,77 @@
+package com.mutzy.datasource;
+
+import com.mutzy.service.AppointmentService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.springframework.aop.aspectj.annotation.AspectJProxyFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.mockito.ArgumentMatchers.any;
+
+class ReplicaReadAspectTest {
+
+    private final AppointmentService mockAppointmentService = Mockito.mock(AppointmentService.class);
+    private final AppointmentService service = proxy(mockAppointmentService);
+    private final List<Boolean> usedReplica = new ArrayList<>();
+
+    @AfterEach
+    void tearDown() {
+        ReadReplicaRouting.setPinnedToPrimary(false);
+    }
+
+    @Test
+    void testReadOnlyServiceMethod_ShouldUseReplicaWhileItRuns() {
+        Mockito.when(mockAppointmentService.findAllAppointments()).thenAnswer(invocation -> {
+            usedReplica.add(ReadReplicaRouting.shouldUseReplica());
+            return null;
+        });
+
+        service.findAllAppointments();
+
+        Assertions.assertEquals(1, usedReplica.size());
+        Assertions.assertTrue(usedReplica.get(0));
+        Assertions.assertFalse(ReadReplicaRouting.isReplicaRead());
+    }
+
+    @Test
+    void testReadOnlyServiceMethod_WhenPinned_ShouldUsePrimary() {
+        Mockito.doAnswer(invocation -> usedReplica.add(ReadReplicaRouting.shouldUseReplica()))
+                .when(mockAppointmentService).streamAllAppointments(any());
+        ReadReplicaRouting.setPinnedToPrimary(true);
+
+        service.streamAllAppointments(appointment -> { });
+
+        Assertions.assertEquals(1, usedReplica.size());
+        Assertions.assertFalse(usedReplica.get(0));
+    }
+
+    @Test
+    void testOtherServiceMethods_ShouldUsePrimary() {
+        Mockito.when(mockAppointmentService.findAllPeople()).thenAnswer(invocation -> {
+            usedReplica.add(ReadReplicaRouting.shouldUseReplica());
+            return null;
+        });
+        Mockito.when(mockAppointmentService.createPerson(any())).thenAnswer(invocation -> {
+            usedReplica.add(ReadReplicaRouting.shouldUseReplica());
+            return null;
+        });
+
+        service.findAllPeople();
+        service.createPerson(null);
+
+        Assertions.assertEquals(2, usedReplica.size());
+        Assertions.assertFalse(usedReplica.get(0));
+        Assertions.assertFalse(usedReplica.get(1));
+    }
+
+    private static AppointmentService proxy(AppointmentService target) {
+        AspectJProxyFactory factory = new AspectJProxyFactory(target);
+        factory.setProxyTargetClass(true);
+        factory.addAspect(new ReplicaReadAspect());
+        return factory.getProxy();
+    }
+}
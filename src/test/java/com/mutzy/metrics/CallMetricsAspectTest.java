@@ -0,0 +1,77 @@
+package com.mutzy.metrics;
+
+import com.mutzy.service.AppointmentService;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.springframework.aop.aspectj.annotation.AspectJProxyFactory;
+
+import javax.validation.ValidationException;
+
+import static org.mockito.ArgumentMatchers.any;
+
+class CallMetricsAspectTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final AppointmentService mockAppointmentService = Mockito.mock(AppointmentService.class);
+    private final AppointmentService service = proxy(mockAppointmentService);
+
+    @Test
+    void testSuccessfulCall_ShouldBeTimedAsSuccess() {
+        service.findAllPeople();
+
+        Assertions.assertEquals(1, timer("findAllPeople", Outcome.SUCCESS).count());
+        Assertions.assertNull(meterRegistry.find(CallMetricsAspect.TIMER_NAME).tag("method", "findAllPeople").tag("outcome", "error").timer());
+    }
+
+    @Test
+    void testValidationException_ShouldBeTimedAsValidationFailure() {
+        Mockito.when(mockAppointmentService.createPerson(any())).thenThrow(new ValidationException("invalid"));
+
+        Assertions.assertThrows(ValidationException.class, () -> service.createPerson(null));
+        Assertions.assertEquals(1, timer("createPerson", Outcome.VALIDATION_FAILURE).count());
+    }
+
+    @Test
+    void testUnexpectedException_ShouldBeTimedAsError() {
+        Mockito.when(mockAppointmentService.findAllLocations()).thenThrow(new IllegalStateException("database is down"));
+
+        Assertions.assertThrows(IllegalStateException.class, service::findAllLocations);
+        Assertions.assertEquals(1, timer("findAllLocations", Outcome.ERROR).count());
+    }
+
+    @Test
+    void testReportedOutcome_ShouldOnlyApplyToTheCallThatReportedIt() {
+        AppointmentService innerService = proxy(mockAppointmentService);
+        Mockito.when(mockAppointmentService.createAppointment(any())).thenAnswer(invocation -> {
+            CallMetricsAspect.reportOutcome(Outcome.ERROR);
+            return null;
+        });
+        Mockito.when(mockAppointmentService.findAllPeople()).thenAnswer(invocation -> {
+            innerService.createAppointment(null);
+            return null;
+        });
+
+        service.findAllPeople();
+
+        Assertions.assertEquals(1, timer("createAppointment", Outcome.ERROR).count());
+        Assertions.assertEquals(1, timer("findAllPeople", Outcome.SUCCESS).count());
+    }
+
+    private AppointmentService proxy(AppointmentService target) {
+        AspectJProxyFactory factory = new AspectJProxyFactory(target);
+        factory.setProxyTargetClass(true);
+        factory.addAspect(new CallMetricsAspect(meterRegistry));
+        return factory.getProxy();
+    }
+
+    private Timer timer(String method, Outcome outcome) {
+        return meterRegistry.get(CallMetricsAspect.TIMER_NAME)
+                .tag("layer", "service")
+                .tag("method", method)
+                .tag("outcome", outcome.getTagValue())
+                .timer();
+    }
+}
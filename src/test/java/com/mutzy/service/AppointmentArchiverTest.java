@@ -0,0 +1,147 @@
+package com.mutzy.service;
+
+import com.mutzy.TestHelper;
+import com.mutzy.dao.AppointmentDao;
+import com.mutzy.dao.AppointmentDetails;
+import com.mutzy.dao.AppointmentSeriesDao;
+import com.mutzy.dao.ArchivedAppointmentDao;
+import com.mutzy.dao.ArchivedAppointmentKey;
+import com.mutzy.dao.LocationDao;
+import com.mutzy.dao.PersonDao;
+import com.mutzy.dao.SeriesOverrideDao;
+import com.mutzy.domain.Appointment;
+import com.mutzy.dto.AppointmentResponseDto;
+import com.mutzy.dto.AppointmentRollupDto;
+import com.mutzy.utils.DateTimeCodec;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.mockito.InOrder;
+import org.mockito.Mockito;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+
+class AppointmentArchiverTest {
+
+    private final AppointmentDao mockAppointmentDao = Mockito.mock(AppointmentDao.class);
+    private final AppointmentView mockAppointmentView = Mockito.mock(AppointmentView.class);
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final Date cutoff = DateTimeCodec.parse("2022-01-01", "00:00");
+
+    @Test
+    void testArchiveBefore_ShouldMoveBatchesUntilOneIsShort() {
+        Mockito.when(mockAppointmentDao.findIdsBefore(eq(cutoff), any()))
+                .thenReturn(Arrays.asList(1, 2), Arrays.asList(3, 4), Collections.singletonList(5));
+        Mockito.when(mockAppointmentDao.moveToArchive(any())).thenAnswer(invocation -> invocation.<Collection<?>>getArgument(0).size());
+
+        Assertions.assertEquals(5, createArchiver(2).archiveBefore(cutoff));
+
+        InOrder inOrder = Mockito.inOrder(mockAppointmentDao, mockAppointmentView);
+        inOrder.verify(mockAppointmentDao).moveToArchive(Arrays.asList(1, 2));
+        inOrder.verify(mockAppointmentView).archiveAppointments(Arrays.asList(1, 2));
+        inOrder.verify(mockAppointmentDao).moveToArchive(Arrays.asList(3, 4));
+        inOrder.verify(mockAppointmentView).archiveAppointments(Arrays.asList(3, 4));
+        inOrder.verify(mockAppointmentDao).moveToArchive(Collections.singletonList(5));
+        inOrder.verify(mockAppointmentView).archiveAppointments(Collections.singletonList(5));
+        Mockito.verify(mockAppointmentDao, Mockito.times(3)).findIdsBefore(eq(cutoff), any());
+        Assertions.assertEquals(5, meterRegistry.counter("appointments.archived").count());
+    }
+
+    @Test
+    void testArchiveBefore_WhenNothingIsDue_ShouldNotMoveAnything() {
+        Mockito.when(mockAppointmentDao.findIdsBefore(eq(cutoff), any())).thenReturn(Collections.emptyList());
+
+        Assertions.assertEquals(0, createArchiver(2).archiveBefore(cutoff));
+
+        Mockito.verify(mockAppointmentDao, Mockito.never()).moveToArchive(any());
+        Mockito.verifyZeroInteractions(mockAppointmentView);
+    }
+
+    @Test
+    void testArchiveBefore_WhenMoveFails_ShouldLeaveTheViewAlone() {
+        Mockito.when(mockAppointmentDao.findIdsBefore(eq(cutoff), any())).thenReturn(Arrays.asList(1, 2));
+        Mockito.when(mockAppointmentDao.moveToArchive(any())).thenThrow(new RuntimeException("Lock wait timeout"));
+
+        Assertions.assertThrows(RuntimeException.class, () -> createArchiver(2).archiveBefore(cutoff));
+
+        Mockito.verifyZeroInteractions(mockAppointmentView);
+    }
+
+    @Test
+    void testArchiveBefore_ShouldKeepTheArchivedAppointmentsInTheRollups() {
+        // a real view over stubbed tables, with two appointments before the cutoff and one after it
+        AppointmentSeriesDao mockSeriesDao = Mockito.mock(AppointmentSeriesDao.class);
+        SeriesOverrideDao mockSeriesOverrideDao = Mockito.mock(SeriesOverrideDao.class);
+        ArchivedAppointmentDao mockArchivedAppointmentDao = Mockito.mock(ArchivedAppointmentDao.class);
+        PersonDao mockPersonDao = Mockito.mock(PersonDao.class);
+        LocationDao mockLocationDao = Mockito.mock(LocationDao.class);
+        Mockito.when(mockSeriesDao.findAll()).thenReturn(Collections.emptyList());
+        Mockito.when(mockSeriesOverrideDao.findAll()).thenReturn(Collections.emptyList());
+        Mockito.when(mockPersonDao.findAll()).thenReturn(Collections.emptyList());
+        Mockito.when(mockLocationDao.findAll()).thenReturn(Collections.emptyList());
+        List<AppointmentDetails> stored = Arrays.asList(
+                createDetails(1, DateTimeCodec.parse("2021-03-01", "09:00")),
+                createDetails(2, DateTimeCodec.parse("2021-03-15", "09:00")),
+                createDetails(3, DateTimeCodec.parse("2022-03-01", "09:00")));
+        Mockito.when(mockAppointmentDao.findFirstDetails(any())).thenReturn(stored);
+        AppointmentView view = new AppointmentView(mockAppointmentDao, mockPersonDao, mockLocationDao, mockSeriesDao, mockSeriesOverrideDao,
+                mockArchivedAppointmentDao);
+        view.rebuild();
+        List<String> before = countIn2021(view);
+        Assertions.assertEquals(Arrays.asList("2021-03-01=1", "2021-03-15=1"), before);
+        Mockito.when(mockAppointmentDao.findIdsBefore(eq(cutoff), any())).thenReturn(Arrays.asList(1, 2));
+        Mockito.when(mockAppointmentDao.moveToArchive(any())).thenReturn(2);
+
+        Assertions.assertEquals(2, new AppointmentArchiver(mockAppointmentDao, view, meterRegistry,
+                true, Duration.ofDays(365), 10, Duration.ofHours(1), Duration.ZERO).archiveBefore(cutoff));
+
+        Assertions.assertEquals(Collections.singletonList(3), view.findPage(null, null, 10).getAppointments().stream()
+                .map(AppointmentResponseDto::getId).collect(Collectors.toList()));
+        Assertions.assertEquals(before, countIn2021(view));
+
+        // and after a rebuild, which counts them from the archive instead
+        Mockito.when(mockAppointmentDao.findFirstDetails(any())).thenReturn(stored.subList(2, 3));
+        Mockito.when(mockArchivedAppointmentDao.findKeysWithIdAbove(eq(0), any())).thenReturn(stored.subList(0, 2).stream()
+                .map(details -> new ArchivedAppointmentKey(details.getAppointment().getId(), null, null, details.getAppointment().getDate()))
+                .collect(Collectors.toList()));
+        view.rebuild();
+        Assertions.assertEquals(before, countIn2021(view));
+    }
+
+    @Test
+    void testStart_WhenDisabled_ShouldNotRun() {
+        AppointmentArchiver archiver = new AppointmentArchiver(mockAppointmentDao, mockAppointmentView, meterRegistry,
+                false, Duration.ofDays(365), 2, Duration.ofMillis(1), Duration.ZERO);
+        archiver.start();
+
+        Assertions.assertFalse(archiver.isRunning());
+    }
+
+    /**
+     * @return The daily counts in 2021, as "yyyy-MM-dd=count"
+     */
+    private static List<String> countIn2021(AppointmentView view) {
+        return view.countAppointments(AppointmentRollupDto.GroupBy.ALL, AppointmentRollupDto.Granularity.DAY, 20210101, 20211231)
+                .stream().map(row -> row.getPeriod() + "=" + row.getCount()).collect(Collectors.toList());
+    }
+
+    private static AppointmentDetails createDetails(int id, Date date) {
+        Appointment appointment = TestHelper.createAppointment(date);
+        appointment.setId(id);
+        return new AppointmentDetails(appointment, null, null);
+    }
+
+    private AppointmentArchiver createArchiver(int batchSize) {
+        return new AppointmentArchiver(mockAppointmentDao, mockAppointmentView, meterRegistry,
+                true, Duration.ofDays(365), batchSize, Duration.ofHours(1), Duration.ZERO);
+    }
+}
@@ -0,0 +1,85 @@
+package com.mutzy.service;
+
+import com.mutzy.dto.AppointmentRollupDto.Granularity;
+import com.mutzy.dto.AppointmentRollupDto.GroupBy;
+import com.mutzy.dto.AppointmentRollupDto.Row;
+import com.mutzy.utils.DateTimeCodec;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+
+class AppointmentRollupsTest {
+
+    private static final int JULY_1 = 20220701;
+    private static final int SEPTEMBER_30 = 20220930;
+
+    private final AppointmentRollups rollups = new AppointmentRollups();
+
+    @Test
+    void testCount_WhenNothingAdded() {
+        Assertions.assertTrue(rollups.count(GroupBy.ALL, Granularity.DAY, JULY_1, SEPTEMBER_30).isEmpty());
+        Assertions.assertTrue(rollups.count(GroupBy.PERSON, Granularity.MONTH, JULY_1, SEPTEMBER_30).isEmpty());
+    }
+
+    @Test
+    void testCount_ShouldCountEachDayInTheRange() {
+        rollups.add(1, 10, DateTimeCodec.parse("2022-07-01", "00:00"));
+        rollups.add(2, 10, DateTimeCodec.parse("2022-07-01", "23:59"));
+        rollups.add(1, null, DateTimeCodec.parse("2022-07-02", "12:00"));
+        rollups.add(1, 10, DateTimeCodec.parse("2022-06-30", "12:00")); // before the range
+        rollups.add(1, 10, DateTimeCodec.parse("2022-10-01", "00:00")); // after the range
+
+        Assertions.assertEquals("[null 2022-07-01 2, null 2022-07-02 1]",
+                format(rollups.count(GroupBy.ALL, Granularity.DAY, JULY_1, SEPTEMBER_30)));
+        Assertions.assertEquals("[1 2022-07-01 1, 1 2022-07-02 1, 2 2022-07-01 1]",
+                format(rollups.count(GroupBy.PERSON, Granularity.DAY, JULY_1, SEPTEMBER_30)));
+        Assertions.assertEquals("[10 2022-07-01 2]",
+                format(rollups.count(GroupBy.LOCATION, Granularity.DAY, JULY_1, SEPTEMBER_30)));
+    }
+
+    @Test
+    void testCount_ByMonth_ShouldAddUpTheDaysOfEachMonth() {
+        rollups.add(1, 10, DateTimeCodec.parse("2022-07-01", "09:00"));
+        rollups.add(1, 10, DateTimeCodec.parse("2022-07-31", "09:00"));
+        rollups.add(1, 11, DateTimeCodec.parse("2022-08-15", "09:00"));
+        rollups.add(2, 11, DateTimeCodec.parse("2022-09-30", "09:00"));
+
+        Assertions.assertEquals("[10 2022-07 2, 11 2022-08 1, 11 2022-09 1]",
+                format(rollups.count(GroupBy.LOCATION, Granularity.MONTH, JULY_1, SEPTEMBER_30)));
+        // months only partly in the range only count the days in the range
+        Assertions.assertEquals("[null 2022-07 1, null 2022-08 1]",
+                format(rollups.count(GroupBy.ALL, Granularity.MONTH, 20220702, 20220929)));
+    }
+
+    @Test
+    void testRemove_ShouldStopCountingTheAppointment() {
+        rollups.add(1, 10, DateTimeCodec.parse("2022-07-01", "09:00"));
+        rollups.add(2, 10, DateTimeCodec.parse("2022-07-01", "10:00"));
+
+        rollups.remove(1, 10, DateTimeCodec.parse("2022-07-01", "09:00"));
+
+        Assertions.assertEquals("[null 2022-07-01 1]", format(rollups.count(GroupBy.ALL, Granularity.DAY, JULY_1, SEPTEMBER_30)));
+        Assertions.assertEquals("[2 2022-07-01 1]", format(rollups.count(GroupBy.PERSON, Granularity.DAY, JULY_1, SEPTEMBER_30)));
+    }
+
+    @Test
+    void testMerge_ShouldAddUpRowsForTheSameIdAndPeriod() {
+        List<Row> first = Arrays.asList(new Row(1, "2022-07", 2), new Row(1, "2022-09", 1), new Row(3, "2022-07", 1));
+        List<Row> second = Arrays.asList(new Row(1, "2022-08", 4), new Row(1, "2022-09", 2), new Row(2, "2022-07", 1));
+
+        Assertions.assertEquals("[1 2022-07 2, 1 2022-08 4, 1 2022-09 3, 2 2022-07 1, 3 2022-07 1]",
+                format(AppointmentRollups.merge(first, second)));
+        Assertions.assertEquals("[1 2022-07 2, 1 2022-09 1, 3 2022-07 1]", format(AppointmentRollups.merge(first, Collections.emptyList())));
+    }
+
+    private static String format(List<Row> rows) {
+        return rows.stream()
+                .map(row -> row.getId() + " " + row.getPeriod() + " " + row.getCount())
+                .collect(Collectors.toList())
+                .toString();
+    }
+}
@@ -1,30 +1,61 @@
 package com.mutzy.service;
 
-import com.fasterxml.jackson.databind.util.ArrayIterator;
 import com.mutzy.TestHelper;
 import com.mutzy.dao.AppointmentDao;
+import com.mutzy.dao.AppointmentDetails;
+import com.mutzy.dao.AppointmentSeriesDao;
+import com.mutzy.dao.ArchivedAppointmentDao;
+import com.mutzy.dao.ArchivedAppointmentKey;
 import com.mutzy.dao.LocationDao;
 import com.mutzy.dao.PersonDao;
+import com.mutzy.dao.ReferenceDataCache;
+import com.mutzy.dao.SeriesOverrideDao;
 import com.mutzy.domain.Appointment;
+import com.mutzy.domain.AppointmentSeries;
 import com.mutzy.domain.Location;
 import com.mutzy.domain.Person;
+import com.mutzy.domain.SeriesOverride;
+import com.mutzy.dto.AppointmentCursor;
+import com.mutzy.dto.AppointmentImportReportDto;
+import com.mutzy.dto.AppointmentImportRowDto;
+import com.mutzy.dto.AppointmentPageDto;
 import com.mutzy.dto.AppointmentRequestDto;
 import com.mutzy.dto.AppointmentResponseDto;
+import com.mutzy.dto.AppointmentRollupDto;
 import com.mutzy.dto.LocationDto;
 import com.mutzy.dto.PersonDto;
-import com.mutzy.utils.Constants;
+import com.mutzy.utils.DateTimeCodec;
 import com.mutzy.utils.ValidationUtils;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InOrder;
 import org.mockito.Mockito;
+import org.springframework.dao.DataIntegrityViolationException;
 
 import javax.validation.ValidationException;
-import java.text.ParseException;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
 import java.util.Collections;
+import java.util.Date;
 import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
 
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
 
 class AppointmentServiceTest {
 
@@ -32,23 +63,60 @@ class AppointmentServiceTest {
     private final PersonDao mockPersonDao = Mockito.mock(PersonDao.class);
     private final LocationDao mockLocationDao = Mockito.mock(LocationDao.class);
     private final ValidationUtils mockValidationUtils = Mockito.mock(ValidationUtils.class);
-    private final AppointmentService service = new AppointmentService(mockAppointmentDao, mockPersonDao, mockLocationDao, mockValidationUtils);
+    private final AppointmentView mockAppointmentView = Mockito.mock(AppointmentView.class);
+    private final ReferenceDataCache referenceDataCache = new ReferenceDataCache(mockPersonDao, mockLocationDao, 100, Duration.ofMinutes(1));
+    private final AppointmentWriteBehindQueue mockWriteBehindQueue = Mockito.mock(AppointmentWriteBehindQueue.class);
+    private final AppointmentSeriesDao mockSeriesDao = Mockito.mock(AppointmentSeriesDao.class);
+    private final SeriesOverrideDao mockSeriesOverrideDao = Mockito.mock(SeriesOverrideDao.class);
+    private final ArchivedAppointmentDao mockArchivedAppointmentDao = Mockito.mock(ArchivedAppointmentDao.class);
+    private final AppointmentService service = new AppointmentService(mockAppointmentDao, mockPersonDao, mockLocationDao,
+            mockValidationUtils, mockAppointmentView, referenceDataCache, mockWriteBehindQueue, mockSeriesDao, mockSeriesOverrideDao,
+            mockArchivedAppointmentDao);
+    private final List<RecurringSeries> updatedSeries = new ArrayList<>();
+
+    AppointmentServiceTest() throws Exception {
+        Mockito.when(mockWriteBehindQueue.getSaveTimeout()).thenReturn(Duration.ofSeconds(5));
+        Mockito.when(mockValidationUtils.validateAppointmentDto(any())).thenAnswer(invocation -> {
+            AppointmentRequestDto dto = invocation.getArgument(0);
+            return dto == null ? null : DateTimeCodec.parse(dto.getDate(), dto.getTime());
+        });
+        // reservations are made against the mocked view's bookings, or against no bookings at all if it has none
+        Mockito.when(mockAppointmentView.reserve(any())).thenAnswer(invocation -> {
+            BookingIndex bookings = mockAppointmentView.getBookings();
+            BookingReservation reservation = new BookingReservation(bookings == null ? new BookingIndex() : bookings);
+            invocation.<AppointmentView.ReservationCheck<?>>getArgument(0).check(reservation);
+            return reservation;
+        });
+        // series are updated from the mocked view's series, and each update is kept to check afterwards
+        Mockito.when(mockAppointmentView.updateSeries(any(), any())).thenAnswer(invocation -> {
+            RecurringSeries series = mockAppointmentView.getSeries(invocation.getArgument(0));
+            if (series == null) {
+                return null;
+            }
+            RecurringSeries updated = invocation.<AppointmentView.SeriesUpdate<?>>getArgument(1).update(series);
+            updatedSeries.add(updated);
+            return updated;
+        });
+    }
 
     @Test
     void testFindAllAppointments_WhenNoAppointmentsStored() {
-        Mockito.when(mockAppointmentDao.findAll()).thenReturn(Collections::emptyIterator);
+        Mockito.when(mockAppointmentDao.findAllDetails()).thenReturn(Collections.emptyList());
         List<AppointmentResponseDto> appointments = service.findAllAppointments();
         Assertions.assertNotNull(appointments);
         Assertions.assertTrue(appointments.isEmpty());
     }
 
     @Test
-    void testFindAllAppointments_WithMultipleElements_ShouldReturnSortedList() throws ParseException {
-        Appointment june2020 = TestHelper.createAppointment(Constants.DATE_FORMAT.parse("2020-06-01"));
-        Appointment may2019 = TestHelper.createAppointment(Constants.DATE_FORMAT.parse("2019-05-13"));
-        Appointment january2030 = TestHelper.createAppointment(Constants.DATE_FORMAT.parse("2030-01-27"));
-
-        Mockito.when(mockAppointmentDao.findAll()).thenReturn(() -> new ArrayIterator<>(new Appointment[]{june2020, may2019, january2030}));
+    void testFindAllAppointments_WithMultipleElements_ShouldReturnSortedList() {
+        Appointment june2020 = TestHelper.createAppointment(DateTimeCodec.parse("2020-06-01", "00:00"));
+        Appointment may2019 = TestHelper.createAppointment(DateTimeCodec.parse("2019-05-13", "00:00"));
+        Appointment january2030 = TestHelper.createAppointment(DateTimeCodec.parse("2030-01-27", "00:00"));
+
+        Mockito.when(mockAppointmentDao.findAllDetails()).thenReturn(Arrays.asList(
+                new AppointmentDetails(june2020, TestHelper.createPerson(), TestHelper.createLocation()),
+                new AppointmentDetails(may2019, TestHelper.createPerson(), TestHelper.createLocation()),
+                new AppointmentDetails(january2030, TestHelper.createPerson(), TestHelper.createLocation())));
         List<AppointmentResponseDto> appointments = service.findAllAppointments();
 
         Assertions.assertNotNull(appointments);
@@ -58,6 +126,251 @@ class AppointmentServiceTest {
         Assertions.assertEquals(january2030.getDate(), appointments.get(2).getDate());
     }
 
+    @Test
+    void testFindAllAppointments_ShouldNotLookUpPeopleOrLocationsPerAppointment() {
+        Appointment appointment = TestHelper.createAppointment();
+        Person person = TestHelper.createPerson();
+        Location location = TestHelper.createLocation();
+
+        Mockito.when(mockAppointmentDao.findAllDetails()).thenReturn(Collections.singletonList(new AppointmentDetails(appointment, person, location)));
+        List<AppointmentResponseDto> appointments = service.findAllAppointments();
+
+        Assertions.assertEquals(1, appointments.size());
+        Assertions.assertEquals(person.getName(), appointments.get(0).getPerson().getName());
+        Assertions.assertEquals(location.getName(), appointments.get(0).getLocation().getName());
+        Mockito.verify(mockPersonDao, Mockito.never()).findById(any());
+        Mockito.verify(mockLocationDao, Mockito.never()).findById(any());
+    }
+
+    @Test
+    void testFindAllAppointments_WithMissingPersonAndLocation_ShouldLeaveThemEmpty() {
+        Appointment appointment = TestHelper.createAppointment();
+
+        Mockito.when(mockAppointmentDao.findAllDetails()).thenReturn(Collections.singletonList(new AppointmentDetails(appointment, null, null)));
+        List<AppointmentResponseDto> appointments = service.findAllAppointments();
+
+        Assertions.assertEquals(1, appointments.size());
+        Assertions.assertEquals(appointment.getId(), appointments.get(0).getId());
+        Assertions.assertNull(appointments.get(0).getPerson());
+        Assertions.assertNull(appointments.get(0).getLocation());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void testStreamAllAppointments_ShouldMapEachRowAsItIsRead() {
+        Appointment appointment = TestHelper.createAppointment();
+        Person person = TestHelper.createPerson();
+        Mockito.doAnswer(invocation -> {
+            invocation.<Consumer<AppointmentDetails>>getArgument(0).accept(new AppointmentDetails(appointment, person, null));
+            return null;
+        }).when(mockAppointmentDao).streamAllDetails(any());
+
+        List<AppointmentResponseDto> streamed = new ArrayList<>();
+        service.streamAllAppointments(streamed::add);
+
+        Assertions.assertEquals(1, streamed.size());
+        Assertions.assertEquals(appointment.getId(), streamed.get(0).getId());
+        Assertions.assertEquals(person.getName(), streamed.get(0).getPerson().getName());
+        Mockito.verify(mockAppointmentDao, Mockito.never()).findAllDetails();
+    }
+
+    @Test
+    void testFindAppointmentPage_ShouldBeServedFromView() {
+        AppointmentCursor after = new AppointmentCursor(new Date(), 10);
+        AppointmentPageDto expectedPage = new AppointmentPageDto();
+        Mockito.when(mockAppointmentView.findPage(after, null, 3)).thenReturn(expectedPage);
+
+        Assertions.assertEquals(expectedPage, service.findAppointmentPage(after, null, 3));
+        Mockito.verifyZeroInteractions(mockAppointmentDao);
+    }
+
+    @Test
+    void testFindArchivedAppointments_ShouldPageThroughTheArchive() {
+        Date start = DateTimeCodec.parse("2020-01-01", "00:00");
+        Date end = DateTimeCodec.parse("2021-01-01", "00:00");
+        List<AppointmentDetails> rows = new ArrayList<>();
+        for (int i = 1; i <= 3; i++) {
+            Appointment appointment = TestHelper.createAppointment(DateTimeCodec.parse("2020-0" + i + "-01", "09:00"));
+            appointment.setId(i);
+            rows.add(new AppointmentDetails(appointment, null, null));
+        }
+        Mockito.when(mockArchivedAppointmentDao.findFirstDetailsBetween(eq(start), eq(end), any())).thenReturn(rows);
+        Mockito.when(mockArchivedAppointmentDao.findDetailsAfter(eq(rows.get(1).getAppointment().getDate()), eq(2), eq(end), any()))
+                .thenReturn(rows.subList(2, 3));
+
+        AppointmentPageDto first = service.findArchivedAppointments("2020-01-01", "2020-12-31", null, 2);
+        Assertions.assertEquals(2, first.getAppointments().size());
+        Assertions.assertEquals(new AppointmentCursor(rows.get(1).getAppointment().getDate(), 2), first.getNextCursor());
+
+        AppointmentPageDto second = service.findArchivedAppointments("2020-01-01", "2020-12-31", first.getNextCursor(), 2);
+        Assertions.assertEquals(1, second.getAppointments().size());
+        Assertions.assertEquals(Integer.valueOf(3), second.getAppointments().get(0).getId());
+        Assertions.assertNull(second.getNextCursor());
+        Mockito.verifyZeroInteractions(mockAppointmentDao, mockAppointmentView);
+    }
+
+    @Test
+    void testFindArchivedAppointments_WithInvalidRange_ShouldThrowValidationException() {
+        Assertions.assertThrows(ValidationException.class, () -> service.findArchivedAppointments("2020-01-01", "last year", null, 10));
+        Assertions.assertThrows(ValidationException.class, () -> service.findArchivedAppointments("2020-12-31", "2020-01-01", null, 10));
+        Mockito.verifyZeroInteractions(mockArchivedAppointmentDao);
+    }
+
+    @Test
+    void testRollUpAppointments_ShouldBeServedFromView() {
+        List<AppointmentRollupDto.Row> rows = Collections.singletonList(new AppointmentRollupDto.Row(4, "2022-07", 12));
+        Mockito.when(mockAppointmentView.countAppointments(AppointmentRollupDto.GroupBy.LOCATION, AppointmentRollupDto.Granularity.MONTH,
+                20220701, 20220930)).thenReturn(rows);
+
+        AppointmentRollupDto rollup = service.rollUpAppointments(AppointmentRollupDto.GroupBy.LOCATION, AppointmentRollupDto.Granularity.MONTH,
+                "2022-07-01", "2022-09-30");
+
+        Assertions.assertEquals(rows, rollup.getRows());
+        Assertions.assertEquals("2022-07-01", rollup.getFrom());
+        Assertions.assertEquals(AppointmentRollupDto.GroupBy.LOCATION, rollup.getGroupBy());
+        Mockito.verifyZeroInteractions(mockAppointmentDao);
+    }
+
+    @Test
+    void testRollUpAppointments_WithInvalidRange_ShouldThrowValidationException() {
+        Assertions.assertThrows(ValidationException.class, () -> service.rollUpAppointments(AppointmentRollupDto.GroupBy.ALL,
+                AppointmentRollupDto.Granularity.DAY, "2022-07-01", "July"));
+        Assertions.assertThrows(ValidationException.class, () -> service.rollUpAppointments(AppointmentRollupDto.GroupBy.ALL,
+                AppointmentRollupDto.Granularity.DAY, "2022-09-30", "2022-07-01"));
+        Mockito.verifyZeroInteractions(mockAppointmentView);
+    }
+
+    @Test
+    void testImportAppointments_ShouldSaveValidRowsAndReportInvalidOnes() {
+        AppointmentService importingService = createServiceWithRealValidation();
+        Person person = TestHelper.createPerson();
+        Mockito.when(mockPersonDao.findAllById(any())).thenReturn(Collections.singletonList(person));
+        Mockito.when(mockLocationDao.findAllById(any())).thenReturn(Collections.emptyList());
+        Mockito.when(mockAppointmentDao.saveAll(any())).thenAnswer(invocation -> {
+            Iterable<Appointment> appointments = invocation.getArgument(0);
+            int id = 100;
+            for (Appointment appointment : appointments) {
+                appointment.setId(id++);
+            }
+            return appointments;
+        });
+
+        AppointmentRequestDto valid = TestHelper.createAppointmentDto();
+        valid.setPersonId(person.getId());
+        valid.setLocationId(null);
+        AppointmentRequestDto invalidDate = TestHelper.createAppointmentDto();
+        invalidDate.setPersonId(null);
+        invalidDate.setLocationId(null);
+        invalidDate.setDate("2022-02-30");
+        AppointmentRequestDto unknownLocation = TestHelper.createAppointmentDto();
+        unknownLocation.setPersonId(person.getId());
+        unknownLocation.setLocationId(5);
+
+        AppointmentImportReportDto report = importingService.importAppointments(Arrays.asList(valid, invalidDate, unknownLocation, null));
+
+        Assertions.assertEquals(1, report.getCreated());
+        Assertions.assertEquals(3, report.getRejected());
+        List<AppointmentImportRowDto> rows = report.getRows();
+        Assertions.assertEquals(AppointmentImportRowDto.Status.CREATED, rows.get(0).getStatus());
+        Assertions.assertEquals(100, rows.get(0).getAppointmentId());
+        Assertions.assertEquals(AppointmentImportRowDto.Status.INVALID, rows.get(1).getStatus());
+        Assertions.assertEquals("Appointment date", rows.get(1).getViolations().get(0).getField());
+        Assertions.assertEquals(AppointmentImportRowDto.Status.INVALID, rows.get(2).getStatus());
+        Assertions.assertEquals("Location", rows.get(2).getViolations().get(0).getField());
+        Assertions.assertEquals(4, rows.get(3).getRow());
+
+        Mockito.verify(mockAppointmentView).addAppointments(Mockito.argThat(added -> added.size() == 1
+                && added.iterator().next().getId() == 100 && added.iterator().next().getPerson().getId().equals(person.getId())), any());
+        Mockito.verify(mockPersonDao, Mockito.never()).findById(any());
+        Mockito.verify(mockLocationDao, Mockito.never()).findById(any());
+    }
+
+    @Test
+    void testImportAppointments_ShouldLookUpReferencesOncePerBatch() {
+        AppointmentService importingService = createServiceWithRealValidation();
+        Person person = TestHelper.createPerson();
+        Location location = TestHelper.createLocation();
+        Mockito.when(mockPersonDao.findAllById(any())).thenReturn(Collections.singletonList(person));
+        Mockito.when(mockLocationDao.findAllById(any())).thenReturn(Collections.singletonList(location));
+        Mockito.when(mockAppointmentDao.saveAll(any())).thenAnswer(invocation -> invocation.getArgument(0));
+
+        List<AppointmentRequestDto> dtos = new ArrayList<>();
+        for (int i = 0; i < 2500; i++) {
+            AppointmentRequestDto dto = TestHelper.createAppointmentDto();
+            dto.setDate(LocalDate.of(2022, 1, 1).plusDays(i).toString()); // so none of them are double booked
+            dto.setPersonId(person.getId());
+            dto.setLocationId(location.getId());
+            dtos.add(dto);
+        }
+
+        AppointmentImportReportDto report = importingService.importAppointments(dtos);
+
+        Assertions.assertEquals(2500, report.getCreated());
+        Assertions.assertEquals(2500, report.getRows().get(2499).getRow());
+        Mockito.verify(mockPersonDao, Mockito.times(3)).findAllById(any());
+        Mockito.verify(mockLocationDao, Mockito.times(3)).findAllById(any());
+        Mockito.verify(mockAppointmentDao, Mockito.times(3)).saveAll(any());
+    }
+
+    @Test
+    void testImportAppointments_WhenSaveFails_ShouldReportBatchAsFailed() {
+        AppointmentService importingService = createServiceWithRealValidation();
+        Mockito.when(mockAppointmentDao.saveAll(any())).thenThrow(new RuntimeException("database is down"));
+        AppointmentRequestDto dto = TestHelper.createAppointmentDto();
+        dto.setPersonId(null);
+        dto.setLocationId(null);
+
+        AppointmentImportReportDto report = importingService.importAppointments(Collections.singletonList(dto));
+
+        Assertions.assertEquals(0, report.getCreated());
+        Assertions.assertEquals(AppointmentImportRowDto.Status.FAILED, report.getRows().get(0).getStatus());
+        Mockito.verifyZeroInteractions(mockPersonDao, mockLocationDao);
+        Mockito.verify(mockAppointmentView, Mockito.never()).addAppointments(any(), any());
+        Mockito.verify(mockAppointmentView).release(any());
+    }
+
+    @Test
+    void testImportAppointments_ShouldRejectDoubleBookings() {
+        AppointmentService importingService = createServiceWithRealValidation();
+        Person person = TestHelper.createPerson();
+        Location location = TestHelper.createLocation();
+        Mockito.when(mockPersonDao.findAllById(any())).thenReturn(Collections.singletonList(person));
+        Mockito.when(mockLocationDao.findAllById(any())).thenReturn(Collections.singletonList(location));
+        Mockito.when(mockAppointmentDao.saveAll(any())).thenAnswer(invocation -> invocation.getArgument(0));
+        BookingIndex existingBookings = new BookingIndex();
+        existingBookings.add(1, null, location.getId(), DateTimeCodec.parse("2022-12-21", "09:00"), 60);
+        Mockito.when(mockAppointmentView.getBookings()).thenReturn(existingBookings);
+
+        AppointmentRequestDto first = TestHelper.createAppointmentDto();
+        first.setPersonId(person.getId());
+        first.setLocationId(null);
+        first.setTime("12:00");
+        first.setDurationMinutes(60);
+        AppointmentRequestDto overlapsFirst = TestHelper.createAppointmentDto();
+        overlapsFirst.setPersonId(person.getId());
+        overlapsFirst.setLocationId(null);
+        overlapsFirst.setTime("12:59");
+        AppointmentRequestDto overlapsExisting = TestHelper.createAppointmentDto();
+        overlapsExisting.setPersonId(null);
+        overlapsExisting.setLocationId(location.getId());
+        overlapsExisting.setDate("2022-12-21");
+        overlapsExisting.setTime("08:45");
+        AppointmentRequestDto afterFirst = TestHelper.createAppointmentDto();
+        afterFirst.setPersonId(person.getId());
+        afterFirst.setLocationId(location.getId());
+        afterFirst.setTime("13:00");
+
+        AppointmentImportReportDto report = importingService.importAppointments(Arrays.asList(first, overlapsFirst, overlapsExisting, afterFirst));
+
+        List<AppointmentImportRowDto> rows = report.getRows();
+        Assertions.assertEquals(AppointmentImportRowDto.Status.CREATED, rows.get(0).getStatus());
+        Assertions.assertEquals(AppointmentImportRowDto.Status.INVALID, rows.get(1).getStatus());
+        Assertions.assertEquals("Person", rows.get(1).getViolations().get(0).getField());
+        Assertions.assertEquals(AppointmentImportRowDto.Status.INVALID, rows.get(2).getStatus());
+        Assertions.assertEquals("Location", rows.get(2).getViolations().get(0).getField());
+        Assertions.assertEquals(AppointmentImportRowDto.Status.CREATED, rows.get(3).getStatus());
+    }
+
     @Test
     void testCreateAppointment_WithValidDto() throws ValidationException {
         AppointmentRequestDto dto = TestHelper.createAppointmentDto();
@@ -72,51 +385,463 @@ class AppointmentServiceTest {
         AppointmentResponseDto appointment = service.createAppointment(dto);
         Assertions.assertEquals(expectedAppointment.getDate(), appointment.getDate());
         Assertions.assertEquals(expectedAppointment.getDescription(), appointment.getDescription());
+        Mockito.verify(mockAppointmentView).addAppointments(eq(Collections.singletonList(appointment)), any());
+    }
+
+    @Test
+    void testCreateAppointment_WithWriteBehind_ShouldWaitForQueuedSave() throws Exception {
+        AppointmentRequestDto dto = TestHelper.createAppointmentDto();
+        AppointmentResponseDto expected = TestHelper.createAppointmentResponse();
+        Mockito.when(mockWriteBehindQueue.isEnabled()).thenReturn(true);
+        Mockito.when(mockWriteBehindQueue.submit(any(), any())).thenReturn(CompletableFuture.completedFuture(expected));
+
+        Assertions.assertEquals(expected, service.createAppointment(dto));
+        Mockito.verify(mockAppointmentDao, Mockito.never()).save(any());
+        // the queue adds it once saved, or releases its reservation if that fails
+        Mockito.verify(mockAppointmentView, Mockito.never()).addAppointments(any(), any());
+        Mockito.verify(mockAppointmentView, Mockito.never()).release(any());
+    }
+
+    @Test
+    void testCreateAppointment_WithWriteBehind_WhenAlreadyBooked_ShouldThrowValidationExceptionWithoutQueueing() throws Exception {
+        AppointmentRequestDto dto = TestHelper.createAppointmentDto();
+        Mockito.when(mockWriteBehindQueue.isEnabled()).thenReturn(true);
+        Mockito.doThrow(new ValidationException("double booked")).when(mockValidationUtils).validateBookings(eq(dto), any(), any());
+
+        ValidationException exception = Assertions.assertThrows(ValidationException.class, () -> service.createAppointment(dto));
+        Assertions.assertEquals("double booked", exception.getMessage());
+        Mockito.verify(mockWriteBehindQueue, Mockito.never()).submit(any(), any());
+    }
+
+    @Test
+    void testCreateAppointment_WithWriteBehind_WhenTheSaveTimesOut_ShouldReleaseTheBookedTimeAndReturnNull() throws Exception {
+        Mockito.when(mockWriteBehindQueue.isEnabled()).thenReturn(true);
+        Mockito.when(mockWriteBehindQueue.getSaveTimeout()).thenReturn(Duration.ofMillis(10));
+        Mockito.when(mockWriteBehindQueue.submit(any(), any())).thenReturn(new CompletableFuture<>()); // never completes
+
+        Assertions.assertNull(service.createAppointment(TestHelper.createAppointmentDto()));
+        Mockito.verify(mockAppointmentView).release(any());
+    }
+
+    @Test
+    void testCreateAppointment_WithWriteBehind_WhenQueueIsFull_ShouldReturnNull() throws Exception {
+        Mockito.when(mockWriteBehindQueue.isEnabled()).thenReturn(true);
+        Mockito.when(mockWriteBehindQueue.submit(any(), any())).thenThrow(new RejectedExecutionException("full"));
+
+        Assertions.assertNull(service.createAppointment(TestHelper.createAppointmentDto()));
+        Mockito.verify(mockAppointmentView).release(any());
+    }
+
+    @Test
+    void testCreateAppointment_WhenSaveFails_ShouldNotUpdateView() throws ValidationException {
+        Mockito.when(mockAppointmentDao.save(any())).thenThrow(new RuntimeException("database is down"));
+
+        Assertions.assertNull(service.createAppointment(TestHelper.createAppointmentDto()));
+        Mockito.verify(mockAppointmentView, Mockito.never()).addAppointments(any(), any());
+        Mockito.verify(mockAppointmentView).release(any());
+    }
+
+    @Test
+    void testCreateAppointment_WhenTheSameTimeIsBookedConcurrently_ShouldOnlySaveOne() throws Exception {
+        AppointmentService concurrentService = createServiceWithRealView();
+        AtomicInteger lastId = new AtomicInteger();
+        Mockito.when(mockAppointmentDao.save(any())).thenAnswer(invocation -> {
+            Thread.sleep(20); // long enough for every other request to be checked while this one is being saved
+            Appointment appointment = invocation.getArgument(0);
+            appointment.setId(lastId.incrementAndGet());
+            return appointment;
+        });
+        int threads = 8;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<AppointmentResponseDto>> results = new ArrayList<>();
+        try {
+            for (int i = 0; i < threads; i++) {
+                results.add(executor.submit(() -> {
+                    start.await();
+                    return concurrentService.createAppointment(TestHelper.createAppointmentDto());
+                }));
+            }
+            start.countDown();
+            int created = 0;
+            int doubleBooked = 0;
+            for (Future<AppointmentResponseDto> result : results) {
+                try {
+                    Assertions.assertNotNull(result.get(5, TimeUnit.SECONDS));
+                    created++;
+                } catch (ExecutionException e) {
+                    Assertions.assertTrue(e.getCause() instanceof ValidationException);
+                    doubleBooked++;
+                }
+            }
+            Assertions.assertEquals(1, created);
+            Assertions.assertEquals(threads - 1, doubleBooked);
+        } finally {
+            executor.shutdownNow();
+        }
+        Mockito.verify(mockAppointmentDao, Mockito.times(1)).save(any());
+    }
+
+    @Test
+    void testCreateAppointment_WhenSaveFails_ShouldReleaseTheBookedTime() {
+        AppointmentService realViewService = createServiceWithRealView();
+        Mockito.when(mockAppointmentDao.save(any()))
+                .thenThrow(new RuntimeException("database is down"))
+                .thenAnswer(invocation -> {
+                    Appointment appointment = invocation.getArgument(0);
+                    appointment.setId(100);
+                    return appointment;
+                });
+
+        Assertions.assertNull(realViewService.createAppointment(TestHelper.createAppointmentDto()));
+        Assertions.assertNotNull(realViewService.createAppointment(TestHelper.createAppointmentDto()));
+        Assertions.assertThrows(ValidationException.class, () -> realViewService.createAppointment(TestHelper.createAppointmentDto()));
+    }
+
+    @Test
+    void testCreateAppointment_ShouldUseDateParsedDuringValidation() throws ValidationException {
+        AppointmentRequestDto dto = TestHelper.createAppointmentDto();
+        Date validatedDate = new Date(123456789L);
+        Mockito.when(mockValidationUtils.validateAppointmentDto(eq(dto))).thenReturn(validatedDate);
+        Mockito.when(mockAppointmentDao.save(any())).thenAnswer(invocation -> invocation.getArgument(0));
+
+        AppointmentResponseDto appointment = service.createAppointment(dto);
+        Assertions.assertEquals(validatedDate, appointment.getDate());
     }
 
     @Test
     void testCreateAppointment_WithInvalidDto() throws ValidationException {
         AppointmentRequestDto dto = TestHelper.createAppointmentDto();
-        Mockito.doThrow(new ValidationException("some message")).when(mockValidationUtils).validateAppointmentDto(dto);
+        Mockito.doThrow(new ValidationException("some message")).when(mockValidationUtils).validateAppointmentDto(eq(dto));
 
         ValidationException exception = Assertions.assertThrows(ValidationException.class,
                 () -> service.createAppointment(dto));
         Assertions.assertNotNull(exception.getMessage());
         Mockito.verify(mockAppointmentDao, Mockito.never()).save(any());
+        Mockito.verify(mockAppointmentView, Mockito.never()).reserve(any());
     }
 
     @Test
     void testDeleteAppointment() {
         Integer id = 1234;
-        service.deleteAppointment(id);
-        Mockito.verify(mockAppointmentDao).deleteById(id);
+        Mockito.when(mockAppointmentDao.deleteByIdIn(Collections.singletonList(id))).thenReturn(1);
+
+        Assertions.assertTrue(service.deleteAppointment(id));
+        Mockito.verify(mockAppointmentDao, Mockito.never()).deleteById(any());
+        Mockito.verify(mockAppointmentView).removeAppointment(id);
+    }
+
+    @Test
+    void testDeleteAppointment_WhenAlreadyDeleted_ShouldReturnFalse() {
+        Mockito.when(mockAppointmentDao.deleteByIdIn(any())).thenReturn(0);
+
+        Assertions.assertFalse(service.deleteAppointment(1234));
+    }
+
+    @Test
+    void testDeleteAppointment_WhenDeleteFails_ShouldNotUpdateView() {
+        Integer id = 1234;
+        Mockito.doThrow(new RuntimeException("database is down")).when(mockAppointmentDao).deleteByIdIn(any());
+
+        Assertions.assertThrows(RuntimeException.class, () -> service.deleteAppointment(id));
+        Mockito.verify(mockAppointmentView, Mockito.never()).removeAppointment(any());
+    }
+
+    @Test
+    void testDeleteAppointments_ShouldDeleteInBatchesOfIds() {
+        List<Integer> ids = new ArrayList<>();
+        for (int i = 0; i < 2500; i++) {
+            ids.add(i);
+        }
+        Mockito.when(mockAppointmentDao.deleteByIdIn(any())).then(invocation -> ((Collection<?>) invocation.getArgument(0)).size() - 1);
+
+        Assertions.assertEquals(2497, service.deleteAppointments(ids));
+
+        Mockito.verify(mockAppointmentDao, Mockito.times(3)).deleteByIdIn(any());
+        Mockito.verify(mockAppointmentDao).deleteByIdIn(ids.subList(2000, 2500));
+        Mockito.verify(mockAppointmentView).removeAppointments(ids.subList(0, 1000));
+        Mockito.verify(mockAppointmentView, Mockito.never()).rebuild();
+    }
+
+    @Test
+    void testDeleteAppointmentsBetween_ShouldDeleteWholeDaysWithOneStatement() {
+        Date start = DateTimeCodec.parse("2020-01-01", "00:00");
+        Date end = DateTimeCodec.parse("2021-01-01", "00:00");
+        Mockito.when(mockAppointmentDao.deleteByDateRange(start, end)).thenReturn(5000);
+        Mockito.when(mockAppointmentView.removeAppointmentsBetween(start, end)).thenReturn(5000);
+
+        Assertions.assertEquals(5000, service.deleteAppointmentsBetween("2020-01-01", "2020-12-31"));
+        Mockito.verify(mockAppointmentView, Mockito.never()).rebuild();
+    }
+
+    @Test
+    void testDeleteAppointmentsBetween_WithInvalidRange_ShouldThrowValidationException() {
+        Assertions.assertThrows(ValidationException.class, () -> service.deleteAppointmentsBetween("2020-01-01", "last year"));
+        Assertions.assertThrows(ValidationException.class, () -> service.deleteAppointmentsBetween("2020-12-31", "2020-01-01"));
+        Mockito.verifyZeroInteractions(mockAppointmentDao);
+    }
+
+    @Test
+    void testDeleteAppointmentsWithPerson_WhenViewDisagrees_ShouldRebuildView() {
+        Mockito.when(mockAppointmentDao.deleteByPersonId(7)).thenReturn(3);
+        Mockito.when(mockAppointmentView.removeAppointmentsWithPerson(7)).thenReturn(2);
+
+        Assertions.assertEquals(3, service.deleteAppointmentsWithPerson(7));
+        Mockito.verify(mockAppointmentView).rebuild();
+    }
+
+    @Test
+    void testDeleteAppointmentsAtLocation() {
+        Mockito.when(mockAppointmentDao.deleteByLocationId(8)).thenReturn(4);
+        Mockito.when(mockAppointmentView.removeAppointmentsAtLocation(8)).thenReturn(4);
+
+        Assertions.assertEquals(4, service.deleteAppointmentsAtLocation(8));
+        Mockito.verify(mockAppointmentView, Mockito.never()).rebuild();
+    }
+
+    @Test
+    void testDeleteAppointmentsBetween_ShouldDeleteArchivedAppointmentsToo() {
+        Date start = DateTimeCodec.parse("2020-01-01", "00:00");
+        Date end = DateTimeCodec.parse("2021-01-01", "00:00");
+        Mockito.when(mockAppointmentDao.deleteByDateRange(start, end)).thenReturn(5);
+        Mockito.when(mockAppointmentView.removeAppointmentsBetween(start, end)).thenReturn(5);
+        List<ArchivedAppointmentKey> archived = Collections.singletonList(new ArchivedAppointmentKey(3, 1, 2, start));
+        Mockito.when(mockArchivedAppointmentDao.findKeysByDateRange(start, end)).thenReturn(archived);
+        Mockito.when(mockArchivedAppointmentDao.deleteByDateRange(start, end)).thenReturn(20);
+
+        Assertions.assertEquals(25, service.deleteAppointmentsBetween("2020-01-01", "2020-12-31"));
+        // only the appointments table is compared with the view, which never holds archived appointments
+        Mockito.verify(mockAppointmentView, Mockito.never()).rebuild();
+        // but it still counts them, so they are uncounted once deleted
+        InOrder inOrder = Mockito.inOrder(mockArchivedAppointmentDao, mockAppointmentView);
+        inOrder.verify(mockArchivedAppointmentDao).deleteByDateRange(start, end);
+        inOrder.verify(mockAppointmentView).uncountArchivedAppointments(archived);
+    }
+
+    @Test
+    void testCreateSeries_ShouldSaveOneRowAndAddItToTheView() {
+        AppointmentService seriesService = createServiceWithRealValidation();
+        Person person = TestHelper.createPerson();
+        Mockito.when(mockPersonDao.findById(1)).thenReturn(Optional.of(person));
+        Mockito.when(mockLocationDao.findById(1)).thenReturn(Optional.of(TestHelper.createLocation()));
+        Mockito.when(mockSeriesDao.save(any())).thenAnswer(invocation -> {
+            AppointmentSeries series = invocation.getArgument(0);
+            series.setId(7);
+            return series;
+        });
+
+        AppointmentSeries created = seriesService.createSeries(TestHelper.createSeriesDto(52));
+
+        Assertions.assertEquals(7, created.getId());
+        ArgumentCaptor<RecurringSeries> added = ArgumentCaptor.forClass(RecurringSeries.class);
+        Mockito.verify(mockAppointmentView).putSeries(added.capture(), any());
+        Assertions.assertEquals(52, added.getValue().getOccurrenceCount());
+        Assertions.assertEquals(person.getName(), added.getValue().findAllOccurrences().get(51).getPerson().getName());
+        Mockito.verify(mockSeriesDao, Mockito.times(1)).save(any());
+        Mockito.verifyZeroInteractions(mockAppointmentDao);
+    }
+
+    @Test
+    void testCreateSeries_WhenAnOccurrenceIsDoubleBooked_ShouldNotSave() {
+        AppointmentService seriesService = createServiceWithRealValidation();
+        BookingIndex bookings = new BookingIndex();
+        bookings.add(100, 1, null, DateTimeCodec.parse("2023-03-07", "12:30"), 30); // the 12th week
+        Mockito.when(mockAppointmentView.getBookings()).thenReturn(bookings);
+        Mockito.when(mockPersonDao.findById(1)).thenReturn(Optional.of(TestHelper.createPerson()));
+        Mockito.when(mockLocationDao.findById(1)).thenReturn(Optional.of(TestHelper.createLocation()));
+        Mockito.when(mockSeriesDao.save(any())).thenAnswer(invocation -> invocation.getArgument(0));
+
+        ValidationException exception = Assertions.assertThrows(ValidationException.class,
+                () -> seriesService.createSeries(TestHelper.createSeriesDto(52)));
+        Assertions.assertTrue(exception.getMessage().contains("2023-03-07"));
+        Assertions.assertNotNull(seriesService.createSeries(TestHelper.createSeriesDto(11)));
+        Mockito.verify(mockSeriesDao, Mockito.times(1)).save(any());
     }
 
     @Test
-    void testFindAllPeople_WhenNoPeopleStored() {
-        Mockito.when(mockPersonDao.findAll()).thenReturn(Collections::emptyIterator);
-        List<Person> people = service.findAllPeople();
-        Assertions.assertNotNull(people);
-        Assertions.assertTrue(people.isEmpty());
+    void testCreateSeries_WhenSaveFails_ShouldNotUpdateView() {
+        Mockito.when(mockValidationUtils.validateSeriesDto(any())).thenReturn(DateTimeCodec.parse("2022-12-20", "12:30"));
+        Mockito.when(mockSeriesDao.save(any())).thenThrow(new RuntimeException("database is down"));
+
+        Assertions.assertNull(service.createSeries(TestHelper.createSeriesDto(5)));
+        Mockito.verify(mockAppointmentView, Mockito.never()).putSeries(any(), any());
+        Mockito.verify(mockAppointmentView).release(any());
     }
 
     @Test
-    void testFindAllPeople_WithMultipleElements_ShouldReturnSortedList() {
-        Person person1 = TestHelper.createPerson();
-        person1.setName("DEF");
-        Person person2 = TestHelper.createPerson();
-        person2.setName("ABC");
-        Person person3 = TestHelper.createPerson();
-        person3.setName("GHI");
+    void testCancelOccurrence_ShouldSaveAnOverrideAndLeaveTheRestOfTheSeries() {
+        RecurringSeries series = RecurringSeriesTest.createSeries(AppointmentSeries.Frequency.WEEKLY, 1, "2022-12-20", null, 5);
+        Mockito.when(mockAppointmentView.getSeries(7)).thenReturn(series);
+        Mockito.when(mockSeriesOverrideDao.save(any())).thenAnswer(invocation -> invocation.getArgument(0));
+
+        Assertions.assertTrue(service.cancelOccurrence(7, "2022-12-27", "09:00"));
 
-        Mockito.when(mockPersonDao.findAll()).thenReturn(() -> new ArrayIterator<>(new Person[]{person1, person2, person3}));
-        List<Person> people = service.findAllPeople();
+        Assertions.assertEquals(1, updatedSeries.size());
+        Assertions.assertNull(updatedSeries.get(0).findOccurrence(DateTimeCodec.parse("2022-12-27", "09:00")));
+        Assertions.assertEquals(4, updatedSeries.get(0).findAllOccurrences().size());
+        Mockito.verify(mockSeriesOverrideDao).save(Mockito.argThat(override -> override.isCancelled() && override.getSeriesId() == 7));
+    }
 
-        Assertions.assertNotNull(people);
-        Assertions.assertEquals(3, people.size());
-        Assertions.assertEquals(person2, people.get(0));
-        Assertions.assertEquals(person1, people.get(1));
-        Assertions.assertEquals(person3, people.get(2));
+    @Test
+    void testCancelOccurrence_WhenAlreadyChanged_ShouldReplaceTheOverride() {
+        Date occurrenceDate = DateTimeCodec.parse("2022-12-27", "09:00");
+        SeriesOverride changed = new SeriesOverride();
+        changed.setId(3);
+        changed.setSeriesId(7);
+        changed.setOccurrenceDate(occurrenceDate);
+        changed.setDate(DateTimeCodec.parse("2022-12-28", "09:00"));
+        Mockito.when(mockAppointmentView.getSeries(7)).thenReturn(RecurringSeriesTest.createSeries(AppointmentSeries.Frequency.WEEKLY, 1,
+                "2022-12-20", null, 5).withOverride(changed));
+        Mockito.when(mockSeriesOverrideDao.save(any())).thenAnswer(invocation -> invocation.getArgument(0));
+
+        Assertions.assertTrue(service.cancelOccurrence(7, "2022-12-27", "09:00"));
+        Mockito.verify(mockSeriesOverrideDao).save(Mockito.argThat(override -> override.isCancelled() && override.getId() == 3));
+    }
+
+    @Test
+    void testCancelOccurrence_WhenNotAnOccurrence_ShouldThrowValidationException() {
+        Mockito.when(mockAppointmentView.getSeries(7)).thenReturn(RecurringSeriesTest.createSeries(AppointmentSeries.Frequency.WEEKLY, 1,
+                "2022-12-20", null, 5));
+
+        Assertions.assertThrows(ValidationException.class, () -> service.cancelOccurrence(7, "2022-12-27", "09:30"));
+        Assertions.assertThrows(ValidationException.class, () -> service.cancelOccurrence(7, "2022-12-27", "nine"));
+        Assertions.assertFalse(service.cancelOccurrence(8, "2022-12-27", "09:00"));
+        Mockito.verifyZeroInteractions(mockSeriesOverrideDao);
+    }
+
+    @Test
+    void testChangeOccurrence_ShouldMoveItKeepingTheSeriesPersonAndLocation() {
+        AppointmentService seriesService = createServiceWithRealValidation();
+        RecurringSeries series = RecurringSeriesTest.createSeries(AppointmentSeries.Frequency.WEEKLY, 1, "2022-12-20", null, 5);
+        BookingIndex bookings = new BookingIndex();
+        bookings.addSeries(series);
+        Mockito.when(mockAppointmentView.getBookings()).thenReturn(bookings);
+        Mockito.when(mockAppointmentView.getSeries(7)).thenReturn(series);
+        Mockito.when(mockPersonDao.findById(1)).thenReturn(Optional.of(TestHelper.createPerson()));
+        Mockito.when(mockLocationDao.findById(2)).thenReturn(Optional.of(TestHelper.createLocation()));
+        Mockito.when(mockSeriesOverrideDao.save(any())).thenAnswer(invocation -> invocation.getArgument(0));
+        AppointmentRequestDto changes = TestHelper.createAppointmentDto();
+        changes.setDescription("Moved");
+        changes.setDate("2022-12-27");
+        changes.setTime("09:15"); // overlaps only the occurrence being moved
+        changes.setDurationMinutes(45);
+
+        AppointmentResponseDto moved = seriesService.changeOccurrence(7, "2022-12-27", "09:00", changes);
+
+        Assertions.assertEquals(DateTimeCodec.parse("2022-12-27", "09:15"), moved.getDate());
+        Assertions.assertEquals(DateTimeCodec.parse("2022-12-27", "09:00"), moved.getOccurrenceDate());
+        Assertions.assertEquals("Moved", moved.getDescription());
+        Assertions.assertEquals(45, moved.getDurationMinutes());
+        Assertions.assertEquals(Integer.valueOf(1), changes.getPersonId());
+        Assertions.assertEquals(Integer.valueOf(2), changes.getLocationId());
+        Assertions.assertEquals(1, updatedSeries.size());
+
+        changes.setDate("2023-01-03");
+        changes.setTime("09:00");
+        Assertions.assertThrows(ValidationException.class, () -> seriesService.changeOccurrence(7, "2022-12-27", "09:00", changes));
+        Assertions.assertNull(seriesService.changeOccurrence(8, "2022-12-27", "09:00", changes));
+        Mockito.verify(mockSeriesOverrideDao, Mockito.times(1)).save(any());
+    }
+
+    @Test
+    void testChangeOccurrence_ShouldAllowMovingOntoACancelledOccurrenceButNotOntoAMovedOne() {
+        AppointmentService seriesService = createServiceWithRealValidation(); // with nothing booked, to check the series alone
+        SeriesOverride cancelled = new SeriesOverride();
+        cancelled.setId(3);
+        cancelled.setSeriesId(7);
+        cancelled.setOccurrenceDate(DateTimeCodec.parse("2022-12-27", "09:00"));
+        cancelled.setCancelled(true);
+        SeriesOverride moved = new SeriesOverride();
+        moved.setId(4);
+        moved.setSeriesId(7);
+        moved.setOccurrenceDate(DateTimeCodec.parse("2023-01-03", "09:00"));
+        moved.setDate(DateTimeCodec.parse("2023-01-04", "09:00"));
+        Mockito.when(mockAppointmentView.getSeries(7)).thenReturn(RecurringSeriesTest.createSeries(AppointmentSeries.Frequency.WEEKLY, 1,
+                "2022-12-20", null, 5).withOverride(cancelled).withOverride(moved));
+        Mockito.when(mockPersonDao.findById(1)).thenReturn(Optional.of(TestHelper.createPerson()));
+        Mockito.when(mockLocationDao.findById(2)).thenReturn(Optional.of(TestHelper.createLocation()));
+        Mockito.when(mockSeriesOverrideDao.save(any())).thenAnswer(invocation -> invocation.getArgument(0));
+        AppointmentRequestDto changes = TestHelper.createAppointmentDto();
+        changes.setDate("2023-01-04");
+        changes.setTime("09:00");
+
+        ValidationException exception = Assertions.assertThrows(ValidationException.class,
+                () -> seriesService.changeOccurrence(7, "2023-01-10", "09:00", changes));
+        Assertions.assertEquals("Another occurrence of the series is due at that time", exception.getMessage());
+
+        changes.setDate("2022-12-27");
+        AppointmentResponseDto occurrence = seriesService.changeOccurrence(7, "2023-01-10", "09:00", changes);
+        Assertions.assertEquals(DateTimeCodec.parse("2022-12-27", "09:00"), occurrence.getDate());
+        Mockito.verify(mockSeriesOverrideDao, Mockito.times(1)).save(any());
+    }
+
+    @Test
+    void testCancelOccurrence_WhenCancelledConcurrently_ShouldOnlyInsertOneOverride() throws Exception {
+        AppointmentService concurrentService = createServiceWithRealView(
+                RecurringSeriesTest.createSeries(AppointmentSeries.Frequency.WEEKLY, 1, "2022-12-20", null, 5));
+        List<Integer> savedIds = Collections.synchronizedList(new ArrayList<>());
+        Mockito.when(mockSeriesOverrideDao.save(any())).thenAnswer(invocation -> {
+            SeriesOverride override = invocation.getArgument(0);
+            savedIds.add(override.getId());
+            Thread.sleep(10); // long enough for the other requests to read the series while this one is being saved
+            if (override.getId() == null) {
+                override.setId(savedIds.size());
+            }
+            return override;
+        });
+        int threads = 4;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<Boolean>> results = new ArrayList<>();
+        try {
+            for (int i = 0; i < threads; i++) {
+                results.add(executor.submit(() -> {
+                    start.await();
+                    return concurrentService.cancelOccurrence(7, "2022-12-27", "09:00");
+                }));
+            }
+            start.countDown();
+            for (Future<Boolean> result : results) {
+                Assertions.assertTrue(result.get(5, TimeUnit.SECONDS));
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        // only the first save inserts a row, and every later one updates it
+        Assertions.assertEquals(Arrays.asList(null, 1, 1, 1), savedIds);
+    }
+
+    @Test
+    void testCancelOccurrence_WhenTheOverrideIsSavedElsewhereAtTheSameTime_ShouldThrowValidationException() {
+        Mockito.when(mockAppointmentView.getSeries(7)).thenReturn(RecurringSeriesTest.createSeries(AppointmentSeries.Frequency.WEEKLY, 1,
+                "2022-12-20", null, 5));
+        Mockito.when(mockSeriesOverrideDao.save(any())).thenThrow(new DataIntegrityViolationException("series_id_occurrence_date_idx"));
+
+        Assertions.assertThrows(ValidationException.class, () -> service.cancelOccurrence(7, "2022-12-27", "09:00"));
+        Assertions.assertTrue(updatedSeries.isEmpty());
+    }
+
+    @Test
+    void testDeleteSeries_ShouldDeleteItsOverridesToo() {
+        Mockito.when(mockAppointmentView.getSeries(7)).thenReturn(RecurringSeriesTest.createSeries(AppointmentSeries.Frequency.DAILY, 1,
+                "2022-12-20", null, 5));
+
+        Assertions.assertTrue(service.deleteSeries(7));
+        Assertions.assertFalse(service.deleteSeries(8));
+
+        Mockito.verify(mockSeriesOverrideDao).deleteBySeriesId(7);
+        Mockito.verify(mockSeriesDao).deleteById(7);
+        Mockito.verify(mockAppointmentView).removeSeries(7);
+        Mockito.verifyNoMoreInteractions(mockSeriesDao, mockSeriesOverrideDao);
+    }
+
+    @Test
+    void testFindAllPeople_ShouldBeServedFromView() {
+        List<Person> people = TestHelper.createPersonList(3);
+        Mockito.when(mockAppointmentView.findAllPeople()).thenReturn(people);
+
+        Assertions.assertEquals(people, service.findAllPeople());
+        Mockito.verifyZeroInteractions(mockPersonDao);
     }
 
     @Test
@@ -127,6 +852,20 @@ class AppointmentServiceTest {
         Mockito.when(mockPersonDao.save(any())).thenReturn(expectedPerson);
         Person person = service.createPerson(dto);
         Assertions.assertEquals(expectedPerson, person);
+        Mockito.verify(mockAppointmentView).addPerson(expectedPerson);
+    }
+
+    @Test
+    void testCreatePerson_ShouldInvalidateCachedLookup() throws ValidationException {
+        Person expectedPerson = TestHelper.createPerson();
+        Mockito.when(mockPersonDao.findById(expectedPerson.getId())).thenReturn(Optional.empty());
+        Assertions.assertFalse(referenceDataCache.findPerson(expectedPerson.getId()).isPresent());
+
+        Mockito.when(mockPersonDao.save(any())).thenReturn(expectedPerson);
+        Mockito.when(mockPersonDao.findById(expectedPerson.getId())).thenReturn(Optional.of(expectedPerson));
+        service.createPerson(TestHelper.createPersonDto());
+
+        Assertions.assertEquals(Optional.of(expectedPerson), referenceDataCache.findPerson(expectedPerson.getId()));
     }
 
     @Test
@@ -141,30 +880,12 @@ class AppointmentServiceTest {
     }
 
     @Test
-    void testFindAllLocations_WhenNoLocationStored() {
-        Mockito.when(mockLocationDao.findAll()).thenReturn(Collections::emptyIterator);
-        List<Location> locations = service.findAllLocations();
-        Assertions.assertNotNull(locations);
-        Assertions.assertTrue(locations.isEmpty());
-    }
-
-    @Test
-    void testFindAllLocations_WithMultipleElements_ShouldReturnSortedList() {
-        Location location1 = TestHelper.createLocation();
-        location1.setName("DEF");
-        Location location2 = TestHelper.createLocation();
-        location2.setName("ABC");
-        Location location3 = TestHelper.createLocation();
-        location3.setName("GHI");
-
-        Mockito.when(mockLocationDao.findAll()).thenReturn(() -> new ArrayIterator<>(new Location[]{location1, location2, location3}));
-        List<Location> locations = service.findAllLocations();
+    void testFindAllLocations_ShouldBeServedFromView() {
+        List<Location> locations = TestHelper.createLocationList(3);
+        Mockito.when(mockAppointmentView.findAllLocations()).thenReturn(locations);
 
-        Assertions.assertNotNull(locations);
-        Assertions.assertEquals(3, locations.size());
-        Assertions.assertEquals(location2, locations.get(0));
-        Assertions.assertEquals(location1, locations.get(1));
-        Assertions.assertEquals(location3, locations.get(2));
+        Assertions.assertEquals(locations, service.findAllLocations());
+        Mockito.verifyZeroInteractions(mockLocationDao);
     }
 
     @Test
@@ -175,6 +896,20 @@ class AppointmentServiceTest {
         Mockito.when(mockLocationDao.save(any())).thenReturn(expectedLocation);
         Location location = service.createLocation(dto);
         Assertions.assertEquals(expectedLocation, location);
+        Mockito.verify(mockAppointmentView).addLocation(expectedLocation);
+    }
+
+    @Test
+    void testCreateLocation_ShouldInvalidateCachedLookup() throws ValidationException {
+        Location expectedLocation = TestHelper.createLocation();
+        Mockito.when(mockLocationDao.findById(expectedLocation.getId())).thenReturn(Optional.empty());
+        Assertions.assertFalse(referenceDataCache.findLocation(expectedLocation.getId()).isPresent());
+
+        Mockito.when(mockLocationDao.save(any())).thenReturn(expectedLocation);
+        Mockito.when(mockLocationDao.findById(expectedLocation.getId())).thenReturn(Optional.of(expectedLocation));
+        service.createLocation(TestHelper.createLocationDto());
+
+        Assertions.assertEquals(Optional.of(expectedLocation), referenceDataCache.findLocation(expectedLocation.getId()));
     }
 
     @Test
@@ -188,4 +923,36 @@ class AppointmentServiceTest {
         Mockito.verify(mockLocationDao, Mockito.never()).save(any());
     }
 
-}
\ No newline at end of file
+    /**
+     * Creates a service with real validation and a real AppointmentView, holding only the given series, whose people
+     * and locations are all found
+     */
+    private AppointmentService createServiceWithRealView(RecurringSeries... series) {
+        Mockito.when(mockPersonDao.findById(any())).thenAnswer(invocation -> {
+            Person person = TestHelper.createPerson();
+            person.setId(invocation.getArgument(0));
+            return Optional.of(person);
+        });
+        Mockito.when(mockLocationDao.findById(any())).thenAnswer(invocation -> {
+            Location location = TestHelper.createLocation();
+            location.setId(invocation.getArgument(0));
+            return Optional.of(location);
+        });
+        AppointmentView view = new AppointmentView(mockAppointmentDao, mockPersonDao, mockLocationDao, mockSeriesDao, mockSeriesOverrideDao,
+                mockArchivedAppointmentDao);
+        view.rebuild();
+        for (RecurringSeries added : series) {
+            view.putSeries(added, view.reserve(reservation -> { }));
+        }
+        return new AppointmentService(mockAppointmentDao, mockPersonDao, mockLocationDao,
+                new ValidationUtils(referenceDataCache), view, referenceDataCache, mockWriteBehindQueue,
+                mockSeriesDao, mockSeriesOverrideDao, mockArchivedAppointmentDao);
+    }
+
+    private AppointmentService createServiceWithRealValidation() {
+        Mockito.when(mockAppointmentView.getBookings()).thenReturn(new BookingIndex());
+        return new AppointmentService(mockAppointmentDao, mockPersonDao, mockLocationDao,
+                new ValidationUtils(referenceDataCache), mockAppointmentView, referenceDataCache, mockWriteBehindQueue,
+                mockSeriesDao, mockSeriesOverrideDao, mockArchivedAppointmentDao);
+    }
+}
@@ -0,0 +1,55 @@
+package com.mutzy.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.Mockito;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+
+import static org.mockito.ArgumentMatchers.any;
+
+class AppointmentViewSnapshotterTest {
+
+    private final AppointmentView mockAppointmentView = Mockito.mock(AppointmentView.class);
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void testWriteIfChanged_ShouldOnlyWriteWhenTheViewHasChanged() throws IOException {
+        Path file = directory.resolve("view.snapshot");
+        AppointmentViewSnapshotter snapshotter = createSnapshotter(file);
+        Mockito.when(mockAppointmentView.writeSnapshot(file)).thenReturn(true);
+        Mockito.when(mockAppointmentView.getDataVersion()).thenReturn(1L, 1L, 2L);
+
+        Assertions.assertTrue(snapshotter.writeIfChanged());
+        Assertions.assertFalse(snapshotter.writeIfChanged());
+        Assertions.assertTrue(snapshotter.writeIfChanged());
+
+        Mockito.verify(mockAppointmentView, Mockito.times(2)).writeSnapshot(file);
+        Assertions.assertEquals(2, meterRegistry.timer("appointments.snapshot.write").count());
+    }
+
+    @Test
+    void testRestore_WhenTheSnapshotCantBeRead_ShouldLeaveTheViewToBeRebuilt() throws IOException {
+        Path file = directory.resolve("view.snapshot");
+        AppointmentViewSnapshotter snapshotter = createSnapshotter(file);
+
+        Assertions.assertFalse(snapshotter.restore());
+        Mockito.verifyZeroInteractions(mockAppointmentView);
+
+        Files.write(file, new byte[]{1, 2, 3});
+        Mockito.when(mockAppointmentView.restoreSnapshot(any())).thenThrow(new IOException("not a snapshot"));
+        Assertions.assertFalse(snapshotter.restore());
+    }
+
+    private AppointmentViewSnapshotter createSnapshotter(Path file) {
+        return new AppointmentViewSnapshotter(mockAppointmentView, meterRegistry, true, file.toString(), Duration.ofMinutes(10));
+    }
+}
@@ -0,0 +1,588 @@
+package com.mutzy.service;
+
+import com.fasterxml.jackson.databind.util.ArrayIterator;
+import com.mutzy.TestHelper;
+import com.mutzy.dao.AppointmentDao;
+import com.mutzy.dao.AppointmentDetails;
+import com.mutzy.dao.AppointmentSeriesDao;
+import com.mutzy.dao.ArchivedAppointmentDao;
+import com.mutzy.dao.LocationDao;
+import com.mutzy.dao.PersonDao;
+import com.mutzy.dao.SeriesOverrideDao;
+import com.mutzy.domain.Appointment;
+import com.mutzy.domain.AppointmentSeries;
+import com.mutzy.domain.Location;
+import com.mutzy.domain.Person;
+import com.mutzy.domain.SeriesOverride;
+import com.mutzy.dto.AppointmentCursor;
+import com.mutzy.dto.AppointmentPageDto;
+import com.mutzy.dto.AppointmentResponseDto;
+import com.mutzy.dto.AppointmentRollupDto;
+import com.mutzy.utils.DateTimeCodec;
+import com.mutzy.utils.ObjectMapper;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.Mockito;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+
+class AppointmentViewTest {
+
+    private final AppointmentDao mockAppointmentDao = Mockito.mock(AppointmentDao.class);
+    private final PersonDao mockPersonDao = Mockito.mock(PersonDao.class);
+    private final LocationDao mockLocationDao = Mockito.mock(LocationDao.class);
+    private final AppointmentSeriesDao mockSeriesDao = Mockito.mock(AppointmentSeriesDao.class);
+    private final SeriesOverrideDao mockSeriesOverrideDao = Mockito.mock(SeriesOverrideDao.class);
+    private final ArchivedAppointmentDao mockArchivedAppointmentDao = Mockito.mock(ArchivedAppointmentDao.class);
+    private final AppointmentView view = new AppointmentView(mockAppointmentDao, mockPersonDao, mockLocationDao, mockSeriesDao, mockSeriesOverrideDao,
+            mockArchivedAppointmentDao);
+
+    @BeforeEach
+    void setUpEmptyDatabase() {
+        Mockito.when(mockAppointmentDao.findFirstDetails(any())).thenReturn(Collections.emptyList());
+        Mockito.when(mockPersonDao.findAll()).thenReturn(Collections::emptyIterator);
+        Mockito.when(mockLocationDao.findAll()).thenReturn(Collections::emptyIterator);
+        Mockito.when(mockSeriesDao.findAll()).thenReturn(Collections::emptyIterator);
+        Mockito.when(mockSeriesOverrideDao.findAll()).thenReturn(Collections::emptyIterator);
+    }
+
+    @Test
+    void testFindPage_WhenNoAppointmentsStored() {
+        AppointmentPageDto page = view.findPage(null, null, 3);
+        Assertions.assertTrue(page.getAppointments().isEmpty());
+        Assertions.assertNull(page.getNextCursor());
+        Assertions.assertNull(page.getPreviousCursor());
+    }
+
+    @Test
+    void testFindPage_ShouldOnlyLoadFromDatabaseOnce() {
+        view.findPage(null, null, 3);
+        view.findPage(null, null, 3);
+        view.findAllPeople();
+        Mockito.verify(mockAppointmentDao, Mockito.times(1)).findFirstDetails(any());
+        Mockito.verify(mockPersonDao, Mockito.times(1)).findAll();
+    }
+
+    @Test
+    void testFindPage_FirstPage_ShouldReturnSortedAppointmentsAndLinkToNextPageOnly() {
+        List<Appointment> appointments = loadAppointments(5);
+
+        AppointmentPageDto page = view.findPage(null, null, 3);
+
+        Assertions.assertEquals(ids(appointments.subList(0, 3)), responseIds(page.getAppointments()));
+        Assertions.assertEquals(cursorOf(appointments.get(2)), page.getNextCursor());
+        Assertions.assertNull(page.getPreviousCursor());
+    }
+
+    @Test
+    void testFindPage_AfterCursor_ShouldReturnFollowingAppointments() {
+        List<Appointment> appointments = loadAppointments(5);
+
+        AppointmentPageDto page = view.findPage(cursorOf(appointments.get(2)), null, 3);
+
+        Assertions.assertEquals(ids(appointments.subList(3, 5)), responseIds(page.getAppointments()));
+        Assertions.assertNull(page.getNextCursor());
+        Assertions.assertEquals(cursorOf(appointments.get(3)), page.getPreviousCursor());
+    }
+
+    @Test
+    void testFindPage_BeforeCursor_ShouldReturnPrecedingAppointmentsInListOrder() {
+        List<Appointment> appointments = loadAppointments(7);
+
+        AppointmentPageDto page = view.findPage(null, cursorOf(appointments.get(5)), 3);
+
+        Assertions.assertEquals(ids(appointments.subList(2, 5)), responseIds(page.getAppointments()));
+        Assertions.assertEquals(cursorOf(appointments.get(4)), page.getNextCursor());
+        Assertions.assertEquals(cursorOf(appointments.get(2)), page.getPreviousCursor());
+    }
+
+    @Test
+    void testFindPage_BeforeCursorWithPartialPage_ShouldReturnFirstPage() {
+        List<Appointment> appointments = loadAppointments(5);
+
+        AppointmentPageDto page = view.findPage(null, cursorOf(appointments.get(1)), 3);
+
+        Assertions.assertEquals(ids(appointments.subList(0, 3)), responseIds(page.getAppointments()));
+        Assertions.assertNull(page.getPreviousCursor());
+    }
+
+    @Test
+    void testFindPage_PastTheEnd_ShouldLinkBackToPreviousPage() {
+        List<Appointment> appointments = loadAppointments(2);
+        AppointmentCursor after = cursorOf(appointments.get(1));
+
+        AppointmentPageDto page = view.findPage(after, null, 3);
+
+        Assertions.assertTrue(page.getAppointments().isEmpty());
+        Assertions.assertEquals(after, page.getPreviousCursor());
+    }
+
+    @Test
+    void testRebuild_ShouldLoadAppointmentsInBatches() {
+        List<AppointmentDetails> firstBatch = createDetailsList(1000);
+        List<AppointmentDetails> secondBatch = createDetailsList(1);
+        Appointment lastOfFirstBatch = firstBatch.get(999).getAppointment();
+        Mockito.when(mockAppointmentDao.findFirstDetails(any())).thenReturn(firstBatch);
+        Mockito.when(mockAppointmentDao.findDetailsAfter(Mockito.eq(lastOfFirstBatch.getDate()), Mockito.eq(lastOfFirstBatch.getId()), any()))
+                .thenReturn(secondBatch);
+
+        view.rebuild();
+
+        Assertions.assertEquals(1001, view.findPage(null, null, 2000).getAppointments().size());
+    }
+
+    @Test
+    void testAddAndRemoveAppointment_ShouldUpdateViewInPlace() {
+        List<Appointment> appointments = loadAppointments(3);
+        view.findPage(null, null, 3); // load the view
+
+        AppointmentResponseDto earliest = TestHelper.createAppointmentResponse();
+        earliest.setDate(new Date(appointments.get(0).getDate().getTime() - 1000));
+        view.addAppointments(Collections.singletonList(earliest), emptyReservation());
+        view.removeAppointment(appointments.get(1).getId());
+
+        List<Integer> expectedIds = new ArrayList<>();
+        expectedIds.add(earliest.getId());
+        expectedIds.add(appointments.get(0).getId());
+        expectedIds.add(appointments.get(2).getId());
+        Assertions.assertEquals(expectedIds, responseIds(view.findPage(null, null, 5).getAppointments()));
+        Mockito.verify(mockAppointmentDao, Mockito.times(1)).findFirstDetails(any());
+    }
+
+    @Test
+    void testGetDataVersion_ShouldIncreaseOnEveryChange() {
+        List<Appointment> appointments = loadAppointments(2);
+        long initial = view.getDataVersion();
+        view.findPage(null, null, 3); // loading the view counts as a change
+        long loaded = view.getDataVersion();
+        Assertions.assertTrue(loaded > initial);
+
+        view.findPage(null, null, 3);
+        view.findAllPeople();
+        Assertions.assertEquals(loaded, view.getDataVersion());
+
+        view.addAppointments(Collections.singletonList(TestHelper.createAppointmentResponse()), emptyReservation());
+        long added = view.getDataVersion();
+        Assertions.assertTrue(added > loaded);
+        view.removeAppointment(appointments.get(0).getId());
+        long removed = view.getDataVersion();
+        Assertions.assertTrue(removed > added);
+        view.addPerson(TestHelper.createPerson());
+        view.addLocation(TestHelper.createLocation());
+        Assertions.assertEquals(removed + 2, view.getDataVersion());
+    }
+
+    @Test
+    void testGetBookings_ShouldFollowAppointmentsInTheView() {
+        loadAppointments(1);
+        AppointmentResponseDto stored = view.findPage(null, null, 1).getAppointments().get(0);
+        Assertions.assertTrue(view.getBookings().isPersonBooked(stored.getPerson().getId(), stored.getDate(), 1));
+
+        AppointmentResponseDto added = TestHelper.createAppointmentResponse();
+        view.addAppointments(Collections.singletonList(added), emptyReservation());
+        Assertions.assertTrue(view.getBookings().isLocationBooked(added.getLocation().getId(), added.getDate(), 1));
+
+        view.removeAppointment(stored.getId());
+        view.removeAppointment(added.getId());
+        Assertions.assertFalse(view.getBookings().isPersonBooked(stored.getPerson().getId(), stored.getDate(), 1));
+        Assertions.assertFalse(view.getBookings().isLocationBooked(added.getLocation().getId(), added.getDate(), 1));
+    }
+
+    @Test
+    void testFindSearchPage_ShouldFollowAppointmentsInTheViewAndPageForwards() {
+        loadAppointments(0);
+        view.findPage(null, null, 1); // load the view
+        List<AppointmentResponseDto> added = TestHelper.createAppointmentResponseList(3);
+        added.forEach(appointment -> appointment.setDescription("Quarterly review " + appointment.getId()));
+        added.get(1).getPerson().setName("Bob Smith");
+        view.addAppointments(added, emptyReservation());
+        added.sort(Comparator.comparing(AppointmentCursor::of));
+
+        AppointmentPageDto firstPage = view.findSearchPage("quarter", null, 2);
+        Assertions.assertEquals(responseIds(added.subList(0, 2)), responseIds(firstPage.getAppointments()));
+        Assertions.assertEquals(AppointmentCursor.of(added.get(1)), firstPage.getNextCursor());
+        Assertions.assertNull(firstPage.getPreviousCursor());
+        AppointmentPageDto secondPage = view.findSearchPage("quarter", firstPage.getNextCursor(), 2);
+        Assertions.assertEquals(responseIds(added.subList(2, 3)), responseIds(secondPage.getAppointments()));
+        Assertions.assertNull(secondPage.getNextCursor());
+
+        AppointmentResponseDto bobs = TestHelper.createAppointmentResponse();
+        bobs.setDescription("Lunch");
+        bobs.getPerson().setName("Bob Jones");
+        view.addAppointments(Collections.singletonList(bobs), emptyReservation());
+        view.removeAppointment(added.get(1).getId());
+        Assertions.assertEquals(Collections.singletonList(bobs.getId()), responseIds(view.findSearchPage("bob lun", null, 5).getAppointments()));
+        Assertions.assertEquals(2, view.findSearchPage("review", null, 5).getAppointments().size());
+    }
+
+    @Test
+    void testCountAppointments_ShouldFollowAppointmentsInTheView() {
+        loadAppointments(0);
+        view.findPage(null, null, 1); // load the view
+        AppointmentResponseDto first = TestHelper.createAppointmentResponse();
+        first.setDate(DateTimeCodec.parse("2022-07-04", "09:00"));
+        AppointmentResponseDto second = TestHelper.createAppointmentResponse();
+        second.setDate(DateTimeCodec.parse("2022-08-20", "09:00"));
+        second.setLocation(first.getLocation());
+        view.addAppointments(Collections.singletonList(first), emptyReservation());
+        view.addAppointments(Collections.singletonList(second), emptyReservation());
+
+        List<AppointmentRollupDto.Row> rows = view.countAppointments(AppointmentRollupDto.GroupBy.LOCATION, AppointmentRollupDto.Granularity.MONTH,
+                20220701, 20220930);
+        Assertions.assertEquals(2, rows.size());
+        Assertions.assertEquals(first.getLocation().getId(), rows.get(0).getId());
+        Assertions.assertEquals("2022-07", rows.get(0).getPeriod());
+        Assertions.assertEquals("2022-08", rows.get(1).getPeriod());
+
+        AppointmentResponseDto moved = TestHelper.createAppointmentResponse(); // moving an appointment moves its count
+        moved.setId(second.getId());
+        moved.setDate(DateTimeCodec.parse("2022-07-05", "09:00"));
+        view.addAppointments(Collections.singletonList(moved), emptyReservation());
+        view.removeAppointment(first.getId());
+        rows = view.countAppointments(AppointmentRollupDto.GroupBy.ALL, AppointmentRollupDto.Granularity.MONTH, 20220701, 20220930);
+        Assertions.assertEquals(1, rows.size());
+        Assertions.assertEquals(1, rows.get(0).getCount());
+    }
+
+    @Test
+    void testFindPage_ShouldMergeOccurrencesOfSeriesWithAppointments() {
+        loadSeries();
+        AppointmentResponseDto appointment = TestHelper.createAppointmentResponse();
+        appointment.setDate(DateTimeCodec.parse("2022-12-28", "10:00"));
+        view.addAppointments(Collections.singletonList(appointment), emptyReservation());
+
+        AppointmentPageDto firstPage = view.findPage(null, null, 2);
+        Assertions.assertEquals(Arrays.asList(DateTimeCodec.parse("2022-12-20", "09:00"), appointment.getDate()), dates(firstPage.getAppointments()));
+        Assertions.assertEquals(Integer.valueOf(7), firstPage.getAppointments().get(0).getSeriesId());
+        Assertions.assertEquals(AppointmentCursor.of(appointment), firstPage.getNextCursor());
+
+        AppointmentPageDto secondPage = view.findPage(firstPage.getNextCursor(), null, 2);
+        Assertions.assertEquals(Arrays.asList(DateTimeCodec.parse("2023-01-03", "09:00"), DateTimeCodec.parse("2023-01-10", "09:00")),
+                dates(secondPage.getAppointments()));
+        Assertions.assertNull(secondPage.getNextCursor());
+        Assertions.assertEquals(new AppointmentCursor(DateTimeCodec.parse("2023-01-03", "09:00"), -7), secondPage.getPreviousCursor());
+
+        AppointmentPageDto backAgain = view.findPage(null, secondPage.getPreviousCursor(), 2);
+        Assertions.assertEquals(dates(firstPage.getAppointments()), dates(backAgain.getAppointments()));
+
+        long version = view.getDataVersion();
+        view.removeSeries(7);
+        Assertions.assertEquals(version + 1, view.getDataVersion());
+        Assertions.assertEquals(Collections.singletonList(appointment.getDate()), dates(view.findPage(null, null, 5).getAppointments()));
+        Assertions.assertNull(view.getSeries(7));
+    }
+
+    @Test
+    void testFindPage_ShouldMergeManyLongSeriesInListOrder() {
+        view.findPage(null, null, 1); // load the view
+        for (int id = 7; id <= 9; id++) {
+            AppointmentSeries series = new AppointmentSeries();
+            series.setId(id);
+            series.setDate(DateTimeCodec.parse("2022-12-20", "0" + id + ":00"));
+            series.setFrequency(AppointmentSeries.Frequency.DAILY);
+            series.setOccurrenceCount(5000);
+            view.putSeries(new RecurringSeries(series, null, null, Collections.emptyList()), emptyReservation());
+        }
+        AppointmentResponseDto appointment = TestHelper.createAppointmentResponse();
+        appointment.setDate(DateTimeCodec.parse("2022-12-21", "08:00")); // at the same time as an occurrence of series 8
+        view.addAppointments(Collections.singletonList(appointment), emptyReservation());
+
+        AppointmentPageDto firstPage = view.findPage(null, null, 4);
+        Assertions.assertEquals(Arrays.asList(DateTimeCodec.parse("2022-12-20", "07:00"), DateTimeCodec.parse("2022-12-20", "08:00"),
+                DateTimeCodec.parse("2022-12-20", "09:00"), DateTimeCodec.parse("2022-12-21", "07:00")), dates(firstPage.getAppointments()));
+
+        AppointmentPageDto secondPage = view.findPage(firstPage.getNextCursor(), null, 3);
+        Assertions.assertEquals(Arrays.asList(DateTimeCodec.parse("2022-12-21", "08:00"), appointment.getDate(),
+                DateTimeCodec.parse("2022-12-21", "09:00")), dates(secondPage.getAppointments()));
+        Assertions.assertEquals(Integer.valueOf(8), secondPage.getAppointments().get(0).getSeriesId());
+        Assertions.assertEquals(appointment.getId(), secondPage.getAppointments().get(1).getId());
+
+        AppointmentPageDto backAgain = view.findPage(null, secondPage.getPreviousCursor(), 4);
+        Assertions.assertEquals(dates(firstPage.getAppointments()), dates(backAgain.getAppointments()));
+    }
+
+    @Test
+    void testCountAppointments_ShouldCountOccurrencesOfSeriesInTheRange() {
+        loadSeries();
+        AppointmentResponseDto appointment = TestHelper.createAppointmentResponse();
+        appointment.setDate(DateTimeCodec.parse("2022-12-20", "14:00"));
+        view.addAppointments(Collections.singletonList(appointment), emptyReservation());
+
+        List<AppointmentRollupDto.Row> rows = view.countAppointments(AppointmentRollupDto.GroupBy.ALL, AppointmentRollupDto.Granularity.DAY,
+                20221201, 20230105);
+        Assertions.assertEquals(Arrays.asList("2022-12-20", "2023-01-03"), rows.stream().map(AppointmentRollupDto.Row::getPeriod).collect(Collectors.toList()));
+        Assertions.assertEquals(Arrays.asList(2, 1), rows.stream().map(AppointmentRollupDto.Row::getCount).collect(Collectors.toList()));
+        Assertions.assertTrue(view.getBookings().isPersonBooked(1, DateTimeCodec.parse("2023-01-10", "09:00"), 30));
+    }
+
+    @Test
+    void testRemoveAppointmentsInBulk_ShouldRemoveMatchingAppointmentsAsOneChange() {
+        List<Appointment> appointments = loadAppointments(6);
+        List<AppointmentResponseDto> loaded = view.findPage(null, null, 6).getAppointments();
+        long version = view.getDataVersion();
+
+        Assertions.assertEquals(1, view.removeAppointments(Arrays.asList(appointments.get(0).getId(), -1)));
+        Assertions.assertEquals(version + 1, view.getDataVersion());
+        Assertions.assertEquals(2, view.removeAppointmentsBetween(appointments.get(1).getDate(), appointments.get(3).getDate()));
+        Assertions.assertEquals(1, view.removeAppointmentsWithPerson(loaded.get(3).getPerson().getId()));
+        Assertions.assertEquals(1, view.removeAppointmentsAtLocation(loaded.get(4).getLocation().getId()));
+        Assertions.assertEquals(0, view.removeAppointmentsAtLocation(loaded.get(4).getLocation().getId()));
+
+        Assertions.assertEquals(Collections.singletonList(appointments.get(5).getId()), responseIds(view.findPage(null, null, 6).getAppointments()));
+        Assertions.assertFalse(view.getBookings().isPersonBooked(loaded.get(3).getPerson().getId(), loaded.get(3).getDate(), 1));
+    }
+
+    @Test
+    void testFindAllPeople_ShouldReturnSortedList() {
+        Person person1 = TestHelper.createPerson();
+        person1.setName("DEF");
+        Person person2 = TestHelper.createPerson();
+        person2.setName("ABC");
+        Person person3 = TestHelper.createPerson();
+        person3.setName("GHI");
+        Mockito.when(mockPersonDao.findAll()).thenReturn(() -> new ArrayIterator<>(new Person[]{person1, person2, person3}));
+
+        List<Person> people = view.findAllPeople();
+
+        Assertions.assertEquals(3, people.size());
+        Assertions.assertEquals(person2, people.get(0));
+        Assertions.assertEquals(person1, people.get(1));
+        Assertions.assertEquals(person3, people.get(2));
+
+        Person person4 = TestHelper.createPerson();
+        person4.setName("BCD");
+        view.addPerson(person4);
+        Assertions.assertEquals(person4, view.findAllPeople().get(1));
+    }
+
+    @Test
+    void testFindAllLocations_ShouldReturnSortedList() {
+        Location location1 = TestHelper.createLocation();
+        location1.setName("DEF");
+        Location location2 = TestHelper.createLocation();
+        location2.setName("ABC");
+        Location location3 = TestHelper.createLocation();
+        location3.setName("GHI");
+        Mockito.when(mockLocationDao.findAll()).thenReturn(() -> new ArrayIterator<>(new Location[]{location1, location2, location3}));
+
+        List<Location> locations = view.findAllLocations();
+
+        Assertions.assertEquals(3, locations.size());
+        Assertions.assertEquals(location2, locations.get(0));
+        Assertions.assertEquals(location1, locations.get(1));
+        Assertions.assertEquals(location3, locations.get(2));
+
+        Location location4 = TestHelper.createLocation();
+        location4.setName("BCD");
+        view.addLocation(location4);
+        Assertions.assertEquals(location4, view.findAllLocations().get(1));
+    }
+
+    @Test
+    void testRebuild_WhenDatabaseFails_ShouldKeepServingPreviousView() {
+        List<Appointment> appointments = loadAppointments(2);
+        view.rebuild();
+        Mockito.when(mockAppointmentDao.findFirstDetails(any())).thenThrow(new RuntimeException("database is down"));
+
+        Assertions.assertThrows(RuntimeException.class, view::rebuild);
+        Assertions.assertEquals(ids(appointments), responseIds(view.findPage(null, null, 3).getAppointments()));
+    }
+
+    @Test
+    void testRestoreSnapshot_WhenNothingWasRemoved_ShouldOnlyLoadNewerAppointments(@TempDir Path directory) throws IOException {
+        List<AppointmentDetails> stored = createDetailsList(3, 1);
+        Mockito.when(mockAppointmentDao.findFirstDetails(any())).thenReturn(stored);
+        storePeopleAndLocationsOf(stored);
+        view.rebuild();
+        Path file = directory.resolve("view.snapshot");
+        Assertions.assertTrue(view.writeSnapshot(file));
+
+        AppointmentView restored = new AppointmentView(mockAppointmentDao, mockPersonDao, mockLocationDao, mockSeriesDao, mockSeriesOverrideDao,
+                mockArchivedAppointmentDao);
+        AppointmentDetails newer = createDetailsList(1, 4).get(0);
+        Mockito.when(mockAppointmentDao.countByIdLessThanEqual(3)).thenReturn(3L);
+        Mockito.when(mockAppointmentDao.sumIdsUpTo(3)).thenReturn(6L);
+        Mockito.when(mockAppointmentDao.findDetailsWithIdAbove(eq(3), any())).thenReturn(Collections.singletonList(newer));
+
+        Assertions.assertTrue(restored.restoreSnapshot(file));
+        restored.loadOnStartup();
+
+        Assertions.assertEquals(Arrays.asList(1, 2, 3, 4), sortedResponseIds(restored.findPage(null, null, 10).getAppointments()));
+        Mockito.verify(mockAppointmentDao, Mockito.times(1)).findFirstDetails(any()); // only for the first view
+        Mockito.verify(mockAppointmentDao, Mockito.never()).findIdsBetween(any(), any(), any());
+        Assertions.assertFalse(restored.restoreSnapshot(file));
+    }
+
+    @Test
+    void testRestoreSnapshot_WhenAppointmentsWereRemovedAndAdded_ShouldCompareIds(@TempDir Path directory) throws IOException {
+        List<AppointmentDetails> stored = createDetailsList(4, 1);
+        Mockito.when(mockAppointmentDao.findFirstDetails(any())).thenReturn(stored);
+        storePeopleAndLocationsOf(stored);
+        view.rebuild();
+        view.removeAppointment(3); // e.g. removed while the snapshot was being written, but written anyway
+        Path file = directory.resolve("view.snapshot");
+        view.writeSnapshot(file);
+
+        AppointmentView restored = new AppointmentView(mockAppointmentDao, mockPersonDao, mockLocationDao, mockSeriesDao, mockSeriesOverrideDao,
+                mockArchivedAppointmentDao);
+        // since the snapshot, 2 has been removed and 3 is back, having been missed by the snapshot
+        Mockito.when(mockAppointmentDao.countByIdLessThanEqual(4)).thenReturn(3L);
+        Mockito.when(mockAppointmentDao.sumIdsUpTo(4)).thenReturn(8L);
+        Mockito.when(mockAppointmentDao.findIdsBetween(eq(0), eq(4), any())).thenReturn(Arrays.asList(1, 3, 4));
+        AppointmentDetails missed = createDetailsList(1, 3).get(0);
+        Mockito.when(mockAppointmentDao.findDetailsByIdIn(Collections.singletonList(3))).thenReturn(Collections.singletonList(missed));
+        Mockito.when(mockAppointmentDao.findDetailsWithIdAbove(eq(4), any())).thenReturn(Collections.emptyList());
+
+        Assertions.assertTrue(restored.restoreSnapshot(file));
+
+        Assertions.assertEquals(Arrays.asList(1, 3, 4), sortedResponseIds(restored.findPage(null, null, 10).getAppointments()));
+    }
+
+    @Test
+    void testRestoreSnapshot_WhenAPersonOrLocationIsMissingFromTheSnapshot_ShouldRelinkOrReloadTheAppointment(@TempDir Path directory) throws IOException {
+        // the person and location were created while the snapshot was being written, after their sections were written
+        Person person = TestHelper.createPerson();
+        Location location = TestHelper.createLocation();
+        AppointmentResponseDto withNewPerson = TestHelper.createAppointmentResponse();
+        withNewPerson.setId(1);
+        withNewPerson.setPerson(ObjectMapper.getInstance().mapDomainToDto(person));
+        withNewPerson.setLocation(null);
+        AppointmentResponseDto withNewLocation = TestHelper.createAppointmentResponse();
+        withNewLocation.setId(2);
+        withNewLocation.setPerson(null);
+        withNewLocation.setLocation(ObjectMapper.getInstance().mapDomainToDto(location));
+        Path file = directory.resolve("view.snapshot");
+        ViewSnapshotFile.write(file, Collections.emptyList(), Collections.emptyList(), Arrays.asList(withNewPerson, withNewLocation));
+
+        // the new person is reloaded, as there are more people than in the snapshot, but the location isn't
+        Mockito.when(mockPersonDao.count()).thenReturn(1L);
+        Mockito.when(mockPersonDao.findAll()).thenReturn(Collections.singletonList(person));
+        Mockito.when(mockAppointmentDao.countByIdLessThanEqual(2)).thenReturn(2L);
+        Mockito.when(mockAppointmentDao.sumIdsUpTo(2)).thenReturn(3L);
+        Appointment stored = TestHelper.createAppointment();
+        stored.setId(2);
+        Mockito.when(mockAppointmentDao.findDetailsByIdIn(Collections.singletonList(2)))
+                .thenReturn(Collections.singletonList(new AppointmentDetails(stored, null, location)));
+
+        Assertions.assertTrue(view.restoreSnapshot(file));
+
+        List<AppointmentResponseDto> appointments = view.findPage(null, null, 10).getAppointments();
+        Assertions.assertEquals(2, appointments.size());
+        for (AppointmentResponseDto appointment : appointments) {
+            if (appointment.getId() == 1) {
+                Assertions.assertEquals(person.getName(), appointment.getPerson().getName());
+            } else {
+                Assertions.assertEquals(location.getName(), appointment.getLocation().getName());
+            }
+        }
+        Mockito.verify(mockAppointmentDao, Mockito.never()).findIdsBetween(any(), any(), any());
+    }
+
+    /**
+     * Stubs the database to contain the given number of appointments
+     * @return The stored appointments, sorted by date
+     */
+    private List<Appointment> loadAppointments(int count) {
+        List<AppointmentDetails> details = createDetailsList(count);
+        Mockito.when(mockAppointmentDao.findFirstDetails(any())).thenReturn(details);
+        return details.stream()
+                .map(AppointmentDetails::getAppointment)
+                .sorted(AppointmentService.appointmentComparator)
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * Stubs the database to contain one series, weekly at 09:00 from 2022-12-20 to 2023-01-10 with person 1 and location 2,
+     * whose occurrence on 2022-12-27 is cancelled, and loads the view
+     */
+    private void loadSeries() {
+        AppointmentSeries series = new AppointmentSeries();
+        series.setId(7);
+        series.setDescription("Weekly sync");
+        series.setDate(DateTimeCodec.parse("2022-12-20", "09:00"));
+        series.setDurationMinutes(30);
+        series.setPersonId(1);
+        series.setLocationId(2);
+        series.setFrequency(AppointmentSeries.Frequency.WEEKLY);
+        series.setOccurrenceCount(4);
+        SeriesOverride cancelled = new SeriesOverride();
+        cancelled.setId(1);
+        cancelled.setSeriesId(7);
+        cancelled.setOccurrenceDate(DateTimeCodec.parse("2022-12-27", "09:00"));
+        cancelled.setCancelled(true);
+        Mockito.when(mockSeriesDao.findAll()).thenReturn(Collections.singletonList(series));
+        Mockito.when(mockSeriesOverrideDao.findAll()).thenReturn(Collections.singletonList(cancelled));
+        view.findPage(null, null, 1); // load the view
+    }
+
+    /**
+     * @return A reservation taken from the view that holds no bookings, for adding appointments that were booked elsewhere
+     */
+    private BookingReservation emptyReservation() {
+        return view.reserve(reservation -> { });
+    }
+
+    /**
+     * Stubs the database to contain the people and locations of the given appointments
+     */
+    private void storePeopleAndLocationsOf(List<AppointmentDetails> details) {
+        List<Person> people = details.stream().map(AppointmentDetails::getPerson).collect(Collectors.toList());
+        List<Location> locations = details.stream().map(AppointmentDetails::getLocation).collect(Collectors.toList());
+        Mockito.when(mockPersonDao.findAll()).thenReturn(people);
+        Mockito.when(mockLocationDao.findAll()).thenReturn(locations);
+        Mockito.when(mockPersonDao.count()).thenReturn((long) people.size());
+        Mockito.when(mockLocationDao.count()).thenReturn((long) locations.size());
+    }
+
+    /**
+     * @return Details of appointments with ids from firstId up, in order
+     */
+    private static List<AppointmentDetails> createDetailsList(int count, int firstId) {
+        List<AppointmentDetails> details = createDetailsList(count);
+        for (int i = 0; i < count; i++) {
+            details.get(i).getAppointment().setId(firstId + i);
+        }
+        return details;
+    }
+
+    private static List<AppointmentDetails> createDetailsList(int count) {
+        List<AppointmentDetails> details = new ArrayList<>();
+        for (Appointment appointment : TestHelper.createAppointmentList(count)) {
+            details.add(new AppointmentDetails(appointment, TestHelper.createPerson(), TestHelper.createLocation()));
+        }
+        return details;
+    }
+
+    private static AppointmentCursor cursorOf(Appointment appointment) {
+        return new AppointmentCursor(appointment.getDate(), appointment.getId());
+    }
+
+    private static List<Integer> ids(List<Appointment> appointments) {
+        return appointments.stream().map(Appointment::getId).collect(Collectors.toList());
+    }
+
+    private static List<Date> dates(List<AppointmentResponseDto> appointments) {
+        return appointments.stream().map(AppointmentResponseDto::getDate).collect(Collectors.toList());
+    }
+
+    private static List<Integer> sortedResponseIds(List<AppointmentResponseDto> appointments) {
+        return appointments.stream().map(AppointmentResponseDto::getId).sorted().collect(Collectors.toList());
+    }
+
+    private static List<Integer> responseIds(List<AppointmentResponseDto> appointments) {
+        return appointments.stream().map(AppointmentResponseDto::getId).collect(Collectors.toList());
+    }
+}
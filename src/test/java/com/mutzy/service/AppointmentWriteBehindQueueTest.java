@@ -0,0 +1,211 @@
+package com.mutzy.service;
+
+import com.mutzy.TestHelper;
+import com.mutzy.dao.AppointmentDao;
+import com.mutzy.dao.LocationDao;
+import com.mutzy.dao.PersonDao;
+import com.mutzy.dao.ReferenceDataCache;
+import com.mutzy.domain.Appointment;
+import com.mutzy.dto.AppointmentRequestDto;
+import com.mutzy.dto.AppointmentResponseDto;
+import com.mutzy.utils.DateTimeCodec;
+import com.mutzy.utils.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.mockito.ArgumentMatchers.any;
+
+class AppointmentWriteBehindQueueTest {
+
+    private final AppointmentDao mockAppointmentDao = Mockito.mock(AppointmentDao.class);
+    private final PersonDao mockPersonDao = Mockito.mock(PersonDao.class);
+    private final LocationDao mockLocationDao = Mockito.mock(LocationDao.class);
+    private final AppointmentView mockAppointmentView = Mockito.mock(AppointmentView.class);
+    private final ReferenceDataCache referenceDataCache = new ReferenceDataCache(mockPersonDao, mockLocationDao, 100, Duration.ofMinutes(1));
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final List<Integer> savedBatchSizes = new ArrayList<>();
+
+    private AppointmentWriteBehindQueue queue;
+
+    AppointmentWriteBehindQueueTest() {
+        Mockito.when(mockAppointmentDao.saveAll(any())).thenAnswer(invocation -> {
+            Iterable<Appointment> appointments = invocation.getArgument(0);
+            int size = 0;
+            for (Appointment appointment : appointments) {
+                appointment.setId(1000 + savedBatchSizes.size() * 100 + size++);
+            }
+            savedBatchSizes.add(size);
+            return appointments;
+        });
+    }
+
+    @AfterEach
+    void stopQueue() {
+        if (queue != null) {
+            queue.stop();
+        }
+    }
+
+    @Test
+    void testSubmit_WhenDisabled_ShouldNotStartOrAcceptAppointments() {
+        queue = createQueue(false, 10, 10, Duration.ofMillis(10));
+        queue.start();
+
+        Assertions.assertFalse(queue.isRunning());
+        Assertions.assertThrows(RejectedExecutionException.class, () -> submit("12:00"));
+    }
+
+    @Test
+    void testSubmit_ShouldSaveFullBatchesTogetherAndAddThemToTheView() throws Exception {
+        queue = createQueue(true, 100, 5, Duration.ofMinutes(1)); // only a full batch is saved before shutdown
+        queue.start();
+
+        List<CompletableFuture<AppointmentResponseDto>> results = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            results.add(submit("1" + i + ":00"));
+        }
+        for (CompletableFuture<AppointmentResponseDto> result : results) {
+            Assertions.assertNotNull(result.get(5, TimeUnit.SECONDS).getId());
+        }
+
+        Assertions.assertEquals(1, savedBatchSizes.size());
+        Assertions.assertEquals(5, savedBatchSizes.get(0));
+        Mockito.verify(mockAppointmentView, Mockito.times(5)).addAppointments(any(), any());
+        queue.stop(); // the flush is timed after its appointments complete, so wait for the flusher to finish
+        Assertions.assertEquals(1, meterRegistry.get("appointments.writebehind.flush").timer().count());
+    }
+
+    @Test
+    void testSubmit_ShouldSavePartialBatchOnceFlushIntervalPasses() throws Exception {
+        queue = createQueue(true, 100, 50, Duration.ofMillis(20));
+        queue.start();
+
+        AppointmentResponseDto saved = submit("12:00").get(5, TimeUnit.SECONDS);
+
+        Assertions.assertNotNull(saved.getId());
+        Assertions.assertEquals(1, savedBatchSizes.get(0));
+    }
+
+    @Test
+    void testSubmit_WhenQueueStaysFull_ShouldRejectAppointment() throws Exception {
+        CountDownLatch saving = new CountDownLatch(1);
+        CountDownLatch releaseSave = new CountDownLatch(1);
+        Mockito.doAnswer(invocation -> {
+            saving.countDown();
+            releaseSave.await();
+            return invocation.getArgument(0);
+        }).when(mockAppointmentDao).saveAll(any());
+        queue = createQueue(true, 1, 1, Duration.ofMillis(10));
+        queue.start();
+
+        CompletableFuture<AppointmentResponseDto> beingSaved = submit("10:00");
+        Assertions.assertTrue(saving.await(5, TimeUnit.SECONDS));
+        CompletableFuture<AppointmentResponseDto> waiting = submit("11:00"); // fills the queue
+        Assertions.assertEquals(1.0, meterRegistry.get("appointments.writebehind.queue.size").gauge().value());
+
+        Assertions.assertThrows(RejectedExecutionException.class, () -> submit("12:00"));
+        Assertions.assertEquals(1.0, meterRegistry.get("appointments.writebehind.rejected").counter().count());
+
+        releaseSave.countDown();
+        Assertions.assertNotNull(beingSaved.get(5, TimeUnit.SECONDS));
+        Assertions.assertNotNull(waiting.get(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    void testStop_ShouldSaveQueuedAppointmentsAndRejectNewOnes() throws Exception {
+        queue = createQueue(true, 100, 50, Duration.ofMinutes(1));
+        queue.start();
+        CompletableFuture<AppointmentResponseDto> queued = submit("12:00");
+
+        queue.stop();
+
+        Assertions.assertTrue(queued.isDone());
+        Assertions.assertNotNull(queued.get().getId());
+        Assertions.assertFalse(queue.isRunning());
+        Assertions.assertThrows(RejectedExecutionException.class, () -> submit("14:00"));
+    }
+
+    @Test
+    void testSubmit_WhenSaveFails_ShouldFailWholeBatchAndReleaseItsReservations() {
+        Mockito.doThrow(new RuntimeException("database is down")).when(mockAppointmentDao).saveAll(any());
+        queue = createQueue(true, 100, 1, Duration.ofMillis(10));
+        queue.start();
+
+        ExecutionException exception = Assertions.assertThrows(ExecutionException.class, () -> submit("12:00").get(5, TimeUnit.SECONDS));
+        Assertions.assertEquals("database is down", exception.getCause().getMessage());
+        Mockito.verify(mockAppointmentView, Mockito.never()).addAppointments(any(), any());
+        Mockito.verify(mockAppointmentView).release(any());
+    }
+
+    @Test
+    void testSubmit_WhenAddingOneToTheViewFails_ShouldStillCompleteItAsSavedAndRebuildTheView() throws Exception {
+        Mockito.doThrow(new RuntimeException("view is broken")).doNothing().when(mockAppointmentView).addAppointments(any(), any());
+        queue = createQueue(true, 100, 2, Duration.ofMinutes(1));
+        queue.start();
+
+        CompletableFuture<AppointmentResponseDto> first = submit("10:00");
+        CompletableFuture<AppointmentResponseDto> second = submit("12:00");
+
+        Assertions.assertEquals(Integer.valueOf(1000), first.get(5, TimeUnit.SECONDS).getId());
+        Assertions.assertEquals(Integer.valueOf(1001), second.get(5, TimeUnit.SECONDS).getId());
+        queue.stop();
+        Mockito.verify(mockAppointmentView, Mockito.times(2)).addAppointments(any(), any());
+        Mockito.verify(mockAppointmentView).rebuild();
+        Mockito.verify(mockAppointmentView, Mockito.never()).release(any()); // the first keeps its time until the rebuild
+    }
+
+    @Test
+    void testSubmit_WhenTheFlusherDiesOfAnError_ShouldFailWhatIsQueuedAndRejectNewAppointments() throws Exception {
+        CountDownLatch saving = new CountDownLatch(1);
+        CountDownLatch releaseSave = new CountDownLatch(1);
+        Mockito.doAnswer(invocation -> {
+            saving.countDown();
+            releaseSave.await();
+            throw new StackOverflowError();
+        }).when(mockAppointmentDao).saveAll(any());
+        queue = createQueue(true, 100, 1, Duration.ofMillis(10));
+        queue.start();
+
+        CompletableFuture<AppointmentResponseDto> beingSaved = submit("10:00");
+        Assertions.assertTrue(saving.await(5, TimeUnit.SECONDS));
+        CompletableFuture<AppointmentResponseDto> waiting = submit("11:00");
+        releaseSave.countDown();
+
+        ExecutionException exception = Assertions.assertThrows(ExecutionException.class, () -> beingSaved.get(5, TimeUnit.SECONDS));
+        Assertions.assertTrue(exception.getCause() instanceof StackOverflowError);
+        Assertions.assertThrows(ExecutionException.class, () -> waiting.get(5, TimeUnit.SECONDS));
+        Assertions.assertFalse(queue.isRunning());
+        Assertions.assertThrows(RejectedExecutionException.class, () -> submit("12:00"));
+        Mockito.verify(mockAppointmentView, Mockito.times(2)).release(any());
+    }
+
+    private AppointmentWriteBehindQueue createQueue(boolean enabled, int capacity, int batchSize, Duration flushInterval) {
+        return new AppointmentWriteBehindQueue(mockAppointmentDao, mockAppointmentView, referenceDataCache, meterRegistry,
+                enabled, capacity, batchSize, flushInterval, Duration.ofMillis(50), Duration.ofSeconds(5));
+    }
+
+    /**
+     * Submits a one hour appointment at the given time on the same day for the same person, without a location,
+     * under a reservation of its own
+     */
+    private CompletableFuture<AppointmentResponseDto> submit(String time) throws InterruptedException {
+        AppointmentRequestDto dto = TestHelper.createAppointmentDto();
+        dto.setTime(time);
+        dto.setDurationMinutes(60);
+        dto.setLocationId(null);
+        Appointment appointment = ObjectMapper.getInstance().mapDtoToDomain(dto, DateTimeCodec.parse(dto.getDate(), dto.getTime()));
+        return queue.submit(appointment, new BookingReservation(new BookingIndex()));
+    }
+}
@@ -0,0 +1,79 @@
+package com.mutzy.service;
+
+import com.mutzy.domain.AppointmentSeries;
+import com.mutzy.utils.Constants;
+import com.mutzy.utils.DateTimeCodec;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.Date;
+
+class BookingIndexTest {
+
+    private static final Date NOON = DateTimeCodec.parse("2022-12-20", "12:00");
+    private static final Date ONE_PM = DateTimeCodec.parse("2022-12-20", "13:00");
+
+    private final BookingIndex bookings = new BookingIndex();
+
+    @Test
+    void testIsBooked_WhenNothingBooked() {
+        Assertions.assertFalse(bookings.isPersonBooked(1, NOON, 30));
+        Assertions.assertFalse(bookings.isLocationBooked(1, NOON, 30));
+        Assertions.assertFalse(bookings.isPersonBooked(null, NOON, 30));
+    }
+
+    @Test
+    void testIsBooked_ShouldOnlyMatchOverlappingTimes() {
+        bookings.add(100, 1, 2, NOON, 60);
+
+        Assertions.assertTrue(bookings.isPersonBooked(1, NOON, 1));
+        Assertions.assertTrue(bookings.isPersonBooked(1, DateTimeCodec.parse("2022-12-20", "11:30"), 31));
+        Assertions.assertTrue(bookings.isLocationBooked(2, DateTimeCodec.parse("2022-12-20", "12:59"), 30));
+        Assertions.assertFalse(bookings.isPersonBooked(1, DateTimeCodec.parse("2022-12-20", "11:30"), 30));
+        Assertions.assertFalse(bookings.isLocationBooked(2, ONE_PM, 30));
+        Assertions.assertFalse(bookings.isPersonBooked(2, NOON, 30));
+        Assertions.assertFalse(bookings.isLocationBooked(1, NOON, 30));
+    }
+
+    @Test
+    void testIsBooked_ShouldFindLongBookingsThatStartedEarlier() {
+        bookings.add(100, 1, null, DateTimeCodec.parse("2022-12-19", "13:00"), Constants.MAX_APPOINTMENT_DURATION_MINUTES);
+        bookings.add(101, 1, null, DateTimeCodec.parse("2022-12-20", "08:00"), 30); // between the long booking's start and noon
+
+        Assertions.assertTrue(bookings.isPersonBooked(1, NOON, 30));
+        Assertions.assertFalse(bookings.isPersonBooked(1, ONE_PM, 30));
+    }
+
+    @Test
+    void testRemove_ShouldFreeTheTime() {
+        bookings.add(100, 1, 2, NOON, 60);
+        bookings.add(101, 1, 2, ONE_PM, 60);
+
+        bookings.remove(100, 1, 2, NOON);
+
+        Assertions.assertFalse(bookings.isPersonBooked(1, NOON, 60));
+        Assertions.assertFalse(bookings.isLocationBooked(2, NOON, 60));
+        Assertions.assertTrue(bookings.isPersonBooked(1, ONE_PM, 1));
+    }
+
+    @Test
+    void testIsBooked_ShouldFindOccurrencesOfSeries() {
+        // person 1 and location 2, weekly at 09:00 for 30 minutes from 2022-12-20 to 2023-01-17
+        RecurringSeries series = RecurringSeriesTest.createSeries(AppointmentSeries.Frequency.WEEKLY, 1, "2022-12-20", null, 5);
+        bookings.addSeries(series);
+        Date occurrence = DateTimeCodec.parse("2023-01-03", "09:00");
+
+        Assertions.assertTrue(bookings.isPersonBooked(1, DateTimeCodec.parse("2023-01-03", "09:15"), 30));
+        Assertions.assertTrue(bookings.isLocationBooked(2, DateTimeCodec.parse("2023-01-03", "08:45"), 30));
+        Assertions.assertFalse(bookings.isPersonBooked(1, DateTimeCodec.parse("2023-01-03", "09:30"), 30));
+        Assertions.assertFalse(bookings.isPersonBooked(1, DateTimeCodec.parse("2023-01-04", "09:00"), 30));
+        Assertions.assertFalse(bookings.isLocationBooked(2, DateTimeCodec.parse("2023-01-24", "09:00"), 30)); // after the series ends
+        // changing an occurrence only needs to avoid the rest of the series
+        Assertions.assertFalse(bookings.isPersonBooked(1, occurrence, 30, series.getId(), occurrence));
+        Assertions.assertTrue(bookings.isPersonBooked(1, DateTimeCodec.parse("2023-01-10", "09:00"), 30, series.getId(), occurrence));
+
+        bookings.removeSeries(series);
+        Assertions.assertFalse(bookings.isPersonBooked(1, occurrence, 30));
+        Assertions.assertFalse(bookings.isLocationBooked(2, occurrence, 30));
+    }
+}
@@ -0,0 +1,212 @@
+package com.mutzy.service;
+
+import com.mutzy.domain.AppointmentSeries;
+import com.mutzy.domain.SeriesOverride;
+import com.mutzy.dto.AppointmentCursor;
+import com.mutzy.dto.AppointmentResponseDto;
+import com.mutzy.utils.DateTimeCodec;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.stream.Collectors;
+
+class RecurringSeriesTest {
+
+    private static final Integer SERIES_ID = 7;
+
+    @Test
+    void testFindOccurrencesBetween_ShouldOnlyReturnOccurrencesInTheWindow() {
+        RecurringSeries series = createSeries(AppointmentSeries.Frequency.WEEKLY, 1, "2022-12-20", null, 5);
+
+        Assertions.assertEquals(Arrays.asList(date("2022-12-27", "09:00"), date("2023-01-03", "09:00")),
+                datesOf(series.findOccurrencesBetween(date("2022-12-26", "00:00"), date("2023-01-10", "00:00"))));
+        Assertions.assertEquals(Collections.singletonList(date("2023-01-17", "09:00")),
+                datesOf(series.findOccurrencesBetween(date("2023-01-11", "00:00"), date("2024-01-01", "00:00"))));
+        Assertions.assertTrue(series.findOccurrencesBetween(date("2022-01-01", "00:00"), date("2022-12-20", "09:00")).isEmpty());
+        Assertions.assertEquals(5, series.getOccurrenceCount());
+    }
+
+    @Test
+    void testFindAllOccurrences_Monthly_ShouldUseTheLastDayOfShorterMonths() {
+        RecurringSeries series = createSeries(AppointmentSeries.Frequency.MONTHLY, 1, "2023-01-31", null, 4);
+
+        Assertions.assertEquals(Arrays.asList(date("2023-01-31", "09:00"), date("2023-02-28", "09:00"), date("2023-03-31", "09:00"),
+                date("2023-04-30", "09:00")), datesOf(series.findAllOccurrences()));
+    }
+
+    @Test
+    void testFindAllOccurrences_ShouldIncludeOccurrencesOnTheLastDay() {
+        RecurringSeries series = createSeries(AppointmentSeries.Frequency.DAILY, 2, "2022-12-20", "2022-12-24", null);
+
+        Assertions.assertEquals(Arrays.asList(date("2022-12-20", "09:00"), date("2022-12-22", "09:00"), date("2022-12-24", "09:00")),
+                datesOf(series.findAllOccurrences()));
+        Assertions.assertEquals(3, series.getOccurrenceCount());
+    }
+
+    @Test
+    void testGetOccurrenceCount_WithEndDateAndCount_ShouldStopAtWhicheverComesFirst() {
+        Assertions.assertEquals(2, createSeries(AppointmentSeries.Frequency.DAILY, 1, "2022-12-20", "2022-12-31", 2).getOccurrenceCount());
+        Assertions.assertEquals(12, createSeries(AppointmentSeries.Frequency.DAILY, 1, "2022-12-20", "2022-12-31", 100).getOccurrenceCount());
+    }
+
+    @Test
+    void testIsOccurrence_ShouldOnlyMatchTheExactStartOfAnOccurrence() {
+        RecurringSeries series = createSeries(AppointmentSeries.Frequency.WEEKLY, 1, "2022-12-20", null, 5);
+
+        Assertions.assertTrue(series.isOccurrence(date("2022-12-20", "09:00")));
+        Assertions.assertTrue(series.isOccurrence(date("2023-01-17", "09:00")));
+        Assertions.assertFalse(series.isOccurrence(date("2022-12-27", "09:30")));
+        Assertions.assertFalse(series.isOccurrence(date("2022-12-28", "09:00")));
+        Assertions.assertFalse(series.isOccurrence(date("2022-12-13", "09:00"))); // before the series starts
+        Assertions.assertFalse(series.isOccurrence(date("2023-01-24", "09:00"))); // after it ends
+    }
+
+    @Test
+    void testFindOccurrencesAfter_ShouldPageInListOrder() {
+        RecurringSeries series = createSeries(AppointmentSeries.Frequency.WEEKLY, 1, "2022-12-20", null, 5);
+
+        Assertions.assertEquals(Arrays.asList(date("2022-12-20", "09:00"), date("2022-12-27", "09:00")),
+                datesOf(series.findOccurrencesAfter(null, 2)));
+        Assertions.assertEquals(Arrays.asList(date("2023-01-03", "09:00"), date("2023-01-10", "09:00")),
+                datesOf(series.findOccurrencesAfter(new AppointmentCursor(date("2022-12-27", "09:00"), -SERIES_ID), 2)));
+        // an appointment at the same time comes after the occurrence, as occurrences are listed by their negated series id
+        Assertions.assertEquals(Collections.singletonList(date("2023-01-03", "09:00")),
+                datesOf(series.findOccurrencesAfter(new AppointmentCursor(date("2022-12-27", "09:00"), 1), 1)));
+        Assertions.assertEquals(Collections.singletonList(date("2022-12-27", "09:00")),
+                datesOf(series.findOccurrencesAfter(new AppointmentCursor(date("2022-12-27", "09:00"), -100), 1)));
+        Assertions.assertTrue(series.findOccurrencesAfter(new AppointmentCursor(date("2023-01-17", "09:00"), -SERIES_ID), 2).isEmpty());
+    }
+
+    @Test
+    void testFindOccurrencesBefore_ShouldPageBackwardsFromTheCursor() {
+        RecurringSeries series = createSeries(AppointmentSeries.Frequency.WEEKLY, 1, "2022-12-20", null, 5);
+
+        Assertions.assertEquals(Arrays.asList(date("2022-12-27", "09:00"), date("2022-12-20", "09:00")),
+                datesOf(series.findOccurrencesBefore(new AppointmentCursor(date("2023-01-03", "09:00"), -SERIES_ID), 10)));
+        Assertions.assertEquals(Arrays.asList(date("2023-01-03", "09:00"), date("2022-12-27", "09:00")),
+                datesOf(series.findOccurrencesBefore(new AppointmentCursor(date("2023-01-03", "09:00"), 1), 2)));
+        Assertions.assertEquals(Collections.singletonList(date("2023-01-17", "09:00")),
+                datesOf(series.findOccurrencesBefore(new AppointmentCursor(date("2024-01-01", "00:00"), 1), 1)));
+        Assertions.assertTrue(series.findOccurrencesBefore(new AppointmentCursor(date("2022-12-20", "09:00"), -SERIES_ID), 2).isEmpty());
+    }
+
+    @Test
+    void testOverrides_ShouldLeaveOutCancelledOccurrencesAndMoveChangedOnes() {
+        RecurringSeries original = createSeries(AppointmentSeries.Frequency.WEEKLY, 1, "2022-12-20", null, 5);
+        RecurringSeries series = original
+                .withOverride(createOverride(1, date("2022-12-27", "09:00"), true, null))
+                .withOverride(createOverride(2, date("2023-01-03", "09:00"), false, date("2023-01-05", "14:00")));
+
+        Assertions.assertEquals(Arrays.asList(date("2022-12-20", "09:00"), date("2023-01-05", "14:00"), date("2023-01-10", "09:00"),
+                date("2023-01-17", "09:00")), datesOf(series.findAllOccurrences()));
+        Assertions.assertEquals(5, datesOf(original.findAllOccurrences()).size());
+
+        AppointmentResponseDto moved = series.findOccurrence(date("2023-01-03", "09:00"));
+        Assertions.assertEquals(date("2023-01-05", "14:00"), moved.getDate());
+        Assertions.assertEquals(date("2023-01-03", "09:00"), moved.getOccurrenceDate());
+        Assertions.assertEquals(SERIES_ID, moved.getSeriesId());
+        Assertions.assertEquals("Moved", moved.getDescription());
+        Assertions.assertEquals(45, moved.getDurationMinutes());
+        Assertions.assertNull(moved.getId());
+        Assertions.assertNull(series.findOccurrence(date("2022-12-27", "09:00")));
+        Assertions.assertEquals("Weekly sync", series.findOccurrence(date("2023-01-10", "09:00")).getDescription());
+        Assertions.assertTrue(series.isOccurrence(date("2022-12-27", "09:00")));
+
+        Assertions.assertEquals(Collections.singletonList(date("2023-01-05", "14:00")),
+                datesOf(series.findOccurrencesBetween(date("2023-01-04", "00:00"), date("2023-01-06", "00:00"))));
+        Assertions.assertEquals(Arrays.asList(date("2023-01-05", "14:00"), date("2023-01-10", "09:00")),
+                datesOf(series.findOccurrencesAfter(new AppointmentCursor(date("2022-12-20", "09:00"), -SERIES_ID), 2)));
+        Assertions.assertEquals(Arrays.asList(date("2023-01-05", "14:00"), date("2022-12-20", "09:00")),
+                datesOf(series.findOccurrencesBefore(new AppointmentCursor(date("2023-01-10", "09:00"), -SERIES_ID), 5)));
+    }
+
+    @Test
+    void testOccurrencesAfterAndBefore_ShouldInterleaveChangedOccurrencesInEitherDirection() {
+        RecurringSeries series = createSeries(AppointmentSeries.Frequency.DAILY, 1, "2022-12-20", null, 5000)
+                .withOverride(createOverride(1, date("2022-12-21", "09:00"), false, date("2022-12-22", "14:00")))
+                .withOverride(createOverride(2, date("2022-12-22", "09:00"), false, date("2022-12-20", "08:00")));
+
+        Iterator<AppointmentResponseDto> after = series.occurrencesAfter(new AppointmentCursor(date("2022-12-20", "08:00"), -SERIES_ID));
+        Assertions.assertEquals(date("2022-12-20", "09:00"), after.next().getDate());
+        Assertions.assertEquals(date("2022-12-22", "14:00"), after.next().getDate());
+        Assertions.assertEquals(date("2022-12-23", "09:00"), after.next().getDate());
+        Assertions.assertTrue(after.hasNext());
+
+        Iterator<AppointmentResponseDto> before = series.occurrencesBefore(new AppointmentCursor(date("2022-12-23", "09:00"), -SERIES_ID));
+        Assertions.assertEquals(date("2022-12-22", "14:00"), before.next().getDate());
+        Assertions.assertEquals(date("2022-12-20", "09:00"), before.next().getDate());
+        Assertions.assertEquals(date("2022-12-20", "08:00"), before.next().getDate());
+        Assertions.assertFalse(before.hasNext());
+        Assertions.assertThrows(NoSuchElementException.class, before::next);
+    }
+
+    @Test
+    void testWithOverride_ShouldReplaceTheOccurrencesEarlierOverride() {
+        Date occurrenceDate = date("2022-12-27", "09:00");
+        RecurringSeries series = createSeries(AppointmentSeries.Frequency.WEEKLY, 1, "2022-12-20", null, 5)
+                .withOverride(createOverride(1, occurrenceDate, false, date("2022-12-28", "09:00")))
+                .withOverride(createOverride(1, occurrenceDate, true, null));
+
+        Assertions.assertNull(series.findOccurrence(occurrenceDate));
+        Assertions.assertEquals(4, series.findAllOccurrences().size());
+    }
+
+    static RecurringSeries createSeries(AppointmentSeries.Frequency frequency, int interval, String start, String until, Integer count) {
+        AppointmentSeries series = new AppointmentSeries();
+        series.setId(SERIES_ID);
+        series.setDescription("Weekly sync");
+        series.setDate(date(start, "09:00"));
+        series.setDurationMinutes(30);
+        series.setPersonId(1);
+        series.setLocationId(2);
+        series.setFrequency(frequency);
+        series.setRepeatInterval(interval);
+        series.setUntilDate(until == null ? null : date(until, "00:00"));
+        series.setOccurrenceCount(count);
+        return new RecurringSeries(series, null, null, Collections.emptyList());
+    }
+
+    @Test
+    void testHasOtherOccurrenceAt_ShouldOnlyCountOccurrencesAsTheSeriesNowStands() {
+        RecurringSeries series = createSeries(AppointmentSeries.Frequency.WEEKLY, 1, "2022-12-20", null, 5)
+                .withOverride(createOverride(1, date("2022-12-27", "09:00"), true, null))
+                .withOverride(createOverride(2, date("2023-01-03", "09:00"), false, date("2023-01-05", "14:00")));
+        Date anotherOccurrence = date("2023-01-10", "09:00");
+
+        Assertions.assertTrue(series.hasOtherOccurrenceAt(date("2022-12-20", "09:00"), anotherOccurrence));
+        Assertions.assertFalse(series.hasOtherOccurrenceAt(date("2022-12-27", "09:00"), anotherOccurrence)); // cancelled
+        Assertions.assertFalse(series.hasOtherOccurrenceAt(date("2023-01-03", "09:00"), anotherOccurrence)); // moved away
+        Assertions.assertTrue(series.hasOtherOccurrenceAt(date("2023-01-05", "14:00"), anotherOccurrence)); // moved there
+        Assertions.assertFalse(series.hasOtherOccurrenceAt(date("2023-01-05", "14:00"), date("2023-01-03", "09:00")));
+        Assertions.assertFalse(series.hasOtherOccurrenceAt(anotherOccurrence, anotherOccurrence));
+        Assertions.assertFalse(series.hasOtherOccurrenceAt(date("2023-01-10", "09:30"), anotherOccurrence));
+    }
+
+    private static SeriesOverride createOverride(Integer id, Date occurrenceDate, boolean cancelled, Date date) {
+        SeriesOverride override = new SeriesOverride();
+        override.setId(id);
+        override.setSeriesId(SERIES_ID);
+        override.setOccurrenceDate(occurrenceDate);
+        override.setCancelled(cancelled);
+        if (!cancelled) {
+            override.setDescription("Moved");
+            override.setDate(date);
+            override.setDurationMinutes(45);
+        }
+        return override;
+    }
+
+    private static Date date(String date, String time) {
+        return DateTimeCodec.parse(date, time);
+    }
+
+    private static List<Date> datesOf(List<AppointmentResponseDto> occurrences) {
+        return occurrences.stream().map(AppointmentResponseDto::getDate).collect(Collectors.toList());
+    }
+}
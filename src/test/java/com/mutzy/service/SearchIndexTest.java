@@ -0,0 +1,75 @@
+package com.mutzy.service;
+
+import com.mutzy.dto.AppointmentCursor;
+import com.mutzy.utils.DateTimeCodec;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+class SearchIndexTest {
+
+    private static final AppointmentCursor FIRST = new AppointmentCursor(DateTimeCodec.parse("2022-12-20", "09:00"), 3);
+    private static final AppointmentCursor SECOND = new AppointmentCursor(DateTimeCodec.parse("2022-12-20", "12:00"), 1);
+    private static final AppointmentCursor THIRD = new AppointmentCursor(DateTimeCodec.parse("2022-12-21", "09:00"), 2);
+
+    private final SearchIndex index = new SearchIndex();
+
+    @Test
+    void testTokenize_ShouldSplitOnSpacesAndPunctuationAndIgnoreCase() {
+        Assertions.assertEquals(new ArrayList<>(Arrays.asList("quarterly", "review", "bring", "the", "q3", "numbers", "follow", "up")),
+                new ArrayList<>(SearchIndex.tokenize("Quarterly review, bring the Q3 numbers!! follow-up_REVIEW")));
+        Assertions.assertTrue(SearchIndex.tokenize(" .,?!-_ ").isEmpty());
+        Assertions.assertTrue(SearchIndex.tokenize(null).isEmpty());
+    }
+
+    @Test
+    void testSearch_ShouldMatchEveryWordAsAPrefixInDisplayedOrder() {
+        index.add(THIRD, "Dentist checkup", "Bob Smith", null);
+        index.add(FIRST, "Dental cleaning", "Bobby Jones", "Main street");
+        index.add(SECOND, "Team lunch", "Alice Smith", "Main street");
+
+        Assertions.assertEquals(Arrays.asList(FIRST, THIRD), index.search("dent bob", null, 10));
+        Assertions.assertEquals(Collections.singletonList(THIRD), index.search("DENTIST", null, 10));
+        Assertions.assertEquals(Arrays.asList(SECOND, THIRD), index.search("smith", null, 10));
+        Assertions.assertEquals(Collections.singletonList(SECOND), index.search("main smi", null, 10));
+        Assertions.assertTrue(index.search("dentist lunch", null, 10).isEmpty());
+        Assertions.assertTrue(index.search("nobody", null, 10).isEmpty());
+        Assertions.assertTrue(index.search("", null, 10).isEmpty());
+    }
+
+    @Test
+    void testSearch_ShouldPageFromAfterAndStopAtLimit() {
+        index.add(FIRST, "weekly sync");
+        index.add(SECOND, "weekend plans");
+        index.add(THIRD, "weekly review");
+
+        Assertions.assertEquals(Arrays.asList(FIRST, SECOND), index.search("week", null, 2));
+        Assertions.assertEquals(Collections.singletonList(THIRD), index.search("week", SECOND, 2));
+        Assertions.assertEquals(Collections.singletonList(THIRD), index.search("weekly", FIRST, 2));
+    }
+
+    @Test
+    void testRemove_ShouldStopMatchingTheAppointment() {
+        index.add(FIRST, "Dentist checkup");
+        index.add(SECOND, "Dentist follow up");
+
+        index.remove(FIRST);
+        index.remove(THIRD); // never added
+
+        Assertions.assertEquals(Collections.singletonList(SECOND), index.search("dentist", null, 10));
+        Assertions.assertTrue(index.search("checkup", null, 10).isEmpty());
+    }
+
+    @Test
+    void testAdd_ShouldReplaceTheTextOfTheSamePosition() {
+        index.add(FIRST, "Dentist checkup");
+        index.add(FIRST, "Team lunch");
+
+        Assertions.assertTrue(index.search("dentist", null, 10).isEmpty());
+        Assertions.assertEquals(Collections.singletonList(FIRST), index.search("lunch", null, 10));
+    }
+}
@@ -0,0 +1,88 @@
+package com.mutzy.service;
+
+import com.mutzy.TestHelper;
+import com.mutzy.domain.Location;
+import com.mutzy.domain.Person;
+import com.mutzy.dto.AppointmentResponseDto;
+import com.mutzy.utils.ObjectMapper;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+class ViewSnapshotFileTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void testWriteAndRead_ShouldRoundTripEverything() throws IOException {
+        Person person = TestHelper.createPerson();
+        person.setAffiliation(null);
+        Location location = TestHelper.createLocation();
+        location.setName("Café «Zürich»");
+        AppointmentResponseDto withBoth = TestHelper.createAppointmentResponse();
+        withBoth.setId(3);
+        withBoth.setPerson(ObjectMapper.getInstance().mapDomainToDto(person));
+        withBoth.setLocation(ObjectMapper.getInstance().mapDomainToDto(location));
+        withBoth.setDurationMinutes(45);
+        AppointmentResponseDto withNeither = TestHelper.createAppointmentResponse();
+        withNeither.setId(7);
+        withNeither.setPerson(null);
+        withNeither.setLocation(null);
+        withNeither.setDescription(null);
+        Path file = directory.resolve("view.snapshot");
+
+        ViewSnapshotFile.write(file, Collections.singletonList(person), Collections.singletonList(location), Arrays.asList(withBoth, withNeither));
+        ViewSnapshotFile.Contents contents = ViewSnapshotFile.read(file);
+
+        Assertions.assertEquals(person.getId(), contents.getPeople().get(0).getId());
+        Assertions.assertEquals(person.getName(), contents.getPeople().get(0).getName());
+        Assertions.assertNull(contents.getPeople().get(0).getAffiliation());
+        Assertions.assertEquals("Café «Zürich»", contents.getLocations().get(0).getName());
+        Assertions.assertEquals(location.getDescription(), contents.getLocations().get(0).getDescription());
+        List<AppointmentResponseDto> appointments = contents.getAppointments();
+        Assertions.assertEquals(2, appointments.size());
+        Assertions.assertEquals(withBoth.getDescription(), appointments.get(0).getDescription());
+        Assertions.assertEquals(withBoth.getDate(), appointments.get(0).getDate());
+        Assertions.assertEquals(45, appointments.get(0).getDurationMinutes());
+        Assertions.assertEquals(person.getName(), appointments.get(0).getPerson().getName());
+        Assertions.assertEquals(location.getId(), appointments.get(0).getLocation().getId());
+        Assertions.assertNull(appointments.get(1).getPerson());
+        Assertions.assertNull(appointments.get(1).getLocation());
+        Assertions.assertNull(appointments.get(1).getDescription());
+        Assertions.assertEquals(7, contents.getHighestAppointmentId());
+        Assertions.assertEquals(10, contents.getAppointmentIdSum());
+        Assertions.assertFalse(Files.exists(directory.resolve("view.snapshot.tmp")));
+    }
+
+    @Test
+    void testRead_WhenDamaged_ShouldRejectTheFile() throws IOException {
+        Path file = directory.resolve("view.snapshot");
+        ViewSnapshotFile.write(file, TestHelper.createPersonList(3), TestHelper.createLocationList(3), TestHelper.createAppointmentResponseList(3));
+        byte[] bytes = Files.readAllBytes(file);
+        bytes[bytes.length / 2] ^= 1;
+        Files.write(file, bytes);
+
+        IOException thrown = Assertions.assertThrows(IOException.class, () -> ViewSnapshotFile.read(file));
+        Assertions.assertTrue(thrown.getMessage().contains("checksum"));
+    }
+
+    @Test
+    void testRead_WithAnotherFormatVersion_ShouldRejectTheFile() throws IOException {
+        Path file = directory.resolve("view.snapshot");
+        ViewSnapshotFile.write(file, Collections.emptyList(), Collections.emptyList(), Collections.emptyList());
+        byte[] bytes = Files.readAllBytes(file);
+        bytes[7] = (byte) (ViewSnapshotFile.FORMAT_VERSION + 1);
+        Files.write(file, bytes);
+
+        IOException thrown = Assertions.assertThrows(IOException.class, () -> ViewSnapshotFile.read(file));
+        Assertions.assertTrue(thrown.getMessage().contains("format version"));
+    }
+}
@@ -0,0 +1,87 @@
+package com.mutzy.utils;
+
+import com.mutzy.dao.AppointmentRow;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+
+class AppointmentCsvWriterTest {
+
+    private static final ZoneId LONDON = ZoneId.of("Europe/London");
+
+    @Test
+    void testWrite_ShouldWriteTheHeaderAndOneLinePerRow() throws IOException {
+        AppointmentRow withEverything = createRow(12, "Quarterly review", LocalDateTime.of(2022, 12, 20, 12, 30), 45);
+        Mockito.when(withEverything.getPersonId()).thenReturn(1);
+        Mockito.when(withEverything.getPersonName()).thenReturn("Bob Smith");
+        Mockito.when(withEverything.getPersonAffiliation()).thenReturn("Acme Corp");
+        Mockito.when(withEverything.getLocationId()).thenReturn(2147483647);
+        Mockito.when(withEverything.getLocationName()).thenReturn("Room 1");
+        Mockito.when(withEverything.getLocationDescription()).thenReturn("Main street");
+        AppointmentRow withNothing = createRow(3, "Dentist", LocalDateTime.of(2023, 1, 2, 9, 5), 0);
+
+        Assertions.assertEquals(AppointmentCsvWriter.HEADER + "\r\n" +
+                        "12,Quarterly review,2022-12-20,12:30,45,1,Bob Smith,Acme Corp,2147483647,Room 1,Main street\r\n" +
+                        "3,Dentist,2023-01-02,09:05,30,,,,,,\r\n",
+                write(withEverything, withNothing));
+    }
+
+    @Test
+    void testWrite_ShouldQuoteTextWithCommasQuotesOrLineBreaks() throws IOException {
+        AppointmentRow row = createRow(1, "Review, \"Q4\"", LocalDateTime.of(2022, 12, 20, 12, 30), 30);
+        Mockito.when(row.getPersonId()).thenReturn(4);
+        Mockito.when(row.getPersonName()).thenReturn("Smith\nBob");
+        Mockito.when(row.getPersonAffiliation()).thenReturn("Ünïcode café");
+
+        Assertions.assertTrue(write(row).endsWith("1,\"Review, \"\"Q4\"\"\",2022-12-20,12:30,30,4,\"Smith\nBob\",Ünïcode café,,,\r\n"));
+    }
+
+    @Test
+    void testWrite_ShouldFollowTheClocksAcrossDaysAndChanges() throws IOException {
+        // the clocks went forward from 01:00 to 02:00 on 2022-03-27 and back from 02:00 to 01:00 on 2022-10-30
+        String csv = write(
+                createRow(1, "a", LocalDateTime.of(2022, 3, 26, 23, 59), 30),
+                createRow(2, "b", LocalDateTime.of(2022, 3, 27, 0, 30), 30),
+                createRow(3, "c", LocalDateTime.of(2022, 3, 27, 2, 30), 30),
+                createRow(4, "d", LocalDateTime.of(2022, 3, 27, 23, 59), 30),
+                createRow(5, "e", LocalDateTime.of(2022, 10, 30, 0, 30), 30),
+                createRow(6, "f", LocalDateTime.of(2022, 10, 30, 1, 30), 30),
+                createRow(7, "g", LocalDateTime.of(2022, 10, 30, 23, 0), 30),
+                createRow(8, "h", LocalDateTime.of(1969, 12, 31, 8, 0), 30)); // out of order, and before 1970
+
+        Assertions.assertTrue(csv.contains("1,a,2022-03-26,23:59,"));
+        Assertions.assertTrue(csv.contains("2,b,2022-03-27,00:30,"));
+        Assertions.assertTrue(csv.contains("3,c,2022-03-27,02:30,"));
+        Assertions.assertTrue(csv.contains("4,d,2022-03-27,23:59,"));
+        Assertions.assertTrue(csv.contains("5,e,2022-10-30,00:30,"));
+        Assertions.assertTrue(csv.contains("6,f,2022-10-30,01:30,"));
+        Assertions.assertTrue(csv.contains("7,g,2022-10-30,23:00,"));
+        Assertions.assertTrue(csv.contains("8,h,1969-12-31,08:00,"));
+    }
+
+    private static String write(AppointmentRow... rows) throws IOException {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        try (AppointmentCsvWriter writer = new AppointmentCsvWriter(output, LONDON)) {
+            writer.writeHeader();
+            for (AppointmentRow row : rows) {
+                writer.write(row);
+            }
+        }
+        return new String(output.toByteArray(), StandardCharsets.UTF_8);
+    }
+
+    private static AppointmentRow createRow(int id, String description, LocalDateTime date, int durationMinutes) {
+        AppointmentRow row = Mockito.mock(AppointmentRow.class);
+        Mockito.when(row.getId()).thenReturn(id);
+        Mockito.when(row.getDescription()).thenReturn(description);
+        Mockito.when(row.getDateMillis()).thenReturn(date.atZone(LONDON).toInstant().toEpochMilli());
+        Mockito.when(row.getDurationMinutes()).thenReturn(durationMinutes);
+        return row;
+    }
+}
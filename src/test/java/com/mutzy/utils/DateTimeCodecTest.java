@@ -0,0 +1,100 @@
+package com.mutzy.utils;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+class DateTimeCodecTest {
+
+    @Test
+    void testParseDate() {
+        Assertions.assertEquals(20221220, DateTimeCodec.parseDate("2022-12-20"));
+        Assertions.assertEquals(20240229, DateTimeCodec.parseDate("2024-02-29"));
+        Assertions.assertEquals(20000229, DateTimeCodec.parseDate("2000-02-29"));
+    }
+
+    @Test
+    void testParseDate_WithInvalidDates() {
+        Assertions.assertEquals(DateTimeCodec.INVALID, DateTimeCodec.parseDate(null));
+        Assertions.assertEquals(DateTimeCodec.INVALID, DateTimeCodec.parseDate(""));
+        Assertions.assertEquals(DateTimeCodec.INVALID, DateTimeCodec.parseDate("2022/12/20"));
+        Assertions.assertEquals(DateTimeCodec.INVALID, DateTimeCodec.parseDate("2022-1-20"));
+        Assertions.assertEquals(DateTimeCodec.INVALID, DateTimeCodec.parseDate("2022-13-20"));
+        Assertions.assertEquals(DateTimeCodec.INVALID, DateTimeCodec.parseDate("2022-00-20"));
+        Assertions.assertEquals(DateTimeCodec.INVALID, DateTimeCodec.parseDate("2022-04-31"));
+        Assertions.assertEquals(DateTimeCodec.INVALID, DateTimeCodec.parseDate("2022-02-29"));
+        Assertions.assertEquals(DateTimeCodec.INVALID, DateTimeCodec.parseDate("1900-02-29"));
+        Assertions.assertEquals(DateTimeCodec.INVALID, DateTimeCodec.parseDate("2022-12-2a"));
+        Assertions.assertEquals(DateTimeCodec.INVALID, DateTimeCodec.parseDate("2022-12-20 "));
+    }
+
+    @Test
+    void testParseTime() {
+        Assertions.assertEquals(12 * 3600 + 30 * 60, DateTimeCodec.parseTime("12:30"));
+        Assertions.assertEquals(9 * 3600 + 5 * 60, DateTimeCodec.parseTime("9:05"));
+        Assertions.assertEquals(0, DateTimeCodec.parseTime("00:00"));
+        Assertions.assertEquals(23 * 3600 + 59 * 60 + 59, DateTimeCodec.parseTime("23:59:59"));
+    }
+
+    @Test
+    void testParseTime_WithInvalidTimes() {
+        Assertions.assertEquals(DateTimeCodec.INVALID, DateTimeCodec.parseTime(null));
+        Assertions.assertEquals(DateTimeCodec.INVALID, DateTimeCodec.parseTime(""));
+        Assertions.assertEquals(DateTimeCodec.INVALID, DateTimeCodec.parseTime("24:00"));
+        Assertions.assertEquals(DateTimeCodec.INVALID, DateTimeCodec.parseTime("12:60"));
+        Assertions.assertEquals(DateTimeCodec.INVALID, DateTimeCodec.parseTime("12:30:60"));
+        Assertions.assertEquals(DateTimeCodec.INVALID, DateTimeCodec.parseTime("12-30"));
+        Assertions.assertEquals(DateTimeCodec.INVALID, DateTimeCodec.parseTime("12:3"));
+        Assertions.assertEquals(DateTimeCodec.INVALID, DateTimeCodec.parseTime("12:30:"));
+        Assertions.assertEquals(DateTimeCodec.INVALID, DateTimeCodec.parseTime("ab:cd"));
+    }
+
+    @Test
+    void testParse() {
+        Date expected = Date.from(LocalDateTime.of(2022, 12, 20, 12, 30).atZone(ZoneId.systemDefault()).toInstant());
+        Assertions.assertEquals(expected, DateTimeCodec.parse("2022-12-20", "12:30"));
+        Assertions.assertNull(DateTimeCodec.parse("2022-12-20", "25:00"));
+        Assertions.assertNull(DateTimeCodec.parse("2022-12-32", "12:30"));
+    }
+
+    @Test
+    void testToPackedDateAndFormatDate() {
+        Assertions.assertEquals(20221220, DateTimeCodec.toPackedDate(DateTimeCodec.parse("2022-12-20", "00:00")));
+        Assertions.assertEquals(20221220, DateTimeCodec.toPackedDate(DateTimeCodec.parse("2022-12-20", "23:59")));
+        Assertions.assertEquals("2022-12-20", DateTimeCodec.formatDate(20221220));
+        Assertions.assertEquals("0999-01-05", DateTimeCodec.formatDate(DateTimeCodec.parseDate("0999-01-05")));
+    }
+
+    @Test
+    void testParse_FromManyThreadsAtOnce() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<Boolean>> results = new ArrayList<>();
+            for (int i = 0; i < 8; i++) {
+                int day = i + 1;
+                results.add(executor.submit(() -> {
+                    Date expected = Date.from(LocalDateTime.of(2022, 1, day, 8, 15).atZone(ZoneId.systemDefault()).toInstant());
+                    for (int j = 0; j < 10000; j++) {
+                        if (!expected.equals(DateTimeCodec.parse("2022-01-0" + day, "08:15"))) {
+                            return false;
+                        }
+                    }
+                    return true;
+                }));
+            }
+            for (Future<Boolean> result : results) {
+                Assertions.assertTrue(result.get());
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}
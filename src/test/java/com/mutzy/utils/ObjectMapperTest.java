@@ -11,17 +11,29 @@ import org.apache.commons.lang3.RandomStringUtils;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.Test;
 
+import java.util.Date;
+
 class ObjectMapperTest {
 
     @Test
-    void testMapAppointmentDtoToDomain() throws Exception {
+    void testMapAppointmentDtoToDomain() {
         AppointmentRequestDto dto = TestHelper.createAppointmentDto();
         Appointment mappedDomain = ObjectMapper.getInstance().mapDtoToDomain(dto);
 
         Assertions.assertEquals(dto.getPersonId(), mappedDomain.getPersonId());
         Assertions.assertEquals(dto.getLocationId(), mappedDomain.getLocationId());
         Assertions.assertEquals(dto.getDescription(), mappedDomain.getDescription());
-        Assertions.assertEquals(Constants.DATE_TIME_FORMAT.parse(dto.getDate() + " " + dto.getTime()), mappedDomain.getDate());
+        Assertions.assertEquals(DateTimeCodec.parse(dto.getDate(), dto.getTime()), mappedDomain.getDate());
+        Assertions.assertNotNull(mappedDomain.getDate());
+    }
+
+    @Test
+    void testMapAppointmentDtoToDomain_WithParsedDate() {
+        AppointmentRequestDto dto = TestHelper.createAppointmentDto();
+        Date date = new Date(123456789L);
+        Appointment mappedDomain = ObjectMapper.getInstance().mapDtoToDomain(dto, date);
+        Assertions.assertEquals(date, mappedDomain.getDate());
+        Assertions.assertEquals(dto.getDescription(), mappedDomain.getDescription());
     }
 
     @Test
@@ -0,0 +1,46 @@
+package com.mutzy.utils;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+class TextFieldRuleTest {
+
+    private final TextFieldRule rule = new TextFieldRule("Field", 10);
+
+    @Test
+    void testCheck_ShouldAgreeWithRegexForEveryAsciiCharacter() {
+        for (char c = 0; c < 128; c++) {
+            String value = "a" + c;
+            List<ValidationViolation> violations = new ArrayList<>();
+            Assertions.assertEquals(value.matches(Constants.STRING_INPUT_REGEX), rule.check(value, violations), "character " + (int) c);
+            Assertions.assertEquals(violations.isEmpty(), rule.check(value, new ArrayList<>()));
+        }
+    }
+
+    @Test
+    void testCheck_WithNonAsciiCharacter() {
+        List<ValidationViolation> violations = new ArrayList<>();
+        Assertions.assertFalse(rule.check("café", violations));
+        Assertions.assertEquals(1, violations.size());
+        Assertions.assertEquals("Field", violations.get(0).getField());
+    }
+
+    @Test
+    void testCheck_WithEmptyValues() {
+        List<ValidationViolation> violations = new ArrayList<>();
+        Assertions.assertFalse(rule.check(null, violations));
+        Assertions.assertFalse(rule.check("", violations));
+        Assertions.assertEquals(2, violations.size());
+        Assertions.assertEquals("Field cannot be empty", violations.get(0).getMessage());
+    }
+
+    @Test
+    void testCheck_WithValueLongerThanMaxLength_ShouldStillBeValid() {
+        List<ValidationViolation> violations = new ArrayList<>();
+        Assertions.assertTrue(rule.check("a much longer value than ten characters", violations));
+        Assertions.assertTrue(violations.isEmpty());
+    }
+}
@@ -3,9 +3,14 @@ package com.mutzy.utils;
 import com.mutzy.TestHelper;
 import com.mutzy.dao.LocationDao;
 import com.mutzy.dao.PersonDao;
+import com.mutzy.dao.ReferenceDataCache;
+import com.mutzy.domain.AppointmentSeries;
 import com.mutzy.dto.AppointmentRequestDto;
+import com.mutzy.dto.AppointmentSeriesRequestDto;
 import com.mutzy.dto.LocationDto;
 import com.mutzy.dto.PersonDto;
+import com.mutzy.service.BookingIndex;
+import com.mutzy.service.RecurringSeries;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -13,15 +18,22 @@ import org.mockito.Mockito;
 
 import javax.validation.ValidationException;
 
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
 import java.util.Optional;
 
 import static org.mockito.ArgumentMatchers.any;
 
 class ValidationUtilsTest {
 
+    private static final Integer SERIES_ID = 7;
+
     private final PersonDao personDao = Mockito.mock(PersonDao.class);
     private final LocationDao locationDao = Mockito.mock(LocationDao.class);
-    private final ValidationUtils validationUtils = new ValidationUtils(personDao, locationDao);
+    private final ValidationUtils validationUtils = new ValidationUtils(new ReferenceDataCache(personDao, locationDao, 100, Duration.ofMinutes(1)));
 
     @BeforeEach
     void setupMocks() {
@@ -35,6 +47,12 @@ class ValidationUtilsTest {
         Assertions.assertDoesNotThrow(() -> validationUtils.validateAppointmentDto(TestHelper.createAppointmentDto()));
     }
 
+    @Test
+    void testValidAppointment_ShouldReturnParsedDate() {
+        AppointmentRequestDto dto = TestHelper.createAppointmentDto();
+        Assertions.assertEquals(DateTimeCodec.parse("2022-12-20", "12:30"), validationUtils.validateAppointmentDto(dto));
+    }
+
     @Test
     void testAppointmentDto_WithSelectSpecialCharacters() {
         AppointmentRequestDto dto = TestHelper.createAppointmentDto();
@@ -42,6 +60,43 @@ class ValidationUtilsTest {
         Assertions.assertDoesNotThrow(() -> validationUtils.validateAppointmentDto(dto));
     }
 
+    @Test
+    void testInvalidAppointmentDto_InvalidDuration() {
+        AppointmentRequestDto dto = TestHelper.createAppointmentDto();
+        dto.setDurationMinutes(0);
+        helpTestAppointmentValidationDto(dto);
+
+        dto.setDurationMinutes(Constants.MAX_APPOINTMENT_DURATION_MINUTES + 1);
+        helpTestAppointmentValidationDto(dto);
+
+        dto.setDurationMinutes(Constants.MAX_APPOINTMENT_DURATION_MINUTES);
+        Assertions.assertDoesNotThrow(() -> validationUtils.validateAppointmentDto(dto));
+    }
+
+    @Test
+    void testAppointmentDto_WhenPersonOrLocationAlreadyBooked_ShouldReportBoth() {
+        AppointmentRequestDto dto = TestHelper.createAppointmentDto(); // 2022-12-20 12:30 for 30 minutes
+        BookingIndex bookings = new BookingIndex();
+        bookings.add(10, dto.getPersonId(), null, DateTimeCodec.parse("2022-12-20", "12:00"), 31);
+        bookings.add(11, null, dto.getLocationId(), DateTimeCodec.parse("2022-12-20", "12:59"), 30);
+
+        ValidationException exception = Assertions.assertThrows(ValidationException.class,
+                () -> validationUtils.validateBookings(dto, validationUtils.validateAppointmentDto(dto), bookings));
+        Assertions.assertTrue(exception.getMessage().contains("person"));
+        Assertions.assertTrue(exception.getMessage().contains("location"));
+        Assertions.assertDoesNotThrow(() -> validationUtils.validateAppointmentDto(dto));
+    }
+
+    @Test
+    void testAppointmentDto_WhenBookingsOnlyTouch_ShouldBeValid() {
+        AppointmentRequestDto dto = TestHelper.createAppointmentDto();
+        BookingIndex bookings = new BookingIndex();
+        bookings.add(10, dto.getPersonId(), dto.getLocationId(), DateTimeCodec.parse("2022-12-20", "12:00"), 30);
+        bookings.add(11, dto.getPersonId(), dto.getLocationId(), DateTimeCodec.parse("2022-12-20", "13:00"), 30);
+
+        Assertions.assertDoesNotThrow(() -> validationUtils.validateBookings(dto, DateTimeCodec.parse("2022-12-20", "12:30"), bookings));
+    }
+
     @Test
     void testNullAppointmentDto() {
         helpTestAppointmentValidationDto(null);
@@ -74,6 +129,9 @@ class ValidationUtilsTest {
 
         dto.setDate("2000/50/10");
         helpTestAppointmentValidationDto(dto);
+
+        dto.setDate("2022-02-30");
+        helpTestAppointmentValidationDto(dto);
     }
 
     @Test
@@ -90,6 +148,64 @@ class ValidationUtilsTest {
 
         dto.setTime("&$%&&!");
         helpTestAppointmentValidationDto(dto);
+
+        dto.setTime("24:30");
+        helpTestAppointmentValidationDto(dto);
+    }
+
+    @Test
+    void testInvalidAppointmentDto_ShouldReportEveryViolation() {
+        Mockito.when(personDao.findById(any())).thenReturn(Optional.empty());
+        AppointmentRequestDto dto = TestHelper.createAppointmentDto();
+        dto.setDescription("invalid ^^*");
+        dto.setDate("");
+        dto.setTime("25:00");
+
+        ValidationException exception = Assertions.assertThrows(ValidationException.class,
+                () -> validationUtils.validateAppointmentDto(dto));
+        Assertions.assertTrue(exception.getMessage().contains("Appointment description can only contain"));
+        Assertions.assertTrue(exception.getMessage().contains("Appointment date cannot be empty"));
+        Assertions.assertTrue(exception.getMessage().contains("Invalid time format"));
+        Assertions.assertTrue(exception.getMessage().contains("Invalid selected person"));
+    }
+
+    @Test
+    void testCheckAppointmentFields_ShouldNotLookUpPersonOrLocation() {
+        AppointmentRequestDto dto = TestHelper.createAppointmentDto();
+        dto.setDate("2022-13-01");
+        List<ValidationViolation> violations = new ArrayList<>();
+
+        Assertions.assertNull(validationUtils.checkAppointmentFields(dto, violations));
+
+        Assertions.assertEquals(1, violations.size());
+        Assertions.assertEquals("Appointment date", violations.get(0).getField());
+        Mockito.verifyZeroInteractions(personDao, locationDao);
+    }
+
+    @Test
+    void testCheckAppointmentFields_ShouldReturnTheParsedDateOnlyWhenDateAndTimeAreValid() {
+        AppointmentRequestDto dto = TestHelper.createAppointmentDto();
+        List<ValidationViolation> violations = new ArrayList<>();
+
+        Assertions.assertEquals(DateTimeCodec.parse("2022-12-20", "12:30"), validationUtils.checkAppointmentFields(dto, violations));
+        Assertions.assertTrue(violations.isEmpty());
+
+        dto.setTime("25:00");
+        Assertions.assertNull(validationUtils.checkAppointmentFields(dto, violations));
+        Assertions.assertEquals(1, violations.size());
+    }
+
+    @Test
+    void testFindPersonViolations_WithBothFieldsInvalid() {
+        PersonDto dto = TestHelper.createPersonDto();
+        dto.setName("");
+        dto.setAffiliation("%%");
+
+        List<ValidationViolation> violations = validationUtils.findPersonViolations(dto);
+
+        Assertions.assertEquals(2, violations.size());
+        Assertions.assertEquals("Person name", violations.get(0).getField());
+        Assertions.assertEquals("Person affiliation", violations.get(1).getField());
     }
 
     @Test
@@ -216,4 +332,96 @@ class ValidationUtilsTest {
         Assertions.assertNotNull(exception.getMessage());
     }
 
-}
\ No newline at end of file
+
+    @Test
+    void testValidateSearchQuery() {
+        validationUtils.validateSearchQuery("dentist bob");
+        validationUtils.validateSearchQuery("Q3 review, follow-up!");
+
+        Assertions.assertThrows(ValidationException.class, () -> validationUtils.validateSearchQuery(null));
+        Assertions.assertThrows(ValidationException.class, () -> validationUtils.validateSearchQuery(""));
+        Assertions.assertThrows(ValidationException.class, () -> validationUtils.validateSearchQuery("bob & alice"));
+        ValidationException e = Assertions.assertThrows(ValidationException.class, () -> validationUtils.validateSearchQuery(" .,!"));
+        Assertions.assertEquals("Search must contain at least one letter or number", e.getMessage());
+    }
+
+    @Test
+    void testSeriesDto_ShouldReportEveryRecurrenceViolation() {
+        AppointmentSeriesRequestDto dto = TestHelper.createSeriesDto(5);
+        Assertions.assertEquals(DateTimeCodec.parse("2022-12-20", "12:30"), validationUtils.validateSeriesDto(dto));
+
+        dto.setFrequency(null);
+        dto.setRepeatInterval(0);
+        dto.setOccurrenceCount(null);
+        ValidationException exception = Assertions.assertThrows(ValidationException.class, () -> validationUtils.validateSeriesDto(dto));
+        Assertions.assertTrue(exception.getMessage().contains("Series frequency cannot be empty"));
+        Assertions.assertTrue(exception.getMessage().contains("Series must repeat every 1 to"));
+        Assertions.assertTrue(exception.getMessage().contains("Series must have an end date or a number of occurrences"));
+
+        AppointmentSeriesRequestDto endsEarly = TestHelper.createSeriesDto(5);
+        endsEarly.setUntil("2022-12-19");
+        exception = Assertions.assertThrows(ValidationException.class, () -> validationUtils.validateSeriesDto(endsEarly));
+        Assertions.assertTrue(exception.getMessage().contains("Series cannot end before it starts"));
+        endsEarly.setUntil("2022-13-01");
+        exception = Assertions.assertThrows(ValidationException.class, () -> validationUtils.validateSeriesDto(endsEarly));
+        Assertions.assertTrue(exception.getMessage().contains("Invalid series end date format"));
+        endsEarly.setUntil(null);
+        endsEarly.setOccurrenceCount(Constants.MAX_SERIES_OCCURRENCES + 1);
+        Assertions.assertThrows(ValidationException.class, () -> validationUtils.validateSeriesDto(endsEarly));
+        Assertions.assertThrows(ValidationException.class, () -> validationUtils.validateSeriesDto(null));
+    }
+
+    @Test
+    void testSeriesOccurrences_WhenAnOccurrenceIsDoubleBooked_ShouldNameIt() {
+        AppointmentSeriesRequestDto dto = TestHelper.createSeriesDto(5); // weekly at 12:30 for 30 minutes from 2022-12-20, 5 times
+        BookingIndex bookings = new BookingIndex();
+        bookings.add(10, dto.getPersonId(), null, DateTimeCodec.parse("2023-01-03", "12:00"), 60);
+        bookings.add(11, null, dto.getLocationId(), DateTimeCodec.parse("2023-01-24", "12:30"), 30); // after the series ends
+
+        ValidationException exception = Assertions.assertThrows(ValidationException.class,
+                () -> validationUtils.validateSeriesOccurrences(toRecurringSeries(dto), bookings));
+        Assertions.assertTrue(exception.getMessage().contains("The selected person already has an appointment at the time of the occurrence on 2023-01-03"));
+        Assertions.assertFalse(exception.getMessage().contains("location"));
+
+        dto.setOccurrenceCount(4);
+        bookings.remove(10, dto.getPersonId(), null, DateTimeCodec.parse("2023-01-03", "12:00"));
+        Assertions.assertDoesNotThrow(() -> validationUtils.validateSeriesOccurrences(toRecurringSeries(dto), bookings));
+    }
+
+    @Test
+    void testSeriesOccurrences_WithTooManyOccurrences_ShouldNotExpandThem() {
+        AppointmentSeriesRequestDto dto = TestHelper.createSeriesDto(5);
+        dto.setFrequency(AppointmentSeries.Frequency.DAILY);
+        dto.setOccurrenceCount(null);
+        dto.setUntil("2099-12-31");
+
+        ValidationException exception = Assertions.assertThrows(ValidationException.class,
+                () -> validationUtils.validateSeriesOccurrences(toRecurringSeries(dto), new BookingIndex()));
+        Assertions.assertEquals("Series must have between 1 and " + Constants.MAX_SERIES_OCCURRENCES + " occurrences", exception.getMessage());
+    }
+
+    @Test
+    void testOccurrenceChange_ShouldOnlyCheckBookingsAgainstTheRestOfTheSeries() {
+        AppointmentSeriesRequestDto seriesDto = TestHelper.createSeriesDto(5);
+        BookingIndex bookings = new BookingIndex();
+        bookings.addSeries(toRecurringSeries(seriesDto));
+        Date occurrenceDate = DateTimeCodec.parse("2022-12-27", "12:30");
+        AppointmentRequestDto changes = TestHelper.createAppointmentDto();
+        changes.setDate("2022-12-27");
+        changes.setTime("12:45");
+
+        Assertions.assertEquals(DateTimeCodec.parse("2022-12-27", "12:45"),
+                validationUtils.validateOccurrenceChange(changes, bookings, SERIES_ID, occurrenceDate));
+        changes.setDate("2023-01-03");
+        ValidationException exception = Assertions.assertThrows(ValidationException.class,
+                () -> validationUtils.validateOccurrenceChange(changes, bookings, SERIES_ID, occurrenceDate));
+        Assertions.assertTrue(exception.getMessage().contains("person"));
+        Assertions.assertTrue(exception.getMessage().contains("location"));
+    }
+
+    private static RecurringSeries toRecurringSeries(AppointmentSeriesRequestDto dto) {
+        AppointmentSeries series = ObjectMapper.getInstance().mapDtoToDomain(dto, DateTimeCodec.parse(dto.getDate(), dto.getTime()));
+        series.setId(SERIES_ID);
+        return new RecurringSeries(series, null, null, Collections.emptyList());
+    }
+}